@@ -18,10 +18,8 @@ package cz.cas.lib.proarc.common.catalog;
 
 import cz.cas.lib.proarc.common.config.CatalogConfiguration;
 import cz.cas.lib.proarc.common.config.CatalogQueryField;
-import cz.cas.lib.proarc.common.mods.ModsUtils;
 import cz.cas.lib.proarc.common.xml.Transformers;
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -36,6 +34,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.bind.JAXB;
@@ -62,6 +61,7 @@ public final class AlephXServer implements BibliographicCatalog {
     private static final Logger LOG = Logger.getLogger(AlephXServer.class.getName());
 
     private final Transformers transformers = new Transformers();
+    private final CatalogRecordConverter converter = new CatalogRecordConverter();
     private final URI server;
     private boolean loadBarcodes = false;
 
@@ -139,35 +139,12 @@ public final class AlephXServer implements BibliographicCatalog {
             if (details == null) {
                 return Collections.emptyList();
             }
-            List<MetadataItem> result = new ArrayList<>();
+            // each record holds its own DOM so that records can be converted concurrently
+            List<Callable<MetadataItem>> tasks = new ArrayList<>();
             for (DetailResponse.Record record : details.getRecords()) {
-                Element oaiMarc = record.getOaiMarc();
-                DOMSource domSource = new DOMSource(oaiMarc);
-                MetadataItem item;
-                try {
-                    item = createResponse(record.getEntry(), domSource, locale);
-
-                    if (loadBarcodes) {
-                        MetadataItem itemWithBarcode;
-
-                        try {
-                            itemWithBarcode = addBarcodeMetadata(item, record.getDocNumber());
-                        } catch (IOException ex) {
-                            LOG.log(Level.SEVERE, null, ex);
-                            itemWithBarcode = null;
-                        }
-
-                        result.add(itemWithBarcode != null ? itemWithBarcode : item);
-                    } else {
-
-                        result.add(item);
-                    }
-
-                } catch (UnsupportedEncodingException ex) {
-                    LOG.log(Level.SEVERE, null, ex);
-                }
+                tasks.add(() -> createItem(record, locale));
             }
-            return result;
+            return CatalogRecordConverter.convertAll(tasks);
         } finally {
             try {
                 is.close();
@@ -177,6 +154,30 @@ public final class AlephXServer implements BibliographicCatalog {
         }
     }
 
+    private MetadataItem createItem(DetailResponse.Record record, Locale locale) throws TransformerException {
+        Element oaiMarc = record.getOaiMarc();
+        DOMSource domSource = new DOMSource(oaiMarc);
+        MetadataItem item;
+        try {
+            item = createResponse(record.getEntry(), domSource, locale);
+        } catch (UnsupportedEncodingException ex) {
+            LOG.log(Level.SEVERE, null, ex);
+            return null;
+        }
+        if (loadBarcodes) {
+            MetadataItem itemWithBarcode;
+
+            try {
+                itemWithBarcode = addBarcodeMetadata(item, record.getDocNumber());
+            } catch (IOException ex) {
+                LOG.log(Level.SEVERE, null, ex);
+                itemWithBarcode = null;
+            }
+            return itemWithBarcode != null ? itemWithBarcode : item;
+        }
+        return item;
+    }
+
     public void setLoadBarcodes(boolean loadBarcodes) {
         this.loadBarcodes = loadBarcodes;
     }
@@ -216,7 +217,7 @@ public final class AlephXServer implements BibliographicCatalog {
             mods = mods.substring(0,pos) + "\n<identifier type=\"barcode\">" + barcode + "</identifier>" + mods.substring(pos);
         }
 
-        return new MetadataItem(item.getId(), item.getRdczId(), mods, item.getPreview(), item.getTitle());
+        return MetadataItem.withModsPreview(item.getId(), item.getRdczId(), mods, item.getTitle(), item.getPreviewLocale());
     }
 
     FindResponse createFindResponse(InputStream is) {
@@ -238,38 +239,10 @@ public final class AlephXServer implements BibliographicCatalog {
 //        source = transformers.dump(source, sb);
 //        String toString = sb.toString();
 //        source = transformers.dump2Temp(source, "2AlephOaiMarcFixedElement.xml");
-        
-
-        Source marcxmlSrc = transformers.transform(source, Transformers.Format.OaimarcAsMarc21slim);
-//        marcxmlSrc = transformers.dump2Temp(marcxmlSrc, "3OaimarcAsMarc21slim.xml");
-        byte[] modsBytes = transformers.transformAsBytes(
-                marcxmlSrc, Transformers.Format.MarcxmlAsMods3);
-//        try {
-//            FileOutputStream tmp = new FileOutputStream("/tmp/aleph/4mods.xml");
-//            tmp.write(modsBytes);
-//            tmp.close();
-//        } catch (Exception ex) {
-//            Logger.getLogger(AlephXServer.class.getName()).log(Level.SEVERE, null, ex);
-//        }
-        byte[] modsHtmlBytes = modsAsHtmlBytes(new StreamSource(new ByteArrayInputStream(modsBytes)), locale);
-        byte[] modsTitleBytes = transformers.transformAsBytes(
-                new StreamSource(new ByteArrayInputStream(modsBytes)),
-                Transformers.Format.ModsAsTitle);
-//        try {
-//            FileOutputStream tmp = new FileOutputStream("/tmp/aleph/5title.txt");
-//            tmp.write(modsTitleBytes);
-//            tmp.close();
-//        } catch (Exception ex) {
-//            Logger.getLogger(AlephXServer.class.getName()).log(Level.SEVERE, null, ex);
-//        }
-        return new MetadataItem(entryIdx, new String(modsBytes, "UTF-8"),
-                new String(modsHtmlBytes, "UTF-8"), new String(modsTitleBytes, "UTF-8"));
-    }
 
-    private byte[] modsAsHtmlBytes(Source source, Locale locale) throws TransformerException {
-        byte[] modsHtmlBytes = transformers.transformAsBytes(
-                source, Transformers.Format.ModsAsHtml, ModsUtils.modsAsHtmlParameters(locale));
-        return modsHtmlBytes;
+        // OAI-MARC -> MARCXML -> MODS -> title in a single pass
+        return converter.convert(entryIdx, null, source, locale,
+                Transformers.Format.OaimarcAsMarc21slim, Transformers.Format.MarcxmlAsMods3);
     }
 
     private InputStream fetchEntries(Criteria criteria) throws MalformedURLException, IOException {
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.catalog;
+
+import cz.cas.lib.proarc.common.xml.Transformers;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+
+/**
+ * Converts MARC records of catalogs to {@link MetadataItem}s. Transformations
+ * to MODS and its title run in a single pass and records of a multi-hit search
+ * are converted concurrently on a shared pool of threads. The HTML preview
+ * is rendered on request.
+ *
+ * @author Jan Pokorsky
+ */
+final class CatalogRecordConverter {
+
+    /**
+     * Converts records of all searches so that concurrent searches cannot
+     * exhaust the CPUs. Idle threads expire and the daemon threads do not
+     * hold the application on shutdown.
+     */
+    private static final ExecutorService EXECUTOR = createExecutor(Runtime.getRuntime().availableProcessors());
+
+    private final Transformers transformers = new Transformers();
+
+    /**
+     * Converts the record.
+     * @param marc the record accepted by the first format of the chain
+     * @param locale the locale of the preview or {@code null}
+     * @param chain formats producing MODS
+     */
+    MetadataItem convert(int id, Long rdczId, Source marc, Locale locale, Transformers.Format... chain)
+            throws TransformerException, UnsupportedEncodingException {
+
+        List<byte[]> result = transformers.pipe(marc, Arrays.asList(chain), Transformers.Format.ModsAsTitle);
+        return MetadataItem.withModsPreview(id, rdczId,
+                new String(result.get(0), "UTF-8"), new String(result.get(1), "UTF-8"), locale);
+    }
+
+    /**
+     * Runs conversions concurrently.
+     * @param tasks conversions; a task may return {@code null} to skip its record
+     * @return items in the order of tasks
+     */
+    static List<MetadataItem> convertAll(List<Callable<MetadataItem>> tasks) throws TransformerException {
+        List<MetadataItem> result = new ArrayList<MetadataItem>(tasks.size());
+        if (tasks.size() <= 1) {
+            for (Callable<MetadataItem> task : tasks) {
+                try {
+                    add(result, task.call());
+                } catch (Exception ex) {
+                    throw asTransformerException(ex);
+                }
+            }
+            return result;
+        }
+        List<Future<MetadataItem>> futures = new ArrayList<Future<MetadataItem>>(tasks.size());
+        try {
+            for (Callable<MetadataItem> task : tasks) {
+                futures.add(EXECUTOR.submit(task));
+            }
+            for (Future<MetadataItem> future : futures) {
+                try {
+                    add(result, future.get());
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw asTransformerException((Exception) cause);
+                }
+            }
+            return result;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new TransformerException(ex);
+        } finally {
+            // stop conversions of the failed search
+            for (Future<MetadataItem> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Renders previews of items concurrently.
+     */
+    static void renderPreviews(List<MetadataItem> items) throws TransformerException {
+        List<Callable<MetadataItem>> tasks = new ArrayList<Callable<MetadataItem>>(items.size());
+        for (final MetadataItem item : items) {
+            tasks.add(new Callable<MetadataItem>() {
+
+                @Override
+                public MetadataItem call() throws Exception {
+                    item.getPreview();
+                    return item;
+                }
+            });
+        }
+        convertAll(tasks);
+    }
+
+    private static ExecutorService createExecutor(int threadCount) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = factory.newThread(r);
+                thread.setName(CatalogRecordConverter.class.getSimpleName() + '-' + thread.getName());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static void add(List<MetadataItem> result, MetadataItem item) {
+        if (item != null) {
+            result.add(item);
+        }
+    }
+
+    private static TransformerException asTransformerException(Exception ex) {
+        if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        }
+        return ex instanceof TransformerException ? (TransformerException) ex : new TransformerException(ex);
+    }
+
+}
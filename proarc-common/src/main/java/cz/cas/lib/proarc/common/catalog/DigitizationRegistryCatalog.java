@@ -17,7 +17,6 @@
 package cz.cas.lib.proarc.common.catalog;
 
 import cz.cas.lib.proarc.common.config.CatalogConfiguration;
-import cz.cas.lib.proarc.common.mods.ModsUtils;
 import cz.cas.lib.proarc.common.xml.Transformers;
 import cz.registrdigitalizace.soapclient.DigitizationRegistryClient;
 import cz.registrdigitalizace.soapservices.DigitizationRecord;
@@ -25,18 +24,17 @@ import cz.registrdigitalizace.soapservices.DigitizationRegistry;
 import cz.registrdigitalizace.soapservices.DigitizationRegistryException_Exception;
 import cz.registrdigitalizace.soapservices.PlainQuery;
 import cz.registrdigitalizace.soapservices.RecordFormat;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.transform.Source;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.stream.StreamSource;
 
 /**
  *
@@ -48,7 +46,7 @@ public final class DigitizationRegistryCatalog implements BibliographicCatalog {
     private static final int MAX_RESULTS = 10;
 
     private final DigitizationRegistry register;
-    private Transformers transformers = new Transformers();
+    private final CatalogRecordConverter converter = new CatalogRecordConverter();
 
     public static DigitizationRegistryCatalog get(CatalogConfiguration c) {
         if (c == null || !TYPE.equals(c.getType())) {
@@ -98,36 +96,24 @@ public final class DigitizationRegistryCatalog implements BibliographicCatalog {
         return query;
     }
 
-    private List<MetadataItem> buildResponse(List<DigitizationRecord> records, Locale locale) throws TransformerException, UnsupportedEncodingException {
-        ArrayList<MetadataItem> result = new ArrayList<>(records.size());
+    private List<MetadataItem> buildResponse(List<DigitizationRecord> records, Locale locale) throws TransformerException {
+        List<Callable<MetadataItem>> tasks = new ArrayList<>(records.size());
         int index = 1;
         for (DigitizationRecord record : records) {
             Source descriptor = record.getDescriptor();
             if (descriptor != null) {
-                MetadataItem item = createResponse(index++, record.getRecordId(), descriptor, locale);
-                result.add(item);
+                int entryIdx = index++;
+                tasks.add(() -> createResponse(entryIdx, record.getRecordId(), descriptor, locale));
             }
         }
-        return result;
+        return CatalogRecordConverter.convertAll(tasks);
     }
 
     private MetadataItem createResponse(int entryIdx, long recordId, Source marcxmlSrc, Locale locale)
             throws TransformerException, UnsupportedEncodingException {
 
-        byte[] modsBytes = transformers.transformAsBytes(
-                marcxmlSrc, Transformers.Format.MarcxmlAsMods3);
-        byte[] modsHtmlBytes = modsAsHtmlBytes(new StreamSource(new ByteArrayInputStream(modsBytes)), locale);
-        byte[] modsTitleBytes = transformers.transformAsBytes(
-                new StreamSource(new ByteArrayInputStream(modsBytes)),
-                Transformers.Format.ModsAsTitle);
-        return new MetadataItem(entryIdx, recordId, new String(modsBytes, "UTF-8"),
-                new String(modsHtmlBytes, "UTF-8"), new String(modsTitleBytes, "UTF-8"));
-    }
-
-    private byte[] modsAsHtmlBytes(Source source, Locale locale) throws TransformerException {
-        byte[] modsHtmlBytes = transformers.transformAsBytes(
-                source, Transformers.Format.ModsAsHtml, ModsUtils.modsAsHtmlParameters(locale));
-        return modsHtmlBytes;
+        // MARCXML -> MODS -> title in a single pass
+        return converter.convert(entryIdx, recordId, marcxmlSrc, locale, Transformers.Format.MarcxmlAsMods3);
     }
 
 }
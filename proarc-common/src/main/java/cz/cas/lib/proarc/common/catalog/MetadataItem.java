@@ -16,8 +16,29 @@
  */
 package cz.cas.lib.proarc.common.catalog;
 
+import cz.cas.lib.proarc.common.mods.ModsUtils;
+import cz.cas.lib.proarc.common.xml.Transformers;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.XMLConstants;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
 /**
  * Describes metadata item fetched from catalog.
@@ -27,11 +48,19 @@ import javax.xml.bind.annotation.XmlAccessorType;
 @XmlAccessorType(value = XmlAccessType.FIELD)
 public class MetadataItem {
 
+    private static final Logger LOG = Logger.getLogger(MetadataItem.class.getName());
+
     private int id;
     /** MODS XML */
     private String mods;
     /** displayable mods; HTML is permitted */
+    @XmlTransient
     private String preview;
+    /** renders the preview from MODS on the first request */
+    @XmlTransient
+    private boolean previewPending;
+    @XmlTransient
+    private Locale previewLocale;
     /** short descriptor of the item; used in ListGrid */
     private String title;
     /** optional id from rd */
@@ -52,6 +81,17 @@ public class MetadataItem {
         this.title = title;
     }
 
+    /**
+     * Creates the item with the preview rendered from MODS when it is requested.
+     * @param locale the locale of the preview or {@code null}
+     */
+    static MetadataItem withModsPreview(int id, Long rdczId, String mods, String title, Locale locale) {
+        MetadataItem item = new MetadataItem(id, rdczId, mods, null, title);
+        item.previewPending = true;
+        item.previewLocale = locale;
+        return item;
+    }
+
     public int getId() {
         return id;
     }
@@ -60,10 +100,73 @@ public class MetadataItem {
         return mods;
     }
 
-    public String getPreview() {
+    @XmlElement(name = "preview")
+    public synchronized String getPreview() {
+        if (previewPending) {
+            previewPending = false;
+            try {
+                preview = toHtml(new StreamSource(new StringReader(mods)), previewLocale);
+            } catch (TransformerException ex) {
+                LOG.log(Level.SEVERE, null, ex);
+            }
+        }
         return preview;
     }
 
+    /**
+     * Drops the preview not to render it for the client that does not need it.
+     */
+    public synchronized void clearPreview() {
+        preview = null;
+        previewPending = false;
+    }
+
+    /**
+     * Renders pending previews of items concurrently.
+     */
+    public static void renderPreviews(List<MetadataItem> items) throws TransformerException {
+        CatalogRecordConverter.renderPreviews(items);
+    }
+
+    /**
+     * Renders the HTML preview of MODS sent by a client. DOCTYPE declarations
+     * are rejected so that the MODS cannot read external entities.
+     *
+     * @param mods MODS XML
+     * @param locale the locale of the preview or {@code null}
+     * @return HTML
+     * @throws TransformerException invalid MODS
+     */
+    public static String renderPreview(String mods, Locale locale) throws TransformerException {
+        Document doc;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setXIncludeAware(false);
+            factory.setExpandEntityReferences(false);
+            doc = factory.newDocumentBuilder().parse(new InputSource(new StringReader(mods)));
+        } catch (ParserConfigurationException | SAXException | IOException ex) {
+            throw new TransformerException(ex);
+        }
+        return toHtml(new DOMSource(doc), locale);
+    }
+
+    private static String toHtml(Source mods, Locale locale) throws TransformerException {
+        byte[] html = new Transformers().transformAsBytes(mods,
+                Transformers.Format.ModsAsHtml, ModsUtils.modsAsHtmlParameters(locale));
+        try {
+            return new String(html, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    Locale getPreviewLocale() {
+        return previewLocale;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -17,9 +17,7 @@
 package cz.cas.lib.proarc.common.catalog;
 
 import cz.cas.lib.proarc.common.config.CatalogConfiguration;
-import cz.cas.lib.proarc.common.mods.ModsUtils;
 import cz.cas.lib.proarc.common.xml.Transformers;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
@@ -76,7 +74,7 @@ public class OaiCatalog implements BibliographicCatalog {
     private String password;
     private final String metadataPrefix;
     private String identifierPrefix;
-    private final Transformers transformers;
+    private final CatalogRecordConverter converter;
 
     public static OaiCatalog get(CatalogConfiguration c) {
         if (c == null || !TYPE.equals(c.getType())) {
@@ -100,7 +98,7 @@ public class OaiCatalog implements BibliographicCatalog {
         this.url = url;
         this.metadataPrefix = metadataPrefix;
         this.identifierPrefix = identifierPrefix;
-        this.transformers = new Transformers();
+        this.converter = new CatalogRecordConverter();
     }
 
     public void setDebug(boolean debug) {
@@ -191,20 +189,7 @@ public class OaiCatalog implements BibliographicCatalog {
     private MetadataItem createResponse(int entryIdx, Source marcxmlSrc, Locale locale)
             throws TransformerException, UnsupportedEncodingException {
 
-        byte[] modsBytes = transformers.transformAsBytes(
-                marcxmlSrc, Transformers.Format.MarcxmlAsMods3);
-        byte[] modsHtmlBytes = modsAsHtmlBytes(new StreamSource(new ByteArrayInputStream(modsBytes)), locale);
-        byte[] modsTitleBytes = transformers.transformAsBytes(
-                new StreamSource(new ByteArrayInputStream(modsBytes)),
-                Transformers.Format.ModsAsTitle);
-        return new MetadataItem(entryIdx, new String(modsBytes, "UTF-8"),
-                new String(modsHtmlBytes, "UTF-8"), new String(modsTitleBytes, "UTF-8"));
-    }
-
-    private byte[] modsAsHtmlBytes(Source source, Locale locale) throws TransformerException {
-        byte[] modsHtmlBytes = transformers.transformAsBytes(
-                source, Transformers.Format.ModsAsHtml, ModsUtils.modsAsHtmlParameters(locale));
-        return modsHtmlBytes;
+        return converter.convert(entryIdx, null, marcxmlSrc, locale, Transformers.Format.MarcxmlAsMods3);
     }
 
     /**
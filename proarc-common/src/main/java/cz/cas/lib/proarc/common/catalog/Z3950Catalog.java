@@ -18,11 +18,9 @@ package cz.cas.lib.proarc.common.catalog;
 
 import cz.cas.lib.proarc.common.config.CatalogConfiguration;
 import cz.cas.lib.proarc.common.config.CatalogQueryField;
-import cz.cas.lib.proarc.common.mods.ModsUtils;
 import cz.cas.lib.proarc.common.xml.Transformers;
 import cz.cas.lib.proarc.z3950.Z3950Client;
 import cz.cas.lib.proarc.z3950.Z3950ClientException;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
@@ -39,7 +37,6 @@ import java.util.logging.Logger;
 import javax.xml.transform.Source;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamSource;
 import org.w3c.dom.Document;
 
 /**
@@ -59,6 +56,7 @@ public final class Z3950Catalog implements BibliographicCatalog {
     
     private static final Logger LOG = Logger.getLogger(Z3950Catalog.class.getName());
     private Transformers transformers = new Transformers();
+    private final CatalogRecordConverter converter = new CatalogRecordConverter();
     private final Z3950Client client;
     private final String host;
     private final String base;
@@ -193,20 +191,7 @@ public final class Z3950Catalog implements BibliographicCatalog {
     private MetadataItem createResponse(int entryIdx, Source marcxmlSrc, Locale locale)
             throws TransformerException, UnsupportedEncodingException {
 
-        byte[] modsBytes = transformers.transformAsBytes(
-                marcxmlSrc, Transformers.Format.MarcxmlAsMods3);
-        byte[] modsHtmlBytes = modsAsHtmlBytes(new StreamSource(new ByteArrayInputStream(modsBytes)), locale);
-        byte[] modsTitleBytes = transformers.transformAsBytes(
-                new StreamSource(new ByteArrayInputStream(modsBytes)),
-                Transformers.Format.ModsAsTitle);
-        return new MetadataItem(entryIdx, new String(modsBytes, "UTF-8"),
-                new String(modsHtmlBytes, "UTF-8"), new String(modsTitleBytes, "UTF-8"));
-    }
-
-    private byte[] modsAsHtmlBytes(Source source, Locale locale) throws TransformerException {
-        byte[] modsHtmlBytes = transformers.transformAsBytes(
-                source, Transformers.Format.ModsAsHtml, ModsUtils.modsAsHtmlParameters(locale));
-        return modsHtmlBytes;
+        return converter.convert(entryIdx, null, marcxmlSrc, locale, Transformers.Format.MarcxmlAsMods3);
     }
 
     public static final class Z3950Field extends CatalogQueryField {
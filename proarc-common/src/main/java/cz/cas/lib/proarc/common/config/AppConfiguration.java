@@ -23,6 +23,7 @@ import cz.cas.lib.proarc.common.imports.ImportProfile;
 import cz.cas.lib.proarc.common.jobs.JobHandler;
 import cz.cas.lib.proarc.common.object.ndk.NdkPlugin;
 import cz.cas.lib.proarc.common.object.ndk.RdaRules;
+import cz.cas.lib.proarc.common.process.ExternalProcess;
 import cz.cas.lib.proarc.common.urnnbn.UrnNbnConfiguration;
 import java.io.BufferedReader;
 import java.io.File;
@@ -71,10 +72,17 @@ public final class AppConfiguration {
      */
     public static final String PROPERTY_APP_HOME = "proarc.home";
     private static final String PROPERTY_DIGOBJECT_PLUGINS = "digobject.plugins";
+    private static final String PROPERTY_FEDORA_CLIENT_INGEST_THREADS = "fedora.client.ingestThreads";
+    private static final String PROPERTY_FEDORA_CLIENT_INGEST_LOAD_THREADS = "fedora.client.ingestLoadThreads";
+    private static final String PROPERTY_FEDORA_CLIENT_DISSEMINATION_CACHE_SIZE = "fedora.client.disseminationCacheSize";
+    private static final String PROPERTY_FEDORA_CLIENT_THUMBNAIL_THREADS = "fedora.client.thumbnailThreads";
+    private static final String PROPERTY_EXPORT_ARCHIVE_THREADS = "export.archive.threads";
+    private static final String PROPERTY_EXPORT_ARCHIVE_PACKAGE_THREADS = "export.archive.packageThreads";
     private static final String PROPERTY_FEDORA_CLIENT_PASSWORD = "fedora.client.password";
     private static final String PROPERTY_FEDORA_CLIENT_URL = "fedora.client.url";
     private static final String PROPERTY_FEDORA_CLIENT_USERNAME = "fedora.client.username";
     private static final String PROPERTY_USERS_HOME = "proarc.users.home";
+    private static final String PROPERTY_PROCESS_MAX_COUNT = "process.maxCount";
 
     private static final Logger LOG = Logger.getLogger(AppConfiguration.class.getName());
     private static final String DEFAULT_PROPERTIES_RESOURCE = "cz/cas/lib/proarc/common/config/proarc.properties";
@@ -117,6 +125,55 @@ public final class AppConfiguration {
         return config.getString(PROPERTY_FEDORA_CLIENT_URL);
     }
 
+    /**
+     * Gets the number of concurrent connections ingesting a batch.
+     */
+    public int getFedoraIngestThreadCount() {
+        int count = config.getInt(PROPERTY_FEDORA_CLIENT_INGEST_THREADS, 1);
+        return count > 0 ? count : 1;
+    }
+
+    /**
+     * Gets the number of threads reading FOXML of a batch ahead of its ingest.
+     */
+    public int getFedoraIngestLoadThreadCount() {
+        int count = config.getInt(PROPERTY_FEDORA_CLIENT_INGEST_LOAD_THREADS, 1);
+        return count > 0 ? count : 1;
+    }
+
+    /**
+     * Gets the size of the disk cache of thumbnails and previews in MiB.
+     * @return the size or 0 to disable the cache
+     */
+    public int getDisseminationCacheSize() {
+        int size = config.getInt(PROPERTY_FEDORA_CLIENT_DISSEMINATION_CACHE_SIZE, 100);
+        return size > 0 ? size : 0;
+    }
+
+    /**
+     * Gets the number of concurrent connections reading thumbnails of all batch requests.
+     */
+    public int getThumbnailThreadCount() {
+        int count = config.getInt(PROPERTY_FEDORA_CLIENT_THUMBNAIL_THREADS, 4);
+        return count > 0 ? count : 1;
+    }
+
+    /**
+     * Gets the number of objects written to an archive package at once.
+     */
+    public int getArchiveExportThreadCount() {
+        int count = config.getInt(PROPERTY_EXPORT_ARCHIVE_THREADS, 1);
+        return count > 0 ? count : 1;
+    }
+
+    /**
+     * Gets the number of archive packages built at once.
+     */
+    public int getArchiveExportPackageThreadCount() {
+        int count = config.getInt(PROPERTY_EXPORT_ARCHIVE_PACKAGE_THREADS, 1);
+        return count > 0 ? count : 1;
+    }
+
     public Catalogs getCatalogs() {
         return new Catalogs(config);
     }
@@ -194,6 +251,14 @@ public final class AppConfiguration {
         return plugins;
     }
 
+    /**
+     * Gets the maximum number of external processes running at once.
+     */
+    public int getProcessMaxCount() {
+        int count = config.getInt(PROPERTY_PROCESS_MAX_COUNT, ExternalProcess.DEFAULT_MAX_PROCESS_COUNT);
+        return count > 0 ? count : ExternalProcess.DEFAULT_MAX_PROCESS_COUNT;
+    }
+
     public File getWorkflowConfiguration() {
         File file = new File(getConfigHome(), "workflow.xml");
         return file;
@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export;
+
+import com.yourmediashelf.fedora.generated.foxml.DatastreamType;
+import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Copies FOXML with StAX so that inlined binary contents are neither decoded
+ * nor held in memory. Only datastreams selected by the {@link DatastreamHandler}
+ * are unmarshalled one by one to be edited.
+ * <p>Copied datastreams keep just their last version like the Kramerius 4 export expects.
+ *
+ * @author Jan Pokorsky
+ */
+final class FoxmlStreamFilter {
+
+    private static final QName DATASTREAM = new QName(FoxmlUtils.FOXML_NAMESPACE, "datastream");
+    private static final QName DATASTREAM_VERSION = new QName(FoxmlUtils.FOXML_NAMESPACE, "datastreamVersion");
+    private static final QName ATTR_ID = new QName("ID");
+    private static final QName ATTR_VERSIONABLE = new QName("VERSIONABLE");
+
+    private final File source;
+    /** datastream ID to the number of its versions */
+    private final Map<String, Integer> versions;
+    private final XMLInputFactory inputFactory;
+    private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+    /**
+     * Scans the source FOXML.
+     * @param source FOXML file
+     */
+    public FoxmlStreamFilter(File source) throws IOException, XMLStreamException {
+        this.source = source;
+        this.inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.versions = scan();
+    }
+
+    /**
+     * Gets IDs of datastreams of the source FOXML.
+     */
+    public Set<String> getDatastreamIds() {
+        return Collections.unmodifiableSet(versions.keySet());
+    }
+
+    /**
+     * Writes the filtered FOXML.
+     * @param target FOXML file
+     * @param handler decides about datastreams
+     */
+    public void write(File target, DatastreamHandler handler) throws IOException, XMLStreamException, JAXBException {
+        InputStream is = new BufferedInputStream(new FileInputStream(source));
+        OutputStream os = null;
+        XMLEventReader reader = null;
+        XMLEventWriter writer = null;
+        try {
+            os = new BufferedOutputStream(new FileOutputStream(target));
+            reader = inputFactory.createXMLEventReader(is);
+            writer = XMLOutputFactory.newInstance().createXMLEventWriter(os, "UTF-8");
+            Marshaller marshaller = FoxmlUtils.defaultJaxbContext().createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+            while (reader.hasNext()) {
+                XMLEvent event = reader.peek();
+                if (event.isStartElement() && DATASTREAM.equals(event.asStartElement().getName())) {
+                    String dsId = getId(event.asStartElement());
+                    if (!handler.accept(dsId)) {
+                        skipElement(reader);
+                    } else if (handler.isEditable(dsId)) {
+                        DatastreamType datastream = FoxmlUtils.defaultUnmarshaller()
+                                .unmarshal(reader, DatastreamType.class).getValue();
+                        datastream = handler.edit(datastream);
+                        marshaller.marshal(new JAXBElement<DatastreamType>(
+                                DATASTREAM, DatastreamType.class, datastream), writer);
+                    } else {
+                        String newId = handler.rename(dsId);
+                        copyDatastream(reader, writer, dsId, newId == null ? dsId : newId);
+                    }
+                } else {
+                    writer.add(reader.nextEvent());
+                }
+            }
+            writer.flush();
+        } finally {
+            close(reader, writer);
+            FoxmlUtils.closeQuietly(is, source.toString());
+            if (os != null) {
+                os.close();
+            }
+        }
+    }
+
+    private Map<String, Integer> scan() throws IOException, XMLStreamException {
+        LinkedHashMap<String, Integer> result = new LinkedHashMap<String, Integer>();
+        InputStream is = new BufferedInputStream(new FileInputStream(source));
+        XMLEventReader reader = null;
+        try {
+            reader = inputFactory.createXMLEventReader(is);
+            String dsId = null;
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    QName name = event.asStartElement().getName();
+                    if (DATASTREAM.equals(name)) {
+                        dsId = getId(event.asStartElement());
+                        result.put(dsId, 0);
+                    } else if (DATASTREAM_VERSION.equals(name) && dsId != null) {
+                        result.put(dsId, result.get(dsId) + 1);
+                        skipElement(reader, 1);
+                    }
+                }
+            }
+            return result;
+        } finally {
+            close(reader, null);
+            FoxmlUtils.closeQuietly(is, source.toString());
+        }
+    }
+
+    /**
+     * Copies the datastream element with its last version.
+     */
+    private void copyDatastream(XMLEventReader reader, XMLEventWriter writer, String dsId, String newId)
+            throws XMLStreamException {
+
+        StartElement start = reader.nextEvent().asStartElement();
+        List<Attribute> attrs = new ArrayList<Attribute>();
+        for (Iterator<?> it = start.getAttributes(); it.hasNext();) {
+            Attribute attr = (Attribute) it.next();
+            if (ATTR_ID.equals(attr.getName())) {
+                attr = eventFactory.createAttribute(ATTR_ID, newId);
+            } else if (ATTR_VERSIONABLE.equals(attr.getName())) {
+                continue;
+            }
+            attrs.add(attr);
+        }
+        attrs.add(eventFactory.createAttribute(ATTR_VERSIONABLE, "false"));
+        writer.add(eventFactory.createStartElement(start.getName(), attrs.iterator(), start.getNamespaces()));
+
+        Integer versionCount = versions.get(dsId);
+        int versionIndex = 0;
+        while (reader.hasNext()) {
+            XMLEvent event = reader.peek();
+            if (event.isEndElement()) {
+                writer.add(reader.nextEvent());
+                return ;
+            } else if (event.isStartElement() && DATASTREAM_VERSION.equals(event.asStartElement().getName())) {
+                if (++versionIndex == versionCount) {
+                    copyVersion(reader, writer, dsId, newId);
+                } else {
+                    skipElement(reader);
+                }
+            } else if (event.isStartElement()) {
+                copyElement(reader, writer);
+            } else {
+                writer.add(reader.nextEvent());
+            }
+        }
+    }
+
+    private void copyVersion(XMLEventReader reader, XMLEventWriter writer, String dsId, String newId)
+            throws XMLStreamException {
+
+        StartElement start = reader.nextEvent().asStartElement();
+        List<Attribute> attrs = new ArrayList<Attribute>();
+        for (Iterator<?> it = start.getAttributes(); it.hasNext();) {
+            Attribute attr = (Attribute) it.next();
+            if (ATTR_ID.equals(attr.getName())) {
+                attr = eventFactory.createAttribute(ATTR_ID, attr.getValue().replace(dsId, newId));
+            }
+            attrs.add(attr);
+        }
+        writer.add(eventFactory.createStartElement(start.getName(), attrs.iterator(), start.getNamespaces()));
+        copyElement(reader, writer, 1);
+    }
+
+    /**
+     * Copies the element the reader points to.
+     */
+    private static void copyElement(XMLEventReader reader, XMLEventWriter writer) throws XMLStreamException {
+        writer.add(reader.nextEvent());
+        copyElement(reader, writer, 1);
+    }
+
+    private static void copyElement(XMLEventReader reader, XMLEventWriter writer, int depth) throws XMLStreamException {
+        while (depth > 0) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement()) {
+                depth--;
+            }
+            writer.add(event);
+        }
+    }
+
+    /**
+     * Skips the element the reader points to.
+     */
+    private static void skipElement(XMLEventReader reader) throws XMLStreamException {
+        reader.nextEvent();
+        skipElement(reader, 1);
+    }
+
+    private static void skipElement(XMLEventReader reader, int depth) throws XMLStreamException {
+        while (depth > 0) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement()) {
+                depth--;
+            }
+        }
+    }
+
+    private static String getId(StartElement elm) {
+        Attribute id = elm.getAttributeByName(ATTR_ID);
+        return id == null ? null : id.getValue();
+    }
+
+    private static void close(XMLEventReader reader, XMLEventWriter writer) {
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+            if (reader != null) {
+                reader.close();
+            }
+        } catch (XMLStreamException ex) {
+            // ignore
+        }
+    }
+
+    /**
+     * Decides what to do with datastreams of the filtered FOXML.
+     */
+    interface DatastreamHandler {
+
+        /**
+         * @return {@code false} to exclude the datastream
+         */
+        boolean accept(String dsId);
+
+        /**
+         * @return {@code true} to {@link #edit edit} the datastream instead of copying it
+         */
+        boolean isEditable(String dsId);
+
+        /**
+         * Edits the unmarshalled datastream.
+         * @return the datastream to write
+         */
+        DatastreamType edit(DatastreamType datastream);
+
+        /**
+         * @return the new ID of the copied datastream or {@code null}
+         */
+        String rename(String dsId);
+    }
+
+}
@@ -18,6 +18,7 @@ package cz.cas.lib.proarc.common.export;
 
 import com.yourmediashelf.fedora.client.FedoraClient;
 import com.yourmediashelf.fedora.client.FedoraClientException;
+import com.yourmediashelf.fedora.client.response.FedoraResponse;
 import com.yourmediashelf.fedora.generated.foxml.DatastreamType;
 import com.yourmediashelf.fedora.generated.foxml.DatastreamVersionType;
 import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
@@ -46,21 +47,31 @@ import cz.cas.lib.proarc.common.object.DigitalObjectManager;
 import cz.cas.lib.proarc.oaidublincore.DcConstants;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBException;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import org.apache.commons.io.FileUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -73,6 +84,10 @@ import org.w3c.dom.NodeList;
  * In case of OOME it should be rewritten to export FOXML in public or migrate
  * format and fetch each managed data streams with REST or build the whole FOXML
  * from scratch.
+ * <p>The {@link Kramerius4ExportOptions#isStreaming() streaming mode} copies
+ * the archive FOXML with StAX and unmarshals just the edited datastreams.
+ * <p>More {@link Kramerius4ExportOptions#getThreadCount() threads} export
+ * objects of each hierarchy level at once.
  *
  * @author Jan Pokorsky
  */
@@ -89,8 +104,8 @@ public final class Kramerius4Export {
     private DigitalObjectCrawler crawler;
 
     private final SearchView search;
-    /** already exported PIDs to prevent loops */
-    private HashSet<String> exportedPids = new HashSet<String>();
+    /** already exported PIDs in the export order to prevent loops */
+    private final Set<String> exportedPids = Collections.synchronizedSet(new LinkedHashSet<String>());
     /** PIDs scheduled for export */
     private Queue<String> toExport = new LinkedList<String>();
     
@@ -130,10 +145,14 @@ public final class Kramerius4Export {
 
         File target = ExportUtils.createFolder(output, "k4_" + FoxmlUtils.pidAsUuid(pids[0]));
         HashSet<String> selectedPids = new HashSet<String>(Arrays.asList(pids));
-        toExport.addAll(selectedPids);
         try {
-            for (String pid = toExport.poll(); pid != null; pid = toExport.poll()) {
-                exportPid(target, hierarchy, pid);
+            if (options.getThreadCount() > 1) {
+                exportParallel(target, hierarchy, selectedPids, options.getThreadCount());
+            } else {
+                toExport.addAll(selectedPids);
+                for (String pid = toExport.poll(); pid != null; pid = toExport.poll()) {
+                    exportPid(target, hierarchy, pid);
+                }
             }
             exportParents(target, selectedPids);
             storeExportResult(target, log);
@@ -153,25 +172,88 @@ public final class Kramerius4Export {
     }
 
     void exportPid(File output, boolean hierarchy, String pid) {
+        if (exportedPids.add(pid)) {
+            exportPid(output, hierarchy, pid, toExport);
+        }
+    }
+
+    /**
+     * Exports objects level by level of the hierarchy. Objects of a level
+     * are fetched and transformed by the pool of threads while their members
+     * are collected to the next level in the order of the sequential export.
+     * The first failure cancels the export.
+     *
+     * @param output output folder
+     * @param hierarchy whether to export members
+     * @param pids PIDs selected for export
+     * @param threadCount the number of objects exported at once
+     */
+    private void exportParallel(final File output, final boolean hierarchy,
+            Collection<String> pids, int threadCount) {
+
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<String> level = new ArrayList<String>(pids);
+            while (!level.isEmpty()) {
+                List<Future<List<String>>> results = new ArrayList<Future<List<String>>>(level.size());
+                for (final String pid : level) {
+                    // claim PIDs here to keep the export order
+                    if (!exportedPids.add(pid)) {
+                        continue;
+                    }
+                    results.add(pool.submit(new Callable<List<String>>() {
+
+                        @Override
+                        public List<String> call() throws Exception {
+                            List<String> members = new ArrayList<String>();
+                            exportPid(output, hierarchy, pid, members);
+                            return members;
+                        }
+                    }));
+                }
+                level = new ArrayList<String>();
+                for (Future<List<String>> result : results) {
+                    level.addAll(getResult(result));
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static <T> T getResult(Future<T> result) throws InterruptedException {
         try {
-            if (exportedPids.contains(pid)) {
+            return result.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Exports the claimed object.
+     * @param members collection to add members of the object to export in case of the hierarchy
+     */
+    private void exportPid(File output, boolean hierarchy, String pid, Collection<String> members) {
+        try {
+            if (options.isStreaming()) {
+                exportStream(pid, ExportUtils.pidAsXmlFile(output, pid), hierarchy, null, members);
                 return ;
             }
-            exportedPids.add(pid);
             RemoteObject robject = rstorage.find(pid);
             FedoraClient client = robject.getClient();
             DigitalObject dobj = FedoraClient.export(pid).context("archive")
                     .format("info:fedora/fedora-system:FOXML-1.1")
                     .execute(client).getEntity(DigitalObject.class);
-            File foxml = ExportUtils.pidAsXmlFile(output, pid);
-            LocalObject local = lstorage.create(foxml, dobj);
-            RelationEditor editor = new RelationEditor(local);
-            if (hierarchy) {
-                List<String> children = editor.getMembers();
-                toExport.addAll(children);
-            }
-            exportDatastreams(local, editor);
-            local.flush();
+            exportObject(dobj, ExportUtils.pidAsXmlFile(output, pid), hierarchy, members);
         } catch (DigitalObjectException ex) {
             throw new IllegalStateException(pid, ex);
         } catch (FedoraClientException ex) {
@@ -201,15 +283,16 @@ public final class Kramerius4Export {
     void exportParentPid(File output, String pid, Collection<String> includeChildPids) {
         try {
             exportedPids.add(pid);
+            if (options.isStreaming()) {
+                exportStream(pid, ExportUtils.pidAsXmlFile(output, pid), false, includeChildPids, null);
+                return ;
+            }
             RemoteObject robject = rstorage.find(pid);
             FedoraClient client = robject.getClient();
             DigitalObject dobj = FedoraClient.export(pid).context("archive")
                     .format("info:fedora/fedora-system:FOXML-1.1")
                     .execute(client).getEntity(DigitalObject.class);
-            File foxml = ExportUtils.pidAsXmlFile(output, pid);
-            LocalObject local = lstorage.create(foxml, dobj);
-            exportParentDatastreams(local, includeChildPids);
-            local.flush();
+            exportParentObject(dobj, ExportUtils.pidAsXmlFile(output, pid), includeChildPids);
         } catch (DigitalObjectException ex) {
             throw new IllegalStateException(pid, ex);
         } catch (FedoraClientException ex) {
@@ -218,8 +301,92 @@ public final class Kramerius4Export {
         }
     }
 
+    /**
+     * Transforms the archive FOXML of the exported object and writes it.
+     * <p>package private for unit tests
+     * @param members collection to add members of the object to export in case of the hierarchy
+     */
+    void exportObject(DigitalObject dobj, File foxml, boolean hierarchy, Collection<String> members)
+            throws DigitalObjectException {
+
+        LocalObject local = lstorage.create(foxml, dobj);
+        RelationEditor editor = new RelationEditor(local);
+        if (hierarchy) {
+            List<String> children = editor.getMembers();
+            members.addAll(children);
+        }
+        exportDatastreams(local, editor);
+        local.flush();
+    }
+
+    /**
+     * Transforms the archive FOXML of the parent object and writes it.
+     * <p>package private for unit tests
+     */
+    void exportParentObject(DigitalObject dobj, File foxml, Collection<String> includeChildPids)
+            throws DigitalObjectException {
+
+        LocalObject local = lstorage.create(foxml, dobj);
+        exportParentDatastreams(local, includeChildPids);
+        local.flush();
+    }
+
+    /**
+     * Exports the object in the streaming mode. The archive FOXML is downloaded
+     * to a temporary file and filtered to the target FOXML.
+     *
+     * @param pid PID to export
+     * @param foxml target file
+     * @param hierarchy whether to schedule members for export
+     * @param includeChildPids {@code null} for selected objects or children to include in a parent object
+     * @param members collection to add members of the object to export in case of the hierarchy
+     */
+    private void exportStream(String pid, File foxml, boolean hierarchy, Collection<String> includeChildPids,
+            Collection<String> members) throws FedoraClientException {
+
+        File download = null;
+        try {
+            download = File.createTempFile("k4export", ".xml", foxml.getParentFile());
+            FedoraClient client = rstorage.find(pid).getClient();
+            FedoraResponse response = FedoraClient.export(pid).context("archive")
+                    .format("info:fedora/fedora-system:FOXML-1.1")
+                    .execute(client);
+            try {
+                FileUtils.copyInputStreamToFile(response.getEntityInputStream(), download);
+            } finally {
+                response.close();
+            }
+            exportStream(pid, download, foxml, hierarchy, includeChildPids, members);
+        } catch (IOException ex) {
+            throw new IllegalStateException(pid, ex);
+        } catch (XMLStreamException ex) {
+            throw new IllegalStateException(pid, ex);
+        } catch (JAXBException ex) {
+            throw new IllegalStateException(pid, ex);
+        } finally {
+            FileUtils.deleteQuietly(download);
+        }
+    }
+
+    /**
+     * Filters the downloaded archive FOXML to the target FOXML.
+     * <p>package private for unit tests
+     */
+    void exportStream(String pid, File download, File foxml, boolean hierarchy,
+            Collection<String> includeChildPids, Collection<String> members
+            ) throws IOException, XMLStreamException, JAXBException {
+
+        FoxmlStreamFilter filter = new FoxmlStreamFilter(download);
+        filter.write(foxml, new KrameriusDatastreamHandler(
+                pid, hierarchy, includeChildPids, members, filter.getDatastreamIds()));
+    }
+
     void storeExportResult(File output, String log) {
-        for (String pid : exportedPids) {
+        List<String> pids;
+        synchronized (exportedPids) {
+            pids = new ArrayList<String>(exportedPids);
+        }
+        for (String pid : pids) {
             try {
                 File foxml = ExportUtils.pidAsXmlFile(output, pid);
                 ExportUtils.storeObjectExportResult(pid, foxml.toURI().toASCIIString(), log);
@@ -243,19 +410,24 @@ public final class Kramerius4Export {
         // pids={C1, C2, C3}
         // Map<PID, Set<PID>> tree  P1={R1, R3}, R1={C1, C2}, R3={C3}
         Map<String, Set<String>> pidTree = new HashMap<String, Set<String>>();
+        Map<String, List<DigitalObjectElement>> reversePaths;
+        Map<String, DigitalObjectElement> entries;
+        try {
+            // resolve all paths at once
+            reversePaths = crawler.getReversePaths(pids);
+            entries = crawler.getEntries(pids);
+        } catch (DigitalObjectException ex) {
+            throw new IllegalStateException(String.valueOf(pids), ex);
+        }
         for (String pid : pids) {
-            try {
-                fillPidTree(pid, pidTree);
-            } catch (DigitalObjectException ex) {
-                throw new IllegalStateException(pid, ex);
-            }
+            List<DigitalObjectElement> reversePath = new ArrayList<DigitalObjectElement>(reversePaths.get(pid));
+            reversePath.add(entries.get(pid));
+            fillPidTree(reversePath, pidTree);
         }
         return pidTree;
     }
 
-    private void fillPidTree(String selectedPid, Map<String, Set<String>> pidTree) throws DigitalObjectException {
-        List<DigitalObjectElement> reversePath = crawler.getReversePath(selectedPid);
-        reversePath.add(crawler.getEntry(selectedPid));
+    private void fillPidTree(List<DigitalObjectElement> reversePath, Map<String, Set<String>> pidTree) {
         Set<String> lastChildren = null;
         for (Iterator<DigitalObjectElement> it = reversePath.iterator(); it.hasNext();) {
             DigitalObjectElement elm = it.next();
@@ -434,7 +606,9 @@ public final class Kramerius4Export {
             return ;
         }
         try {
-            List<Item> childDescriptors = search.findChildren(pid);
+            // objects without members, e.g. pages, need not query the index
+            List<Item> childDescriptors = editor.getMembers().isEmpty()
+                    ? new ArrayList<Item>() : search.findChildren(pid);
             transformRelation2Kramerius(pid, editor, childDescriptors, includePids);
         } catch (DigitalObjectException ex) {
             throw new IllegalStateException(ex);
@@ -563,4 +737,76 @@ public final class Kramerius4Export {
         }
     }
 
+    /**
+     * Transforms datastreams of the streamed FOXML the same way as
+     * {@link #exportDatastreams} and {@link #exportParentDatastreams}.
+     */
+    private final class KrameriusDatastreamHandler implements FoxmlStreamFilter.DatastreamHandler {
+
+        private final String pid;
+        private final boolean hierarchy;
+        private final Collection<String> includeChildPids;
+        private final Collection<String> members;
+        /** use RAW if FULL is not available */
+        private final boolean useRaw;
+
+        KrameriusDatastreamHandler(String pid, boolean hierarchy,
+                Collection<String> includeChildPids, Collection<String> members, Set<String> datastreamIds) {
+
+            this.pid = pid;
+            this.hierarchy = hierarchy;
+            this.includeChildPids = includeChildPids;
+            this.members = members;
+            this.useRaw = includeChildPids == null && !datastreamIds.contains(BinaryEditor.FULL_ID);
+        }
+
+        @Override
+        public boolean accept(String dsId) {
+            if (options.getExcludeDatastreams().contains(dsId)) {
+                return useRaw && BinaryEditor.RAW_ID.equals(dsId);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isEditable(String dsId) {
+            return DcStreamEditor.DATASTREAM_ID.equals(dsId)
+                    || ModsStreamEditor.DATASTREAM_ID.equals(dsId)
+                    || RelationEditor.DATASTREAM_ID.equals(dsId)
+                    || StringEditor.OCR_ID.equals(dsId);
+        }
+
+        @Override
+        public DatastreamType edit(DatastreamType datastream) {
+            excludeVersions(datastream);
+            renameDatastream(datastream);
+            processDublinCore(datastream);
+            processMods(datastream);
+            if (includeChildPids == null) {
+                processOcr(datastream);
+            }
+            if (!RelationEditor.DATASTREAM_ID.equals(datastream.getID())) {
+                return datastream;
+            }
+            DigitalObject dobj = new DigitalObject();
+            dobj.setPID(pid);
+            dobj.getDatastream().add(datastream);
+            RelationEditor editor = new RelationEditor(lstorage.create(dobj));
+            if (hierarchy) {
+                try {
+                    members.addAll(editor.getMembers());
+                } catch (DigitalObjectException ex) {
+                    throw new IllegalStateException(pid, ex);
+                }
+            }
+            processRelsExt(pid, datastream, editor, includeChildPids);
+            return FoxmlUtils.findDatastream(dobj, RelationEditor.DATASTREAM_ID);
+        }
+
+        @Override
+        public String rename(String dsId) {
+            return options.getDsIdMap().get(dsId);
+        }
+    }
+
 }
@@ -39,6 +39,8 @@ public final class Kramerius4ExportOptions {
     static final String PROP_EXCLUDE_DATASTREAM_ID = "export.kramerius4.excludeDatastreamId";
     static final String PROP_POLICY = "export.kramerius4.policy";
     static final String PROP_RENAME_PREFIX = "export.kramerius4.rename";
+    static final String PROP_STREAMING = "export.kramerius4.streaming";
+    static final String PROP_THREADS = "export.kramerius4.threads";
 
     public static Kramerius4ExportOptions from(Configuration config) {
         Kramerius4ExportOptions options = new Kramerius4ExportOptions();
@@ -57,6 +59,9 @@ public final class Kramerius4ExportOptions {
         }
         options.setDsIdMap(dsIdMap);
 
+        options.setStreaming(config.getBoolean(PROP_STREAMING, false));
+        options.setThreadCount(Math.max(1, config.getInt(PROP_THREADS, 1)));
+
         String policy = config.getString(PROP_POLICY);
         if (policy != null && !policy.isEmpty()) {
             options.setPolicy(policy);
@@ -67,6 +72,8 @@ public final class Kramerius4ExportOptions {
     private Set<String> excludeDatastreams = Collections.emptySet();
     private Map<String, String> dsIdMap = Collections.emptyMap();
     private String policy;
+    private boolean streaming;
+    private int threadCount = 1;
     // config options; it should go to proarc.properties
     private Map<String, String> relationMap = new HashMap<String, String>() {
         {
@@ -137,6 +144,28 @@ public final class Kramerius4ExportOptions {
         this.policy = policy;
     }
 
+    /**
+     * Gets whether to copy FOXML with StAX instead of unmarshalling whole objects.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Gets the number of objects exported at once.
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
     public Map<String, String> getRelationMap() {
         return relationMap;
     }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.archive;
+
+import cz.cas.lib.proarc.common.export.mets.FileMD5Info;
+import cz.cas.lib.proarc.common.export.mets.MetsUtils;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Marks a complete package of an archive folder. The checkpoint is written
+ * next to the package folder once the package is built. It lists sizes
+ * of package files and the MD5 of the METS so that the next run can verify
+ * the package and skip it.
+ *
+ * @author Jan Pokorsky
+ */
+final class ArchiveCheckpoint {
+
+    static final String FILE_SUFFIX = ".checkpoint";
+    private static final String PROP_METS_MD5 = "mets.md5";
+    private static final String PROP_FILE_PREFIX = "file.";
+
+    private final File pkgFolder;
+    private final File checkpointFile;
+
+    /**
+     * @param pkgFolder the package folder
+     */
+    public ArchiveCheckpoint(File pkgFolder) {
+        this.pkgFolder = pkgFolder;
+        this.checkpointFile = new File(pkgFolder.getParentFile(), pkgFolder.getName() + FILE_SUFFIX);
+    }
+
+    /**
+     * Checks whether the package was completed and its files were not changed since.
+     */
+    public boolean isComplete() throws IOException {
+        if (!checkpointFile.isFile() || !pkgFolder.isDirectory()) {
+            return false;
+        }
+        Properties expected = new Properties();
+        InputStream is = new FileInputStream(checkpointFile);
+        try {
+            expected.load(is);
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+        return expected.equals(describe());
+    }
+
+    /**
+     * Removes the checkpoint and remains of the package.
+     */
+    public void reset() throws IOException {
+        if (checkpointFile.exists() && !checkpointFile.delete()) {
+            throw new IOException("Cannot delete " + checkpointFile);
+        }
+        if (pkgFolder.exists()) {
+            FileUtils.deleteDirectory(pkgFolder);
+        }
+    }
+
+    /**
+     * Writes the checkpoint of the built package.
+     */
+    public void write() throws IOException {
+        Properties p = describe();
+        File tmp = new File(checkpointFile.getParentFile(), checkpointFile.getName() + ".tmp");
+        OutputStream os = new FileOutputStream(tmp);
+        try {
+            p.store(os, pkgFolder.getName());
+        } finally {
+            os.close();
+        }
+        // replace the checkpoint at once not to leave a partial one
+        if (checkpointFile.exists() && !checkpointFile.delete() || !tmp.renameTo(checkpointFile)) {
+            throw new IOException("Cannot write " + checkpointFile);
+        }
+    }
+
+    private Properties describe() throws IOException {
+        Properties p = new Properties();
+        File metsFile = new File(pkgFolder, PackageBuilder.METS_FILENAME);
+        if (!metsFile.isFile()) {
+            return p;
+        }
+        InputStream is = new FileInputStream(metsFile);
+        try {
+            FileMD5Info metsInfo = MetsUtils.getDigest(is);
+            p.setProperty(PROP_METS_MD5, metsInfo.getMd5());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+        describeFiles(pkgFolder, "", p);
+        return p;
+    }
+
+    private static void describeFiles(File folder, String path, Properties p) throws IOException {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list " + folder);
+        }
+        for (File file : files) {
+            String filePath = path + file.getName();
+            if (file.isDirectory()) {
+                describeFiles(file, filePath + '/', p);
+            } else {
+                p.setProperty(PROP_FILE_PREFIX + filePath, String.valueOf(file.length()));
+            }
+        }
+    }
+
+}
@@ -16,6 +16,8 @@
  */
 package cz.cas.lib.proarc.common.export.archive;
 
+import cz.cas.lib.proarc.common.config.AppConfiguration;
+import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
 import cz.cas.lib.proarc.common.dao.Batch;
 import cz.cas.lib.proarc.common.dao.Batch.State;
 import cz.cas.lib.proarc.common.export.archive.PackageReader.ImportSession;
@@ -61,6 +63,8 @@ public class ArchiveImport implements ImportHandler {
         List<File> metsFiles = ArchiveScanner.findMets(importFolder);
         consume(metsFiles, importConfig);
         Batch batch = importConfig.getBatch();
+        // the ingest of the same run reads the items from the database
+        isession.getImportManager().closeItemWriter(batch);
         batch.setState(State.LOADED);
         isession.getImportManager().update(batch);
     }
@@ -68,7 +72,9 @@ public class ArchiveImport implements ImportHandler {
     public void ingest(ImportOptions importConfig) throws Exception {
         ImportBatchManager ibm = ImportBatchManager.getInstance();
         Batch batch = importConfig.getBatch();
-        FedoraImport ingest = new FedoraImport(RemoteStorage.getInstance(), ibm);
+        AppConfiguration config = AppConfigurationFactory.getInstance().defaultInstance();
+        FedoraImport ingest = new FedoraImport(RemoteStorage.getInstance(), ibm,
+                config.getFedoraIngestThreadCount(), config.getFedoraIngestLoadThreadCount());
         ingest.importBatch(batch, importConfig.getUsername(), null);
     }
 
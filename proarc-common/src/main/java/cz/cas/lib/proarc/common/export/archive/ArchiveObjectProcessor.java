@@ -38,6 +38,8 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.w3c.dom.Element;
 
 /**
@@ -52,10 +54,19 @@ public class ArchiveObjectProcessor {
     private PackageBuilder builder;
     private final File targetFolder;
     private final HashSet<String> devicePids = new HashSet<String>();
+    private final int threadCount;
 
     public ArchiveObjectProcessor(DigitalObjectCrawler crawler, File targetFolder) {
+        this(crawler, targetFolder, 1);
+    }
+
+    /**
+     * @param threadCount the number of objects written at once
+     */
+    public ArchiveObjectProcessor(DigitalObjectCrawler crawler, File targetFolder, int threadCount) {
         this.crawler = crawler;
         this.targetFolder = targetFolder;
+        this.threadCount = threadCount;
     }
 
     /**
@@ -64,14 +75,21 @@ public class ArchiveObjectProcessor {
      * @throws DigitalObjectException a failure
      */
     public void process(List<DigitalObjectElement> objectPath) throws DigitalObjectException {
-        builder = new PackageBuilder(targetFolder);
-        DigitalObjectElement entry = objectPath.get(0);
-        DigitalObjectHandler handler = entry.getHandler();
-        LocalObject lobj = getLocalObject(handler.getFedoraObject());
-        builder.prepare(objectPath, lobj);
-        processParents(objectPath);
-        processObject(1, objectPath, lobj);
-        builder.build();
+        ExecutorService executor = threadCount > 1 ? Executors.newFixedThreadPool(threadCount) : null;
+        try {
+            builder = new PackageBuilder(targetFolder, executor, 2 * threadCount);
+            DigitalObjectElement entry = objectPath.get(0);
+            DigitalObjectHandler handler = entry.getHandler();
+            LocalObject lobj = getLocalObject(handler.getFedoraObject());
+            builder.prepare(objectPath, lobj);
+            processParents(objectPath);
+            processObject(1, objectPath, lobj);
+            builder.build();
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
     }
 
     private void processParents(List<DigitalObjectElement> objectPath) throws DigitalObjectException {
@@ -79,6 +97,7 @@ public class ArchiveObjectProcessor {
             DigitalObjectElement elm = objectPath.get(i);
             LocalObject elmCache = getLocalObject(elm.getHandler().getFedoraObject());
             processDatastreams(1, objectPath.subList(i, objectPath.size()), elmCache, new RelationEditor(elmCache));
+            builder.flushObject();
         }
     }
 
@@ -89,6 +108,8 @@ public class ArchiveObjectProcessor {
         processDatastreams(siblingIdx, objectPath, cache, relsEditor);
 
         List<String> members = relsEditor.getMembers();
+        // the object DOM is not read anymore
+        builder.flushObject();
         if (!members.isEmpty()) {
             // read children with single query
             List<DigitalObjectElement> children = crawler.getChildren(entry.getPid());
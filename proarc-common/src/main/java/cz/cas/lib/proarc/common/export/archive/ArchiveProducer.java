@@ -28,8 +28,17 @@ import cz.cas.lib.proarc.common.object.DigitalObjectCrawler;
 import cz.cas.lib.proarc.common.object.DigitalObjectElement;
 import cz.cas.lib.proarc.common.object.DigitalObjectManager;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
 
 /**
  * It produces archive packages.
@@ -39,12 +48,39 @@ import java.util.logging.Logger;
 public class ArchiveProducer {
 
     private static final Logger LOG = Logger.getLogger(ArchiveProducer.class.getName());
+    /** Lists PIDs archived to the result folder. */
+    static final String PIDS_FILENAME = "archive.pids";
     private final DigitalObjectCrawler crawler;
     private ExportResultLog reslog;
+    private final int threadCount;
+    private final int packageThreadCount;
 
     public ArchiveProducer() {
-        this.crawler = new DigitalObjectCrawler(
-                DigitalObjectManager.getDefault(), RemoteStorage.getInstance().getSearch());
+        this(1);
+    }
+
+    /**
+     * @param threadCount the number of objects of a package written at once
+     */
+    public ArchiveProducer(int threadCount) {
+        this(threadCount, 1);
+    }
+
+    /**
+     * @param threadCount the number of objects of a package written at once
+     * @param packageThreadCount the number of packages built at once
+     */
+    public ArchiveProducer(int threadCount, int packageThreadCount) {
+        this(new DigitalObjectCrawler(
+                DigitalObjectManager.getDefault(), RemoteStorage.getInstance().getSearch()),
+                threadCount, packageThreadCount);
+    }
+
+    /** package private for unit tests */
+    ArchiveProducer(DigitalObjectCrawler crawler, int threadCount, int packageThreadCount) {
+        this.crawler = crawler;
+        this.threadCount = threadCount;
+        this.packageThreadCount = packageThreadCount;
     }
 
     /**
@@ -62,10 +98,34 @@ public class ArchiveProducer {
      * @throws IllegalStateException failure. See {@link #getResultLog() } for details.
      */
     public File archive(List<String> pids, File targetFolder) throws IllegalStateException {
+        return archive(pids, targetFolder, false);
+    }
+
+    /**
+     * It selects object hierarchies to build archive packages of them.
+     * @param pids a list of PIDS to archive
+     * @param targetFolder where to place the result folder
+     * @param resume whether to {@link #resume resume} the last run archiving the same PIDs
+     *      to the target folder. If there is none or it archived other PIDs
+     *      a new run is started.
+     * @return the result folder that contains folders with archive packages.
+     * @throws IllegalStateException failure. See {@link #getResultLog() } for details.
+     */
+    public File archive(List<String> pids, File targetFolder, boolean resume) throws IllegalStateException {
+        String folderName = "archive_" + FoxmlUtils.pidAsUuid(pids.get(0));
+        File archiveRootFolder = resume ? findLastFolder(targetFolder, folderName) : null;
+        if (archiveRootFolder != null) {
+            if (isArchiveOf(archiveRootFolder, pids)) {
+                LOG.log(Level.INFO, "Resuming {0}", archiveRootFolder);
+                return resume(pids, archiveRootFolder);
+            }
+            LOG.log(Level.INFO, "Not resuming {0}, it archives other PIDs.", archiveRootFolder);
+        }
         reslog = new ExportResultLog();
-        File archiveRootFolder = ExportUtils.createFolder(targetFolder, "archive_" + FoxmlUtils.pidAsUuid(pids.get(0)));
+        archiveRootFolder = ExportUtils.createFolder(targetFolder, folderName);
 
         try {
+            writePids(archiveRootFolder, pids);
             archiveImpl(pids, archiveRootFolder);
             return archiveRootFolder;
         } finally {
@@ -73,29 +133,166 @@ public class ArchiveProducer {
         }
     }
 
+    /**
+     * Archives objects to the result folder of a former run. Packages
+     * completed and verified by the former run are skipped, the others
+     * are built again.
+     * @param pids a list of PIDS to archive
+     * @param archiveRootFolder the result folder of the former run or a new folder
+     * @return the result folder
+     * @throws IllegalStateException failure or the former run archived other PIDs.
+     *      See {@link #getResultLog() } for details.
+     */
+    public File resume(List<String> pids, File archiveRootFolder) throws IllegalStateException {
+        reslog = new ExportResultLog();
+        if (!archiveRootFolder.isDirectory() && !archiveRootFolder.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + archiveRootFolder);
+        }
+        if (new File(archiveRootFolder, PIDS_FILENAME).exists()) {
+            if (!isArchiveOf(archiveRootFolder, pids)) {
+                throw new IllegalStateException("Cannot resume " + archiveRootFolder + ", it archives other PIDs.");
+            }
+        } else {
+            writePids(archiveRootFolder, pids);
+        }
+
+        try {
+            archiveImpl(pids, archiveRootFolder);
+            return archiveRootFolder;
+        } finally {
+            ExportUtils.writeExportResult(archiveRootFolder, reslog);
+        }
+    }
+
+    /**
+     * Finds the result folder created last by {@link ExportUtils#createFolder}.
+     * @return the folder or {@code null}
+     */
+    static File findLastFolder(File parent, String name) {
+        File last = null;
+        File folder = new File(parent, name);
+        for (int i = 1; folder.isDirectory(); i++) {
+            last = folder;
+            folder = new File(parent, name + '_' + i);
+        }
+        return last;
+    }
+
+    /**
+     * Checks whether the result folder was created to archive the PIDs.
+     */
+    static boolean isArchiveOf(File archiveRootFolder, List<String> pids) {
+        File pidsFile = new File(archiveRootFolder, PIDS_FILENAME);
+        if (!pidsFile.isFile()) {
+            return false;
+        }
+        try {
+            return pids.equals(FileUtils.readLines(pidsFile, "UTF-8"));
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, pidsFile.toString(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Lists the archived PIDs in the result folder so that a later run
+     * resumes only the same archiving.
+     */
+    private static void writePids(File archiveRootFolder, List<String> pids) {
+        File pidsFile = new File(archiveRootFolder, PIDS_FILENAME);
+        try {
+            FileUtils.writeLines(pidsFile, "UTF-8", pids, "\n");
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot write " + pidsFile, ex);
+        }
+    }
+
     private void archiveImpl(List<String> pids, File archiveRootFolder) {
         List<List<DigitalObjectElement>> objectPaths = selectObjects(pids);
 
-        ArchiveObjectProcessor processor = new ArchiveObjectProcessor(crawler, archiveRootFolder);
-        for (List<DigitalObjectElement> path : objectPaths) {
+        // packages are independent; a failed package does not stop the others
+        ExecutorService executor = Executors.newFixedThreadPool(packageThreadCount);
+        try {
+            List<Future<ExportResult>> results = new ArrayList<Future<ExportResult>>(objectPaths.size());
+            for (List<DigitalObjectElement> path : objectPaths) {
+                results.add(executor.submit(new PackageTask(path, archiveRootFolder)));
+            }
+            boolean failed = false;
+            for (Future<ExportResult> future : results) {
+                ExportResult result = getResult(future);
+                reslog.getExports().add(result);
+                failed |= result.getStatus() != ResultStatus.OK;
+            }
+            if (failed) {
+                throw new IllegalStateException("Archivation failed!");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ExportResult getResult(Future<ExportResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Archivation interrupted!", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Archivation failed!", ex.getCause());
+        }
+    }
+
+    /**
+     * Builds a package of a single object path.
+     */
+    private final class PackageTask implements Callable<ExportResult> {
+
+        private final List<DigitalObjectElement> path;
+        private final File archiveRootFolder;
+
+        PackageTask(List<DigitalObjectElement> path, File archiveRootFolder) {
+            this.path = path;
+            this.archiveRootFolder = archiveRootFolder;
+        }
+
+        @Override
+        public ExportResult call() {
             ExportResult result = new ExportResult();
             DigitalObjectElement dobj = path.get(0);
             result.setInputPid(dobj.getPid());
-            reslog.getExports().add(result);
+            ArchiveCheckpoint checkpoint = new ArchiveCheckpoint(
+                    new File(archiveRootFolder, FoxmlUtils.pidAsUuid(dobj.getPid())));
             try {
-                processor.process(path);
+                if (checkpoint.isComplete()) {
+                    LOG.log(Level.INFO, "Skipping complete package of {0}", dobj.getPid());
+                } else {
+                    checkpoint.reset();
+                    buildPackage(path, archiveRootFolder);
+                    checkpoint.write();
+                }
                 result.setStatus(ResultStatus.OK);
             } catch (Exception ex) {
+                LOG.log(Level.SEVERE, dobj.getPid(), ex);
                 result.setStatus(ResultStatus.FAILED);
                 result.getError().add(new ResultError(dobj.getPid(), null, dobj.toString(), ex));
-                throw new IllegalStateException("Archivation failed!", ex);
             } finally {
                 result.setEnd();
             }
+            return result;
         }
     }
 
-    private List<List<DigitalObjectElement>> selectObjects(List<String> pids) {
+    /**
+     * Builds the package of the object path.
+     */
+    void buildPackage(List<DigitalObjectElement> path, File archiveRootFolder) throws DigitalObjectException {
+        // each package gets own devices
+        ArchiveObjectProcessor processor = new ArchiveObjectProcessor(
+                crawler, archiveRootFolder, threadCount);
+        processor.process(path);
+    }
+
+    List<List<DigitalObjectElement>> selectObjects(List<String> pids) {
         ArchiveObjectSelector selector = new ArchiveObjectSelector(crawler);
         try {
             selector.select(pids);
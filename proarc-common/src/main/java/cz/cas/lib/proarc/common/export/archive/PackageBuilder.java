@@ -43,16 +43,23 @@ import cz.cas.lib.proarc.mets.MetsType.FileSec.FileGrp;
 import cz.cas.lib.proarc.mets.MetsType.MetsHdr;
 import cz.cas.lib.proarc.mets.MetsType.MetsHdr.Agent;
 import cz.cas.lib.proarc.mets.StructMapType;
-import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.ws.rs.core.Response;
 import javax.xml.bind.JAXB;
 import javax.xml.datatype.DatatypeConfigurationException;
@@ -65,7 +72,8 @@ import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.output.CountingOutputStream;
 
 /**
  * Builds resulting METS package and a corresponding folder layout.
@@ -94,21 +102,57 @@ public class PackageBuilder {
     private final DatatypeFactory xmlTypes;
     private Mets mets;
     private StructMapType othersStructMap;
-    private final Transformer domTransformer;
     private final HashMap<String, DivType> pid2PhysicalDiv;
+    /** Writes files of objects at once; {@code null} to write them immediately. */
+    private final ExecutorService executor;
+    /** Files of the current object waiting for {@link #flushObject}. */
+    private List<FileWrite> objectWrites = new ArrayList<FileWrite>();
+    /** Objects being written in the order of submits. */
+    private final LinkedList<Future<?>> pendingWrites = new LinkedList<Future<?>>();
+    /** The number of objects being written that holds their DOM in memory. */
+    private final int maxPendingWrites;
+
+    /** The transformer is not thread safe. */
+    private static final ThreadLocal<Transformer> DOM_TRANSFORMER = new ThreadLocal<Transformer>() {
+
+        @Override
+        protected Transformer initialValue() {
+            try {
+                Transformer domTransformer = TransformerFactory.newInstance().newTransformer();
+                domTransformer.setOutputProperty(OutputKeys.INDENT, "yes");
+                domTransformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+                return domTransformer;
+            } catch (TransformerConfigurationException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    };
 
     public PackageBuilder(File targetFolder) {
+        this(targetFolder, null, 1);
+    }
+
+    /**
+     * Creates the builder writing files of distinct objects at once.
+     * The package layout does not depend on the order of writes.
+     * @param targetFolder folder to place the package
+     * @param executor executor of writes or {@code null} to write files immediately
+     * @param maxPendingWrites the number of objects submitted to the executor
+     *          before {@link #flushObject()} waits for their writes
+     * @see #flushObject()
+     */
+    public PackageBuilder(File targetFolder, ExecutorService executor, int maxPendingWrites) {
+        if (maxPendingWrites < 1) {
+            throw new IllegalArgumentException("maxPendingWrites: " + maxPendingWrites);
+        }
         this.parentFolder = targetFolder;
         this.pid2PhysicalDiv = new HashMap<String, DivType>();
+        this.executor = executor;
+        this.maxPendingWrites = maxPendingWrites;
         try {
             this.xmlTypes = DatatypeFactory.newInstance();
-            this.domTransformer = TransformerFactory.newInstance().newTransformer();
-            this.domTransformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            this.domTransformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
         } catch (DatatypeConfigurationException ex) {
             throw new IllegalStateException(ex);
-        } catch (TransformerConfigurationException ex) {
-            throw new IllegalStateException(ex);
         }
     }
 
@@ -146,10 +190,71 @@ public class PackageBuilder {
         mets.setFileSec(new FileSec());
     }
 
-    public void build() {
+    public void build() throws DigitalObjectException {
+        try {
+            flushObject();
+            while (!pendingWrites.isEmpty()) {
+                awaitWrite(pendingWrites.removeFirst());
+            }
+        } finally {
+            for (Future<?> pendingWrite : pendingWrites) {
+                pendingWrite.cancel(true);
+            }
+            pendingWrites.clear();
+        }
         JAXB.marshal(mets, new File(pkgFolder, METS_FILENAME));
     }
 
+    /**
+     * Submits files of the processed object to be written in background.
+     * Datastreams of a single object are written by a single thread as they
+     * may share DOM nodes. It waits for the oldest writes when there are
+     * too many objects being written.
+     */
+    public void flushObject() throws DigitalObjectException {
+        if (objectWrites.isEmpty()) {
+            return;
+        }
+        final List<FileWrite> writes = objectWrites;
+        objectWrites = new ArrayList<FileWrite>();
+        pendingWrites.add(executor.submit(new Callable<Void>() {
+
+            @Override
+            public Void call() throws Exception {
+                for (FileWrite write : writes) {
+                    write.run();
+                }
+                return null;
+            }
+        }));
+        while (!pendingWrites.isEmpty()
+                && (pendingWrites.size() > maxPendingWrites || pendingWrites.getFirst().isDone())) {
+            awaitWrite(pendingWrites.removeFirst());
+        }
+    }
+
+    private static void awaitWrite(Future<?> write) throws DigitalObjectException {
+        try {
+            write.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DigitalObjectException(null, "Interrupted package build", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof DigitalObjectException) {
+                throw (DigitalObjectException) ex.getCause();
+            }
+            throw new DigitalObjectException(null, null, ex.getCause());
+        }
+    }
+
+    private void write(FileWrite write) throws DigitalObjectException {
+        if (executor == null) {
+            write.run();
+        } else {
+            objectWrites.add(write);
+        }
+    }
+
     public DivType addObject(int index, DigitalObjectElement elm, DigitalObjectElement parentElm) {
         DivType div = new DivType();
         String modelId = elm.getModelId();
@@ -212,38 +317,49 @@ public class PackageBuilder {
         addFoxmlAsFile(index, elm.getModelId(), obj);
     }
 
-    public void addFoxmlAsFile(int index, String modelId, LocalObject obj) throws DigitalObjectException {
-        try {
-            String uuid = getObjectId(obj.getPid());
-            String dsId = "FOXML";
-            String modelName = getObjectId(modelId);
-            File grpFile = getGroupFile(pkgFolder, dsId,
-                    getFilename(index, modelName, uuid, "xml"));
-            DigitalObject dObj = obj.getDigitalObject();
-            FoxmlUtils.marshal(new StreamResult(grpFile), dObj, true);
-            FileMD5Info fileInfo = getDigest(new BufferedInputStream(new FileInputStream(grpFile)));
-
-            FileGrp fileGrp = getMetsFileGrp(dsId);
-            FileType fileType = new FileType();
-            fileType.setCHECKSUM(fileInfo.getMd5());
-            fileType.setCHECKSUMTYPE("MD5");
-            fileType.setCREATED(getXmlDate(dObj, FoxmlUtils.PROPERTY_LASTMODIFIED));
-            fileType.setID(String.format("%s_%s_%04d_%s", dsId, modelName, index, uuid));
-            fileType.setMIMETYPE("text/xml");
-//            fileType.setSEQ(index);
-            fileType.setSIZE(fileInfo.getSize());
-            fileType.getFLocat().add(createFLocat(grpFile));
-            fileGrp.getFile().add(fileType);
+    public void addFoxmlAsFile(int index, String modelId, final LocalObject obj) throws DigitalObjectException {
+        String uuid = getObjectId(obj.getPid());
+        String dsId = "FOXML";
+        String modelName = getObjectId(modelId);
+        final File grpFile = getGroupFile(pkgFolder, dsId,
+                getFilename(index, modelName, uuid, "xml"));
+        final DigitalObject dObj = obj.getDigitalObject();
 
-            DivType div = pid2PhysicalDiv.get(obj.getPid());
-            Fptr fptr = new Fptr();
-            fptr.setFILEID(fileType);
-            div.getFptr().add(fptr);
-        } catch (NoSuchAlgorithmException ex) {
-            throw new DigitalObjectException(obj.getPid(), null, ex);
-        } catch (IOException ex) {
-            throw new DigitalObjectException(obj.getPid(), null, ex);
-        }
+        FileGrp fileGrp = getMetsFileGrp(dsId);
+        FileType fileType = new FileType();
+        fileType.setCHECKSUMTYPE("MD5");
+        fileType.setCREATED(getXmlDate(dObj, FoxmlUtils.PROPERTY_LASTMODIFIED));
+        fileType.setID(String.format("%s_%s_%04d_%s", dsId, modelName, index, uuid));
+        fileType.setMIMETYPE("text/xml");
+//        fileType.setSEQ(index);
+        fileType.getFLocat().add(createFLocat(grpFile));
+        fileGrp.getFile().add(fileType);
+
+        DivType div = pid2PhysicalDiv.get(obj.getPid());
+        Fptr fptr = new Fptr();
+        fptr.setFILEID(fileType);
+        div.getFptr().add(fptr);
+
+        write(new FileWrite(fileType) {
+
+            @Override
+            FileMD5Info writeFile() throws DigitalObjectException {
+                try {
+                    DigestOutputStream dos = createDigestStream(grpFile);
+                    CountingOutputStream cos = new CountingOutputStream(dos);
+                    try {
+                        FoxmlUtils.marshal(new StreamResult(cos), dObj, true);
+                    } finally {
+                        cos.close();
+                    }
+                    return getFileInfo(dos, cos);
+                } catch (NoSuchAlgorithmException ex) {
+                    throw new DigitalObjectException(obj.getPid(), null, ex);
+                } catch (IOException ex) {
+                    throw new DigitalObjectException(obj.getPid(), null, ex);
+                }
+            }
+        });
     }
 
     public void addStreamAsMdSec(
@@ -272,27 +388,24 @@ public class PackageBuilder {
     }
 
     public void addStreamAsFile(
-            int index, DatastreamType dt, String pid, String modelId, DisseminationHandler dHandler
+            int index, final DatastreamType dt, final String pid, String modelId, final DisseminationHandler dHandler
     ) throws DigitalObjectException {
         String dsId = dt.getID();
         String uuid = getObjectId(pid);
-        DatastreamVersionType ds = dt.getDatastreamVersion().get(0);
+        final DatastreamVersionType ds = dt.getDatastreamVersion().get(0);
         String mimetype = ds.getMIMETYPE();
         String ext = getMimeFileExtension(mimetype);
         String modelName = getObjectId(modelId);
-        File dsFile = getGroupFile(pkgFolder, dsId, getFilename(index, modelName, uuid, ext));
-        FileMD5Info fileInfo = copyStream(pid, dt, ds, dHandler, dsFile);
+        final File dsFile = getGroupFile(pkgFolder, dsId, getFilename(index, modelName, uuid, ext));
 
         // add to fileGrp
         FileGrp fileGrp = getMetsFileGrp(dsId);
         FileType fileType = new FileType();
-        fileType.setCHECKSUM(fileInfo.getMd5());
         fileType.setCHECKSUMTYPE("MD5");
         fileType.setCREATED(ds.getCREATED());
         fileType.setID(String.format("%s_%s_%04d_%s", dsId, modelName, index, uuid));
         fileType.setMIMETYPE(mimetype);
 //        fileType.setSEQ(index);
-        fileType.setSIZE(fileInfo.getSize());
         fileType.getFLocat().add(createFLocat(dsFile));
         fileGrp.getFile().add(fileType);
 
@@ -300,9 +413,17 @@ public class PackageBuilder {
         Fptr fptr = new Fptr();
         fptr.setFILEID(fileType);
         div.getFptr().add(fptr);
+
+        write(new FileWrite(fileType) {
+
+            @Override
+            FileMD5Info writeFile() throws DigitalObjectException {
+                return copyStream(pid, dt, ds, dHandler, dsFile);
+            }
+        });
     }
 
-    private FileMD5Info copyStream(String pid,
+    private static FileMD5Info copyStream(String pid,
             DatastreamType dt, DatastreamVersionType ds, DisseminationHandler dHandler,
             File dsFile
     ) throws DigitalObjectException {
@@ -311,9 +432,16 @@ public class PackageBuilder {
         FileMD5Info fileInfo;
         try {
             if (ctrlGroup == ControlGroup.INLINE) {
+                // digest the XML while it is written
                 DOMSource domSource = new DOMSource(ds.getXmlContent().getAny().get(0));
-                domTransformer.transform(domSource, new StreamResult(dsFile));
-                fileInfo = getDigest(new BufferedInputStream(new FileInputStream(dsFile)));
+                DigestOutputStream dos = createDigestStream(dsFile);
+                CountingOutputStream cos = new CountingOutputStream(dos);
+                try {
+                    DOM_TRANSFORMER.get().transform(domSource, new StreamResult(cos));
+                } finally {
+                    cos.close();
+                }
+                fileInfo = getFileInfo(dos, cos);
             } else {
                 Response resp = dHandler.getDissemination(null);
                 Object entity = resp.getEntity();
@@ -403,14 +531,33 @@ public class PackageBuilder {
         return sb.toString();
     }
 
-    private static FileMD5Info getDigest(InputStream is) throws NoSuchAlgorithmException, IOException {
-        try {
-            FileMD5Info fileInfo = MetsUtils.getDigest(is);
-            is.close();
-            is = null;
-            return fileInfo;
-        } finally {
-            IOUtils.closeQuietly(is);
+    private static DigestOutputStream createDigestStream(File file) throws NoSuchAlgorithmException, IOException {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        return new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(file)), md);
+    }
+
+    private static FileMD5Info getFileInfo(DigestOutputStream dos, CountingOutputStream cos) {
+        String md5 = new String(Hex.encodeHex(dos.getMessageDigest().digest()));
+        return new FileMD5Info(md5, cos.getByteCount());
+    }
+
+    /**
+     * Writes a file of the package and completes its METS description.
+     */
+    private static abstract class FileWrite {
+
+        private final FileType fileType;
+
+        FileWrite(FileType fileType) {
+            this.fileType = fileType;
+        }
+
+        abstract FileMD5Info writeFile() throws DigitalObjectException;
+
+        void run() throws DigitalObjectException {
+            FileMD5Info fileInfo = writeFile();
+            fileType.setCHECKSUM(fileInfo.getMd5());
+            fileType.setSIZE(fileInfo.getSize());
         }
     }
 
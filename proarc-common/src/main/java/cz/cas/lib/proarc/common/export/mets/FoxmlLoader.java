@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.mets;
+
+import com.yourmediashelf.fedora.client.FedoraClient;
+import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Reads FOXML of exported objects from Fedora. Objects that will be needed
+ * soon, e.g. members of a parent just read, can be {@link #prefetch prefetched}
+ * in background with a bounded number of connections. A prefetched object
+ * is kept only until it is {@link #load loaded} so that the loader does not
+ * hold the whole exported tree. Objects read at once, i.e. ancestors and PSP
+ * roots, and {@link #retain retained} objects are kept until the loader
+ * is {@link #close closed} as the export reads them repeatedly.
+ *
+ * @author Jan Pokorsky
+ */
+public final class FoxmlLoader {
+
+    private final FedoraClient client;
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<String, Future<DigitalObject>> cache
+            = new ConcurrentHashMap<String, Future<DigitalObject>>();
+    private final ConcurrentHashMap<String, DigitalObject> retained
+            = new ConcurrentHashMap<String, DigitalObject>();
+
+    /**
+     * Creates the loader.
+     * @param client Fedora client
+     * @param threadCount the number of connections fetching objects in background
+     */
+    public FoxmlLoader(FedoraClient client, int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount: " + threadCount);
+        }
+        this.client = client;
+        this.executor = Executors.newFixedThreadPool(threadCount);
+    }
+
+    /**
+     * Starts to read objects in background unless they are already prefetched
+     * or retained.
+     * @param pids PIDs or {@code info:fedora/} URIs
+     */
+    public void prefetch(Collection<String> pids) {
+        for (String pid : pids) {
+            ReadTask task = createTask(pid);
+            if (!retained.containsKey(task.pid) && cache.putIfAbsent(task.pid, task) == null) {
+                executor.execute(task);
+            }
+        }
+    }
+
+    /**
+     * Gets the object. It waits for its prefetch or reads it at once.
+     * The prefetched object is released from the loader while the object
+     * read at once is retained.
+     * @param pid PID or {@code info:fedora/} URI
+     * @return the object
+     */
+    public DigitalObject load(String pid) throws MetsExportException {
+        ReadTask task = createTask(pid);
+        DigitalObject dobj = retained.get(task.pid);
+        if (dobj != null) {
+            return dobj;
+        }
+        Future<DigitalObject> result = cache.remove(task.pid);
+        boolean retain = result == null;
+        if (retain) {
+            task.run();
+            result = task;
+        }
+        try {
+            dobj = result.get();
+            if (retain) {
+                retained.put(task.pid, dobj);
+            }
+            return dobj;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MetsExportException(task.pid, "Interrupted while reading FOXML", false, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof MetsExportException) {
+                throw (MetsExportException) ex.getCause();
+            }
+            throw new MetsExportException(task.pid, "Unable to read FOXML", false, ex);
+        }
+    }
+
+    /**
+     * Keeps the loaded object until the loader is closed.
+     * @param dobj the object to read again later
+     */
+    public void retain(DigitalObject dobj) {
+        retained.put(dobj.getPID(), dobj);
+    }
+
+    /**
+     * Stops background reads and releases all objects.
+     */
+    public void close() {
+        executor.shutdownNow();
+        cache.clear();
+        retained.clear();
+    }
+
+    private ReadTask createTask(String pid) {
+        if (pid.startsWith("info:fedora/")) {
+            pid = pid.substring(pid.indexOf("/") + 1);
+        }
+        return new ReadTask(pid);
+    }
+
+    private final class ReadTask extends FutureTask<DigitalObject> {
+
+        private final String pid;
+
+        ReadTask(final String pid) {
+            super(new Callable<DigitalObject>() {
+
+                @Override
+                public DigitalObject call() throws Exception {
+                    return MetsUtils.readFoXML(pid, client);
+                }
+            });
+            this.pid = pid;
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.mets;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * Shares JAXB contexts and compiled XML schemas of the export. Both are expensive
+ * to create and thread safe. Marshallers and unmarshallers are not thread safe
+ * and thus they are kept per thread like {@code FoxmlUtils.defaultMarshaller}.
+ *
+ * @author Jan Pokorsky
+ */
+public final class JaxbRegistry {
+
+    private static final ConcurrentHashMap<List<Class<?>>, JAXBContext> CONTEXTS
+            = new ConcurrentHashMap<List<Class<?>>, JAXBContext>();
+    private static final ConcurrentHashMap<String, Schema> SCHEMAS = new ConcurrentHashMap<String, Schema>();
+    private static final ThreadLocal<Map<JAXBContext, Marshaller>> MARSHALLERS
+            = new ThreadLocal<Map<JAXBContext, Marshaller>>() {
+
+        @Override
+        protected Map<JAXBContext, Marshaller> initialValue() {
+            return new HashMap<JAXBContext, Marshaller>();
+        }
+    };
+    private static final ThreadLocal<Map<JAXBContext, Unmarshaller>> UNMARSHALLERS
+            = new ThreadLocal<Map<JAXBContext, Unmarshaller>>() {
+
+        @Override
+        protected Map<JAXBContext, Unmarshaller> initialValue() {
+            return new HashMap<JAXBContext, Unmarshaller>();
+        }
+    };
+
+    private JaxbRegistry() {
+    }
+
+    /**
+     * Gets the context bound to the classes.
+     * @param classes classes in the order of a {@code JAXBContext.newInstance} call
+     * @return the shared context
+     */
+    public static JAXBContext getContext(Class<?>... classes) throws JAXBException {
+        List<Class<?>> key = Arrays.<Class<?>>asList(classes);
+        JAXBContext context = CONTEXTS.get(key);
+        if (context == null) {
+            context = JAXBContext.newInstance(classes);
+            JAXBContext old = CONTEXTS.putIfAbsent(key, context);
+            context = old == null ? context : old;
+        }
+        return context;
+    }
+
+    /**
+     * Gets the marshaller of the current thread. The marshaller is reset
+     * to the unformatted UTF-8 output without a schema.
+     * @param classes classes of the context
+     * @return the marshaller
+     */
+    public static Marshaller getMarshaller(Class<?>... classes) throws JAXBException {
+        JAXBContext context = getContext(classes);
+        Map<JAXBContext, Marshaller> marshallers = MARSHALLERS.get();
+        Marshaller m = marshallers.get(context);
+        if (m == null) {
+            m = context.createMarshaller();
+            marshallers.put(context, m);
+        }
+        m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
+        m.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+        m.setProperty(Marshaller.JAXB_FRAGMENT, false);
+        m.setSchema(null);
+        return m;
+    }
+
+    /**
+     * Gets the unmarshaller of the current thread.
+     * @param classes classes of the context
+     * @return the unmarshaller without a schema
+     */
+    public static Unmarshaller getUnmarshaller(Class<?>... classes) throws JAXBException {
+        JAXBContext context = getContext(classes);
+        Map<JAXBContext, Unmarshaller> unmarshallers = UNMARSHALLERS.get();
+        Unmarshaller m = unmarshallers.get(context);
+        if (m == null) {
+            m = context.createUnmarshaller();
+            unmarshallers.put(context, m);
+        }
+        m.setSchema(null);
+        return m;
+    }
+
+    /**
+     * Gets the compiled schema. Imports are resolved with {@link MetsLSResolver}.
+     * @param xsd location of the schema
+     * @return the shared schema
+     */
+    public static Schema getSchema(URL xsd) throws SAXException {
+        if (xsd == null) {
+            throw new NullPointerException("xsd");
+        }
+        String key = xsd.toExternalForm();
+        Schema schema = SCHEMAS.get(key);
+        if (schema == null) {
+            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            factory.setResourceResolver(MetsLSResolver.getInstance());
+            schema = factory.newSchema(new StreamSource(key));
+            Schema old = SCHEMAS.putIfAbsent(key, schema);
+            schema = old == null ? schema : old;
+        }
+        return schema;
+    }
+
+}
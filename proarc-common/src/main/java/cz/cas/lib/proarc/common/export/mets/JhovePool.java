@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.mets;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * The thread safe pool of JHOVE contexts. {@link JhoveContext} itself
+ * cannot be used by more threads at once and its initialization is expensive.
+ * The pool keeps initialized contexts for reuse and all of them share
+ * a single configuration folder.
+ *
+ * @author Jan Pokorsky
+ */
+public final class JhovePool {
+
+    private static final Logger LOG = Logger.getLogger(JhovePool.class.getName());
+    private static JhovePool INSTANCE;
+
+    private final File configFolder;
+    private final ConcurrentLinkedQueue<JhoveContext> idle = new ConcurrentLinkedQueue<JhoveContext>();
+    private final Semaphore permits;
+    private final ExecutorService executor;
+
+    /**
+     * Gets the pool shared by the application. Its size is the number of available processors.
+     */
+    public static synchronized JhovePool getDefault() throws MetsExportException {
+        if (INSTANCE == null) {
+            File temp = new File(FileUtils.getTempDirectory(), "jhove" + UUID.randomUUID().toString());
+            if (!temp.mkdir()) {
+                throw new MetsExportException("Cannot create " + temp.toString());
+            }
+            try {
+                FileUtils.forceDeleteOnExit(temp);
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, temp.toString(), ex);
+            }
+            INSTANCE = new JhovePool(temp, Runtime.getRuntime().availableProcessors());
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Creates the pool.
+     * @param configFolder folder to store the configuration shared by contexts
+     * @param size max number of contexts
+     */
+    public JhovePool(File configFolder, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size: " + size);
+        }
+        this.configFolder = configFolder;
+        this.permits = new Semaphore(size, true);
+        this.executor = Executors.newFixedThreadPool(size, new DaemonThreadFactory());
+    }
+
+    /**
+     * Borrows a context. Once done, {@link #release release} it.
+     * It blocks while all contexts are in use.
+     *
+     * @return the context
+     * @throws InterruptedException interrupted while waiting for a context
+     * @throws MetsExportException failed to initialize the context
+     */
+    public JhoveContext borrow() throws InterruptedException, MetsExportException {
+        permits.acquire();
+        JhoveContext ctx = idle.poll();
+        if (ctx == null) {
+            try {
+                ctx = createContext();
+            } catch (MetsExportException ex) {
+                permits.release();
+                throw ex;
+            } catch (RuntimeException ex) {
+                permits.release();
+                throw ex;
+            }
+        }
+        return ctx;
+    }
+
+    /**
+     * Returns the borrowed context to the pool.
+     * @param ctx context
+     */
+    public void release(JhoveContext ctx) {
+        if (ctx != null) {
+            idle.offer(ctx);
+            permits.release();
+        }
+    }
+
+    /**
+     * Gets MIX of an image file.
+     *
+     * @param sourceFile image file to describe with MIX
+     * @return the MIX description
+     * @throws InterruptedException interrupted while waiting for a context
+     * @throws MetsExportException failure
+     * @see JhoveUtility#getMix(File, JhoveContext, cz.cas.lib.proarc.mix.MixType, javax.xml.datatype.XMLGregorianCalendar, String)
+     */
+    public JHoveOutput getMix(File sourceFile) throws InterruptedException, MetsExportException {
+        JhoveContext ctx = borrow();
+        try {
+            return JhoveUtility.getMix(sourceFile, ctx, null, null, null);
+        } finally {
+            release(ctx);
+        }
+    }
+
+    /**
+     * Gets MIX of an image file in background.
+     *
+     * @param sourceFile image file to describe with MIX
+     * @return the future MIX description
+     */
+    public Future<JHoveOutput> getMixAsync(final File sourceFile) {
+        return executor.submit(new Callable<JHoveOutput>() {
+
+            @Override
+            public JHoveOutput call() throws Exception {
+                return getMix(sourceFile);
+            }
+        });
+    }
+
+    /**
+     * Stops background tasks and removes the configuration folder.
+     */
+    public void destroy() {
+        executor.shutdownNow();
+        idle.clear();
+        FileUtils.deleteQuietly(configFolder);
+    }
+
+    private synchronized JhoveContext createContext() throws MetsExportException {
+        // contexts share the configuration; do not let them write it at once
+        long start = System.currentTimeMillis();
+        JhoveContext ctx = JhoveUtility.createContext(configFolder);
+        LOG.log(Level.FINE, "JHOVE context created in {0} ms", System.currentTimeMillis() - start);
+        return ctx;
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "jhove-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+}
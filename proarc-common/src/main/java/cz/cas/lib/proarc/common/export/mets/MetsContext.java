@@ -59,6 +59,7 @@ public class MetsContext {
     private String proarcVersion;
     private JhoveContext jhoveContext;
     private NdkExportOptions options;
+    private FoxmlLoader foxmlLoader;
 
     /** Sets options */
     public void setConfig(NdkExportOptions options){
@@ -363,4 +364,18 @@ public class MetsContext {
         this.jhoveContext = jhoveContext;
     }
 
+    /**
+     * Gets the loader of FOXML shared by the export or {@code null}.
+     */
+    public FoxmlLoader getFoxmlLoader() {
+        return foxmlLoader;
+    }
+
+    /**
+     * Sets the loader of FOXML shared by the export.
+     */
+    public void setFoxmlLoader(FoxmlLoader foxmlLoader) {
+        this.foxmlLoader = foxmlLoader;
+    }
+
 }
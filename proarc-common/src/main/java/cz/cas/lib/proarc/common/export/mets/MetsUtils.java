@@ -25,6 +25,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.math.BigInteger;
+import java.net.URL;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -39,7 +40,6 @@ import java.util.logging.Logger;
 import java.util.regex.Matcher;
 
 import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
@@ -102,6 +102,8 @@ public class MetsUtils {
 
     private static Logger LOG = Logger.getLogger(MetsUtils.class.getName());
     private static Properties mimeToExtension = new Properties();
+    /** Size of the buffer used to digest and copy datastream contents. */
+    static final int DIGEST_BUFFER_SIZE = 64 * 1024;
 
     /**
      * Retuns an XMLGregorianCalendar representation of current date
@@ -146,6 +148,7 @@ public class MetsUtils {
         Node node = MetsUtils.xPathEvaluateNode(relsExt, "*[local-name()='RDF']/*[local-name()='Description']");
 
         NodeList hasPageNodes = node.getChildNodes();
+        prefetchMembers(hasPageNodes, ctx);
         for (int a = 0; a < hasPageNodes.getLength(); a++) {
             if (MetsUtils.hasReferenceXML(hasPageNodes.item(a).getNodeName())) {
                 Node rdfResourceNode = hasPageNodes.item(a).getAttributes().getNamedItem("rdf:resource");
@@ -153,7 +156,7 @@ public class MetsUtils {
 
                 DigitalObject object = null;
                 if (ctx.getFedoraClient() != null) {
-                    object = MetsUtils.readRelatedFoXML(fileName, ctx.getFedoraClient());
+                    object = MetsUtils.readRelatedFoXML(fileName, ctx);
                 } else {
                     object = MetsUtils.readRelatedFoXML(ctx.getPath(), fileName);
                 }
@@ -166,8 +169,10 @@ public class MetsUtils {
                         // do not add
                     } else {
                         psps.add(object.getPID());
+                        retainRelatedFoXML(object, ctx);
                     }
                 } else {
+                    retainRelatedFoXML(object, ctx);
                     findChildPSPs(object, ctx, psps, elementType);
                 }
             }
@@ -178,7 +183,7 @@ public class MetsUtils {
         List<String> result = new ArrayList<String>();
         DigitalObject dObj;
         if (ctx.getFedoraClient() != null) {
-            dObj = readFoXML(pid, ctx.getFedoraClient());
+            dObj = readRelatedFoXML(pid, ctx);
         } else {
             dObj = readFoXML(ctx.getPath() + File.separator + pid + ".xml");
         }
@@ -206,7 +211,7 @@ public class MetsUtils {
 
         while (parentId != null) {
             if (ctx.getFedoraClient() != null) {
-                parentdbObj = readFoXML(parentId, ctx.getFedoraClient());
+                parentdbObj = readRelatedFoXML(parentId, ctx);
             } else {
                 parentdbObj = readFoXML(ctx.getPath() + File.separator + parentId + ".xml");
             }
@@ -231,7 +236,7 @@ public class MetsUtils {
                     if (parentId != null) {
                         DigitalObject parentdbObjSupp;
                         if (ctx.getFedoraClient() != null) {
-                            parentdbObjSupp = readFoXML(parentId, ctx.getFedoraClient());
+                            parentdbObjSupp = readRelatedFoXML(parentId, ctx);
                         } else {
                             parentdbObjSupp = readFoXML(ctx.getPath() + File.separator + parentId + ".xml");
                         }
@@ -656,8 +661,7 @@ public class MetsUtils {
         DigitalObject foXMLObject;
         File file = new File(path);
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(DigitalObject.class);
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+            Unmarshaller unmarshaller = JaxbRegistry.getUnmarshaller(DigitalObject.class);
             foXMLObject = (DigitalObject) unmarshaller.unmarshal(file);
 
             return foXMLObject;
@@ -681,8 +685,7 @@ public class MetsUtils {
         LOG.log(Level.FINE, "Reading document from Fedora:" + uuid);
         try {
             FedoraResponse response = FedoraClient.getObjectXML(uuid).execute(client);
-            JAXBContext jaxbContext = JAXBContext.newInstance(DigitalObject.class);
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+            Unmarshaller unmarshaller = JaxbRegistry.getUnmarshaller(DigitalObject.class);
             foXMLObject = (DigitalObject) unmarshaller.unmarshal(response.getEntityInputStream());
         } catch (Exception e) {
             throw new MetsExportException("Unable to get " + uuid + " from Fedora", false, e);
@@ -726,6 +729,23 @@ public class MetsUtils {
         SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
         factory.setResourceResolver(MetsLSResolver.getInstance());
         Schema schema = factory.newSchema(new StreamSource(xsd));
+        return validateAgainstXSD(document, schema);
+    }
+
+    /**
+     *
+     * Validates given document against an XSD schema compiled once
+     *
+     * @param document
+     * @param xsd
+     * @return
+     * @see JaxbRegistry#getSchema
+     */
+    public static List<String> validateAgainstXSD(Document document, URL xsd) throws Exception {
+        return validateAgainstXSD(document, JaxbRegistry.getSchema(xsd));
+    }
+
+    private static List<String> validateAgainstXSD(Document document, Schema schema) throws Exception {
         TransformerFactory tFactory = TransformerFactory.newInstance();
         Transformer transformer = tFactory.newTransformer();
         DOMSource domSource = new DOMSource(document);
@@ -757,6 +777,23 @@ public class MetsUtils {
         SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
         factory.setResourceResolver(MetsLSResolver.getInstance());
         Schema schema = factory.newSchema(new StreamSource(xsd));
+        return validateAgainstXSD(file, schema);
+    }
+
+    /**
+     *
+     * Validates given XML file against an XSD schema compiled once
+     *
+     * @param file
+     * @param xsd
+     * @return
+     * @see JaxbRegistry#getSchema
+     */
+    public static List<String> validateAgainstXSD(File file, URL xsd) throws Exception {
+        return validateAgainstXSD(file, JaxbRegistry.getSchema(xsd));
+    }
+
+    private static List<String> validateAgainstXSD(File file, Schema schema) throws Exception {
         DocumentBuilderFactory dbfactory = DocumentBuilderFactory.newInstance();
         dbfactory.setValidating(false);
         dbfactory.setNamespaceAware(true);
@@ -904,8 +941,7 @@ public class MetsUtils {
             int infoTotalSize = (int) (size/1024);
         infoJaxb.setSize(infoTotalSize);
             try {
-                JAXBContext jaxbContext = JAXBContext.newInstance(Info.class);
-                Marshaller marshaller = jaxbContext.createMarshaller();
+                Marshaller marshaller = JaxbRegistry.getMarshaller(Info.class);
             // SchemaFactory factory =
             // SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
             // factory.setResourceResolver(MetsLSResolver.getInstance());
@@ -921,7 +957,7 @@ public class MetsUtils {
 
         List<String> validationErrors;
         try {
-            validationErrors = MetsUtils.validateAgainstXSD(infoFile, Info.class.getResourceAsStream("info.xsd"));
+            validationErrors = MetsUtils.validateAgainstXSD(infoFile, Info.class.getResource("info.xsd"));
         } catch (Exception e) {
             throw new MetsExportException("Error while validating info.xml", false, e);
         }
@@ -963,6 +999,60 @@ public class MetsUtils {
         return object;
     }
 
+    /**
+     *
+     * Reads referenced object from Fedora with the loader of the context if any
+     *
+     * @param uuid
+     * @param ctx
+     * @return
+     */
+    public static DigitalObject readRelatedFoXML(String uuid, MetsContext ctx) throws MetsExportException {
+        FoxmlLoader loader = ctx.getFoxmlLoader();
+        if (loader != null) {
+            return loader.load(uuid);
+        }
+        return readRelatedFoXML(uuid, ctx.getFedoraClient());
+    }
+
+    /**
+     *
+     * Keeps the object in the loader of the context if any. Use it for PSP
+     * roots and their ancestors that are read again by the export.
+     *
+     * @param object
+     * @param ctx
+     */
+    public static void retainRelatedFoXML(DigitalObject object, MetsContext ctx) {
+        FoxmlLoader loader = ctx.getFoxmlLoader();
+        if (loader != null) {
+            loader.retain(object);
+        }
+    }
+
+    /**
+     *
+     * Starts to read members listed in RELS-EXT in background if the context
+     * has a loader
+     *
+     * @param relsExtNodes
+     * @param ctx
+     */
+    public static void prefetchMembers(NodeList relsExtNodes, MetsContext ctx) {
+        FoxmlLoader loader = ctx.getFoxmlLoader();
+        if (loader == null) {
+            return;
+        }
+        List<String> members = new ArrayList<String>();
+        for (int a = 0; a < relsExtNodes.getLength(); a++) {
+            if (MetsUtils.hasReferenceXML(relsExtNodes.item(a).getNodeName())) {
+                Node rdfResourceNode = relsExtNodes.item(a).getAttributes().getNamedItem("rdf:resource");
+                members.add(rdfResourceNode.getNodeValue());
+            }
+        }
+        loader.prefetch(members);
+    }
+
     /**
      *
      * Reads referenced object from file
@@ -989,21 +1079,27 @@ public class MetsUtils {
      * @throws IOException
      */
     public static FileMD5Info getDigestAndCopy(InputStream is, OutputStream os) throws NoSuchAlgorithmException, IOException {
-        MessageDigest md = MessageDigest.getInstance("MD5");
-        md.reset();
-        byte[] bytes = new byte[2048];
-        int numBytes;
-        long totalBytes = 0;
-        while ((numBytes = is.read(bytes)) > 0) {
-            totalBytes += numBytes;
-            md.update(bytes, 0, numBytes);
-            os.write(bytes, 0, numBytes);
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            md.reset();
+            byte[] bytes = new byte[DIGEST_BUFFER_SIZE];
+            int numBytes;
+            long totalBytes = 0;
+            while ((numBytes = is.read(bytes)) > 0) {
+                totalBytes += numBytes;
+                md.update(bytes, 0, numBytes);
+                os.write(bytes, 0, numBytes);
+            }
+            byte[] digest = md.digest();
+            String result = new String(Hex.encodeHex(digest));
+            return new FileMD5Info(result, totalBytes);
+        } finally {
+            try {
+                os.close();
+            } finally {
+                is.close();
+            }
         }
-        byte[] digest = md.digest();
-        os.close();
-        is.close();
-        String result = new String(Hex.encodeHex(digest));
-        return new FileMD5Info(result, totalBytes);
     }
 
     /**
@@ -1019,7 +1115,7 @@ public class MetsUtils {
     public static FileMD5Info getDigest(InputStream is) throws NoSuchAlgorithmException, IOException {
         MessageDigest md = MessageDigest.getInstance("MD5");
         md.reset();
-        byte[] bytes = new byte[2048];
+        byte[] bytes = new byte[DIGEST_BUFFER_SIZE];
         int numBytes;
         long totalBytes = 0;
         while ((numBytes = is.read(bytes)) > 0) {
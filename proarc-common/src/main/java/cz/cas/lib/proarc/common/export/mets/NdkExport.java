@@ -137,11 +137,13 @@ public final class NdkExport {
             }
             RemoteObject fo = rstorage.find(pid);
             MetsContext dc = buildContext(fo, packageId, target);
+            FoxmlLoader foxmlLoader = new FoxmlLoader(fo.getClient(), options.getLoadThreadCount());
+            dc.setFoxmlLoader(foxmlLoader);
             try {
                 List<String> PSPs = MetsUtils.findPSPPIDs(fo.getPid(), dc, hierarchy);
                 for (String pspPid : PSPs) {
                     dc.resetContext();
-                    DigitalObject dobj = MetsUtils.readFoXML(pspPid, fo.getClient());
+                    DigitalObject dobj = MetsUtils.readRelatedFoXML(pspPid, dc);
                     MetsElement mElm = MetsElement.getElement(dobj, null, dc, hierarchy);
                     mElm.accept(new MetsElementVisitor());
                     // XXX use relative path to users folder?
@@ -159,6 +161,8 @@ public final class NdkExport {
                 keepResult = false;
                 // do not clean folder as i it is possilbe to write status.log
                 throw new ExportException(pid, ex);
+            } finally {
+                foxmlLoader.close();
             }
         } finally {
             if (!keepResult) {
@@ -26,8 +26,12 @@ import org.apache.commons.configuration.Configuration;
 public class NdkExportOptions {
     static final String PROP_NDK_AGENT_ARCHIVIST = "export.ndk.agent.archivist";
     static final String PROP_NDK_AGENT_CREATOR = "export.ndk.agent.creator";
+    static final String PROP_NDK_THREADS = "export.ndk.threads";
+    static final String PROP_NDK_LOAD_THREADS = "export.ndk.loadThreads";
     private String archivist;
     private String creator;
+    private int threadCount = 1;
+    private int loadThreadCount = 1;
 
     public static NdkExportOptions getOptions(Configuration config) {
         NdkExportOptions options = new NdkExportOptions();
@@ -41,6 +45,8 @@ public class NdkExportOptions {
         if (archivist != null && !archivist.isEmpty()) {
             options.setArchivist(archivist);
         }
+        options.setThreadCount(Math.max(1, config.getInt(PROP_NDK_THREADS, 1)));
+        options.setLoadThreadCount(Math.max(1, config.getInt(PROP_NDK_LOAD_THREADS, 1)));
         return options;
     }
 
@@ -64,4 +70,24 @@ public class NdkExportOptions {
         this.archivist = archivist;
     }
 
+    /** Returns the number of pages processed at once */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /** Sets the number of pages processed at once */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /** Returns the number of connections reading FOXML ahead */
+    public int getLoadThreadCount() {
+        return loadThreadCount;
+    }
+
+    /** Sets the number of connections reading FOXML ahead */
+    public void setLoadThreadCount(int loadThreadCount) {
+        this.loadThreadCount = loadThreadCount;
+    }
+
 }
@@ -217,7 +217,7 @@ public class MetsElement implements IMetsElement {
         if (this.descriptor != null) {
             Document dcDoc = MetsUtils.getDocumentFromList(this.descriptor);
             try {
-                validationErrors = MetsUtils.validateAgainstXSD(dcDoc, OaiDcType.class.getResourceAsStream("dc_oai.xsd"));
+                validationErrors = MetsUtils.validateAgainstXSD(dcDoc, OaiDcType.class.getResource("dc_oai.xsd"));
             } catch (Exception ex) {
                 throw new MetsExportException(this.getOriginalPid(), "Error while validating DC for:" + this.getOriginalPid() + "(" + this.getElementType() + ")", false, ex);
             }
@@ -231,9 +231,9 @@ public class MetsElement implements IMetsElement {
         Document modsDoc = MetsUtils.getDocumentFromList(this.modsStream);
         try {
             if ("3.5".equals(this.modsStream.get(0).getAttribute("version"))) {
-                validationErrors = MetsUtils.validateAgainstXSD(modsDoc, ModsDefinition.class.getResourceAsStream("mods-3-5.xsd"));
+                validationErrors = MetsUtils.validateAgainstXSD(modsDoc, ModsDefinition.class.getResource("mods-3-5.xsd"));
             } else {
-                validationErrors = MetsUtils.validateAgainstXSD(modsDoc, ModsDefinition.class.getResourceAsStream("mods.xsd"));
+                validationErrors = MetsUtils.validateAgainstXSD(modsDoc, ModsDefinition.class.getResource("mods.xsd"));
             }
         } catch (Exception ex) {
             throw new MetsExportException(this.getOriginalPid(), "Error while validating MODS for:" + this.getOriginalPid() + "(" + this.getElementType() + ")", false, ex);
@@ -408,7 +408,7 @@ public class MetsElement implements IMetsElement {
 
         DigitalObject parentObject = null;
         if (metsContext.getFedoraClient() != null) {
-            parentObject = MetsUtils.readRelatedFoXML(parentId, metsContext.getFedoraClient());
+            parentObject = MetsUtils.readRelatedFoXML(parentId, metsContext);
         } else {
             parentObject = MetsUtils.readRelatedFoXML(metsContext.getPath(), parentId);
         }
@@ -503,6 +503,7 @@ public class MetsElement implements IMetsElement {
     public void fillChildren() throws MetsExportException {
         Node node = MetsUtils.xPathEvaluateNode(relsExt, "*[local-name()='RDF']/*[local-name()='Description']");
         NodeList hasPageNodes = node.getChildNodes();
+        MetsUtils.prefetchMembers(hasPageNodes, metsContext);
         for (int a = 0; a < hasPageNodes.getLength(); a++) {
             if (MetsUtils.hasReferenceXML(hasPageNodes.item(a).getNodeName())) {
                 Node rdfResourceNode = hasPageNodes.item(a).getAttributes().getNamedItem("rdf:resource");
@@ -510,7 +511,7 @@ public class MetsElement implements IMetsElement {
 
                 DigitalObject object = null;
                 if (metsContext.getFedoraClient() != null) {
-                    object = MetsUtils.readRelatedFoXML(fileName, metsContext.getFedoraClient());
+                    object = MetsUtils.readRelatedFoXML(fileName, metsContext);
                 } else {
                     object = MetsUtils.readRelatedFoXML(metsContext.getPath(), fileName);
                 }
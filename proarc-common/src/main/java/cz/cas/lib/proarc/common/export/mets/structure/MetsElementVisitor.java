@@ -36,12 +36,19 @@ import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Marshaller;
 import javax.xml.datatype.DatatypeConfigurationException;
@@ -59,6 +66,7 @@ import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathFactory;
 
 import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -77,12 +85,16 @@ import cz.cas.lib.proarc.common.device.DeviceException;
 import cz.cas.lib.proarc.common.device.DeviceRepository;
 import cz.cas.lib.proarc.common.export.mets.Const;
 import cz.cas.lib.proarc.common.export.mets.JHoveOutput;
+import cz.cas.lib.proarc.common.export.mets.JaxbRegistry;
+import cz.cas.lib.proarc.common.export.mets.JhoveContext;
+import cz.cas.lib.proarc.common.export.mets.JhovePool;
 import cz.cas.lib.proarc.common.export.mets.JhoveUtility;
 import cz.cas.lib.proarc.common.export.mets.MetsContext;
 import cz.cas.lib.proarc.common.export.mets.FileMD5Info;
 import cz.cas.lib.proarc.common.export.mets.MetsExportException;
 import cz.cas.lib.proarc.common.export.mets.MetsUtils;
 import cz.cas.lib.proarc.common.export.mets.MimeType;
+import cz.cas.lib.proarc.common.export.mets.NdkExportOptions;
 import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
 import cz.cas.lib.proarc.common.fedora.MixEditor;
 import cz.cas.lib.proarc.common.ocr.AltoDatastream;
@@ -149,6 +161,11 @@ public class MetsElementVisitor implements IMetsElementVisitor {
     int pageCounter = 0;
     int articleCounter = 0;
     int chapterCounter = 0;
+    /** Processes pages at once; {@code null} in the sequential mode. */
+    private ExecutorService pageExecutor;
+    private int maxPendingPages;
+    /** Pages being processed in the order of the package. */
+    private final LinkedList<Future<PageFiles>> pendingPages = new LinkedList<Future<PageFiles>>();
 
     /**
      * creates directory structure for mets elements
@@ -268,8 +285,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
             addFileGrpToMets(fileGrpMap);
             addStructLink();
             try {
-                JAXBContext jaxbContext = JAXBContext.newInstance(Mets.class, OaiDcType.class, ModsDefinition.class);
-                Marshaller marshaller = jaxbContext.createMarshaller();
+                Marshaller marshaller = JaxbRegistry.getMarshaller(Mets.class, OaiDcType.class, ModsDefinition.class);
                 marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
                 marshaller.setProperty(Marshaller.JAXB_ENCODING, "utf-8");
                 // marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION,
@@ -323,7 +339,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
             }
             List<String> validationErrors;
             try {
-                validationErrors = MetsUtils.validateAgainstXSD(outputFile, Mets.class.getResourceAsStream("mets.xsd"));
+                validationErrors = MetsUtils.validateAgainstXSD(outputFile, Mets.class.getResource("mets.xsd"));
             } catch (Exception ex) {
                 throw new MetsExportException("Error while validation document:" + outputFile, false, ex);
             }
@@ -457,11 +473,25 @@ public class MetsElementVisitor implements IMetsElementVisitor {
     /**
      * Prepares a mets FileType element for a file
      *
-     * @param seq
+     * @param page
      * @param metsStreamName
      * @return
      */
-    private FileType prepareFileType(int seq, String metsStreamName, HashMap<String, Object> fileNames, HashMap<String, String> mimeTypes, MetsContext metsContext, HashMap<String, String> outputFileNames, HashMap<String, FileMD5Info> md5InfosMap) throws MetsExportException {
+    private FileType prepareFileType(PageFiles page, String metsStreamName) throws MetsExportException {
+        FileType fileType = createFileType(page, metsStreamName);
+        copyFile(page, metsStreamName, fileType);
+        return fileType;
+    }
+
+    /**
+     * Creates a mets FileType element for a file. The size and the checksum
+     * are set by {@link #copyFile}.
+     *
+     * @param page
+     * @param metsStreamName
+     * @return
+     */
+    private FileType createFileType(PageFiles page, String metsStreamName) throws MetsExportException {
         // String streamName = Const.streamMapping.get(metsStreamName);
         FileType fileType = new FileType();
         fileType.setCHECKSUMTYPE("MD5");
@@ -477,11 +507,38 @@ public class MetsElementVisitor implements IMetsElementVisitor {
             throw new MetsExportException("Unable to create XMLGregorianDate", false, e1);
         }
         fileType.setCREATED(calendar);
+        int seq = page.seq;
         fileType.setSEQ(seq);
-        fileType.setMIMETYPE(mimeTypes.get(metsStreamName));
-        InputStream is = null;
+        fileType.setMIMETYPE(page.mimeTypes.get(metsStreamName));
         seq = seq + 1;
-        fileType.setID(Const.streamMappingPrefix.get(metsStreamName) + "_" + MetsUtils.removeNonAlpabetChars(metsContext.getPackageID()) + "_" + String.format("%04d", seq));
+        fileType.setID(Const.streamMappingPrefix.get(metsStreamName) + "_" + MetsUtils.removeNonAlpabetChars(page.packageId) + "_" + String.format("%04d", seq));
+        String outputFileName = getOutputFileName(fileType);
+        FLocat flocat = new FLocat();
+        flocat.setLOCTYPE("URL");
+        String href = "." + "/" + Const.streamMappingFile.get(metsStreamName) + "/" + outputFileName;
+        URI uri;
+        uri = URI.create(href);
+        flocat.setHref(uri.toASCIIString());
+        fileType.getFLocat().add(flocat);
+        return fileType;
+    }
+
+    private static String getOutputFileName(FileType fileType) throws MetsExportException {
+        return fileType.getID() + "." + MimeType.getExtension(fileType.getMIMETYPE());
+    }
+
+    /**
+     * Copies a file to the package and sets its size and checksum
+     *
+     * @param page
+     * @param metsStreamName
+     * @param fileType
+     */
+    private void copyFile(PageFiles page, String metsStreamName, FileType fileType) throws MetsExportException {
+        MetsContext metsContext = page.metsElement.getMetsContext();
+        HashMap<String, Object> fileNames = page.fileNames;
+        HashMap<String, FileMD5Info> md5InfosMap = page.md5InfosMap;
+        InputStream is = null;
         if (fileNames.get(metsStreamName) instanceof String) {
             String fileNameOriginal = (String) fileNames.get(metsStreamName);
             int lastIndex = fileNameOriginal.lastIndexOf('/');
@@ -502,14 +559,17 @@ public class MetsElementVisitor implements IMetsElementVisitor {
         if (fileNames.get(metsStreamName) instanceof InputStream) {
             is = (InputStream) fileNames.get(metsStreamName);
         }
+        if (fileNames.get(metsStreamName) instanceof DatastreamContent) {
+            is = ((DatastreamContent) fileNames.get(metsStreamName)).open(metsContext.getFedoraClient());
+        }
 
         if (metsStreamName.equalsIgnoreCase("TECHMDGRP")) {
             is = addLabelToAmdSec(is, metsContext);
         }
 
-        String outputFileName = fileType.getID() + "." + MimeType.getExtension(mimeTypes.get(metsStreamName));
-        String fullOutputFileName = metsContext.getPackageDir().getAbsolutePath() + File.separator + Const.streamMappingFile.get(metsStreamName) + File.separator + outputFileName;
-        outputFileNames.put(metsStreamName, fullOutputFileName);
+        String outputFileName = getOutputFileName(fileType);
+        String fullOutputFileName = page.packageDir.getAbsolutePath() + File.separator + Const.streamMappingFile.get(metsStreamName) + File.separator + outputFileName;
+        page.outputFileNames.put(metsStreamName, fullOutputFileName);
         try {
             FileMD5Info fileMD5Info;
             if (md5InfosMap.get(metsStreamName) == null) {
@@ -525,18 +585,11 @@ public class MetsElementVisitor implements IMetsElementVisitor {
             fileMD5Info.setFileName("." + File.separator + Const.streamMappingFile.get(metsStreamName) + File.separator + outputFileName);
             fileMD5Info.setMimeType(fileType.getMIMETYPE());
             fileType.setCHECKSUM(fileMD5Info.getMd5());
-            metsContext.getFileList().add(fileMD5Info);
+            page.fileList.add(fileMD5Info);
         } catch (Exception e) {
+            IOUtils.closeQuietly(is);
             throw new MetsExportException("Unable to process file " + fullOutputFileName, false, e);
         }
-        FLocat flocat = new FLocat();
-        flocat.setLOCTYPE("URL");
-        String href = "." + "/" + Const.streamMappingFile.get(metsStreamName) + "/" + outputFileName;
-        URI uri;
-        uri = URI.create(href);
-        flocat.setHref(uri.toASCIIString());
-        fileType.getFLocat().add(flocat);
-        return fileType;
     }
 
     /**
@@ -570,14 +623,9 @@ public class MetsElementVisitor implements IMetsElementVisitor {
                             }
                             fileMd5Info.setCreated(rawDS.getDatastreamVersion().get(0).getCREATED());
 
-                            GetDatastreamDissemination dsRaw = FedoraClient.getDatastreamDissemination(metsElement.getOriginalPid(), dataStream);
                             createDates.put(streamName, rawDS.getDatastreamVersion().get(0).getCREATED());
-                            try {
-                                InputStream is = dsRaw.execute(metsElement.getMetsContext().getFedoraClient()).getEntityInputStream();
-                                fileNames.put(streamName, is);
-                            } catch (FedoraClientException e) {
-                                throw new MetsExportException(metsElement.getOriginalPid(), "Unable to read raw datastream content", false, e);
-                            }
+                            // the content is streamed to the package later in prepareFileType
+                            fileNames.put(streamName, new DatastreamContent(metsElement.getOriginalPid(), dataStream));
                             // mimeTypes.put(streamName, profile.getDsMIME());
                             mimeTypes.put(streamName, rawDS.getDatastreamVersion().get(0).getMIMETYPE());
                             break;
@@ -681,15 +729,13 @@ public class MetsElementVisitor implements IMetsElementVisitor {
         agent.setAgentType("software");
         agent.getAgentName().add("ProArc");
 
-        JAXBContext jc;
         try {
-            jc = JAXBContext.newInstance(AgentComplexType.class);
             DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
             DocumentBuilder db = dbf.newDocumentBuilder();
             Document document = db.newDocument();
 
             // Marshal the Object to a Document
-            Marshaller marshaller = jc.createMarshaller();
+            Marshaller marshaller = JaxbRegistry.getMarshaller(AgentComplexType.class);
             marshaller.marshal(jaxbPremix, document);
             XPath xpath = XPathFactory.newInstance().newXPath();
             Node agentNode = (Node) xpath.compile("*[local-name()='agent']").evaluate(document, XPathConstants.NODE);
@@ -725,15 +771,13 @@ public class MetsElementVisitor implements IMetsElementVisitor {
         linkingObject.setLinkingObjectIdentifierValue(Const.FEDORAPREFIX + metsElement.getOriginalPid() + "/" + Const.dataStreamToModel.get(datastream));
         event.getLinkingObjectIdentifier().add(linkingObject);
         event.getLinkingAgentIdentifier().add(linkingAgentIdentifier);
-        JAXBContext jc;
         try {
-            jc = JAXBContext.newInstance(PremisComplexType.class);
             DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
             DocumentBuilder db = dbf.newDocumentBuilder();
             Document document = db.newDocument();
 
             // Marshal the Object to a Document
-            Marshaller marshaller = jc.createMarshaller();
+            Marshaller marshaller = JaxbRegistry.getMarshaller(PremisComplexType.class);
             marshaller.marshal(jaxbPremix, document);
             XPath xpath = XPathFactory.newInstance().newXPath();
             Node premisNode = (Node) xpath.compile("*[local-name()='premis']/*[local-name()='event']").evaluate(document, XPathConstants.NODE);
@@ -829,15 +873,13 @@ public class MetsElementVisitor implements IMetsElementVisitor {
         originalName.setValue(originalFile);
         file.setOriginalName(originalName);
 
-        JAXBContext jc;
         try {
-            jc = JAXBContext.newInstance(PremisComplexType.class);
             DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
             DocumentBuilder db = dbf.newDocumentBuilder();
             Document document = db.newDocument();
 
             // Marshal the Object to a Document
-            Marshaller marshaller = jc.createMarshaller();
+            Marshaller marshaller = JaxbRegistry.getMarshaller(PremisComplexType.class);
             marshaller.marshal(jaxbPremix, document);
             XPath xpath = XPathFactory.newInstance().newXPath();
             Node premisNode = (Node) xpath.compile("*[local-name()='premis']/*[local-name()='object']").evaluate(document, XPathConstants.NODE);
@@ -944,15 +986,17 @@ public class MetsElementVisitor implements IMetsElementVisitor {
     /**
      * Generates technical metadata using JHOVE
      *
-     * @param metsElement
-     * @param fileNames
-     * @param seq
-     * @param fileTypes
-     * @param mimeTypes
-     * @param pageDiv
+     * @param page
+     * @return the file of technical metadata or {@code null}
      * @throws MetsExportException
      */
-    private void generateTechMetadata(IMetsElement metsElement, HashMap<String, Object> fileNames, int seq, HashMap<String, FileGrp> fileGrpPage, HashMap<String, String> mimeTypes, DivType pageDiv, HashMap<String, String> outputFileNames, HashMap<String, FileMD5Info> md5InfosMap) throws MetsExportException {
+    private FileType generateTechMetadata(PageFiles page) throws MetsExportException {
+        IMetsElement metsElement = page.metsElement;
+        HashMap<String, Object> fileNames = page.fileNames;
+        HashMap<String, FileGrp> fileGrpPage = page.fileGrpPage;
+        HashMap<String, String> mimeTypes = page.mimeTypes;
+        HashMap<String, String> outputFileNames = page.outputFileNames;
+        HashMap<String, FileMD5Info> md5InfosMap = page.md5InfosMap;
         if (fileNames.get("TECHMDGRP") == null) {
             LOG.log(Level.FINE, "Generating tech");
             Mets amdSecMets = new Mets();
@@ -1025,7 +1069,9 @@ public class MetsElementVisitor implements IMetsElementVisitor {
                             rawCreated = rawDS.getDatastreamVersion().get(0).getCREATED();
                             InputStream is = dsRaw.execute(metsElement.getMetsContext().getFedoraClient()).getEntityInputStream();
                             String rawExtendsion = MimeType.getExtension(rawDS.getDatastreamVersion().get(0).getMIMETYPE());
-                            rawFile = new File(metsElement.getMetsContext().getOutputPath() + File.separator + metsElement.getMetsContext().getPackageID() + File.separator + "raw" + "." + rawExtendsion);
+                            // pages processed at once need own files
+                            rawFile = new File(page.packageDir, "raw_" + page.seq + "." + rawExtendsion);
+                            page.rawFile = rawFile;
                             FileMD5Info rawinfo;
                             try {
                                 rawinfo = MetsUtils.getDigestAndCopy(is, new FileOutputStream(rawFile));
@@ -1044,7 +1090,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
                             }
                             // If not present, then generate new
                             if (jHoveOutputRaw == null) {
-                                jHoveOutputRaw = JhoveUtility.getMix(new File(rawFile.getAbsolutePath()), metsElement.getMetsContext(), mixDevice, rawCreated, null);
+                                jHoveOutputRaw = getMix(new File(rawFile.getAbsolutePath()), metsElement.getMetsContext(), mixDevice, rawCreated, null);
                                 if (jHoveOutputRaw.getMix() == null) {
                                     throw new MetsExportException(metsElement.getOriginalPid(), "Unable to generate Mix information for RAW image", false, null);
                                 }
@@ -1074,7 +1120,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
                         jHoveOutputMC = JhoveUtility.getMixFromFedora(metsElement, MixEditor.NDK_ARCHIVAL_ID);
                     }
                     if (jHoveOutputMC == null) {
-                        jHoveOutputMC = JhoveUtility.getMix(new File(outputFileName), metsElement.getMetsContext(), null, md5InfosMap.get(Const.MC_GRP_ID).getCreated(), originalFile);
+                        jHoveOutputMC = getMix(new File(outputFileName), metsElement.getMetsContext(), null, md5InfosMap.get(Const.MC_GRP_ID).getCreated(), originalFile);
                         if (jHoveOutputMC.getMix() == null) {
                             throw new MetsExportException(metsElement.getOriginalPid(), "Unable to generate Mix information for MC image", false, null);
                         }
@@ -1130,7 +1176,6 @@ public class MetsElementVisitor implements IMetsElementVisitor {
 
             if (rawFile != null) {
                 outputFileNames.remove(Const.RAW_GRP_ID);
-                rawFile.delete();
             }
 
             if (outputFileNames.get(Const.ALTO_GRP_ID) != null) {
@@ -1154,11 +1199,29 @@ public class MetsElementVisitor implements IMetsElementVisitor {
             addPremisToAmdSec(amdSec, md5InfosMap, metsElement, amdSecFileGrpMap);
             mapType.setDiv(divType);
             saveAmdSec(metsElement, amdSecMets, fileNames, mimeTypes);
-            FileType fileType = prepareFileType(seq, "TECHMDGRP", fileNames, mimeTypes, metsElement.getMetsContext(), outputFileNames, md5InfosMap);
-            this.fileGrpMap.get("TECHMDGRP").getFile().add(fileType);
-            Fptr fptr = new Fptr();
-            fptr.setFILEID(fileType);
-            pageDiv.getFptr().add(fptr);
+            return prepareFileType(page, "TECHMDGRP");
+        }
+        return null;
+    }
+
+    /**
+     * Gets MIX of an image. Pages processed at once share the JHOVE pool
+     * as the JHOVE context of the export cannot be used concurrently.
+     */
+    private JHoveOutput getMix(File file, MetsContext metsContext, Mix deviceMix, XMLGregorianCalendar created, String originalFile) throws MetsExportException {
+        if (pageExecutor == null) {
+            return JhoveUtility.getMix(file, metsContext, deviceMix, created, originalFile);
+        }
+        JhovePool pool = JhovePool.getDefault();
+        JhoveContext jhoveContext = null;
+        try {
+            jhoveContext = pool.borrow();
+            return JhoveUtility.getMix(file, jhoveContext, deviceMix, created, originalFile);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MetsExportException("Interrupted while waiting for JHOVE", false, ex);
+        } finally {
+            pool.release(jhoveContext);
         }
     }
 
@@ -1222,8 +1285,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
      */
     private void saveAmdSec(IMetsElement metsElement, Mets amdSecMets, HashMap<String, Object> fileNames, HashMap<String, String> mimeTypes) throws MetsExportException {
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(Mets.class);
-            Marshaller marshaller = jaxbContext.createMarshaller();
+            Marshaller marshaller = JaxbRegistry.getMarshaller(Mets.class);
             marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
             marshaller.setProperty(Marshaller.JAXB_ENCODING, "utf-8");
             // marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION,
@@ -1234,7 +1296,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
             fileNames.put("TECHMDGRP", byteArray);
             mimeTypes.put("TECHMDGRP", "text/xml");
             Document document = MetsUtils.getDocumentFromBytes(byteArray);
-            MetsUtils.validateAgainstXSD(document, Mets.class.getResourceAsStream("mets.xsd"));
+            MetsUtils.validateAgainstXSD(document, Mets.class.getResource("mets.xsd"));
         } catch (Exception ex) {
             throw new MetsExportException(metsElement.getOriginalPid(), "Error while saving AMDSec file", false, ex);
         }
@@ -1357,14 +1419,14 @@ public class MetsElementVisitor implements IMetsElementVisitor {
         fillPageIndexOrder(metsElement, pageDiv);
         String ID = "DIV_P_PAGE_" + metsElement.getElementID().replace("PAGE_", "");
         pageDiv.setID(ID);
-        HashMap<String, Object> fileNames = new HashMap<String, Object>();
-        HashMap<String, String> mimeTypes = new HashMap<String, String>();
+        PageFiles page = new PageFiles(metsElement, pageCounter, pageDiv, fileGrpPage, outputFileNames);
         HashMap<String, XMLGregorianCalendar> createDates = new HashMap<String, XMLGregorianCalendar>();
-        HashMap<String, FileMD5Info> md5InfosMap = new HashMap<String, FileMD5Info>();
-        processPageFiles(metsElement, pageCounter, fileNames, mimeTypes, createDates, md5InfosMap);
+        processPageFiles(metsElement, pageCounter, page.fileNames, page.mimeTypes, createDates, page.md5InfosMap);
         for (String streamName : Const.streamMapping.keySet()) {
-            if (fileNames.containsKey(streamName)) {
-                FileType fileType = prepareFileType(pageCounter, streamName, fileNames, mimeTypes, metsElement.getMetsContext(), outputFileNames, md5InfosMap);
+            if (page.fileNames.containsKey(streamName)) {
+                // the content is copied later by processPage; IDs and the order are known now
+                FileType fileType = createFileType(page, streamName);
+                page.fileTypes.put(streamName, fileType);
                 fileGrpPage.get(streamName).getFile().add(fileType);
                 fileGrpMap.get(streamName).getFile().add(fileType);
                 Fptr fptr = new Fptr();
@@ -1379,7 +1441,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
                 }
             }
         }
-        generateTechMetadata(metsElement, fileNames, pageCounter, fileGrpPage, mimeTypes, pageDiv, outputFileNames, md5InfosMap);
+        processPage(page);
 
         StructLinkMapping structLinkMapping = new StructLinkMapping();
         structLinkMapping.pageDiv = metsElement.getParent().getModsElementID();
@@ -1390,6 +1452,168 @@ public class MetsElementVisitor implements IMetsElementVisitor {
         }
     }
 
+    /**
+     * Copies page files to the package and generates their technical metadata.
+     * In the parallel mode the page is processed in background and the results
+     * are added to the package in the order of pages to keep it the same
+     * as in the sequential mode.
+     *
+     * @param page
+     * @throws MetsExportException
+     */
+    private void processPage(final PageFiles page) throws MetsExportException {
+        if (pageExecutor == null) {
+            writePageFiles(page);
+            addPageFiles(page);
+            return;
+        }
+        pendingPages.add(pageExecutor.submit(new Callable<PageFiles>() {
+
+            @Override
+            public PageFiles call() throws Exception {
+                writePageFiles(page);
+                return page;
+            }
+        }));
+        while (!pendingPages.isEmpty()
+                && (pendingPages.size() > maxPendingPages || pendingPages.getFirst().isDone())) {
+            addPageFiles(getPageFiles(pendingPages.removeFirst()));
+        }
+    }
+
+    /**
+     * Cancels pages being processed and waits until they stop writing
+     * to the package and delete their temporary files.
+     */
+    private void stopPages() {
+        pageExecutor.shutdownNow();
+        try {
+            if (!pageExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
+                LOG.severe("Pages of the NDK export did not terminate");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pageExecutor = null;
+            pendingPages.clear();
+        }
+    }
+
+    /**
+     * Waits for all pages being processed.
+     */
+    private void flushPages() throws MetsExportException {
+        while (!pendingPages.isEmpty()) {
+            addPageFiles(getPageFiles(pendingPages.removeFirst()));
+        }
+    }
+
+    private static PageFiles getPageFiles(Future<PageFiles> result) throws MetsExportException {
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MetsExportException("Interrupted page processing", false, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof MetsExportException) {
+                throw (MetsExportException) ex.getCause();
+            }
+            throw new MetsExportException("Unable to process a page", false, ex);
+        }
+    }
+
+    /**
+     * Copies files of the page and generates their technical metadata.
+     * It must not modify the shared parts of the package.
+     */
+    private void writePageFiles(PageFiles page) throws MetsExportException {
+        try {
+            for (Map.Entry<String, FileType> entry : page.fileTypes.entrySet()) {
+                copyFile(page, entry.getKey(), entry.getValue());
+            }
+            page.techFileType = generateTechMetadata(page);
+        } finally {
+            // the RAW copy is needed just for its technical metadata
+            if (page.rawFile != null) {
+                page.rawFile.delete();
+                page.rawFile = null;
+            }
+        }
+    }
+
+    /**
+     * Adds the processed page to the package.
+     */
+    private void addPageFiles(PageFiles page) {
+        page.metsElement.getMetsContext().getFileList().addAll(page.fileList);
+        if (page.techFileType != null) {
+            this.fileGrpMap.get("TECHMDGRP").getFile().add(page.techFileType);
+            Fptr fptr = new Fptr();
+            fptr.setFILEID(page.techFileType);
+            page.pageDiv.getFptr().add(fptr);
+        }
+    }
+
+    /**
+     * Files of a page waiting for {@link #processPage}.
+     */
+    private static final class PageFiles {
+
+        final IMetsElement metsElement;
+        final int seq;
+        final DivType pageDiv;
+        final HashMap<String, FileGrp> fileGrpPage;
+        final HashMap<String, String> outputFileNames;
+        final String packageId;
+        final File packageDir;
+        final HashMap<String, Object> fileNames = new HashMap<String, Object>();
+        final HashMap<String, String> mimeTypes = new HashMap<String, String>();
+        final HashMap<String, FileMD5Info> md5InfosMap = new HashMap<String, FileMD5Info>();
+        /** Files to copy in the order of streams. */
+        final LinkedHashMap<String, FileType> fileTypes = new LinkedHashMap<String, FileType>();
+        /** Copied files in the order of the package checksum list. */
+        final List<FileMD5Info> fileList = new ArrayList<FileMD5Info>();
+        FileType techFileType;
+        /** The temporary copy of RAW or {@code null}. */
+        File rawFile;
+
+        PageFiles(IMetsElement metsElement, int seq, DivType pageDiv,
+                HashMap<String, FileGrp> fileGrpPage, HashMap<String, String> outputFileNames) {
+            this.metsElement = metsElement;
+            this.seq = seq;
+            this.pageDiv = pageDiv;
+            this.fileGrpPage = fileGrpPage;
+            this.outputFileNames = outputFileNames;
+            this.packageId = metsElement.getMetsContext().getPackageID();
+            this.packageDir = metsElement.getMetsContext().getPackageDir();
+        }
+    }
+
+    /**
+     * The datastream content that is read from Fedora just when it is written
+     * to the package. It keeps the heap use of a page independent of its image
+     * sizes and does not hold connections of streams waiting for their turn.
+     */
+    private static final class DatastreamContent {
+
+        private final String pid;
+        private final String dsId;
+
+        DatastreamContent(String pid, String dsId) {
+            this.pid = pid;
+            this.dsId = dsId;
+        }
+
+        InputStream open(FedoraClient client) throws MetsExportException {
+            try {
+                GetDatastreamDissemination dsRaw = FedoraClient.getDatastreamDissemination(pid, dsId);
+                return dsRaw.execute(client).getEntityInputStream();
+            } catch (FedoraClientException e) {
+                throw new MetsExportException(pid, "Unable to read " + dsId + " datastream content", false, e);
+            }
+        }
+    }
+
     class StructLinkMapping {
         String pageDiv;
         BigInteger pageOrder;
@@ -1884,6 +2108,12 @@ public class MetsElementVisitor implements IMetsElementVisitor {
      */
     @Override
     public void insertIntoMets(IMetsElement metsElement) throws MetsExportException {
+        NdkExportOptions options = metsElement.getMetsContext().getOptions();
+        int threadCount = options == null ? 1 : options.getThreadCount();
+        if (threadCount > 1) {
+            pageExecutor = Executors.newFixedThreadPool(threadCount);
+            maxPendingPages = 2 * threadCount;
+        }
         try {
             // clear the output fileList before the generation starts
             metsElement.getMetsContext().getFileList().clear();
@@ -1914,8 +2144,12 @@ public class MetsElementVisitor implements IMetsElementVisitor {
                 metsElement.getMetsContext().setPackageDir(packageDirFile);
             }
 
+            flushPages();
             saveMets(mets, new File(metsElement.getMetsContext().getPackageDir().getAbsolutePath() + File.separator +"mets_"+ MetsUtils.removeNonAlpabetChars(metsElement.getMetsContext().getPackageID()) + ".xml"), metsElement);
         } finally {
+            if (pageExecutor != null) {
+                stopPages();
+            }
             JhoveUtility.destroyConfigFiles(metsElement.getMetsContext().getJhoveContext());
         }
     }
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Keeps contents of small and frequently requested remote data streams like
+ * thumbnails and previews on a local disk. The cache is bounded by size and
+ * the least recently used contents are dropped first.
+ * <p>Contents are invalidated once {@link RemoteStorage} modifies or purges
+ * them in Fedora. The cache does not survive the restart of the application.
+ *
+ * @author Jan Pokorsky
+ */
+public final class DisseminationCache {
+
+    private static final Logger LOG = Logger.getLogger(DisseminationCache.class.getName());
+    private static DisseminationCache INSTANCE;
+
+    private final File folder;
+    private final long maxSize;
+    /** Entries in the access order. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long size;
+    /** Counts invalidations to reject contents read before an invalidation. */
+    private long modCount;
+    private long fileCount;
+
+    /**
+     * Gets the cache of the application.
+     * @return the cache or {@code null} if disabled
+     */
+    public static DisseminationCache getDefault() {
+        return INSTANCE;
+    }
+
+    public static void setDefault(DisseminationCache cache) {
+        INSTANCE = cache;
+    }
+
+    /**
+     * Is the data stream worth caching?
+     */
+    public static boolean isCacheable(String dsId) {
+        return BinaryEditor.THUMB_ID.equals(dsId) || BinaryEditor.PREVIEW_ID.equals(dsId);
+    }
+
+    /**
+     * Creates the cache. The former contents of the folder are deleted.
+     * @param folder folder to store contents
+     * @param maxSize the max size of stored contents in bytes
+     */
+    public DisseminationCache(File folder, long maxSize) throws IOException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        }
+        this.folder = folder;
+        this.maxSize = maxSize;
+        if (folder.exists()) {
+            FileUtils.cleanDirectory(folder);
+        } else if (!folder.mkdirs()) {
+            throw new IOException("Cannot create " + folder);
+        }
+    }
+
+    /**
+     * Gets the cached content description.
+     * @return the entry or {@code null}
+     */
+    public synchronized Entry get(String pid, String dsId) {
+        return entries.get(key(pid, dsId));
+    }
+
+    /**
+     * Opens the cached content.
+     * @return the stream or {@code null} if the entry was dropped meanwhile
+     */
+    public synchronized InputStream open(Entry entry) {
+        try {
+            return new FileInputStream(entry.file);
+        } catch (FileNotFoundException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the state to pass to {@link #put}.
+     */
+    public synchronized long getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Stores the content.
+     * @param content the content; it is not closed
+     * @param modCount {@link #getModCount() } taken before the content was read
+     * @return the new entry or {@code null} if the content might be outdated or too large
+     */
+    public Entry put(String pid, String dsId, InputStream content,
+            String mime, String disposition, long lastModified, long modCount) throws IOException {
+
+        File file;
+        synchronized (this) {
+            file = new File(folder, (++fileCount) + ".bin");
+        }
+        try {
+            OutputStream os = new FileOutputStream(file);
+            try {
+                IOUtils.copyLarge(content, os);
+            } finally {
+                os.close();
+            }
+        } catch (IOException ex) {
+            delete(file);
+            throw ex;
+        }
+        Entry entry = new Entry(file, mime, disposition, lastModified);
+        synchronized (this) {
+            if (modCount != this.modCount || entry.size > maxSize) {
+                delete(file);
+                return null;
+            }
+            Entry old = entries.put(key(pid, dsId), entry);
+            if (old != null) {
+                drop(old);
+            }
+            size += entry.size;
+            for (Iterator<Entry> it = entries.values().iterator(); size > maxSize && it.hasNext();) {
+                Entry eldest = it.next();
+                it.remove();
+                drop(eldest);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Drops the cached content of the data stream.
+     */
+    public synchronized void invalidate(String pid, String dsId) {
+        ++modCount;
+        Entry old = entries.remove(key(pid, dsId));
+        if (old != null) {
+            drop(old);
+        }
+    }
+
+    /**
+     * Drops all cached contents of the digital object.
+     */
+    public synchronized void invalidate(String pid) {
+        ++modCount;
+        String prefix = key(pid, "");
+        for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getKey().startsWith(prefix)) {
+                it.remove();
+                drop(e.getValue());
+            }
+        }
+    }
+
+    private void drop(Entry entry) {
+        size -= entry.size;
+        delete(entry.file);
+    }
+
+    private static void delete(File file) {
+        // an opened file may not be deletable on some platforms
+        if (!file.delete() && file.exists()) {
+            LOG.log(Level.WARNING, "Cannot delete {0}", file);
+        }
+    }
+
+    private static String key(String pid, String dsId) {
+        return pid + '/' + dsId;
+    }
+
+    /**
+     * The description of the cached content.
+     */
+    public static final class Entry {
+
+        private final File file;
+        private final String mime;
+        private final String disposition;
+        private final long lastModified;
+        private final long size;
+
+        Entry(File file, String mime, String disposition, long lastModified) {
+            this.file = file;
+            this.mime = mime;
+            this.disposition = disposition;
+            this.lastModified = lastModified;
+            this.size = file.length();
+        }
+
+        public String getMime() {
+            return mime;
+        }
+
+        /**
+         * Gets the Content-Disposition header.
+         */
+        public String getDisposition() {
+            return disposition;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+}
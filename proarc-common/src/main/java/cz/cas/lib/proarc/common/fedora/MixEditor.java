@@ -17,6 +17,7 @@
 package cz.cas.lib.proarc.common.fedora;
 
 import com.yourmediashelf.fedora.generated.management.DatastreamProfile;
+import cz.cas.lib.proarc.common.export.mets.JHoveOutput;
 import cz.cas.lib.proarc.common.export.mets.JhoveContext;
 import cz.cas.lib.proarc.common.export.mets.JhoveUtility;
 import cz.cas.lib.proarc.common.fedora.XmlStreamEditor.EditorResult;
@@ -119,19 +120,33 @@ public class MixEditor {
      * @throws DigitalObjectException failure
      */
     public void write(File content, JhoveContext jhoveCtx, long timestamp, String msg) throws DigitalObjectException {
+        JHoveOutput jhoveOutput;
         try {
-            Mix mix = JhoveUtility.getMix(content, jhoveCtx, null, null, null).getMix();
-            if (mix == null) {
-                throw new DigitalObjectException(
-                    object.getPid(), null, profileTemplate.getDsID(), "jHove cannot generate MIX for " + content.toString(), null);
-            }
-            write(mix, timestamp, msg);
-        } catch (DigitalObjectException ex) {
-            throw ex;
+            jhoveOutput = JhoveUtility.getMix(content, jhoveCtx, null, null, null);
         } catch (Exception ex) {
             throw new DigitalObjectException(
                     object.getPid(), null, profileTemplate.getDsID(), null, ex);
         }
+        write(content, jhoveOutput, timestamp, msg);
+    }
+
+    /**
+     * Writes MIX already generated for the passed content.
+     *
+     * @param content file described by the MIX
+     * @param jhoveOutput jHove result
+     * @param timestamp timestamp
+     * @param msg log message
+     * @throws DigitalObjectException failure
+     * @see cz.cas.lib.proarc.common.export.mets.JhovePool#getMixAsync
+     */
+    public void write(File content, JHoveOutput jhoveOutput, long timestamp, String msg) throws DigitalObjectException {
+        Mix mix = jhoveOutput.getMix();
+        if (mix == null) {
+            throw new DigitalObjectException(
+                object.getPid(), null, profileTemplate.getDsID(), "jHove cannot generate MIX for " + content.toString(), null);
+        }
+        write(mix, timestamp, msg);
     }
 
 //    public void generate(String dsId, JhoveContext jhoveCtx) {
@@ -27,6 +27,8 @@ import cz.cas.lib.proarc.common.object.MetadataHandler;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.MissingResourceException;
@@ -44,23 +46,82 @@ public final class PageView {
     private LocalStorage storage = new LocalStorage();
 
     public List<Item> list(int batchId, Collection<BatchItemObject> imports, Locale locale) throws DigitalObjectException {
+        return list(batchId, imports, locale, false);
+    }
+
+    /**
+     * Lists batch pages.
+     * @param allItems {@code true} if imports are all current items of the batch;
+     *      index entries of other objects are dropped then
+     */
+    public List<Item> list(int batchId, Collection<BatchItemObject> imports, Locale locale,
+            boolean allItems) throws DigitalObjectException {
+
+        return list(batchId, imports, locale, true, allItems);
+    }
+
+    /**
+     * Lists batch objects whether they are pages or not. Page properties
+     * of other objects are {@code null}.
+     * @param imports all loaded objects of the batch
+     */
+    public List<Item> listObjects(int batchId, Collection<BatchItemObject> imports, Locale locale) throws DigitalObjectException {
+        return list(batchId, imports, locale, false, true);
+    }
+
+    private List<Item> list(int batchId, Collection<BatchItemObject> imports, Locale locale,
+            boolean pagesOnly, boolean allItems) throws DigitalObjectException {
+
         ArrayList<Item> result = new ArrayList<Item>(imports.size());
-        for (BatchItemObject imp : imports) {
-            ObjectState objectState = imp.getState();
-            if (objectState == ObjectState.LOADING || objectState == ObjectState.LOADING_FAILED) {
-                // issue 245: it is unsafe to touch FOXML file if the object
-                // has not been loaded yet or it is broken
-                result.add(new Item(batchId, imp.getItem().getFile(), imp.getPid(),
-                        null, null, null, null, -1, null, null));
-                continue;
+        // items of a batch share the folder
+        HashMap<File, PageViewIndex> indexes = new HashMap<File, PageViewIndex>();
+        try {
+            for (BatchItemObject imp : imports) {
+                ObjectState objectState = imp.getState();
+                if (objectState == ObjectState.LOADING || objectState == ObjectState.LOADING_FAILED) {
+                    // issue 245: it is unsafe to touch FOXML file if the object
+                    // has not been loaded yet or it is broken
+                    result.add(new Item(batchId, imp.getItem().getFile(), imp.getPid(),
+                            null, null, null, null, -1, null, null));
+                    continue;
+                }
+                File foxml = imp.getFile();
+                PageViewIndex index = indexes.get(foxml.getParentFile());
+                if (index == null) {
+                    index = PageViewIndex.open(foxml.getParentFile(), locale);
+                    indexes.put(foxml.getParentFile(), index);
+                }
+                PageViewIndex.Entry entry = index.get(imp.getPid(), foxml);
+                if (entry == null) {
+                    long indexed = System.currentTimeMillis();
+                    entry = createEntry(imp, locale);
+                    index.put(entry, foxml, indexed);
+                }
+                if (pagesOnly && !entry.page) {
+                    throw new DigitalObjectException(imp.getPid(), imp.getBatchId(), null,
+                            "Model '" + entry.model + "' unsuported by any plug-in!", null);
+                }
+                result.add(createItem(imp.getBatchId(), entry));
+            }
+        } finally {
+            HashSet<String> pids = null;
+            if (allItems) {
+                pids = new HashSet<String>(imports.size());
+                for (BatchItemObject imp : imports) {
+                    pids.add(imp.getPid());
+                }
+            }
+            for (PageViewIndex index : indexes.values()) {
+                if (pids != null) {
+                    index.retain(pids);
+                }
+                index.save();
             }
-            result.add(createItem(imp, locale));
         }
         return result;
     }
 
-    private Item createItem(BatchItemObject imp, Locale locale) throws DigitalObjectException {
-        Integer batchId = imp.getBatchId();
+    private PageViewIndex.Entry createEntry(BatchItemObject imp, Locale locale) throws DigitalObjectException {
         File foxml = imp.getFile();
         LocalObject local = storage.load(imp.getPid(), foxml);
         DigitalObjectHandler doHandler = DigitalObjectManager.getDefault().createHandler(local);
@@ -68,27 +129,31 @@ public final class PageView {
 
         DescriptionMetadata<?> metadata = metadataHandler.getMetadata();
         RelationEditor relsExt = doHandler.relations();
-        String model = relsExt.getModel();
-        String filename = relsExt.getImportFile();
-        Item item = new Item(batchId, filename, imp.getPid(),
-                model, null, null, null,
-                metadata.getTimestamp(), local.getOwner(), local.getLabel());
+        PageViewIndex.Entry entry = new PageViewIndex.Entry();
+        entry.pid = imp.getPid();
+        entry.model = relsExt.getModel();
+        entry.filename = relsExt.getImportFile();
+        entry.timestamp = metadata.getTimestamp();
+        entry.owner = local.getOwner();
+        entry.label = local.getLabel();
 
         if (metadataHandler instanceof PageViewHandler) {
             PageViewHandler pvh = (PageViewHandler) metadataHandler;
             PageViewItem pvItem = pvh.createPageViewItem(locale);
-            updateItem(item, pvItem);
-        } else {
-            throw new DigitalObjectException(imp.getPid(), batchId, null, "Model '" + model + "' unsuported by any plug-in!", null);
+            entry.page = true;
+            entry.pageIndex = pvItem.getPageIndex();
+            entry.pageNumber = pvItem.getPageNumber();
+            entry.pageType = pvItem.getPageType();
+            entry.pageTypeLabel = pvItem.getPageTypeLabel();
         }
-        return item;
+        return entry;
     }
 
-    private Item updateItem(Item item, PageViewItem pvItem) {
-        item.pageIndex = pvItem.getPageIndex();
-        item.pageNumber = pvItem.getPageNumber();
-        item.pageType = pvItem.getPageType();
-        item.pageTypeLabel = pvItem.getPageTypeLabel();
+    private static Item createItem(Integer batchId, PageViewIndex.Entry entry) {
+        Item item = new Item(batchId, entry.filename, entry.pid,
+                entry.model, entry.pageIndex, entry.pageNumber, entry.pageType,
+                entry.timestamp, entry.owner, entry.label);
+        item.pageTypeLabel = entry.pageTypeLabel;
         return item;
     }
     /**
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.bind.DataBindingException;
+import javax.xml.bind.JAXB;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Keeps page view items of a batch folder in a side file so that the batch
+ * editor does not have to parse each FOXML on each request.
+ * <p>An entry is valid as long as the modification time and the size of its
+ * FOXML file remain. Each write of MODS or RELS-EXT rewrites the FOXML and
+ * the entry is read again on the next request. Entries of files modified
+ * just before indexing are not trusted to cope with coarse file timestamps.
+ * <p>Entries of objects removed from the batch are dropped with
+ * {@link #retain} as their FOXML files stay in the folder.
+ * <p>The page type label depends on the locale and thus there is an index
+ * file per locale.
+ *
+ * @author Jan Pokorsky
+ */
+final class PageViewIndex {
+
+    private static final Logger LOG = Logger.getLogger(PageViewIndex.class.getName());
+    static final String FILENAME_PREFIX = "pageview_";
+    /** The worst file system time resolution. */
+    static final long TIME_RESOLUTION = 2000;
+
+    private final File indexFile;
+    private final HashMap<String, Entry> pid2entry = new HashMap<String, Entry>();
+    private boolean modified;
+
+    /**
+     * Reads the index of the folder.
+     * @param folder folder of batch FOXML files
+     * @param locale locale of labels
+     * @return the index
+     */
+    public static PageViewIndex open(File folder, Locale locale) {
+        String lang = locale == null ? "default" : locale.toString();
+        PageViewIndex index = new PageViewIndex(new File(folder, FILENAME_PREFIX + lang + ".xml"));
+        index.load();
+        return index;
+    }
+
+    PageViewIndex(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Gets a valid entry of the object.
+     * @param pid PID
+     * @param foxml the FOXML file of the object
+     * @return the entry or {@code null}
+     */
+    public Entry get(String pid, File foxml) {
+        Entry entry = pid2entry.get(pid);
+        if (entry != null
+                && entry.foxmlModified == foxml.lastModified()
+                && entry.foxmlSize == foxml.length()
+                && entry.foxmlModified + TIME_RESOLUTION <= entry.indexed) {
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Adds or replaces the entry of the object.
+     * @param foxml the FOXML file the entry was read from
+     */
+    public void put(Entry entry, File foxml, long indexed) {
+        entry.foxmlModified = foxml.lastModified();
+        entry.foxmlSize = foxml.length();
+        entry.indexed = indexed;
+        pid2entry.put(entry.pid, entry);
+        modified = true;
+    }
+
+    /**
+     * Removes entries of objects that are no longer items of the batch.
+     * @param pids PIDs of all current batch items
+     */
+    public void retain(Collection<String> pids) {
+        if (pid2entry.keySet().retainAll(pids)) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Writes changed entries. Failures are just logged as the index can be
+     * always rebuilt.
+     */
+    public void save() {
+        if (!modified) {
+            return ;
+        }
+        File tmp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp" + Thread.currentThread().getId());
+        try {
+            Entries entries = new Entries();
+            entries.entries = new ArrayList<Entry>(pid2entry.values());
+            JAXB.marshal(entries, tmp);
+            // replace the index at once for concurrent readers
+            if (indexFile.exists() && !indexFile.delete() || !tmp.renameTo(indexFile)) {
+                LOG.log(Level.WARNING, "Cannot write {0}", indexFile);
+                tmp.delete();
+            } else {
+                modified = false;
+            }
+        } catch (DataBindingException ex) {
+            LOG.log(Level.WARNING, indexFile.toString(), ex);
+            tmp.delete();
+        }
+    }
+
+    private void load() {
+        if (!indexFile.exists()) {
+            return ;
+        }
+        try {
+            Entries entries = JAXB.unmarshal(indexFile, Entries.class);
+            if (entries.entries != null) {
+                for (Entry entry : entries.entries) {
+                    pid2entry.put(entry.pid, entry);
+                }
+            }
+        } catch (DataBindingException ex) {
+            // rebuild broken index
+            LOG.log(Level.WARNING, indexFile.toString(), ex);
+        }
+    }
+
+    @XmlRootElement(name = "pageView")
+    @XmlAccessorType(XmlAccessType.FIELD)
+    static class Entries {
+
+        @XmlElement(name = "item")
+        List<Entry> entries;
+    }
+
+    /**
+     * Page view properties of an object.
+     */
+    @XmlAccessorType(XmlAccessType.FIELD)
+    static class Entry {
+
+        @XmlAttribute(name = "pid", required = true)
+        String pid;
+        @XmlAttribute(name = "foxmlModified")
+        long foxmlModified;
+        @XmlAttribute(name = "foxmlSize")
+        long foxmlSize;
+        @XmlAttribute(name = "indexed")
+        long indexed;
+        @XmlElement(name = "filename")
+        String filename;
+        @XmlElement(name = "model")
+        String model;
+        /** {@code false} if the object does not provide page properties. */
+        @XmlElement(name = "page")
+        boolean page;
+        @XmlElement(name = "pageIndex")
+        String pageIndex;
+        @XmlElement(name = "pageNumber")
+        String pageNumber;
+        @XmlElement(name = "pageType")
+        String pageType;
+        @XmlElement(name = "pageTypeLabel")
+        String pageTypeLabel;
+        @XmlElement(name = "timestamp")
+        long timestamp;
+        @XmlElement(name = "owner")
+        String owner;
+        @XmlElement(name = "label")
+        String label;
+    }
+
+}
@@ -250,6 +250,16 @@ public final class RemoteStorage {
                 : UriComponent.encode(p, UriComponent.Type.QUERY_PARAM_SPACE_ENCODED);
     }
 
+    /**
+     * Drops the cached content of the data stream modified in Fedora.
+     */
+    private static void invalidateCache(String pid, String dsId) {
+        DisseminationCache cache = DisseminationCache.getDefault();
+        if (cache != null && DisseminationCache.isCacheable(dsId)) {
+            cache.invalidate(pid, dsId);
+        }
+    }
+
     public static final class RemoteObject extends AbstractFedoraObject {
 
         private final FedoraClient client;
@@ -309,6 +319,10 @@ public final class RemoteStorage {
         public void purge(String logMessage) throws DigitalObjectException {
             try {
                 FedoraClient.purgeObject(getPid()).logMessage(qpEncode(logMessage)).execute(client);
+                DisseminationCache cache = DisseminationCache.getDefault();
+                if (cache != null) {
+                    cache.invalidate(getPid());
+                }
             } catch (FedoraClientException ex) {
                 if (ex.getStatus() == Status.NOT_FOUND.getStatusCode()) {
                     throw new DigitalObjectNotFoundException(getPid(), ex);
@@ -322,6 +336,7 @@ public final class RemoteStorage {
         public void purgeDatastream(String datastream ,String logMessage) throws DigitalObjectException {
             try {
                 FedoraClient.purgeDatastream(getPid(), datastream).logMessage(qpEncode(logMessage)).execute(client);
+                invalidateCache(getPid(), datastream);
             } catch (FedoraClientException ex) {
                 //if submitted pid was invalid, then 404 was received and client set NOT_FOUND status
                 //datastream presence is not checked and 200 is returned by Fedora whether datastream existed or not prior to purging
@@ -635,6 +650,15 @@ public final class RemoteStorage {
             if (!modified) {
                 return ;
             }
+            try {
+                flushImpl();
+            } finally {
+                // after Fedora is modified not to cache the former content
+                invalidateCache(object.getPid(), dsId);
+            }
+        }
+
+        private void flushImpl() throws DigitalObjectException {
             try {
                 if (newProfile != null && !newProfile.getDsControlGroup().equals(profile.getDsControlGroup())) {
                     // It seems the fedora implementation cannot change the control group (3.5-3.8).
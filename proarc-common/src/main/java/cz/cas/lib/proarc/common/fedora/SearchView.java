@@ -31,14 +31,25 @@ import cz.cas.lib.proarc.common.object.model.MetaModel;
 import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -59,8 +70,20 @@ public final class SearchView {
     private static final String QUERY_FIND_MEMBERS = readQuery("findMembers.itql");
     private static final String QUERY_FIND_MEMBER_HIERARCHY = readQuery("findMemberHierarchy.itql");
     private static final String QUERY_FIND_PIDS = readQuery("findPids.itql");
+    private static final String QUERY_FIND_PARENT_PIDS = readQuery("findParentPids.itql");
     private static final String QUERY_FIND_REFERRERS = readQuery("findReferrers.itql");
     private static final String QUERY_FIND_DEVICE_REFERRERS = readQuery("findDeviceReferrers.itql");
+    /**
+     * Runs query pages of searches of more than 100 PIDs. It is shared so that
+     * such searches cannot open more than 4 Mulgara queries at once in background.
+     * Smaller searches and searches started from a query page run in the caller
+     * thread. The executor lives as long as the class; it is never shut down
+     * as its idle threads expire and the daemon threads do not hold
+     * the application on shutdown.
+     */
+    private static final ExecutorService QUERY_EXECUTOR = createQueryExecutor(4);
+    /** Set in threads of {@link #QUERY_EXECUTOR} running a query page. */
+    private static final ThreadLocal<Boolean> IN_QUERY_PAGE = new ThreadLocal<Boolean>();
 
     private final FedoraClient fedora;
     private final int maxLimit;
@@ -249,7 +272,43 @@ public final class SearchView {
      * @throws FedoraClientException
      * @throws IOException
      */
-    public List<Item> find(List<String> pids, boolean onlyActive) throws FedoraClientException, IOException {
+    public List<Item> find(List<String> pids, final boolean onlyActive) throws FedoraClientException, IOException {
+        return findPages(pids, new PageQuery() {
+
+            @Override
+            public List<Item> find(List<String> pids) throws FedoraClientException, IOException {
+                return findImpl(pids, onlyActive);
+            }
+        });
+    }
+
+    /**
+     * Finds parents of passed PIDs with a few queries. The result contains
+     * an item for each found pair of a child PID ({@link Item#getPid()})
+     * and its parent PID ({@link Item#getParentPid()}). Only active parents
+     * of ProArc models are included like in case of {@link #findReferrers(String)}.
+     *
+     * @param pids PIDs of digital objects
+     * @return list of child-parent pairs
+     * @throws FedoraClientException
+     * @throws IOException
+     */
+    public List<Item> findReferrers(List<String> pids) throws FedoraClientException, IOException {
+        return findPages(pids, new PageQuery() {
+
+            @Override
+            public List<Item> find(List<String> pids) throws FedoraClientException, IOException {
+                return findReferrersImpl(pids);
+            }
+        });
+    }
+
+    /**
+     * Splits PIDs to pages queried concurrently. Pages of a search nested
+     * in a query page are queried in the caller thread not to wait for
+     * the executor that runs the caller.
+     */
+    private List<Item> findPages(List<String> pids, final PageQuery pageQuery) throws FedoraClientException, IOException {
         // issue 85: reasonable count of PIDs per query to prevent StackOverflowError.
         // Greater query page sizes (>1000, <2000) are acceptable but Mulgara responses are really slow.
         // It does not make sence to add paging to API as load on demand of SmartGWT Tree
@@ -258,30 +317,92 @@ public final class SearchView {
         final int queryPageSize = 100;
         final int size = pids.size();
         ArrayList<Item> result = new ArrayList<Item>(size);
-        for (int startOffset = 0; startOffset < size; ) {
-            int endOffset = Math.min(size, startOffset + queryPageSize);
-            List<String> subList = pids.subList(startOffset, endOffset);
-            List<Item> members = findImpl(subList, onlyActive);
-            startOffset = endOffset;
-            result.addAll(members);
+        if (size <= queryPageSize) {
+            result.addAll(pageQuery.find(pids));
+            return result;
+        }
+        if (IN_QUERY_PAGE.get() != null) {
+            for (int startOffset = 0; startOffset < size; startOffset += queryPageSize) {
+                int endOffset = Math.min(size, startOffset + queryPageSize);
+                result.addAll(pageQuery.find(new ArrayList<String>(pids.subList(startOffset, endOffset))));
+            }
+            return result;
+        }
+        // query pages run concurrently
+        ArrayList<Future<List<Item>>> pages = new ArrayList<Future<List<Item>>>();
+        try {
+            for (int startOffset = 0; startOffset < size; ) {
+                int endOffset = Math.min(size, startOffset + queryPageSize);
+                final List<String> subList = new ArrayList<String>(pids.subList(startOffset, endOffset));
+                pages.add(QUERY_EXECUTOR.submit(new Callable<List<Item>>() {
+
+                    @Override
+                    public List<Item> call() throws Exception {
+                        IN_QUERY_PAGE.set(Boolean.TRUE);
+                        try {
+                            return pageQuery.find(subList);
+                        } finally {
+                            IN_QUERY_PAGE.remove();
+                        }
+                    }
+                }));
+                startOffset = endOffset;
+            }
+            for (Future<List<Item>> page : pages) {
+                result.addAll(getPage(page));
+            }
+        } finally {
+            for (Future<List<Item>> page : pages) {
+                page.cancel(true);
+            }
         }
         return result;
     }
 
+    private static ExecutorService createQueryExecutor(int threadCount) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = factory.newThread(r);
+                thread.setName(SearchView.class.getSimpleName() + '-' + thread.getName());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static List<Item> getPage(Future<List<Item>> page) throws FedoraClientException, IOException {
+        try {
+            return page.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof FedoraClientException) {
+                throw (FedoraClientException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
     List<Item> findImpl(List<String> pids, boolean onlyActive) throws FedoraClientException, IOException {
         if (pids.isEmpty()) {
             return Collections.emptyList();
         }
-        StringBuilder expr = new StringBuilder(256);
-        for (String pid : pids) {
-            if (expr.length() > 0) {
-                expr.append("\n  or ");
-            }
-            expr.append(String.format(
-                    "$pid <http://mulgara.org/mulgara#is> <info:fedora/%s>",
-                    pid));
-        }
-        String query = QUERY_FIND_PIDS.replace("${pids.expression}", expr);
+        String query = QUERY_FIND_PIDS.replace("${pids.expression}", pidsExpression(pids));
 
         String onlyActiveExpr = onlyActive
                 ? "and        $pid     <info:fedora/fedora-system:def/model#state>"
@@ -294,6 +415,33 @@ public final class SearchView {
         return consumeSearch(search.execute(fedora));
     }
 
+    List<Item> findReferrersImpl(List<String> pids) throws FedoraClientException, IOException {
+        if (pids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String query = QUERY_FIND_PARENT_PIDS.replace("${pids.expression}", pidsExpression(pids));
+        LOG.fine(query);
+        RiSearch search = buildSearch(query);
+        List<Item> items = consumeSearch(search.execute(fedora));
+        for (Item item : items) {
+            item.setParentPid(replaceUriWithPid(item.getParentPid()));
+        }
+        return items;
+    }
+
+    private static StringBuilder pidsExpression(List<String> pids) {
+        StringBuilder expr = new StringBuilder(256);
+        for (String pid : pids) {
+            if (expr.length() > 0) {
+                expr.append("\n  or ");
+            }
+            expr.append(String.format(
+                    "$pid <http://mulgara.org/mulgara#is> <info:fedora/%s>",
+                    pid));
+        }
+        return expr;
+    }
+
     /**
      * Finds children of the passed remote object. The result list is sorted
      * using RELS-EXT stream.
@@ -309,15 +457,30 @@ public final class SearchView {
         RemoteObject parent = storage.find(parentPid);
         List<String> memberPids = new RelationEditor(parent).getMembers();
         List<Item> items = find(memberPids, true);
-        ArrayList<Item> sortedItems = new ArrayList<Item>(memberPids.size());
-        for (String memberPid : memberPids) {
-            for (Iterator<Item> it = items.iterator(); it.hasNext();) {
-                Item item = it.next();
-                if (memberPid.equals(item.getPid())) {
-                    sortedItems.add(item);
-                    it.remove();
-                    break;
-                }
+        return sortItems(memberPids, items);
+    }
+
+    /**
+     * Sorts items in the order of PIDs. Items without PID in the list are omitted.
+     * Each occurrence of a PID takes the next item of that PID so that items
+     * sharing the PID are kept as long as the PID repeats in the list.
+     */
+    static ArrayList<Item> sortItems(List<String> pids, List<Item> items) {
+        HashMap<String, ArrayDeque<Item>> pid2items = new HashMap<String, ArrayDeque<Item>>(items.size() * 4 / 3 + 1);
+        for (Item item : items) {
+            ArrayDeque<Item> pidItems = pid2items.get(item.getPid());
+            if (pidItems == null) {
+                pidItems = new ArrayDeque<Item>(1);
+                pid2items.put(item.getPid(), pidItems);
+            }
+            pidItems.add(item);
+        }
+        ArrayList<Item> sortedItems = new ArrayList<Item>(pids.size());
+        for (String pid : pids) {
+            ArrayDeque<Item> pidItems = pid2items.get(pid);
+            Item item = pidItems == null ? null : pidItems.poll();
+            if (item != null) {
+                sortedItems.add(item);
             }
         }
         return sortedItems;
@@ -420,11 +583,15 @@ public final class SearchView {
     }
 
     Result readResponse(String json) throws IOException {
+        return  getMapper().readValue(json, Result.class);
+    }
+
+    private synchronized ObjectMapper getMapper() {
         if (mapper == null) {
             // requires mapper without mix in annotation of Item
             mapper = JsonUtils.createObjectMapper();
         }
-        return  mapper.readValue(json, Result.class);
+        return mapper;
     }
 
     private List<Item> consumeSearch(List<Item> items) {
@@ -479,6 +646,14 @@ public final class SearchView {
         return content;
     }
 
+    /**
+     * Queries a page of PIDs.
+     */
+    private interface PageQuery {
+
+        List<Item> find(List<String> pids) throws FedoraClientException, IOException;
+    }
+
     /**
      * A plug-in capability.
      */
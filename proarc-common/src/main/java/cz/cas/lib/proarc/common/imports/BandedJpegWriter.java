@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.logging.Logger;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Converts images to JPEG without decoding them whole. The image is read
+ * in bands of rows through {@link ImageReadParam#setSourceRegion source regions}
+ * while the JPEG writer consumes its rows. Only one band is held in memory
+ * so that the heap needed to convert a scan does not depend on its size.
+ * <p>Images that cannot be read in bands are decoded whole.
+ *
+ * @author Jan Pokorsky
+ */
+final class BandedJpegWriter {
+
+    private static final Logger LOG = Logger.getLogger(BandedJpegWriter.class.getName());
+    /** the approximate size of a band of decoded rows in bytes */
+    static final int BAND_SIZE = 8 * 1024 * 1024;
+
+    private final ImageReader reader;
+    private final int width;
+    private final int height;
+    private final int bandHeight;
+    private int scanlineStride;
+    /** the decoded band */
+    private DataBuffer band;
+    /** the first element of the band */
+    private long bandStart;
+    /** the element following the band */
+    private long bandEnd;
+
+    /**
+     * Writes the image as a JPEG with the best quality.
+     * @param source image file
+     * @param target JPEG file to create
+     * @throws IOException read or write failure
+     */
+    public static void write(File source, File target) throws IOException {
+        write(source, target, BAND_SIZE);
+    }
+
+    static void write(File source, File target, int bandSize) throws IOException {
+        long start = System.nanoTime();
+        ImageInputStream iis = ImageIO.createImageInputStream(source);
+        if (iis == null) {
+            throw new IOException("Cannot read " + source);
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                throw new IOException("No image reader for " + source);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                BandedJpegWriter banded = new BandedJpegWriter(reader, bandSize);
+                BufferedImage image = banded.createImage();
+                write(image, target);
+                LOG.fine(String.format("%s [%s, %s] written, banded: %s, band: %s rows, time: %s ms",
+                        source, banded.width, banded.height,
+                        image.getType() == BufferedImage.TYPE_CUSTOM, banded.bandHeight,
+                        (System.nanoTime() - start) / 1000000));
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            iis.close();
+        }
+    }
+
+    private BandedJpegWriter(ImageReader reader, int bandSize) throws IOException {
+        this.reader = reader;
+        this.width = reader.getWidth(0);
+        this.height = reader.getHeight(0);
+        // rows of 4 bytes per pixel at most
+        this.bandHeight = Math.max(1, Math.min(height, bandSize / Math.max(1, 4 * width)));
+    }
+
+    /**
+     * Creates the image reading its rows on demand or decodes the whole image
+     * in case of an unsupported layout.
+     */
+    private BufferedImage createImage() throws IOException {
+        BufferedImage first = readBand(0);
+        ColorModel cm = first.getColorModel();
+        SampleModel sm = createSampleModel(first.getRaster());
+        if (bandHeight >= height || sm == null || cm.hasAlpha() || !isByteSamples(sm)) {
+            return bandHeight >= height ? first : reader.read(0);
+        }
+        scanlineStride = getScanlineStride(sm);
+        setBand(first.getRaster(), 0);
+        DataBuffer db = new BandDataBuffer(first.getRaster().getDataBuffer(),
+                (int) Math.min(Integer.MAX_VALUE, (long) scanlineStride * height));
+        WritableRaster raster = new WritableRaster(sm, db, new Point()) {};
+        return new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
+    }
+
+    private BufferedImage readBand(int y) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(0, y, width, Math.min(bandHeight, height - y)));
+        return reader.read(0, param);
+    }
+
+    private void setBand(Raster raster, int y) {
+        if (raster.getMinX() != 0 || raster.getMinY() != 0 || raster.getWidth() != width
+                || getScanlineStride(raster.getSampleModel()) != scanlineStride) {
+            throw new IllegalStateException("Unexpected layout of rows " + y + ": " + raster);
+        }
+        for (int offset : raster.getDataBuffer().getOffsets()) {
+            if (offset != 0) {
+                throw new IllegalStateException("Unexpected layout of rows " + y + ": " + raster);
+            }
+        }
+        band = raster.getDataBuffer();
+        bandStart = (long) y * scanlineStride;
+        bandEnd = bandStart + (long) raster.getHeight() * scanlineStride;
+    }
+
+    /**
+     * Gets the band holding the element. Rows are read in bands top down.
+     */
+    private DataBuffer getBand(int i) {
+        if (i < bandStart || i >= bandEnd) {
+            int y = (int) (i / scanlineStride);
+            y -= y % bandHeight;
+            try {
+                setBand(readBand(y).getRaster(), y);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Cannot read rows " + y, ex);
+            }
+        }
+        return band;
+    }
+
+    /**
+     * Creates the sample model of the whole image with the element layout
+     * of the band.
+     * @return the model or {@code null} if unsupported
+     */
+    private SampleModel createSampleModel(Raster band) {
+        if (band.getDataBuffer().getNumBanks() != 1) {
+            return null;
+        }
+        SampleModel sm = band.getSampleModel();
+        int type = sm.getDataType();
+        if (sm instanceof PixelInterleavedSampleModel) {
+            PixelInterleavedSampleModel psm = (PixelInterleavedSampleModel) sm;
+            return new PixelInterleavedSampleModel(type, width, height,
+                    psm.getPixelStride(), psm.getScanlineStride(), psm.getBandOffsets());
+        } else if (sm instanceof ComponentSampleModel) {
+            ComponentSampleModel csm = (ComponentSampleModel) sm;
+            return new ComponentSampleModel(type, width, height, csm.getPixelStride(),
+                    csm.getScanlineStride(), csm.getBankIndices(), csm.getBandOffsets());
+        } else if (sm instanceof MultiPixelPackedSampleModel) {
+            MultiPixelPackedSampleModel msm = (MultiPixelPackedSampleModel) sm;
+            return new MultiPixelPackedSampleModel(type, width, height,
+                    msm.getPixelBitStride(), msm.getScanlineStride(), msm.getDataBitOffset());
+        } else if (sm instanceof SinglePixelPackedSampleModel) {
+            SinglePixelPackedSampleModel ssm = (SinglePixelPackedSampleModel) sm;
+            return new SinglePixelPackedSampleModel(type, width, height,
+                    ssm.getScanlineStride(), ssm.getBitMasks());
+        }
+        return null;
+    }
+
+    private static int getScanlineStride(SampleModel sm) {
+        if (sm instanceof ComponentSampleModel) {
+            return ((ComponentSampleModel) sm).getScanlineStride();
+        } else if (sm instanceof MultiPixelPackedSampleModel) {
+            return ((MultiPixelPackedSampleModel) sm).getScanlineStride();
+        } else if (sm instanceof SinglePixelPackedSampleModel) {
+            return ((SinglePixelPackedSampleModel) sm).getScanlineStride();
+        }
+        return -1;
+    }
+
+    /**
+     * The JPEG writer supports 8 bit samples.
+     */
+    private static boolean isByteSamples(SampleModel sm) {
+        for (int size : sm.getSampleSize()) {
+            if (size > 8) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void write(BufferedImage image, File target) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("No JPEG writer!");
+        }
+        ImageWriter writer = writers.next();
+        OutputStream os = new FileOutputStream(target);
+        try {
+            ImageOutputStream ios = ImageIO.createImageOutputStream(os);
+            try {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(1.0f);
+                writer.setOutput(ios);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                ios.close();
+            }
+        } finally {
+            writer.dispose();
+            os.close();
+        }
+    }
+
+    /**
+     * Passes reads to the band holding the element.
+     */
+    private final class BandDataBuffer extends DataBuffer {
+
+        BandDataBuffer(DataBuffer prototype, int size) {
+            super(prototype.getDataType(), size, 1);
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            return getBand(i).getElem(bank, (int) (i - bandStart));
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+            throw new UnsupportedOperationException("read only");
+        }
+    }
+
+}
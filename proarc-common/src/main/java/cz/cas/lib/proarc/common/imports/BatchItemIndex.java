@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import cz.cas.lib.proarc.common.imports.ImportBatchManager.AbstractBatchItem;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Indexes batch items by PID to put them in the order of batch root members
+ * without searching the whole list for each member.
+ * <p>Items sharing a PID are removed in their original order.
+ *
+ * @author Jan Pokorsky
+ */
+final class BatchItemIndex<T extends AbstractBatchItem> {
+
+    private final HashMap<String, ArrayDeque<T>> pid2items;
+    private int size;
+
+    /**
+     * Indexes items.
+     * @param items items to index
+     */
+    public BatchItemIndex(Collection<? extends T> items) {
+        pid2items = new HashMap<String, ArrayDeque<T>>(items.size() * 4 / 3 + 1);
+        for (T item : items) {
+            String pid = item.getPid();
+            ArrayDeque<T> sameItems = pid2items.get(pid);
+            if (sameItems == null) {
+                sameItems = new ArrayDeque<T>(1);
+                pid2items.put(pid, sameItems);
+            }
+            sameItems.add(item);
+        }
+        size = items.size();
+    }
+
+    /**
+     * Removes the first remaining item with the PID.
+     * @param pid PID to find
+     * @return the item or {@code null}
+     */
+    public T remove(String pid) {
+        ArrayDeque<T> sameItems = pid2items.get(pid);
+        if (sameItems == null) {
+            return null;
+        }
+        T item = sameItems.poll();
+        if (sameItems.isEmpty()) {
+            pid2items.remove(pid);
+        }
+        size--;
+        return item;
+    }
+
+    /**
+     * Gets whether all items were removed.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import cz.cas.lib.proarc.common.dao.BatchItem;
+import cz.cas.lib.proarc.common.dao.BatchItemDao;
+import cz.cas.lib.proarc.common.dao.DaoFactory;
+import cz.cas.lib.proarc.common.dao.Transaction;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes batch items of the loading batch behind. Items are collected and stored
+ * in a single transaction by a background thread once there are enough of them
+ * or the max delay elapses. Repeated writes of the same item before the flush
+ * are stored just once.
+ * <p>The writer stores copies of items taken at the time of the write.
+ * Import threads may go on modifying written items. Only the generated ID
+ * and timestamp are passed back to written items.
+ * <p>Items are stored in the order of their first write to keep the timestamp
+ * order of the batch.
+ * <p>{@link ImportBatchManager} flushes the writer before it queries items
+ * of the batch.
+ * <p>The buffered items are lost in case of a crash together with the loaded
+ * files that are removed by {@link ImportProcess#resume}. The loading process
+ * must {@link #close} the writer before it marks the batch as loaded.
+ *
+ * @author Jan Pokorsky
+ */
+final class BatchItemWriter {
+
+    private static final Logger LOG = Logger.getLogger(BatchItemWriter.class.getName());
+
+    private final DaoFactory daos;
+    private final int maxItems;
+    /** written items in the order of the first write to their copies to store */
+    private Map<BatchItem, BatchItem> pending = new IdentityHashMap<BatchItem, BatchItem>();
+    private List<BatchItem> pendingOrder = new ArrayList<BatchItem>();
+    /** serializes flushes to keep the order of stored items */
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService flusher;
+    private boolean flushScheduled;
+    private RuntimeException failure;
+
+    /**
+     * @param daos DAO factory
+     * @param maxItems the number of items that triggers the flush
+     * @param maxDelay milliseconds between periodic flushes
+     */
+    public BatchItemWriter(DaoFactory daos, int maxItems, long maxDelay) {
+        this.daos = daos;
+        this.maxItems = maxItems;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = factory.newThread(r);
+                thread.setName(BatchItemWriter.class.getSimpleName() + '-' + thread.getName());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        flusher.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                flushBehind();
+            }
+        }, maxDelay, maxDelay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedules items to store. Their current state is stored.
+     * @param items new or modified items
+     * @throws IllegalStateException a former flush failed
+     */
+    public synchronized void write(List<BatchItem> items) {
+        checkFailure();
+        for (BatchItem item : items) {
+            if (pending.put(item, copy(item)) == null) {
+                pendingOrder.add(item);
+            }
+        }
+        if (pendingOrder.size() >= maxItems && !flushScheduled) {
+            flushScheduled = true;
+            flusher.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    flushBehind();
+                }
+            });
+        }
+    }
+
+    /**
+     * Stores all scheduled items on the calling thread.
+     * @throws IllegalStateException the flush failed
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<BatchItem, BatchItem> items;
+            List<BatchItem> order;
+            synchronized (this) {
+                checkFailure();
+                flushScheduled = false;
+                if (pendingOrder.isEmpty()) {
+                    return ;
+                }
+                items = pending;
+                order = pendingOrder;
+                pending = new IdentityHashMap<BatchItem, BatchItem>();
+                pendingOrder = new ArrayList<BatchItem>();
+            }
+            try {
+                store(items, order);
+            } catch (RuntimeException ex) {
+                synchronized (this) {
+                    failure = ex;
+                }
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Stores the remaining items and stops the background flushes.
+     * @throws IllegalStateException the flush failed
+     */
+    public void close() {
+        // do not interrupt a running flush
+        flusher.shutdown();
+        flush();
+    }
+
+    private void flushBehind() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            // reported by the next write or close
+            LOG.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private void store(Map<BatchItem, BatchItem> items, List<BatchItem> order) {
+        long start = System.currentTimeMillis();
+        BatchItemDao bitemDao = daos.createBatchItem();
+        Transaction tx = daos.createTransaction();
+        bitemDao.setTransaction(tx);
+        try {
+            for (BatchItem item : order) {
+                bitemDao.update(items.get(item));
+            }
+            tx.commit();
+            LOG.log(Level.FINE, "{0} items stored in {1} ms",
+                    new Object[] {order.size(), System.currentTimeMillis() - start});
+        } catch (Throwable ex) {
+            tx.rollback();
+            throw new IllegalStateException(String.valueOf(order), ex);
+        } finally {
+            tx.close();
+        }
+        synchronized (this) {
+            for (BatchItem item : order) {
+                BatchItem stored = items.get(item);
+                updateGenerated(item, stored);
+                // the item written again meanwhile must update the stored row
+                BatchItem next = pending.get(item);
+                if (next != null) {
+                    updateGenerated(next, stored);
+                }
+            }
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new IllegalStateException("Batch items not stored!", failure);
+        }
+    }
+
+    private static void updateGenerated(BatchItem item, BatchItem stored) {
+        if (item.getId() == null) {
+            item.setId(stored.getId());
+            item.setTimestamp(stored.getTimestamp());
+        }
+    }
+
+    private static BatchItem copy(BatchItem item) {
+        BatchItem copy = new BatchItem();
+        copy.setId(item.getId());
+        copy.setBatchId(item.getBatchId());
+        copy.setPid(item.getPid());
+        copy.setDsId(item.getDsId());
+        copy.setFile(item.getFile());
+        copy.setState(item.getState());
+        copy.setType(item.getType());
+        copy.setLog(item.getLog());
+        copy.setTimestamp(item.getTimestamp());
+        return copy;
+    }
+
+}
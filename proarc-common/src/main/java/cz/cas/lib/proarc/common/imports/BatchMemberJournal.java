@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Collects members of the batch root while the batch is loading. Each new
+ * member is appended to the journal file instead of rewriting the whole root
+ * object. The members are {@link ImportBatchManager#commitChildRelations written}
+ * to RELS-EXT of the root once the loading finishes.
+ * <p>The journal is kept in the target folder so that it is removed together
+ * with other loaded files when the import is resumed.
+ *
+ * @author Jan Pokorsky
+ */
+final class BatchMemberJournal {
+
+    private final File file;
+    private final LinkedHashSet<String> members = new LinkedHashSet<String>();
+
+    /**
+     * Opens the journal. Members of an existing journal file are read.
+     * @param file journal file
+     */
+    public BatchMemberJournal(File file) throws IOException {
+        this.file = file;
+        if (file.exists()) {
+            for (String line : FileUtils.readLines(file, "UTF-8")) {
+                if (!line.isEmpty()) {
+                    members.add(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the member.
+     * @param pid PID of the member
+     * @return {@code false} if the journal already contains the member
+     */
+    public synchronized boolean add(String pid) throws IOException {
+        if (members.contains(pid)) {
+            return false;
+        }
+        // the file is not held open to not block its removal on resume
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+        try {
+            writer.write(pid);
+            writer.write('\n');
+        } finally {
+            writer.close();
+        }
+        members.add(pid);
+        return true;
+    }
+
+    /**
+     * Gets members in the order of their addition.
+     */
+    public synchronized List<String> getMembers() {
+        return new ArrayList<String>(members);
+    }
+
+    /**
+     * Removes the journal file.
+     */
+    public synchronized void delete() {
+        members.clear();
+        FileUtils.deleteQuietly(file);
+    }
+
+}
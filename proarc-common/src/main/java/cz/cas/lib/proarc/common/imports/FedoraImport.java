@@ -31,8 +31,15 @@ import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
 import cz.cas.lib.proarc.common.imports.ImportBatchManager.BatchItemObject;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -48,12 +55,37 @@ public final class FedoraImport {
     private final LocalStorage localStorage;
     private final ImportBatchManager ibm;
     private final SearchView search;
+    private final int threadCount;
+    private final int loadThreadCount;
 
     public FedoraImport(RemoteStorage fedora, ImportBatchManager ibm) {
+        this(fedora, ibm, 1);
+    }
+
+    /**
+     * @param threadCount number of concurrent ingests
+     */
+    public FedoraImport(RemoteStorage fedora, ImportBatchManager ibm, int threadCount) {
+        this(fedora, ibm, threadCount, 1);
+    }
+
+    /**
+     * @param threadCount number of concurrent ingests
+     * @param loadThreadCount number of threads reading FOXML ahead of ingests
+     */
+    public FedoraImport(RemoteStorage fedora, ImportBatchManager ibm, int threadCount, int loadThreadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount: " + threadCount);
+        }
+        if (loadThreadCount < 1) {
+            throw new IllegalArgumentException("loadThreadCount: " + loadThreadCount);
+        }
         this.fedora = fedora;
         this.search = fedora.getSearch();
         this.ibm = ibm;
         this.localStorage = new LocalStorage();
+        this.threadCount = threadCount;
+        this.loadThreadCount = loadThreadCount;
     }
 
     public Batch importBatch(Batch batch, String importer, String message) throws DigitalObjectException {
@@ -87,12 +119,15 @@ public final class FedoraImport {
     }
 
     private boolean importItems(Batch batch, String importer, List<String> ingests, boolean repair)
-            throws DigitalObjectException {
+            throws DigitalObjectException, InterruptedException {
         List<BatchItemObject> batchItems = ibm.findBatchObjects(batch.getId(), null);
         if (batch.getParentPid() != null) {
             // in case of including items in a parent object it is neccessary to sort the ingests
             batchItems = sortItems(batch, batchItems);
         }
+        if ((threadCount > 1 || loadThreadCount > 1) && batchItems.size() > 1) {
+            return importItems(batch, batchItems, importer, ingests, repair);
+        }
         for (BatchItemObject item : batchItems) {
             item = importItem(item, importer, repair);
             if (item != null) {
@@ -107,6 +142,68 @@ public final class FedoraImport {
         return false;
     }
 
+    /**
+     * Ingests items in a pipeline of stages. FOXML files are read by the pool
+     * of load threads, the loaded objects are ingested over concurrent connections
+     * and item states are stored by the calling thread in the order of the batch.
+     * Only a limited number of items is processed ahead of the oldest unfinished item.
+     * <p>The first failed item stops the ingest. Items ingested after it stay
+     * unlinked to the parent; the repair of the batch links them in the proper order.
+     */
+    private boolean importItems(Batch batch, List<BatchItemObject> batchItems, String importer,
+            List<String> ingests, boolean repair) throws InterruptedException {
+
+        ExecutorService loadPool = Executors.newFixedThreadPool(loadThreadCount);
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        int windowSize = 2 * Math.max(threadCount, loadThreadCount);
+        ArrayDeque<Future<BatchItemObject>> window = new ArrayDeque<Future<BatchItemObject>>();
+        Iterator<BatchItemObject> pending = batchItems.iterator();
+        String failure = null;
+        try {
+            while (true) {
+                while (failure == null && window.size() < windowSize && pending.hasNext()) {
+                    BatchItemObject item = pending.next();
+                    Future<LocalObject> foxml = null;
+                    if (isLoadable(item, repair)) {
+                        foxml = loadPool.submit(new LoadTask(item));
+                    }
+                    window.add(pool.submit(new IngestTask(item, foxml, importer, repair)));
+                }
+                Future<BatchItemObject> result = window.poll();
+                if (result == null) {
+                    break;
+                }
+                BatchItemObject item = getResult(result);
+                if (item != null) {
+                    ibm.update(item);
+                    if (ObjectState.INGESTING_FAILED == item.getState()) {
+                        if (failure == null) {
+                            failure = item.getLog();
+                        }
+                    } else if (failure == null) {
+                        ingests.add(item.getPid());
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            loadPool.shutdownNow();
+        }
+        if (failure != null) {
+            batch.setLog(failure);
+            return true;
+        }
+        return false;
+    }
+
+    private static BatchItemObject getResult(Future<BatchItemObject> result) throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
     /**
      * Sorts the batch items according to the RELS-EXT members of the parent object.
      */
@@ -115,18 +212,15 @@ public final class FedoraImport {
         RelationEditor rootRels = new RelationEditor(root);
         List<String> batchMemberPids = rootRels.getMembers();
         ArrayList<BatchItemObject> result = new ArrayList<BatchItemObject>(batchItems.size());
+        BatchItemIndex<BatchItemObject> index = new BatchItemIndex<BatchItemObject>(batchItems);
         for (String member : batchMemberPids) {
-            if (batchItems.isEmpty()) {
+            if (index.isEmpty()) {
                 throw new DigitalObjectException(member, batch.getId(), null,
                         String.format("Unknown %s in %s", member, root.getPid()), null);
             }
-            for (int i = 0; i < batchItems.size(); i++) {
-                BatchItemObject item = batchItems.get(i);
-                if (member.equals(item.getPid())) {
-                    result.add(item);
-                    batchItems.remove(i);
-                    break;
-                }
+            BatchItemObject item = index.remove(member);
+            if (item != null) {
+                result.add(item);
             }
         }
         return result;
@@ -141,23 +235,40 @@ public final class FedoraImport {
      *      was skipped
      */
     public BatchItemObject importItem(BatchItemObject item, String importer, boolean repair) {
+        item = ingestItem(item, null, importer, repair);
+        if (item != null) {
+            ibm.update(item);
+        }
+        return item;
+    }
+
+    /**
+     * Fedora ingest of an import item without storing its state.
+     * @param foxml the object loaded in advance or {@code null}
+     */
+    private BatchItemObject ingestItem(BatchItemObject item, Future<LocalObject> foxml,
+            String importer, boolean repair) {
+
         try {
             if (item.getState() == ObjectState.EXCLUDED) {
                 return null;
             }
             if (repair) {
-                item = repairItemImpl(item, importer);
+                item = repairItemImpl(item, foxml, importer);
             } else {
-                item = importItemImpl(item, importer);
+                item = importItemImpl(item, foxml, importer);
             }
+        } catch (InterruptedException ex) {
+            // the ingest was cancelled; the item is not ingested and the thread stays interrupted
+            Thread.currentThread().interrupt();
+            LOG.log(Level.WARNING, String.valueOf(item), ex);
+            item.setState(ObjectState.INGESTING_FAILED);
+            item.setLog(ImportBatchManager.toString(ex));
         } catch (Throwable t) {
             LOG.log(Level.SEVERE, String.valueOf(item), t);
             item.setState(ObjectState.INGESTING_FAILED);
             item.setLog(ImportBatchManager.toString(t));
         }
-        if (item != null) {
-            ibm.update(item);
-        }
         return item;
     }
 
@@ -169,11 +280,13 @@ public final class FedoraImport {
      *      was skipped
      * @throws DigitalObjectException failure
      */
-    private BatchItemObject repairItemImpl(BatchItemObject item, String importer) throws DigitalObjectException, IOException, FedoraClientException {
+    private BatchItemObject repairItemImpl(BatchItemObject item, Future<LocalObject> foxml, String importer)
+            throws DigitalObjectException, IOException, FedoraClientException, InterruptedException {
+
         ObjectState state = item.getState();
         if (state == ObjectState.LOADED) {
             // ingest
-            return importItemImpl(item, importer);
+            return importItemImpl(item, foxml, importer);
         } else if (state == ObjectState.INGESTED) {
             // check parent
             String itemPid = item.getPid();
@@ -187,7 +300,7 @@ public final class FedoraImport {
                     // broken ingest > ingest again + link
                     item.setState(ObjectState.LOADED);
                     item.setLog(null);
-                    return importItemImpl(item, importer);
+                    return importItemImpl(item, foxml, importer);
                 }
             } else {
                 // ingested and linked > skip
@@ -197,7 +310,7 @@ public final class FedoraImport {
             // ingest again
             item.setState(ObjectState.LOADED);
             item.setLog(null);
-            return importItemImpl(item, importer);
+            return importItemImpl(item, foxml, importer);
         } else {
             return null;
         }
@@ -206,21 +319,21 @@ public final class FedoraImport {
     /**
      * Fedora ingest of an import item.
      * @param item item to import
+     * @param loaded the object loaded in advance or {@code null}
      * @param importer who imports
      * @return the import item with proper state or {@code null} if the item
      *      was skipped
      * @throws DigitalObjectException failure
      */
-    private BatchItemObject importItemImpl(BatchItemObject item, String importer) throws DigitalObjectException {
+    private BatchItemObject importItemImpl(BatchItemObject item, Future<LocalObject> loaded, String importer)
+            throws DigitalObjectException, InterruptedException {
+
         ObjectState state = item.getState();
         if (state != ObjectState.LOADED) {
             return null;
         }
         File foxml = item.getFile();
-        if (foxml == null || !foxml.exists() || !foxml.canRead()) {
-            throw new IllegalStateException("Cannot read foxml: " + foxml);
-        }
-        LocalObject lobj = localStorage.load(item.getPid(), foxml);
+        LocalObject lobj = loaded == null ? loadItem(item) : getLoaded(loaded);
         if (lobj.isRemoteCopy()) {
             RemoteObject rObj = fedora.find(item.getPid());
             RelationEditor localRelEditor = new RelationEditor(lobj);
@@ -248,6 +361,38 @@ public final class FedoraImport {
         return item;
     }
 
+    /**
+     * Gets whether the item is going to be ingested from its FOXML so that
+     * it can be loaded in advance. Repaired items that were ingested
+     * are loaded on demand.
+     */
+    private static boolean isLoadable(BatchItemObject item, boolean repair) {
+        ObjectState state = item.getState();
+        return state == ObjectState.LOADED || (repair && state == ObjectState.INGESTING_FAILED);
+    }
+
+    private LocalObject loadItem(BatchItemObject item) {
+        File foxml = item.getFile();
+        if (foxml == null || !foxml.exists() || !foxml.canRead()) {
+            throw new IllegalStateException("Cannot read foxml: " + foxml);
+        }
+        return localStorage.load(item.getPid(), foxml);
+    }
+
+    private static LocalObject getLoaded(Future<LocalObject> loaded) throws InterruptedException {
+        try {
+            return loaded.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
     private void addParentMembers(String parent, List<String> pids, String message) throws DigitalObjectException {
         if (parent == null || pids.isEmpty()) {
             return ;
@@ -261,6 +406,43 @@ public final class FedoraImport {
         remote.flush();
     }
 
+    /**
+     * Reads FOXML of the item ahead of its ingest.
+     */
+    private final class LoadTask implements Callable<LocalObject> {
+
+        private final BatchItemObject item;
+
+        LoadTask(BatchItemObject item) {
+            this.item = item;
+        }
+
+        @Override
+        public LocalObject call() {
+            return loadItem(item);
+        }
+    }
+
+    private final class IngestTask implements Callable<BatchItemObject> {
+
+        private final BatchItemObject item;
+        private final Future<LocalObject> foxml;
+        private final String importer;
+        private final boolean repair;
+
+        IngestTask(BatchItemObject item, Future<LocalObject> foxml, String importer, boolean repair) {
+            this.item = item;
+            this.foxml = foxml;
+            this.importer = importer;
+            this.repair = repair;
+        }
+
+        @Override
+        public BatchItemObject call() {
+            return ingestItem(item, foxml, importer, repair);
+        }
+    }
+
     private void checkParent(String parent) throws DigitalObjectException {
         if (parent == null) {
             return ;
@@ -19,14 +19,21 @@ package cz.cas.lib.proarc.common.imports;
 import cz.cas.lib.proarc.common.dao.Batch;
 import cz.cas.lib.proarc.common.dao.BatchItem.FileState;
 import cz.cas.lib.proarc.common.dao.BatchItem.ObjectState;
-import cz.cas.lib.proarc.common.export.mets.JhoveUtility;
+import cz.cas.lib.proarc.common.export.mets.JhovePool;
 import cz.cas.lib.proarc.common.imports.ImportBatchManager.BatchItemObject;
 import cz.cas.lib.proarc.common.imports.ImportProcess.ImportOptions;
 import static cz.cas.lib.proarc.common.imports.ImportProcess.getConsumers;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -78,15 +85,20 @@ public class FileSetImport implements ImportHandler {
         ImportFileScanner scanner = new ImportFileScanner();
         List<File> files = scanner.findDigitalContent(importFolder);
         List<FileSet> fileSets = ImportFileScanner.getFileSets(files);
-        importConfig.setJhoveContext(JhoveUtility.createContext());
-        try {
-            consumeFileSets(batch, fileSets, importConfig);
-        } finally {
-            importConfig.getJhoveContext().destroy();
+        importConfig.setJhovePool(JhovePool.getDefault());
+        consumeFileSets(batch, fileSets, importConfig);
+    }
+
+    private void consumeFileSets(Batch batch, List<FileSet> fileSets, ImportOptions ctx) throws Exception {
+        int threadCount = ctx.getConfig().getThreadCount();
+        if (threadCount > 1 && fileSets.size() > 1) {
+            consumeFileSets(batch, fileSets, ctx, threadCount);
+        } else {
+            consumeFileSetsSequentially(batch, fileSets, ctx);
         }
     }
 
-    private void consumeFileSets(Batch batch, List<FileSet> fileSets, ImportOptions ctx) throws InterruptedException {
+    private void consumeFileSetsSequentially(Batch batch, List<FileSet> fileSets, ImportOptions ctx) throws InterruptedException {
         ImportBatchManager batchManager = ImportBatchManager.getInstance();
         long start = System.currentTimeMillis();
         for (FileSet fileSet : fileSets) {
@@ -108,6 +120,114 @@ public class FileSetImport implements ImportHandler {
         LOG.log(Level.FINE, "Total time: {0} ms", System.currentTimeMillis() - start);
     }
 
+    /**
+     * Consumes file sets with a pool of threads. Batch items, page indices
+     * and batch root members keep the order of the sequential import.
+     * The first failed item cancels the following file sets.
+     */
+    private void consumeFileSets(Batch batch, List<FileSet> fileSets, ImportOptions ctx, int threadCount) throws Exception {
+        ImportBatchManager batchManager = ImportBatchManager.getInstance();
+        long start = System.currentTimeMillis();
+        ImportSequencer sequencer = new ImportSequencer();
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        List<Future<BatchItemObject>> results = new ArrayList<Future<BatchItemObject>>(fileSets.size());
+        int failedIndex = -1;
+        try {
+            for (int i = 0; i < fileSets.size(); i++) {
+                results.add(pool.submit(new FileSetTask(fileSets.get(i), i, ctx, sequencer)));
+            }
+            for (int i = 0; i < fileSets.size() && failedIndex < 0; i++) {
+                BatchItemObject item = getResult(results.get(i));
+                String pid = item == null ? null : item.getPid();
+                FileState state = item == null ? FileState.SKIPPED : FileState.OK;
+                batchManager.addFileItem(batch.getId(), pid, state, fileSets.get(i).getFiles());
+                if (item != null) {
+                    if (ObjectState.LOADING_FAILED == item.getState()) {
+                        batch.setState(Batch.State.LOADING_FAILED);
+                        batch.setLog(item.getFile() + "\n" + item.getLog());
+                        failedIndex = i;
+                    }
+                }
+            }
+            if (failedIndex < 0) {
+                ctx.setConsumedFileCounter(ctx.getConsumedFileCounter() + sequencer.getConsumedFileCounter());
+            }
+        } finally {
+            sequencer.cancel();
+            shutdown(pool);
+        }
+        if (failedIndex >= 0) {
+            excludeFollowingItems(batch, results, failedIndex);
+            return ;
+        }
+        LOG.log(Level.FINE, "Total time: {0} ms, threads: {1}",
+                new Object[] {System.currentTimeMillis() - start, threadCount});
+    }
+
+    /**
+     * Excludes objects of file sets following the failed file set that
+     * were registered before they were stopped.
+     */
+    private static void excludeFollowingItems(Batch batch, List<Future<BatchItemObject>> results, int failedIndex) {
+        ImportBatchManager batchManager = ImportBatchManager.getInstance();
+        for (int i = failedIndex + 1; i < results.size(); i++) {
+            Future<BatchItemObject> result = results.get(i);
+            if (!result.isDone()) {
+                // never started
+                continue;
+            }
+            BatchItemObject item;
+            try {
+                item = result.get();
+            } catch (Exception ex) {
+                // cancelled file sets exclude their objects themselves
+                continue;
+            }
+            if (item != null && ObjectState.EXCLUDED != item.getState()) {
+                batchManager.excludeBatchObject(batch, item.getPid());
+            }
+        }
+    }
+
+    private static BatchItemObject getResult(Future<BatchItemObject> result) throws Exception {
+        try {
+            return result.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Stops the pool and waits for running file sets to finish to not leave
+     * any thread writing to the batch.
+     */
+    private static void shutdown(ExecutorService pool) {
+        pool.shutdownNow();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                        break;
+                    }
+                    LOG.warning("Waiting for import threads to terminate.");
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     private BatchItemObject consumeFileSet(FileSet fileSet, ImportOptions ctx) {
         long start = System.currentTimeMillis();
         List<ImageImporter> consumers = getConsumers();
@@ -123,6 +243,40 @@ public class FileSetImport implements ImportHandler {
         return null;
     }
 
+    /**
+     * Consumes a single file set within a thread of the pool.
+     */
+    private final class FileSetTask implements Callable<BatchItemObject> {
+
+        private final FileSet fileSet;
+        private final int index;
+        private final ImportOptions ctx;
+        private final ImportSequencer sequencer;
+
+        FileSetTask(FileSet fileSet, int index, ImportOptions ctx, ImportSequencer sequencer) {
+
+            this.fileSet = fileSet;
+            this.index = index;
+            this.ctx = ctx;
+            this.sequencer = sequencer;
+        }
+
+        @Override
+        public BatchItemObject call() throws Exception {
+            boolean failed = true;
+            try {
+                BatchItemObject item = consumeFileSet(fileSet, ctx.fork(sequencer, index));
+                failed = item != null && ObjectState.LOADING_FAILED == item.getState();
+                return item;
+            } finally {
+                if (failed) {
+                    sequencer.cancel(index);
+                }
+                sequencer.finish(index);
+            }
+        }
+    }
+
     static boolean canImport(FileSet fileSet) {
         for (ImageImporter consumer : ImportProcess.getConsumers()) {
             if (consumer.accept(fileSet)) {
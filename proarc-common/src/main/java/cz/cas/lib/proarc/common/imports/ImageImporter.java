@@ -40,6 +40,8 @@ public interface ImageImporter {
      * @param fileSet FileSet to be consumed and processed
      * @param ctx setup options for importer
      * @return returns object with processed images from fileSet
+     * @throws java.util.concurrent.CancellationException the file set was cancelled
+     *      by the parallel import; the registered object is excluded from the batch
      */
     BatchItemObject consume(FileSet fileSet, ImportProcess.ImportOptions ctx);
 }
@@ -45,8 +45,10 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import javax.xml.bind.JAXB;
 
@@ -60,9 +62,20 @@ public class ImportBatchManager {
     private static ImportBatchManager INSTANCE;
     public static final String ROOT_ITEM_PID = "proarc:root_item";
     static final String ROOT_ITEM_FILENAME = ".proarc_root.foxml";
+    static final String ROOT_MEMBERS_FILENAME = ".proarc_root_members.txt";
+    /** the number of batch items stored at once by the loading process */
+    private static final int ITEM_WRITER_MAX_ITEMS = 100;
+    /** the delay in ms between periodic stores of batch items of the loading process */
+    private static final long ITEM_WRITER_MAX_DELAY = 2000;
 
     private AppConfiguration appConfig;
     private final DaoFactory daos;
+    /** batch ID to members of the root of the loading batch */
+    private final ConcurrentHashMap<Integer, BatchMemberJournal> memberJournals
+            = new ConcurrentHashMap<Integer, BatchMemberJournal>();
+    /** batch ID to the writer of items of the loading batch */
+    private final ConcurrentHashMap<Integer, BatchItemWriter> itemWriters
+            = new ConcurrentHashMap<Integer, BatchItemWriter>();
 
     /** XXX replace with guice */
     public static void setInstance(AppConfiguration config, DaoFactory daos) {
@@ -123,6 +136,7 @@ public class ImportBatchManager {
         itemDao.setTransaction(tx);
         pid = (pid == null || pid.isEmpty()) ? null : pid;
         String stateParam = state == null ? null : state.name();
+        flushItemWriter(batchId);
         try {
             List<BatchItem> result = itemDao.find(batchId, pid, null, stateParam, BatchItem.Type.OBJECT.name());
             tx.commit();
@@ -156,17 +170,14 @@ public class ImportBatchManager {
             throw new IllegalStateException(batch.toString(), ex);
         }
         ArrayList<BatchItemObject> result = new ArrayList<BatchItemObject>(items.size());
+        BatchItemIndex<BatchItemObject> index = new BatchItemIndex<BatchItemObject>(items);
         for (String member : members) {
-            if (items.isEmpty()) {
+            if (index.isEmpty()) {
                 throw new IllegalStateException(String.format("Unknown %s in %s", member, batch));
             }
-            for (int i = 0; i < items.size(); i++) {
-                BatchItemObject item = items.get(i);
-                if (member.equals(item.getPid())) {
-                    result.add(item);
-                    items.remove(i);
-                    break;
-                }
+            BatchItemObject item = index.remove(member);
+            if (item != null) {
+                result.add(item);
             }
         }
         return result;
@@ -203,6 +214,7 @@ public class ImportBatchManager {
             int threshold = 3;
             for (BatchView bv : result) {
                 if (Batch.State.INGESTING_FAILED.name().equals(bv.getState())) {
+                    flushItemWriter(bv.getId());
                     List<BatchItem> failures = itemDao.find(bv.getId(), null, null,
                             BatchItem.ObjectState.INGESTING_FAILED.name(), BatchItem.Type.OBJECT.name());
                     sb.setLength(0);
@@ -334,8 +346,23 @@ public class ImportBatchManager {
         }
     }
 
+    /**
+     * Adds the object to the batch. The item of the loading batch with
+     * the open {@link #openItemWriter writer} gets its ID once it is stored.
+     */
     public BatchItemObject addLocalObject(Batch batchDb, LocalObject local) {
         File foxml = local.getFoxml();
+        BatchItemWriter itemWriter = itemWriters.get(batchDb.getId());
+        if (itemWriter != null) {
+            BatchItem batchItem = new BatchItem();
+            batchItem.setBatchId(batchDb.getId());
+            batchItem.setFile(relativizeBatchFile(foxml));
+            batchItem.setPid(local.getPid());
+            batchItem.setState(ObjectState.LOADING.name());
+            batchItem.setType(BatchItem.Type.OBJECT);
+            itemWriter.write(Collections.singletonList(batchItem));
+            return new BatchItemObject(batchItem, getBatchRoot());
+        }
         BatchItemDao bitemDao = daos.createBatchItem();
         Transaction tx = daos.createTransaction();
         bitemDao.setTransaction(tx);
@@ -377,6 +404,15 @@ public class ImportBatchManager {
     }
 
     public void addFileItem(int batchId, String pid, FileState state, List<FileEntry> files) {
+        BatchItemWriter itemWriter = itemWriters.get(batchId);
+        if (itemWriter != null) {
+            List<BatchItem> items = new ArrayList<BatchItem>(files.size());
+            for (FileEntry file : files) {
+                items.add(createFileItem(batchId, pid, state.name(), file.getFile().getName()));
+            }
+            itemWriter.write(items);
+            return ;
+        }
         BatchItemDao bitemDao = daos.createBatchItem();
         Transaction tx = daos.createTransaction();
         bitemDao.setTransaction(tx);
@@ -398,13 +434,18 @@ public class ImportBatchManager {
     }
 
     private BatchItem addFileItem(int batchId, String pid, String state, String file, BatchItemDao bitemDao) {
-        BatchItem bitem = bitemDao.create();
+        BatchItem bitem = createFileItem(batchId, pid, state, file);
+        bitemDao.update(bitem);
+        return bitem;
+    }
+
+    private static BatchItem createFileItem(int batchId, String pid, String state, String file) {
+        BatchItem bitem = new BatchItem();
         bitem.setBatchId(batchId);
         bitem.setFile(file);
         bitem.setPid(pid);
         bitem.setState(state);
         bitem.setType(BatchItem.Type.FILE);
-        bitemDao.update(bitem);
         return bitem;
     }
 
@@ -413,6 +454,11 @@ public class ImportBatchManager {
     }
     
     public void update(BatchItem item) {
+        BatchItemWriter itemWriter = item.getBatchId() == null ? null : itemWriters.get(item.getBatchId());
+        if (itemWriter != null) {
+            itemWriter.write(Collections.singletonList(item));
+            return ;
+        }
         BatchItemDao bitemDao = daos.createBatchItem();
         Transaction tx = daos.createTransaction();
         bitemDao.setTransaction(tx);
@@ -438,6 +484,7 @@ public class ImportBatchManager {
         if (pids == null || pids.isEmpty()) {
             throw new IllegalArgumentException("pid");
         }
+        flushItemWriter(batch.getId());
         BatchItemDao bitemDao = daos.createBatchItem();
         Transaction tx = daos.createTransaction();
         bitemDao.setTransaction(tx);
@@ -483,10 +530,24 @@ public class ImportBatchManager {
         return result;
     }
 
+    /**
+     * Adds the object to members of the batch root. Members of the loading
+     * batch are collected by the journal until {@link #commitChildRelations}.
+     *
+     * @return {@code false} if the object is already the member
+     */
     boolean addChildRelation(Batch batch, String parentPid, String childPid) throws DigitalObjectException {
         if (batch == null) {
             throw new NullPointerException("batch");
         }
+        if (parentPid == null && batch.getState() == State.LOADING) {
+            try {
+                return getMemberJournal(batch).add(childPid);
+            } catch (IOException ex) {
+                throw new DigitalObjectException(ROOT_ITEM_PID, batch.getId(),
+                        RelationEditor.DATASTREAM_ID, childPid, ex);
+            }
+        }
         LocalObject rootObject;
         if (parentPid == null) {
             rootObject = getRootObject(batch);
@@ -509,6 +570,7 @@ public class ImportBatchManager {
         if (batch == null) {
             throw new NullPointerException("batch");
         }
+        commitChildRelations(batch);
         LocalObject rootObject;
         if (parentPid == null) {
             rootObject = getRootObject(batch);
@@ -526,6 +588,94 @@ public class ImportBatchManager {
         return changed;
     }
 
+    /**
+     * Starts to write items of the loading batch behind. Items added or updated
+     * with this manager are stored in groups until {@link #closeItemWriter}.
+     * Queries of the batch store the written items first so that they see them.
+     *
+     * @param batch loading batch
+     */
+    public void openItemWriter(Batch batch) {
+        if (!itemWriters.containsKey(batch.getId())) {
+            itemWriters.put(batch.getId(),
+                    new BatchItemWriter(daos, ITEM_WRITER_MAX_ITEMS, ITEM_WRITER_MAX_DELAY));
+        }
+    }
+
+    /**
+     * Stores the remaining items of the batch and stops to write them behind.
+     *
+     * @param batch loading batch
+     */
+    public void closeItemWriter(Batch batch) {
+        BatchItemWriter itemWriter = itemWriters.remove(batch.getId());
+        if (itemWriter != null) {
+            itemWriter.close();
+        }
+    }
+
+    /**
+     * Stores items written behind before a query of the batch.
+     */
+    private void flushItemWriter(int batchId) {
+        BatchItemWriter itemWriter = itemWriters.get(batchId);
+        if (itemWriter != null) {
+            itemWriter.flush();
+        }
+    }
+
+    /**
+     * Writes members collected by the journal of the loading batch
+     * to RELS-EXT of the batch root. It should be called once the loading finishes.
+     *
+     * @param batch batch
+     */
+    public void commitChildRelations(Batch batch) throws DigitalObjectException {
+        if (batch == null) {
+            throw new NullPointerException("batch");
+        }
+        BatchMemberJournal journal = memberJournals.remove(batch.getId());
+        try {
+            if (journal == null) {
+                File journalFile = getMemberJournalFile(batch);
+                if (!journalFile.exists()) {
+                    return ;
+                }
+                // left by the interrupted session
+                journal = new BatchMemberJournal(journalFile);
+            }
+            List<String> journalMembers = journal.getMembers();
+            if (!journalMembers.isEmpty()) {
+                LocalObject rootObject = getRootObject(batch);
+                RelationEditor relationEditor = new RelationEditor(rootObject);
+                LinkedHashSet<String> members = new LinkedHashSet<String>(relationEditor.getMembers());
+                members.addAll(journalMembers);
+                relationEditor.setMembers(new ArrayList<String>(members));
+                relationEditor.write(relationEditor.getLastModified(), null);
+                rootObject.flush();
+            }
+            journal.delete();
+        } catch (IOException ex) {
+            throw new DigitalObjectException(ROOT_ITEM_PID, batch.getId(),
+                    RelationEditor.DATASTREAM_ID, null, ex);
+        }
+    }
+
+    private BatchMemberJournal getMemberJournal(Batch batch) throws IOException {
+        BatchMemberJournal journal = memberJournals.get(batch.getId());
+        if (journal == null) {
+            journal = new BatchMemberJournal(getMemberJournalFile(batch));
+            BatchMemberJournal old = memberJournals.putIfAbsent(batch.getId(), journal);
+            journal = old == null ? journal : old;
+        }
+        return journal;
+    }
+
+    private File getMemberJournalFile(Batch batch) {
+        File folder = resolveBatchFile(batch.getFolder());
+        return new File(ImportProcess.getTargetFolder(folder), ROOT_MEMBERS_FILENAME);
+    }
+
     /**
      * Clears all batch items and RELS-EXTs
      *
@@ -537,6 +687,8 @@ public class ImportBatchManager {
         }
         batch.setState(State.LOADING);
         batch.setLog(null);
+        // the journal file is removed with the target folder
+        memberJournals.remove(batch.getId());
         BatchDao dao = daos.createBatch();
         BatchItemDao itemDao = daos.createBatchItem();
         Transaction tx = daos.createTransaction();
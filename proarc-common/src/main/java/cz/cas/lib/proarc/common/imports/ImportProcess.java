@@ -20,7 +20,7 @@ import cz.cas.lib.proarc.common.config.AppConfiguration;
 import cz.cas.lib.proarc.common.config.ConfigurationProfile;
 import cz.cas.lib.proarc.common.config.Profiles;
 import cz.cas.lib.proarc.common.dao.Batch;
-import cz.cas.lib.proarc.common.export.mets.JhoveContext;
+import cz.cas.lib.proarc.common.export.mets.JhovePool;
 import cz.cas.lib.proarc.common.user.UserManager;
 import cz.cas.lib.proarc.common.user.UserProfile;
 import cz.cas.lib.proarc.common.user.UserUtil;
@@ -208,7 +208,14 @@ public final class ImportProcess implements Runnable {
             }
             File targetFolder = createTargetFolder(importFolder);
             importConfig.setTargetFolder(targetFolder);
-            importConfig.getImporter().start(importConfig);
+            batchManager.openItemWriter(batch);
+            try {
+                importConfig.getImporter().start(importConfig);
+            } finally {
+                // items must be stored before the batch is marked as loaded
+                batchManager.closeItemWriter(batch);
+            }
+            batchManager.commitChildRelations(batch);
             if (batch.getState() == Batch.State.LOADING) {
                 batch.setState(Batch.State.LOADED);
             }
@@ -218,10 +225,22 @@ public final class ImportProcess implements Runnable {
             // rollback files on batch resume
             return null;
         } catch (Throwable t) {
+            commitChildRelations(batch);
             return logBatchFailure(batch, t);
         }
     }
 
+    /**
+     * Keeps objects loaded by the failed import as members of the batch root.
+     */
+    private void commitChildRelations(Batch batch) {
+        try {
+            batchManager.commitChildRelations(batch);
+        } catch (Throwable t) {
+            LOG.log(Level.SEVERE, batch.toString(), t);
+        }
+    }
+
     private void removeCaches(File importFoder) {
         deleteFolder(getTargetFolder(importFoder));
     }
@@ -315,8 +334,11 @@ public final class ImportProcess implements Runnable {
         private final UserProfile user;
         private Batch batch;
         private final ImportProfile profile;
-        private JhoveContext jhoveContext;
+        private JhovePool jhovePool;
         private ImportHandler importer;
+        /** Orders file sets consumed in parallel; {@code null} in sequential import. */
+        private ImportSequencer sequencer;
+        private int fileSetIndex;
 
         ImportOptions(File importFolder, String device,
                 boolean generateIndices, UserProfile username,
@@ -388,12 +410,44 @@ public final class ImportProcess implements Runnable {
             return profile;
         }
 
-        public JhoveContext getJhoveContext() {
-            return jhoveContext;
+        public JhovePool getJhovePool() {
+            return jhovePool;
         }
 
-        public void setJhoveContext(JhoveContext jhoveContext) {
-            this.jhoveContext = jhoveContext;
+        public void setJhovePool(JhovePool jhovePool) {
+            this.jhovePool = jhovePool;
+        }
+
+        ImportSequencer getSequencer() {
+            return sequencer;
+        }
+
+        /**
+         * Gets the index of the consumed file set in case of the parallel import.
+         */
+        int getFileSetIndex() {
+            return fileSetIndex;
+        }
+
+        /**
+         * Creates options to consume a single file set in parallel with others.
+         * The copy shares the batch and the configuration but it has own
+         * file counter.
+         *
+         * @param sequencer orders consumed file sets
+         * @param fileSetIndex index of the file set in the import
+         * @return the options
+         */
+        ImportOptions fork(ImportSequencer sequencer, int fileSetIndex) {
+            ImportOptions options = new ImportOptions(importFolder, device, generateIndices, user, profile);
+            options.targetFolder = targetFolder;
+            options.consumedFileCounter = consumedFileCounter;
+            options.batch = batch;
+            options.importer = importer;
+            options.jhovePool = jhovePool;
+            options.sequencer = sequencer;
+            options.fileSetIndex = fileSetIndex;
+            return options;
         }
 
         public static ImportOptions fromBatch(Batch batch, File importFolder,
@@ -45,6 +45,7 @@ public final class ImportProfile {
     public static final String NDK_USER_SUFFIX = "import.ndk_user.file.suffix";
     public static final String PLAIN_OCR_CHARSET = "import.text_ocr.file.charset";
     public static final String PLAIN_OCR_SUFFIX = "import.text_ocr.file.suffix";
+    public static final String JAVA_SUBSAMPLING = "import.image.java.subsampling";
     public static final String PREVIEW_JAVA_SCALING = "import.image.preview.java.scalingMethod";
     public static final String PREVIEW_MAX_HEIGHT = "import.image.preview.maxHeight";
     public static final String PREVIEW_MAX_WIDTH = "import.image.preview.maxWidth";
@@ -54,10 +55,12 @@ public final class ImportProfile {
     public static final String THUMBNAIL_MAX_HEIGHT = "import.image.thumbnail.maxHeight";
     public static final String THUMBNAIL_MAX_WIDTH = "import.image.thumbnail.maxWidth";
     public static final String THUMBNAIL_PROCESSOR = "import.thumbnail.processor";
+    public static final String THREADS = "import.threads";
     public static final String CONVERTOR_JPG_SMALL_PROCESSOR = "import.jpg_small_convertor.processor";
     public static final String CONVERTOR_JPG_LARGE_PROCESSOR = "import.jpg_large_convertor.processor";
     public static final String CONVERTOR_JP2_PROCESSOR = "import.jp2_convertor.processor";
     public static final String CONVERTOR_TIFF_JPG_PROCESSOR = "import.tiff_to_jpg_convertor.processor";
+    public static final String CONVERTOR_TIFF_JPG_CASCADE = "import.tiff_to_jpg_convertor.cascade";
 
 
     private final Configuration config;
@@ -148,6 +151,14 @@ public final class ImportProfile {
         return !config.getString(CONVERTOR_TIFF_JPG_PROCESSOR, "-").equals("-");
     }
 
+    /**
+     * Whether to derive PREVIEW from FULL and THUMBNAIL from PREVIEW
+     * with the TIFF to JPEG convertor. The TIFF is then decoded just once.
+     */
+    public boolean isTiffToJpgCascade() {
+        return config.getBoolean(CONVERTOR_TIFF_JPG_CASCADE, false);
+    }
+
     public Integer getPreviewMaxHeight() {
         return getPositiveInteger(PREVIEW_MAX_HEIGHT);
     }
@@ -156,6 +167,15 @@ public final class ImportProfile {
         return getPositiveInteger(PREVIEW_MAX_WIDTH);
     }
 
+    /**
+     * Whether to write the full image in bands of rows and decode previews
+     * and thumbnails with the source subsampling instead of decoding
+     * the full raster of the scan.
+     */
+    public boolean isJavaSubsampling() {
+        return config.getBoolean(JAVA_SUBSAMPLING, false);
+    }
+
     public ScalingMethod getPreviewScaling() {
         return getJavaScaling(PREVIEW_JAVA_SCALING);
     }
@@ -186,6 +206,15 @@ public final class ImportProfile {
         return getJavaScaling(THUMBNAIL_JAVA_SCALING);
     }
 
+    /**
+     * Gets the number of threads consuming file sets of a single batch.
+     * @return the positive number; 1 stands for the sequential import
+     */
+    public int getThreadCount() {
+        Integer val = getPositiveInteger(THREADS);
+        return val == null ? 1 : val;
+    }
+
     public void checkPreviewScaleParams() throws AppConfigurationException {
         Integer maxHeight = getPreviewMaxHeight();
         Integer maxWidth = getPreviewMaxWidth();
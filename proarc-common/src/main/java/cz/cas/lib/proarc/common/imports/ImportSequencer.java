@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import java.util.BitSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Orders file sets consumed in parallel. The batch item registration and
+ * the batch root membership of each file set are entered in the order
+ * of file sets to get the same batch as the sequential import.
+ * <p>A file set that does not pass a stage must be {@link #finish finished}
+ * to let following file sets pass. In case of a failure {@link #cancel(int) cancel}
+ * the sequencer first so that following file sets cannot pass. Preceding
+ * file sets still pass to get the failure of the first failed file set.
+ *
+ * @author Jan Pokorsky
+ */
+final class ImportSequencer {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition turn = lock.newCondition();
+    /** Indices of file sets that passed the registration. */
+    private final BitSet registered = new BitSet();
+    /** Indices of file sets that passed the batch root membership. */
+    private final BitSet committed = new BitSet();
+    private int consumedFileCounter;
+    /** File sets with a greater index are cancelled. */
+    private int cancelledIndex = Integer.MAX_VALUE;
+
+    /**
+     * Waits until all preceding file sets are registered.
+     * @param index file set index
+     * @return the number of consumed files preceding the file set
+     * @throws InterruptedException interrupted
+     * @throws CancellationException the import was cancelled
+     */
+    public int awaitRegistration(int index) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            await(registered, index);
+            return consumedFileCounter;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the file set as registered and consumed.
+     * @param index file set index
+     */
+    public void registered(int index) {
+        lock.lock();
+        try {
+            if (!registered.get(index)) {
+                registered.set(index);
+                consumedFileCounter++;
+                turn.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all preceding file sets are members of the batch root.
+     * @param index file set index
+     * @throws InterruptedException interrupted
+     * @throws CancellationException the import was cancelled
+     */
+    public void awaitCommit(int index) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            await(committed, index);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the file set as the member of the batch root.
+     * @param index file set index
+     */
+    public void committed(int index) {
+        lock.lock();
+        try {
+            committed.set(index);
+            turn.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Passes all stages of the file set that were not entered.
+     * @param index file set index
+     */
+    public void finish(int index) {
+        lock.lock();
+        try {
+            registered.set(index);
+            committed.set(index);
+            turn.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops file sets following the failed file set.
+     * @param index index of the failed file set
+     */
+    public void cancel(int index) {
+        lock.lock();
+        try {
+            cancelledIndex = Math.min(cancelledIndex, index);
+            turn.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops all file sets waiting for their turn.
+     */
+    public void cancel() {
+        cancel(-1);
+    }
+
+    /**
+     * Gets the number of file sets consumed so far.
+     */
+    public int getConsumedFileCounter() {
+        lock.lock();
+        try {
+            return consumedFileCounter;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void await(BitSet passed, int index) throws InterruptedException {
+        while (passed.nextClearBit(0) < index) {
+            if (index > cancelledIndex) {
+                throw new CancellationException("Import cancelled at file set #" + index);
+            }
+            turn.await();
+        }
+        if (index > cancelledIndex) {
+            throw new CancellationException("Import cancelled at file set #" + index);
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Reads images with the source subsampling. The reader decodes only every
+ * n-th pixel of every n-th row so that the image in memory is not much larger
+ * than the requested bounds regardless of the size of the scan.
+ * <p>The subsampled image stays twice as large as the image scaled to the bounds
+ * to leave the final scaling on a proper scaling method.
+ *
+ * @author Jan Pokorsky
+ */
+final class SubsampledImageReader {
+
+    private static final Logger LOG = Logger.getLogger(SubsampledImageReader.class.getName());
+
+    /**
+     * Reads the subsampled image.
+     * @param file image file
+     * @param maxWidth optional bound
+     * @param maxHeight optional bound
+     * @return the image
+     * @throws IOException read failure or unsupported image format
+     */
+    public static BufferedImage read(File file, Integer maxWidth, Integer maxHeight) throws IOException {
+        long start = System.nanoTime();
+        ImageInputStream iis = ImageIO.createImageInputStream(file);
+        if (iis == null) {
+            throw new IOException("Cannot read " + file);
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                throw new IOException("No image reader for " + file);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int subsampling = getSubsampling(width, height, maxWidth, maxHeight);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage image = reader.read(0, param);
+                LOG.fine(String.format("read [%s, %s] subsampled by %s to [%s, %s] [w, h], time: %s ms",
+                        width, height, subsampling, image.getWidth(), image.getHeight(),
+                        (System.nanoTime() - start) / 1000000));
+                return image;
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            iis.close();
+        }
+    }
+
+    /**
+     * Computes the subsampling period of both axes.
+     * @return the period; 1 means no subsampling
+     */
+    static int getSubsampling(int width, int height, Integer maxWidth, Integer maxHeight) {
+        // the tighter bound determines the scale
+        int period = 1;
+        if (maxWidth != null) {
+            period = Math.max(period, width / (2 * maxWidth));
+        }
+        if (maxHeight != null) {
+            period = Math.max(period, height / (2 * maxHeight));
+        }
+        return period;
+    }
+
+}
@@ -18,7 +18,9 @@ package cz.cas.lib.proarc.common.imports;
 
 import cz.cas.lib.proarc.common.config.AppConfigurationException;
 import cz.cas.lib.proarc.common.dao.BatchItem.ObjectState;
-import cz.cas.lib.proarc.common.export.mets.JhoveContext;
+import cz.cas.lib.proarc.common.export.mets.JHoveOutput;
+import cz.cas.lib.proarc.common.export.mets.JhovePool;
+import cz.cas.lib.proarc.common.export.mets.MetsExportException;
 import cz.cas.lib.proarc.common.fedora.BinaryEditor;
 import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
 import cz.cas.lib.proarc.common.fedora.FedoraObject;
@@ -49,6 +51,9 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.stream.FileImageOutputStream;
@@ -94,7 +99,13 @@ public class TiffImporter implements ImageImporter {
 
         // creates FOXML and metadata
         LocalObject localObj = createObject(originalFilename, ctx);
-        BatchItemObject batchLocalObject = ibm.addLocalObject(ctx.getBatch(), localObj);
+        BatchItemObject batchLocalObject;
+        try {
+            batchLocalObject = addLocalObject(localObj, ctx);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw cancelled(fileSet, ex);
+        }
         try {
             if (!InputUtils.isTiff(f)) {
                 throw new IllegalStateException("Not a TIFF content: " + f);
@@ -102,15 +113,41 @@ public class TiffImporter implements ImageImporter {
             DigitalObjectHandler dobjHandler = DigitalObjectManager.getDefault().createHandler(localObj);
             createRelsExt(dobjHandler, f, ctx);
             createMetadata(dobjHandler, ctx);
-            createImages(ctx.getTargetFolder(), f, originalFilename, localObj, config);
-            importArchivalCopy(fileSet, f, localObj, ctx);
-            importUserCopy(fileSet, f, localObj, ctx);
-            importOcr(fileSet, localObj, ctx);
-            createTechnicalMetadata(localObj, ctx);
+            // JHOVE and JP2 encoders run in background while JPEGs are created
+            JhovePool jhovePool = getJhovePool(ctx);
+            Future<JHoveOutput> rawMix = jhovePool.getMixAsync(f);
+            Future<JHoveOutput> archivalMix = null;
+            Jp2Copy archivalCopy = startJp2Copy(fileSet, f, ctx.getTargetFolder(),
+                    BinaryEditor.NDK_ARCHIVAL_ID, config.getNdkArchivalFileSuffix(), config.getNdkArchivalProcessor());
+            Jp2Copy userCopy = startJp2Copy(fileSet, f, ctx.getTargetFolder(),
+                    BinaryEditor.NDK_USER_ID, config.getNdkUserFileSuffix(), config.getNdkUserProcessor());
+            try {
+                createImages(ctx.getTargetFolder(), f, originalFilename, localObj, config);
+                FileEntry archivalEntry = archivalCopy.get();
+                if (archivalEntry != null) {
+                    archivalMix = jhovePool.getMixAsync(archivalEntry.getFile());
+                }
+                importArchivalCopy(fileSet, f, localObj, ctx, archivalEntry);
+                importUserCopy(fileSet, f, localObj, ctx, userCopy.get());
+                importOcr(fileSet, localObj, ctx);
+                createTechnicalMetadata(localObj, rawMix, archivalMix);
+            } finally {
+                archivalCopy.cancel();
+                userCopy.cancel();
+                rawMix.cancel(true);
+                if (archivalMix != null) {
+                    archivalMix.cancel(true);
+                }
+            }
             // writes FOXML
             dobjHandler.commit();
-            ibm.addChildRelation(ctx.getBatch(), null, localObj.getPid());
+            addChildRelation(localObj, ctx);
             batchLocalObject.setState(ObjectState.LOADED);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw cancelled(fileSet, batchLocalObject, ex);
+        } catch (CancellationException ex) {
+            throw cancelled(fileSet, batchLocalObject, ex);
         } catch (Throwable ex) {
             LOG.log(Level.SEVERE, f.toString(), ex);
             batchLocalObject.setState(ObjectState.LOADING_FAILED);
@@ -121,6 +158,52 @@ public class TiffImporter implements ImageImporter {
         return batchLocalObject;
     }
 
+    private static CancellationException cancelled(FileSet fileSet, Throwable cause) {
+        CancellationException ex = new CancellationException(fileSet.getName());
+        ex.initCause(cause);
+        return ex;
+    }
+
+    /**
+     * Excludes the registered object from the batch as the file set
+     * was cancelled.
+     */
+    private CancellationException cancelled(FileSet fileSet, BatchItemObject batchLocalObject, Throwable cause) {
+        batchLocalObject.setState(ObjectState.EXCLUDED);
+        ibm.update(batchLocalObject);
+        return cancelled(fileSet, cause);
+    }
+
+    /**
+     * Registers the object in the batch. In case of the parallel import it waits
+     * for preceding file sets to keep the order of batch items and page indices.
+     */
+    private BatchItemObject addLocalObject(LocalObject localObj, ImportOptions ctx) throws InterruptedException {
+        ImportSequencer sequencer = ctx.getSequencer();
+        if (sequencer == null) {
+            return ibm.addLocalObject(ctx.getBatch(), localObj);
+        }
+        int index = ctx.getFileSetIndex();
+        ctx.setConsumedFileCounter(ctx.getConsumedFileCounter() + sequencer.awaitRegistration(index));
+        BatchItemObject batchLocalObject = ibm.addLocalObject(ctx.getBatch(), localObj);
+        sequencer.registered(index);
+        return batchLocalObject;
+    }
+
+    private void addChildRelation(LocalObject localObj, ImportOptions ctx)
+            throws DigitalObjectException, InterruptedException {
+
+        ImportSequencer sequencer = ctx.getSequencer();
+        if (sequencer == null) {
+            ibm.addChildRelation(ctx.getBatch(), null, localObj.getPid());
+            return ;
+        }
+        int index = ctx.getFileSetIndex();
+        sequencer.awaitCommit(index);
+        ibm.addChildRelation(ctx.getBatch(), null, localObj.getPid());
+        sequencer.committed(index);
+    }
+
     private LocalObject createObject(String originalFilename, ImportOptions ctx) {
         File tempBatchFolder = ctx.getTargetFolder();
         LocalStorage storage = new LocalStorage();
@@ -210,13 +293,11 @@ public class TiffImporter implements ImageImporter {
         return null;
     }
 
-    private void importArchivalCopy(FileSet fileSet, File tiff, FedoraObject fo, ImportOptions options) throws DigitalObjectException, IOException {
+    private void importArchivalCopy(FileSet fileSet, File tiff, FedoraObject fo, ImportOptions options,
+            FileEntry entry) throws DigitalObjectException, IOException {
+
         ImportProfile config = options.getConfig();
-        FileEntry entry = findSibling(fileSet, config.getNdkArchivalFileSuffix());
         String dsId = BinaryEditor.NDK_ARCHIVAL_ID;
-        if (entry == null) {
-            entry = processJp2Copy(fileSet, tiff, options.getTargetFolder(), dsId, config.getNdkArchivalProcessor());
-        }
         if (entry != null) {
             File entryFile = entry.getFile();
             // do not use entry.getMimeType. JDK 1.6 does not recognize JPEG2000
@@ -231,13 +312,11 @@ public class TiffImporter implements ImageImporter {
         }
     }
 
-    private void importUserCopy(FileSet fileSet, File tiff, FedoraObject fo, ImportOptions options) throws DigitalObjectException, IOException {
+    private void importUserCopy(FileSet fileSet, File tiff, FedoraObject fo, ImportOptions options,
+            FileEntry entry) throws DigitalObjectException, IOException {
+
         ImportProfile config = options.getConfig();
-        FileEntry entry = findSibling(fileSet, config.getNdkUserFileSuffix());
         String dsId = BinaryEditor.NDK_USER_ID;
-        if (entry == null) {
-            entry = processJp2Copy(fileSet, tiff, options.getTargetFolder(), dsId, config.getNdkUserProcessor());
-        }
         if (entry != null) {
             File entryFile = entry.getFile();
             // do not use entry.getMimeType. JDK 1.6 does not recognize JPEG2000
@@ -252,7 +331,17 @@ public class TiffImporter implements ImageImporter {
         }
     }
 
-    private FileEntry processJp2Copy(FileSet fileSet, File tiff, File tempBatchFolder, String dsId, Configuration processorConfig) throws IOException {
+    /**
+     * Finds the JP2 copy within the file set or starts its conversion from TIFF
+     * in background.
+     */
+    private Jp2Copy startJp2Copy(FileSet fileSet, File tiff, File tempBatchFolder, String dsId,
+            String fileSuffix, Configuration processorConfig) {
+
+        FileEntry entry = findSibling(fileSet, fileSuffix);
+        if (entry != null) {
+            return new Jp2Copy(entry);
+        }
         if (processorConfig != null && !processorConfig.isEmpty()) {
             File acFile = new File(tempBatchFolder, fileSet.getName() + '.' + dsId + ".jp2");
             String processorType = processorConfig.getString("type");
@@ -261,31 +350,84 @@ public class TiffImporter implements ImageImporter {
                 process = new KakaduCompress(processorConfig, tiff, acFile);
             }
             if (process != null) {
-                process.run();
-                if (!process.isOk()) {
-                    throw new IOException(acFile.toString() + "\n" + process.getFullOutput());
-                }
+                return new Jp2Copy(acFile, ExternalProcess.runAsync(process));
+            }
+            return new Jp2Copy(new FileEntry(acFile));
+        }
+        return new Jp2Copy(null);
+    }
+
+    /**
+     * The JP2 copy of the TIFF that can be still under conversion.
+     */
+    private static final class Jp2Copy {
+
+        private final FileEntry entry;
+        private final File file;
+        private final Future<ExternalProcess> process;
+
+        Jp2Copy(FileEntry entry) {
+            this.entry = entry;
+            this.file = null;
+            this.process = null;
+        }
+
+        Jp2Copy(File file, Future<ExternalProcess> process) {
+            this.entry = null;
+            this.file = file;
+            this.process = process;
+        }
+
+        /**
+         * Waits for the conversion.
+         * @return the copy or {@code null}
+         */
+        public FileEntry get() throws IOException, InterruptedException {
+            if (process == null) {
+                return entry;
+            }
+            ExternalProcess finished;
+            try {
+                finished = process.get();
+            } catch (ExecutionException ex) {
+                throw new IOException(file.toString(), ex.getCause());
+            }
+            if (!finished.isOk()) {
+                throw new IOException(file.toString() + "\n" + finished.getFullOutput());
+            }
+            return new FileEntry(file);
+        }
+
+        /**
+         * Stops the unfinished conversion.
+         */
+        public void cancel() {
+            if (process != null) {
+                process.cancel(true);
             }
-            return  new FileEntry(acFile);
         }
-        return null;
     }
 
     private void createImages(File tempBatchFolder, File original,
             String originalFilename, LocalObject foxml, ImportProfile config)
-            throws IOException, DigitalObjectException, AppConfigurationException {
+            throws IOException, DigitalObjectException, AppConfigurationException, InterruptedException {
         
         BinaryEditor.dissemination(foxml, BinaryEditor.RAW_ID, BinaryEditor.IMAGE_TIFF)
                 .write(original, 0, null);
 
         boolean runCustomConversion = config.isTiffToJpgDefined();
+        // derivatives of derivatives decode the TIFF just once
+        boolean cascade = runCustomConversion && config.isTiffToJpgCascade();
+        // previews decoded at reduced resolution do not hold the full raster
+        boolean subsampling = !runCustomConversion && config.isJavaSubsampling();
+        File derivativeSource = original;
 
         long start;
         long endRead = 0;
         BufferedImage tiff = null;
         File f;
 
-        if (!runCustomConversion) {
+        if (!runCustomConversion && !subsampling) {
             start = System.nanoTime();
             tiff = ImageSupport.readImage(original.toURI().toURL(), ImageMimeType.TIFF);
             endRead = System.nanoTime() - start;
@@ -294,77 +436,135 @@ public class TiffImporter implements ImageImporter {
         ImageMimeType imageType = ImageMimeType.JPEG;
         MediaType mediaType = MediaType.valueOf(imageType.getMimeType());
 
-        start = System.nanoTime();
-        String targetName = String.format("%s.full.%s", originalFilename, imageType.getDefaultFileExtension());
+        Integer previewMaxHeight = config.getPreviewMaxHeight();
+        Integer previewMaxWidth = config.getPreviewMaxWidth();
+        config.checkPreviewScaleParams();
+        String previewName = String.format("%s.preview.%s", originalFilename, imageType.getDefaultFileExtension());
+        Future<ExternalProcess> previewConversion = null;
+        Future<ExternalProcess> thumbConversion = null;
+        try {
+            if (runCustomConversion && !cascade) {
+                // independent conversions run at once
+                ExternalProcess previewProcess = new TiffToJpgConvert(config.getConvertorTiffToJpgProcessor(),
+                        original, new File(tempBatchFolder, previewName), previewMaxWidth, previewMaxHeight);
+                previewConversion = ExternalProcess.runAsync(previewProcess);
+                Integer thumbMaxHeight = config.getThumbnailMaxHeight();
+                Integer thumbMaxWidth = config.getThumbnailMaxWidth();
+                config.checkThumbnailScaleParams();
+                String thumbName = String.format("%s.thumb.%s", originalFilename, imageType.getDefaultFileExtension());
+                ExternalProcess thumbProcess = new TiffToJpgConvert(config.getConvertorTiffToJpgProcessor(),
+                        original, new File(tempBatchFolder, thumbName), thumbMaxWidth, thumbMaxHeight);
+                thumbConversion = ExternalProcess.runAsync(thumbProcess);
+            }
+
+            start = System.nanoTime();
+            String targetName = String.format("%s.full.%s", originalFilename, imageType.getDefaultFileExtension());
 
-        if (runCustomConversion) {
-            f  = new File(tempBatchFolder, targetName);
-            ExternalProcess p = new TiffToJpgConvert(config.getConvertorTiffToJpgProcessor(), original, f);
-            p.run();
+            if (runCustomConversion) {
+                f  = new File(tempBatchFolder, targetName);
+                ExternalProcess p = new TiffToJpgConvert(config.getConvertorTiffToJpgProcessor(), original, f);
+                p.run();
 
-            if (!p.isOk()) {
-                throw new IllegalStateException("Converting tiff to FULL jpg failed: " + p.getFullOutput());
+                if (!p.isOk()) {
+                    throw new IllegalStateException("Converting tiff to FULL jpg failed: " + p.getFullOutput());
+                }
+            } else if (subsampling) {
+                f = new File(tempBatchFolder, targetName);
+                BandedJpegWriter.write(original, f);
+            } else {
+                f = writeImage(tiff, tempBatchFolder, targetName, imageType);
             }
-        } else {
-            f = writeImage(tiff, tempBatchFolder, targetName, imageType);
-        }
 
-        if (!InputUtils.isJpeg(f)) {
-            throw new IllegalStateException("Not a JPEG content: " + f);
-        }
-        long endFull = System.nanoTime() - start;
-        BinaryEditor.dissemination(foxml, BinaryEditor.FULL_ID, mediaType).write(f, 0, null);
+            if (!InputUtils.isJpeg(f)) {
+                throw new IllegalStateException("Not a JPEG content: " + f);
+            }
+            long endFull = System.nanoTime() - start;
+            BinaryEditor.dissemination(foxml, BinaryEditor.FULL_ID, mediaType).write(f, 0, null);
+            if (cascade) {
+                derivativeSource = f;
+            }
+            BufferedImage thumbSource = tiff;
 
-        start = System.nanoTime();
-        Integer previewMaxHeight = config.getPreviewMaxHeight();
-        Integer previewMaxWidth = config.getPreviewMaxWidth();
-        config.checkPreviewScaleParams();
-        targetName = String.format("%s.preview.%s", originalFilename, imageType.getDefaultFileExtension());
+            start = System.nanoTime();
+            targetName = previewName;
 
-        if (runCustomConversion) {
-            f  = new File(tempBatchFolder, targetName);
-            ExternalProcess p = new TiffToJpgConvert(config.getConvertorTiffToJpgProcessor(), original, f, previewMaxWidth, previewMaxHeight);
-            p.run();
+            if (runCustomConversion) {
+                f  = new File(tempBatchFolder, targetName);
+                ExternalProcess p = previewConversion != null
+                        ? getConversion(previewConversion)
+                        : runConversion(new TiffToJpgConvert(config.getConvertorTiffToJpgProcessor(), derivativeSource, f, previewMaxWidth, previewMaxHeight));
 
-            if (!p.isOk()) {
-                throw new IllegalStateException("Converting tiff to PREVIEW jpg failed: " + p.getFullOutput());
+                if (!p.isOk()) {
+                    throw new IllegalStateException("Converting tiff to PREVIEW jpg failed: " + p.getFullOutput());
+                }
+            } else if (subsampling) {
+                BufferedImage preview = scale(
+                        SubsampledImageReader.read(original, previewMaxWidth, previewMaxHeight),
+                        config.getPreviewScaling(), previewMaxWidth, previewMaxHeight);
+                f = writeImage(preview, tempBatchFolder, targetName, imageType);
+                thumbSource = preview;
+            } else {
+                f = writeImage(
+                        scale(tiff, config.getPreviewScaling(), previewMaxWidth, previewMaxHeight),
+                        tempBatchFolder, targetName, imageType);
+            }
+            if (!InputUtils.isJpeg(f)) {
+                throw new IllegalStateException("Not a JPEG content: " + f);
             }
-        } else {
-            f = writeImage(
-                    scale(tiff, config.getPreviewScaling(), previewMaxWidth, previewMaxHeight),
-                    tempBatchFolder, targetName, imageType);
-        }
-        if (!InputUtils.isJpeg(f)) {
-            throw new IllegalStateException("Not a JPEG content: " + f);
-        }
 
-        long endPreview = System.nanoTime() - start;
-        BinaryEditor.dissemination(foxml, BinaryEditor.PREVIEW_ID, mediaType).write(f, 0, null);
+            long endPreview = System.nanoTime() - start;
+            BinaryEditor.dissemination(foxml, BinaryEditor.PREVIEW_ID, mediaType).write(f, 0, null);
+            if (cascade) {
+                derivativeSource = f;
+            }
 
-        start = System.nanoTime();
-        if (runCustomConversion) {
-            //check is done within createThumbnail() unlike full and preview variants, should be unified
-            targetName = String.format("%s.thumb.%s", originalFilename, imageType.getDefaultFileExtension());
-            Integer thumbMaxHeight = config.getThumbnailMaxHeight();
-            Integer thumbMaxWidth = config.getThumbnailMaxWidth();
-            config.checkThumbnailScaleParams();
+            start = System.nanoTime();
+            if (runCustomConversion) {
+                //check is done within createThumbnail() unlike full and preview variants, should be unified
+                targetName = String.format("%s.thumb.%s", originalFilename, imageType.getDefaultFileExtension());
+                Integer thumbMaxHeight = config.getThumbnailMaxHeight();
+                Integer thumbMaxWidth = config.getThumbnailMaxWidth();
+                config.checkThumbnailScaleParams();
+
+                f  = new File(tempBatchFolder, targetName);
+                ExternalProcess p = thumbConversion != null
+                        ? getConversion(thumbConversion)
+                        : runConversion(new TiffToJpgConvert(config.getConvertorTiffToJpgProcessor(), derivativeSource, f, thumbMaxWidth, thumbMaxHeight));
+
+                if (!p.isOk()) {
+                    throw new IllegalStateException("Converting tiff to THUMBNAIL jpg failed: " + p.getFullOutput());
+                }
+            } else {
+                f = createThumbnail(tempBatchFolder, originalFilename, original, thumbSource, config);
+            }
 
-            f  = new File(tempBatchFolder, targetName);
-            ExternalProcess p = new TiffToJpgConvert(config.getConvertorTiffToJpgProcessor(), original, f, thumbMaxWidth, thumbMaxHeight);
-            p.run();
+            long endThumb = System.nanoTime() - start;
+            BinaryEditor.dissemination(foxml, BinaryEditor.THUMB_ID, mediaType).write(f, 0, null);
 
-            if (!p.isOk()) {
-                throw new IllegalStateException("Converting tiff to THUMBNAIL jpg failed: " + p.getFullOutput());
+            LOG.fine(String.format("file: %s, read: %s, full: %s, preview: %s, thumb: %s, cascade: %s, subsampling: %s",
+                    originalFilename, endRead / 1000000, endFull / 1000000, endPreview / 1000000, endThumb / 1000000,
+                    cascade, subsampling));
+        } finally {
+            if (previewConversion != null) {
+                previewConversion.cancel(true);
+            }
+            if (thumbConversion != null) {
+                thumbConversion.cancel(true);
             }
-        } else {
-            f = createThumbnail(tempBatchFolder, originalFilename, original, tiff, config);
         }
+    }
 
-        long endThumb = System.nanoTime() - start;
-        BinaryEditor.dissemination(foxml, BinaryEditor.THUMB_ID, mediaType).write(f, 0, null);
+    private static ExternalProcess runConversion(ExternalProcess p) {
+        p.run();
+        return p;
+    }
 
-        LOG.fine(String.format("file: %s, read: %s, full: %s, preview: %s, thumb: %s",
-                originalFilename, endRead / 1000000, endFull / 1000000, endPreview / 1000000, endThumb / 1000000));
+    private static ExternalProcess getConversion(Future<ExternalProcess> conversion) throws InterruptedException {
+        try {
+            return conversion.get();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
     }
 
     private File createThumbnail(File tempBatchFolder, String originalFilename, File original, BufferedImage tiff, ImportProfile config)
@@ -438,19 +638,27 @@ public class TiffImporter implements ImageImporter {
         return scaled;
     }
 
-    private void createTechnicalMetadata(LocalObject localObj, ImportOptions ctx)
-            throws DigitalObjectException {
+    private static JhovePool getJhovePool(ImportOptions ctx) throws MetsExportException {
+        JhovePool jhovePool = ctx.getJhovePool();
+        return jhovePool != null ? jhovePool : JhovePool.getDefault();
+    }
+
+    /**
+     * Writes MIX generated in background for the RAW and NDK archival content.
+     */
+    private void createTechnicalMetadata(LocalObject localObj,
+            Future<JHoveOutput> rawMix, Future<JHoveOutput> archivalMix)
+            throws DigitalObjectException, InterruptedException, ExecutionException {
 
-        JhoveContext jhoveCtx = ctx.getJhoveContext();
         File file = BinaryEditor.dissemination(localObj, BinaryEditor.RAW_ID, BinaryEditor.IMAGE_TIFF).read();
         MixEditor mixEditor = MixEditor.raw(localObj);
-        mixEditor.write(file, jhoveCtx, mixEditor.getLastModified(), null);
+        mixEditor.write(file, rawMix.get(), mixEditor.getLastModified(), null);
 
         // NDK version
         file = BinaryEditor.dissemination(localObj, BinaryEditor.NDK_ARCHIVAL_ID, BinaryEditor.IMAGE_JP2).read();
-        if (file != null) {
+        if (file != null && archivalMix != null) {
             mixEditor = MixEditor.ndkArchival(localObj);
-            mixEditor.write(file, jhoveCtx, mixEditor.getLastModified(), null);
+            mixEditor.write(file, archivalMix.get(), mixEditor.getLastModified(), null);
         }
     }
 }
@@ -21,6 +21,7 @@ import com.yourmediashelf.fedora.generated.management.DatastreamProfile;
 import cz.cas.lib.proarc.common.fedora.BinaryEditor;
 import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
 import cz.cas.lib.proarc.common.fedora.DigitalObjectNotFoundException;
+import cz.cas.lib.proarc.common.fedora.DisseminationCache;
 import cz.cas.lib.proarc.common.fedora.FedoraObject;
 import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
 import cz.cas.lib.proarc.common.fedora.LocalStorage.LocalObject;
@@ -28,6 +29,7 @@ import cz.cas.lib.proarc.common.fedora.RemoteStorage;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage.RemoteObject;
 import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -35,6 +37,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Request;
@@ -105,17 +108,53 @@ public class DefaultDisseminationHandler implements DisseminationHandler {
                     .build();
         } else if (fobject instanceof RemoteObject) {
             RemoteObject remote = (RemoteObject) fobject;
-            return getResponse(remote, dsId);
+            return getResponse(remote, dsId, httpRequest);
         }
         throw new IllegalStateException("unsupported: " + fobject.getClass());
     }
 
     public static Response getResponse(RemoteObject remote, String dsId) throws DigitalObjectException {
-        // This should limit fedora calls to 1.
-        // XXX It works around FedoraClient.FedoraClient.getDatastreamDissemination that hides HTTP headers of the response.
-        // Unfortunattely fedora does not return modification date as HTTP header
-        // In case of large images it could be faster to ask datastream for modification date first.
+        return getResponse(remote, dsId, null);
+    }
+
+    /**
+     * Gets the remote content. Thumbnails and previews are served from
+     * {@link DisseminationCache} if possible.
+     * @param httpRequest request to evaluate preconditions or {@code null}
+     */
+    public static Response getResponse(RemoteObject remote, String dsId, Request httpRequest) throws DigitalObjectException {
+        DisseminationCache cache = DisseminationCache.isCacheable(dsId) ? DisseminationCache.getDefault() : null;
+        return getResponse(remote, dsId, httpRequest, cache);
+    }
+
+    private static Response getResponse(RemoteObject remote, String dsId, Request httpRequest,
+            DisseminationCache cache) throws DigitalObjectException {
+
         String pid = remote.getPid();
+        if (cache != null) {
+            DisseminationCache.Entry entry = cache.get(pid, dsId);
+            if (entry != null) {
+                Response response = getCachedResponse(cache, entry, httpRequest);
+                if (response != null) {
+                    return response;
+                }
+            }
+        }
+
+        // Fedora does not return the modification date as HTTP header.
+        // Ask the datastream first not to transfer the unmodified content.
+        List<DatastreamProfile> profiles = remote.getStreamProfile(dsId);
+        if (profiles.isEmpty()) {
+            throw new DigitalObjectNotFoundException(pid, null, dsId, null, null);
+        }
+        Date lastModification = profiles.get(0).getDsCreateDate().toGregorianCalendar().getTime();
+        ResponseBuilder evaluatePreconditions = evaluatePreconditions(httpRequest, lastModification);
+        if (evaluatePreconditions != null) {
+            return evaluatePreconditions.build();
+        }
+
+        long modCount = cache == null ? 0 : cache.getModCount();
+        // XXX It works around FedoraClient.FedoraClient.getDatastreamDissemination that hides HTTP headers of the response.
         String path = String.format("objects/%s/datastreams/%s/content", pid, dsId);
         ClientResponse response = remote.getClient().resource().path(path).get(ClientResponse.class);
         if (Status.fromStatusCode(response.getStatus()) != Status.OK) {
@@ -124,11 +163,70 @@ public class DefaultDisseminationHandler implements DisseminationHandler {
         MultivaluedMap<String, String> headers = response.getHeaders();
         String filename = headers.getFirst("Content-Disposition");
         filename = filename != null ? filename : "inline; filename=" + pid + '-' + dsId;
-        return Response.ok(response.getEntity(InputStream.class), headers.getFirst("Content-Type"))
+        String mime = headers.getFirst("Content-Type");
+        InputStream content = response.getEntity(InputStream.class);
+        if (cache != null) {
+            try {
+                DisseminationCache.Entry entry = cache.put(pid, dsId, content, mime, filename,
+                        lastModification.getTime(), modCount);
+                if (entry != null) {
+                    Response cachedResponse = getCachedResponse(cache, entry, null);
+                    if (cachedResponse != null) {
+                        return cachedResponse;
+                    }
+                }
+            } catch (IOException ex) {
+                throw new DigitalObjectException(pid, null, dsId, null, ex);
+            } finally {
+                response.close();
+            }
+            // the content was modified meanwhile or it is too large
+            return getResponse(remote, dsId, httpRequest, null);
+        }
+        ResponseBuilder builder = Response.ok(content, mime)
                 .header("Content-Disposition", filename)
+                .lastModified(lastModification)
+                .tag(getEntityTag(lastModification.getTime()));
+        String length = headers.getFirst("Content-Length");
+        if (length != null) {
+            builder.header("Content-Length", length);
+        }
+        return builder.build();
+    }
+
+    private static Response getCachedResponse(DisseminationCache cache,
+            DisseminationCache.Entry entry, Request httpRequest) {
+
+        Date lastModification = new Date(entry.getLastModified());
+        ResponseBuilder evaluatePreconditions = evaluatePreconditions(httpRequest, lastModification);
+        if (evaluatePreconditions != null) {
+            return evaluatePreconditions.build();
+        }
+        InputStream content = cache.open(entry);
+        if (content == null) {
+            return null;
+        }
+        return Response.ok(content, entry.getMime())
+                .header("Content-Disposition", entry.getDisposition())
+                .header("Content-Length", entry.getSize())
+                .lastModified(lastModification)
+                .tag(getEntityTag(entry.getLastModified()))
                 .build();
     }
 
+    private static ResponseBuilder evaluatePreconditions(Request httpRequest, Date lastModification) {
+        return httpRequest == null
+                ? null
+                : httpRequest.evaluatePreconditions(lastModification, getEntityTag(lastModification.getTime()));
+    }
+
+    /**
+     * The data stream version is identified by its creation time.
+     */
+    private static EntityTag getEntityTag(long lastModified) {
+        return new EntityTag(Long.toHexString(lastModified));
+    }
+
     // XXX add impl of other data streams (PREVIEW, THUMB)
     @Override
     public void setDissemination(DisseminationInput input, String message) throws DigitalObjectException {
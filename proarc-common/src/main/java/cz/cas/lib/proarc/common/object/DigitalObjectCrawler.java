@@ -25,14 +25,20 @@ import cz.cas.lib.proarc.common.fedora.SearchView.Item;
 import cz.cas.lib.proarc.common.object.DigitalObjectElement.Factory;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * It helps to crawl hierarchies of digital objects and provides access to the index and the storage.
- * It caches visited objects.
+ * It caches visited objects. The cache can be shared by threads.
  *
  * @author Jan Pokorsky
  */
@@ -41,9 +47,9 @@ public class DigitalObjectCrawler {
     private final DigitalObjectManager dom;
     private final SearchView search;
     /** Maps PIDs to their parent elements. */
-    private final Map<String, DigitalObjectElement> parents;
+    private final ConcurrentMap<String, DigitalObjectElement> parents;
     /** Maps PIDs to elements. */
-    private final Map<String, DigitalObjectElement> cache;
+    private final ConcurrentMap<String, DigitalObjectElement> cache;
     private final DigitalObjectElement.Factory elmFactory;
 
     public DigitalObjectCrawler(DigitalObjectManager dom, SearchView search) {
@@ -53,8 +59,8 @@ public class DigitalObjectCrawler {
     public DigitalObjectCrawler(DigitalObjectManager dom, SearchView search, DigitalObjectElement.Factory elmFactory) {
         this.dom = dom;
         this.search = search;
-        this.parents = new HashMap<String, DigitalObjectElement>();
-        this.cache = new HashMap<String, DigitalObjectElement>();
+        this.parents = new ConcurrentHashMap<String, DigitalObjectElement>();
+        this.cache = new ConcurrentHashMap<String, DigitalObjectElement>();
         this.elmFactory = elmFactory != null ? elmFactory : new Factory();
     }
 
@@ -68,8 +74,7 @@ public class DigitalObjectCrawler {
         if (entry == null) {
             Item item = searchItem(pid);
             if (item != null) {
-                entry = createEntry(item);
-                cache.put(pid, entry);
+                entry = cacheEntry(item);
             } else {
                 throw new DigitalObjectNotFoundException(pid);
             }
@@ -88,6 +93,118 @@ public class DigitalObjectCrawler {
         return entry;
     }
 
+    /**
+     * Gets the cached entry of the item or creates a new one.
+     */
+    private DigitalObjectElement cacheEntry(Item item) throws DigitalObjectNotFoundException {
+        DigitalObjectElement entry = cache.get(item.getPid());
+        if (entry == null) {
+            entry = createEntry(item);
+            DigitalObjectElement cached = cache.putIfAbsent(item.getPid(), entry);
+            if (cached != null) {
+                entry = cached;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Gets entries of passed PIDs. Objects missing in the cache are searched at once.
+     * @param pids object IDs
+     * @return the map of PIDs to entries in the order of passed PIDs
+     * @throws DigitalObjectException failure or some object not found
+     */
+    public Map<String, DigitalObjectElement> getEntries(Collection<String> pids) throws DigitalObjectException {
+        findEntries(pids);
+        LinkedHashMap<String, DigitalObjectElement> entries = new LinkedHashMap<String, DigitalObjectElement>();
+        for (String pid : pids) {
+            DigitalObjectElement entry = cache.get(pid);
+            if (entry == null) {
+                throw new DigitalObjectNotFoundException(pid);
+            }
+            entries.put(pid, entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Searches and caches entries missing in the cache. Not found objects are ignored.
+     */
+    private void findEntries(Collection<String> pids) throws DigitalObjectException {
+        ArrayList<String> missing = new ArrayList<String>();
+        for (String pid : new LinkedHashSet<String>(pids)) {
+            if (!cache.containsKey(pid)) {
+                missing.add(pid);
+            }
+        }
+        for (Item item : searchItems(missing)) {
+            cacheEntry(item);
+        }
+    }
+
+    /**
+     * Gets parents of passed PIDs. Parents missing in the cache are searched
+     * with a few queries.
+     * @param pids child IDs
+     * @return the map of PIDs to their parents or {@link DigitalObjectElement#NULL} in case of root.
+     * @throws DigitalObjectException failure
+     */
+    public Map<String, DigitalObjectElement> getParents(Collection<String> pids) throws DigitalObjectException {
+        ArrayList<String> missing = new ArrayList<String>();
+        for (String pid : new LinkedHashSet<String>(pids)) {
+            if (!parents.containsKey(pid)) {
+                missing.add(pid);
+            }
+        }
+        if (!missing.isEmpty()) {
+            // the first found parent wins like in case of getParent
+            Map<String, String> child2parent = new HashMap<String, String>();
+            for (Item item : searchReferrers(missing)) {
+                if (!child2parent.containsKey(item.getPid())) {
+                    child2parent.put(item.getPid(), item.getParentPid());
+                }
+            }
+            findEntries(child2parent.values());
+            for (String pid : missing) {
+                String parentPid = child2parent.get(pid);
+                DigitalObjectElement parentEntry = parentPid == null ? null : cache.get(parentPid);
+                parents.putIfAbsent(pid, parentEntry == null ? DigitalObjectElement.NULL : parentEntry);
+            }
+        }
+        LinkedHashMap<String, DigitalObjectElement> result = new LinkedHashMap<String, DigitalObjectElement>();
+        for (String pid : pids) {
+            result.put(pid, parents.get(pid));
+        }
+        return result;
+    }
+
+    /**
+     * Gets paths of passed objects. Each level of the hierarchies is resolved
+     * for all objects at once.
+     * @param pids object IDs
+     * @return the map of PIDs to lists of parents ordered from the root.
+     *      Lists do not include the objects themselves.
+     * @throws DigitalObjectException failure
+     * @see #getReversePath
+     */
+    public Map<String, List<DigitalObjectElement>> getReversePaths(Collection<String> pids) throws DigitalObjectException {
+        Set<String> level = new LinkedHashSet<String>(pids);
+        while (!level.isEmpty()) {
+            Map<String, DigitalObjectElement> levelParents = getParents(level);
+            level = new LinkedHashSet<String>();
+            for (DigitalObjectElement parent : levelParents.values()) {
+                if (parent != DigitalObjectElement.NULL && !parents.containsKey(parent.getPid())) {
+                    level.add(parent.getPid());
+                }
+            }
+        }
+        LinkedHashMap<String, List<DigitalObjectElement>> paths = new LinkedHashMap<String, List<DigitalObjectElement>>();
+        for (String pid : pids) {
+            paths.put(pid, getReversePath(pid));
+        }
+        return paths;
+    }
+
     /**
      * Gets parent.
      * @param pid child ID
@@ -101,11 +218,7 @@ public class DigitalObjectCrawler {
             if (parentItem == null) {
                 parentEntry = DigitalObjectElement.NULL;
             } else {
-                parentEntry = cache.get(parentItem.getPid());
-                if (parentEntry == null) {
-                    parentEntry = createEntry(parentItem);
-                    cache.put(parentItem.getPid(), parentEntry);
-                }
+                parentEntry = cacheEntry(parentItem);
             }
             parents.put(pid, parentEntry);
         }
@@ -116,11 +229,7 @@ public class DigitalObjectCrawler {
         List<Item> children = searchChildren(pid);
         ArrayList<DigitalObjectElement> result = new ArrayList<DigitalObjectElement>();
         for (Item item : children) {
-            DigitalObjectElement childElement = cache.get(item.getPid());
-            if (childElement == null) {
-                childElement = createEntry(item);
-                cache.put(item.getPid(), childElement);
-            }
+            DigitalObjectElement childElement = cacheEntry(item);
             DigitalObjectElement parentElm = cache.get(pid);
             if (parentElm != null) {
                 parents.put(item.getPid(), parentElm);
@@ -177,6 +286,29 @@ public class DigitalObjectCrawler {
         }
     }
 
+    List<Item> searchItems(List<String> pids) throws DigitalObjectException {
+        if (pids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            return search.find(pids);
+        } catch (FedoraClientException ex) {
+            throw new DigitalObjectException(String.valueOf(pids), ex);
+        } catch (IOException ex) {
+            throw new DigitalObjectException(String.valueOf(pids), ex);
+        }
+    }
+
+    List<Item> searchReferrers(List<String> pids) throws DigitalObjectException {
+        try {
+            return search.findReferrers(pids);
+        } catch (FedoraClientException ex) {
+            throw new DigitalObjectException(String.valueOf(pids), ex);
+        } catch (IOException ex) {
+            throw new DigitalObjectException(String.valueOf(pids), ex);
+        }
+    }
+
     List<Item> searchChildren(String pid) throws DigitalObjectException {
         try {
             List<Item> children = search.findSortedChildren(pid);
@@ -56,6 +56,11 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -380,19 +385,147 @@ public class DigitalObjectManager {
             return Collections.singletonList(item);
         }
 
+        /**
+         * Creates all objects of the series locally, ingests them at once and
+         * updates the parent membership with a single write.
+         * <p>Ingested objects are connected to the parent even if some ingests
+         * fail. If the parent cannot be updated, the ingested objects are
+         * purged not to leave orphans; a transaction purges them on rollback.
+         */
         private List<Item> createBatch() throws DigitalObjectException {
-            ArrayList<Item> items = new ArrayList<>();
+            DigitalObjectHandler parentHandler = getParentHandler();
+            ArrayList<LocalObject> localObjects = new ArrayList<>();
             while (hasNext()) {
                 // adjust series params
                 next();
-                items.add(createDigitalObject());
+                localObjects.add(createLocalObject(parentHandler));
+            }
+
+            ArrayList<LocalObject> ingested = new ArrayList<>(localObjects.size());
+            DigitalObjectException failure = ingest(localObjects, ingested);
+            // connect ingested objects even if some failed not to leave orphans
+            if (parentHandler != null && !ingested.isEmpty()) {
+                try {
+                    addMembers(parentHandler, ingested);
+                    parentHandler.commit();
+                } catch (DigitalObjectException ex) {
+                    if (failure != null) {
+                        ex.addSuppressed(failure);
+                    }
+                    if (tx == null) {
+                        purge(ingested, ex);
+                    }
+                    throw ex;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+
+            ArrayList<Item> items = new ArrayList<>(ingested.size());
+            for (LocalObject localObject : ingested) {
+                items.add(createItem(localObject));
             }
             return items;
         }
 
+        /**
+         * Ingests objects concurrently.
+         * @param localObjects objects to ingest
+         * @param ingested the list of successfully ingested objects in the original order
+         * @return the first failure or {@code null}
+         */
+        private DigitalObjectException ingest(List<LocalObject> localObjects, List<LocalObject> ingested) {
+            int threadCount = appConfig == null ? 1 : appConfig.getFedoraIngestThreadCount();
+            ExecutorService executor = Executors.newFixedThreadPool(
+                    Math.max(1, Math.min(threadCount, localObjects.size())));
+            DigitalObjectException failure = null;
+            try {
+                ArrayList<Future<LocalObject>> results = new ArrayList<>(localObjects.size());
+                for (LocalObject localObject : localObjects) {
+                    results.add(executor.submit(() -> {
+                        ingest(localObject);
+                        return localObject;
+                    }));
+                }
+                for (int i = 0; i < results.size(); i++) {
+                    try {
+                        LocalObject localObject = results.get(i).get();
+                        ingested.add(localObject);
+                        if (tx != null) {
+                            tx.addPid(localObject.getPid());
+                        }
+                    } catch (ExecutionException ex) {
+                        if (failure == null) {
+                            failure = ex.getCause() instanceof DigitalObjectException
+                                    ? (DigitalObjectException) ex.getCause()
+                                    : new DigitalObjectException(localObjects.get(i).getPid(), ex.getCause());
+                        }
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                failure = new DigitalObjectException(parentPid, "Interrupted ingest of the series", ex);
+            } finally {
+                executor.shutdownNow();
+            }
+            return failure;
+        }
+
+        /**
+         * Purges ingested objects of the failed series.
+         * @param ingested objects to purge
+         * @param failure the failure to report purge failures
+         */
+        private void purge(List<LocalObject> ingested, DigitalObjectException failure) {
+            for (LocalObject localObject : ingested) {
+                try {
+                    purge(localObject);
+                } catch (DigitalObjectException ex) {
+                    LOG.log(Level.SEVERE, localObject.getPid(), ex);
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+
+        void ingest(LocalObject localObject) throws DigitalObjectException {
+            getRemotes().ingest(localObject, user.getUserName(), message);
+        }
+
+        void purge(LocalObject localObject) throws DigitalObjectException {
+            getRemotes().find(localObject.getPid()).purge(message);
+        }
+
+        private void addMembers(DigitalObjectHandler parentHandler, List<LocalObject> localObjects) throws DigitalObjectException {
+            RelationEditor parentRelsExt = parentHandler.relations();
+            List<String> members = parentRelsExt.getMembers();
+            for (LocalObject localObject : localObjects) {
+                members.add(localObject.getPid());
+            }
+            parentRelsExt.setMembers(members);
+            parentRelsExt.write(parentRelsExt.getLastModified(), message);
+        }
+
         public Item createDigitalObject() throws DigitalObjectException, DigitalObjectExistException {
             DigitalObjectHandler parentHandler = getParentHandler();
 
+            LocalObject localObject = createLocalObject(parentHandler);
+            if (parentHandler != null) {
+                addMembers(parentHandler, Collections.singletonList(localObject));
+            }
+
+            ingest(localObject);
+            if (parentHandler != null) {
+                parentHandler.commit();
+            }
+
+            if (tx != null) {
+                tx.addPid(localObject.getPid());
+            }
+            return createItem(localObject);
+        }
+
+        private LocalObject createLocalObject(DigitalObjectHandler parentHandler) throws DigitalObjectException {
             LocalObject localObject = new LocalStorage().create(pid);
             localObject.setOwner(user.getUserName());
             DigitalObjectHandler doHandler = DigitalObjectManager.getDefault().createHandler(localObject);
@@ -413,25 +546,11 @@ public class DigitalObjectManager {
             DescriptionMetadata<String> descMetadata = new DescriptionMetadata<>();
             descMetadata.setData(xml);
             doHandler.metadata().setMetadataAsXml(descMetadata, message);
-
-            if (parentHandler != null) {
-                RelationEditor parentRelsExt = parentHandler.relations();
-                List<String> members = parentRelsExt.getMembers();
-                members.add(localObject.getPid());
-                parentRelsExt.setMembers(members);
-                parentRelsExt.write(parentRelsExt.getLastModified(), message);
-            }
             doHandler.commit();
+            return localObject;
+        }
 
-            getRemotes().ingest(localObject, user.getUserName(), message);
-            if (parentHandler != null) {
-                parentHandler.commit();
-            }
-
-            if (tx != null) {
-                tx.addPid(localObject.getPid());
-            }
-
+        private Item createItem(LocalObject localObject) {
             Item item = new Item(localObject.getPid());
             item.setLabel(localObject.getLabel());
             item.setModel(modelId);
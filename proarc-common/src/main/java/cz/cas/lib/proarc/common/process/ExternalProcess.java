@@ -23,6 +23,11 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.configuration.Configuration;
@@ -64,6 +69,24 @@ public class ExternalProcess implements Runnable {
 
     public static final long DEFAULT_TIMEOUT = 2 * 60 * 1000;
     public static final int DEFAULT_RETRY_ATTEMPTS = 0;
+    public static final int DEFAULT_MAX_PROCESS_COUNT = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Limits the number of native processes running at once in the application.
+     */
+    private static volatile Semaphore processLimit = new Semaphore(DEFAULT_MAX_PROCESS_COUNT, true);
+    private static final ExecutorService BACKGROUND = Executors.newCachedThreadPool(new ThreadFactory() {
+
+        private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = factory.newThread(r);
+            thread.setName(ExternalProcess.class.getSimpleName() + '-' + thread.getName());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 
     private final Configuration conf;
     private AsyncProcess asyncProcess;
@@ -73,6 +96,27 @@ public class ExternalProcess implements Runnable {
         this.conf = conf;
     }
 
+    /**
+     * Sets the maximum number of native processes running at once.
+     * Processes above the limit wait for a running one to finish.
+     * @param count positive number
+     */
+    public static void setMaxProcessCount(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count: " + count);
+        }
+        processLimit = new Semaphore(count, true);
+    }
+
+    /**
+     * Runs the process in a background thread.
+     * @param process process to run
+     * @return the future of the finished process. It does not check {@link #isOk}.
+     */
+    public static <T extends ExternalProcess> Future<T> runAsync(T process) {
+        return BACKGROUND.submit(process, process);
+    }
+
     @Override
     public void run() {
         Map<String, String> env = buildEnv(conf);
@@ -121,12 +165,21 @@ public class ExternalProcess implements Runnable {
         for (String arg : cmdLine) {
             debug.append(arg).append(" ");
         }
-        LOG.fine("run: " + debug);
-        asyncProcess = new AsyncProcess(cmdLine, env);
-        asyncProcess.start();
-        long timeout = getTimeout();
-        asyncProcess.join(timeout);
-        asyncProcess.kill();
+        Semaphore limit = processLimit;
+        limit.acquire();
+        try {
+            LOG.fine("run: " + debug);
+            asyncProcess = new AsyncProcess(cmdLine, env);
+            asyncProcess.start();
+            long timeout = getTimeout();
+            try {
+                asyncProcess.join(timeout);
+            } finally {
+                asyncProcess.kill();
+            }
+        } finally {
+            limit.release();
+        }
         LOG.fine(getFullOutput());
         return asyncProcess.getExitCode();
     }
@@ -25,7 +25,9 @@ import java.util.List;
 import org.apache.commons.configuration.Configuration;
 
 /**
- * Converts input tiff image into jpeg image using external GraphicsMagick application
+ * Converts input tiff image into jpeg image using external GraphicsMagick application.
+ * The input can be also a jpeg image to derive smaller images from already
+ * converted ones.
  *
  * @author Jakub Kremlacek
  */
@@ -66,7 +68,7 @@ public class TiffToJpgConvert extends ExternalProcess {
      * Converts supplied tiff image into jpeg with size constraints
      *
      * @param conf processor configuration
-     * @param input tiff image file
+     * @param input tiff or jpeg image file
      * @param output to be generated jpeg file (!must not exist prior to running process)
      * @param maxWidth jpeg maximum width
      * @param maxHeight jpeg maximum height
@@ -113,9 +115,9 @@ public class TiffToJpgConvert extends ExternalProcess {
         if (maxHeight != null || maxWidth != null) {
             cmdLine.add("-resize");
             cmdLine.add(
-                    maxWidth != null ? maxWidth.toString() : IMAGE_MAX_SIZE +
-                            "x" +
-                    maxHeight != null ? maxHeight.toString() : IMAGE_MAX_SIZE
+                    (maxWidth != null ? maxWidth.toString() : IMAGE_MAX_SIZE)
+                    + "x"
+                    + (maxHeight != null ? maxHeight.toString() : IMAGE_MAX_SIZE)
             );
         }
 
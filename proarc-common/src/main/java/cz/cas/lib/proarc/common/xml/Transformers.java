@@ -20,9 +20,11 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -34,8 +36,16 @@ import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.URIResolver;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
 
 /**
  * Transforms MARCXML and MODS documents to various {@link Format formats}.
@@ -49,6 +59,14 @@ public final class Transformers {
     private static final Map<Format, String> FORMAT2XSL;
     private static final Map<Format, Templates> FORMAT2TEMPLATES;
     private static final Logger LOG = Logger.getLogger(Transformers.class.getName());
+    /** The factory is not thread safe. */
+    private static final ThreadLocal<SAXTransformerFactory> SAX_FACTORY = new ThreadLocal<SAXTransformerFactory>() {
+
+        @Override
+        protected SAXTransformerFactory initialValue() {
+            return (SAXTransformerFactory) TransformerFactory.newInstance();
+        }
+    };
 
 //    private static final String DC_RDF_XSL_PATH = "http://www.loc.gov/standards/marcxml/xslt/MARC21slim2RDFDC.xsl";
     private static final String MODS_3_XSL_PATH = "http://www.loc.gov/standards/mods/v3/MARC21slim2MODS3-4.xsl";
@@ -97,6 +115,61 @@ public final class Transformers {
         return buffer.toByteArray();
     }
 
+    /**
+     * Transforms the input with the chain of formats in a single pass.
+     * Stages exchange SAX events instead of serialized documents so that
+     * the input is parsed just once. The result of the chain is passed
+     * to branches at once.
+     *
+     * @param input the source document
+     * @param chain formats to apply in the order
+     * @param branches formats to apply to the result of the chain
+     * @return the serialized result of the chain followed by results of branches
+     */
+    public List<byte[]> pipe(Source input, List<Format> chain, Format... branches) throws TransformerException {
+        if (chain.isEmpty()) {
+            throw new IllegalArgumentException("Empty chain!");
+        }
+        SAXTransformerFactory factory = SAX_FACTORY.get();
+        ByteArrayOutputStream chainBuffer = new ByteArrayOutputStream();
+        List<ByteArrayOutputStream> buffers = new ArrayList<ByteArrayOutputStream>(branches.length + 1);
+        buffers.add(chainBuffer);
+        Result next;
+        if (branches.length == 0) {
+            next = new StreamResult(chainBuffer);
+        } else {
+            TransformerHandler[] handlers = new TransformerHandler[branches.length + 1];
+            // serializes the result of the chain as its last stylesheet would do
+            handlers[0] = factory.newTransformerHandler();
+            handlers[0].getTransformer().setOutputProperties(
+                    getTemplates(chain.get(chain.size() - 1)).getOutputProperties());
+            handlers[0].setResult(new StreamResult(chainBuffer));
+            for (int i = 0; i < branches.length; i++) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                buffers.add(buffer);
+                handlers[i + 1] = factory.newTransformerHandler(getTemplates(branches[i]));
+                handlers[i + 1].setResult(new StreamResult(buffer));
+            }
+            TeeHandler tee = new TeeHandler(handlers);
+            SAXResult teeResult = new SAXResult(tee);
+            teeResult.setLexicalHandler(tee);
+            next = teeResult;
+        }
+        for (int i = chain.size() - 1; i > 0; i--) {
+            TransformerHandler stage = factory.newTransformerHandler(getTemplates(chain.get(i)));
+            stage.setResult(next);
+            SAXResult stageResult = new SAXResult(stage);
+            stageResult.setLexicalHandler(stage);
+            next = stageResult;
+        }
+        createTransformer(chain.get(0)).transform(input, next);
+        List<byte[]> result = new ArrayList<byte[]>(buffers.size());
+        for (ByteArrayOutputStream buffer : buffers) {
+            result.add(buffer.toByteArray());
+        }
+        return result;
+    }
+
     public Source toSource(byte[] buffer) {
         return new StreamSource(new ByteArrayInputStream(buffer));
     }
@@ -147,11 +220,15 @@ public final class Transformers {
     }
 
     private static Transformer createTransformer(Format recordFormat) throws TransformerConfigurationException {
+        return getTemplates(recordFormat).newTransformer();
+    }
+
+    private static Templates getTemplates(Format recordFormat) throws TransformerConfigurationException {
         Templates templates = FORMAT2TEMPLATES.get(recordFormat);
         if (templates == null) {
             throw new TransformerConfigurationException("Cannot transform " + recordFormat);
         }
-        return templates.newTransformer();
+        return templates;
     }
 
     private static void initTemplates() {
@@ -204,6 +281,144 @@ public final class Transformers {
 
     }
 
+    /**
+     * Passes SAX events to all handlers.
+     */
+    private static final class TeeHandler implements ContentHandler, LexicalHandler {
+
+        private final TransformerHandler[] handlers;
+
+        TeeHandler(TransformerHandler[] handlers) {
+            this.handlers = handlers;
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            for (TransformerHandler handler : handlers) {
+                handler.setDocumentLocator(locator);
+            }
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.startDocument();
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.endDocument();
+            }
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.startPrefixMapping(prefix, uri);
+            }
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.endPrefixMapping(prefix);
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.startElement(uri, localName, qName, atts);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.endElement(uri, localName, qName);
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.characters(ch, start, length);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.ignorableWhitespace(ch, start, length);
+            }
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.processingInstruction(target, data);
+            }
+        }
+
+        @Override
+        public void skippedEntity(String name) throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.skippedEntity(name);
+            }
+        }
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId) throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.startDTD(name, publicId, systemId);
+            }
+        }
+
+        @Override
+        public void endDTD() throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.endDTD();
+            }
+        }
+
+        @Override
+        public void startEntity(String name) throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.startEntity(name);
+            }
+        }
+
+        @Override
+        public void endEntity(String name) throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.endEntity(name);
+            }
+        }
+
+        @Override
+        public void startCDATA() throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.startCDATA();
+            }
+        }
+
+        @Override
+        public void endCDATA() throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.endCDATA();
+            }
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length) throws SAXException {
+            for (TransformerHandler handler : handlers) {
+                handler.comment(ch, start, length);
+            }
+        }
+    }
+
     public enum Format {
 
         /**
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.catalog;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import javax.xml.transform.TransformerException;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class CatalogRecordConverterTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    private static final String MODS = "<mods xmlns=\"http://www.loc.gov/mods/v3\">"
+            + "<titleInfo><title>Test Title</title></titleInfo></mods>";
+
+    @Test
+    public void testConvertAll() throws Exception {
+        List<Callable<MetadataItem>> tasks = new ArrayList<Callable<MetadataItem>>();
+        for (int i = 0; i < 10; i++) {
+            // later records finish first
+            tasks.add(new ItemTask(i, (10 - i) * 5, i == 3 ? null : MODS));
+        }
+        List<MetadataItem> result = CatalogRecordConverter.convertAll(tasks);
+        List<Integer> ids = new ArrayList<Integer>();
+        for (MetadataItem item : result) {
+            ids.add(item.getId());
+        }
+        // the skipped record is missing
+        assertEquals(Arrays.asList(0, 1, 2, 4, 5, 6, 7, 8, 9), ids);
+    }
+
+    @Test
+    public void testConvertAllFailure() throws Exception {
+        List<Callable<MetadataItem>> tasks = new ArrayList<Callable<MetadataItem>>();
+        tasks.add(new ItemTask(0, 0, MODS));
+        tasks.add(new Callable<MetadataItem>() {
+
+            @Override
+            public MetadataItem call() throws Exception {
+                throw new IOException("failure");
+            }
+        });
+        try {
+            CatalogRecordConverter.convertAll(tasks);
+            fail();
+        } catch (TransformerException ex) {
+            assertTrue(String.valueOf(ex.getCause()), ex.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testPreview() throws Exception {
+        MetadataItem item1 = MetadataItem.withModsPreview(1, null, MODS, "Test Title", Locale.ENGLISH);
+        MetadataItem item2 = MetadataItem.withModsPreview(2, null, MODS, "Test Title", Locale.ENGLISH);
+        MetadataItem.renderPreviews(Arrays.asList(item1, item2));
+        assertNotNull(item1.getPreview());
+        assertTrue(item1.getPreview(), item1.getPreview().contains("Test Title"));
+        assertEquals(item1.getPreview(), item2.getPreview());
+
+        // not requested
+        MetadataItem item3 = MetadataItem.withModsPreview(3, null, MODS, "Test Title", Locale.ENGLISH);
+        item3.clearPreview();
+        assertNull(item3.getPreview());
+    }
+
+    @Test
+    public void testRenderPreview() throws Exception {
+        String html = MetadataItem.renderPreview(MODS, Locale.ENGLISH);
+        assertTrue(html, html.contains("Test Title"));
+    }
+
+    @Test
+    public void testRenderPreviewExternalEntity() throws Exception {
+        File secret = temp.newFile("secret.txt");
+        FileUtils.writeStringToFile(secret, "SECRET", "UTF-8");
+        String mods = "<?xml version=\"1.0\"?>"
+                + "<!DOCTYPE mods [<!ENTITY xxe SYSTEM \"" + secret.toURI() + "\">]>"
+                + "<mods xmlns=\"http://www.loc.gov/mods/v3\">"
+                + "<titleInfo><title>&xxe;</title></titleInfo></mods>";
+        try {
+            String html = MetadataItem.renderPreview(mods, Locale.ENGLISH);
+            fail(html);
+        } catch (TransformerException ex) {
+            // expected
+        }
+    }
+
+    private static final class ItemTask implements Callable<MetadataItem> {
+
+        private final int id;
+        private final long delay;
+        private final String mods;
+
+        ItemTask(int id, long delay, String mods) {
+            this.id = id;
+            this.delay = delay;
+            this.mods = mods;
+        }
+
+        @Override
+        public MetadataItem call() throws Exception {
+            Thread.sleep(delay);
+            return mods == null ? null : MetadataItem.withModsPreview(id, null, mods, "title" + id, null);
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export;
+
+import com.yourmediashelf.fedora.client.FedoraClient;
+import com.yourmediashelf.fedora.generated.foxml.DatastreamType;
+import com.yourmediashelf.fedora.generated.foxml.DatastreamVersionType;
+import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
+import com.yourmediashelf.fedora.generated.foxml.StateType;
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
+import cz.cas.lib.proarc.common.fedora.FoxmlUtils.ControlGroup;
+import cz.cas.lib.proarc.common.config.AppConfiguration;
+import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
+import cz.cas.lib.proarc.common.fedora.RemoteStorage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import org.apache.commons.io.FileUtils;
+import org.custommonkey.xmlunit.Diff;
+import org.custommonkey.xmlunit.Difference;
+import org.custommonkey.xmlunit.DifferenceConstants;
+import org.custommonkey.xmlunit.DifferenceListener;
+import org.custommonkey.xmlunit.XMLAssert;
+import org.custommonkey.xmlunit.XMLUnit;
+import org.easymock.EasyMock;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class FoxmlStreamFilterTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    @Test
+    public void testWrite() throws Exception {
+        String pid = "uuid:a9c9e8d4-9c22-4a6d-9e44-7c5aca1e4b11";
+        DigitalObject dobj = FoxmlUtils.createFoxml(pid);
+        addVersion(dobj, "FULL", ControlGroup.MANAGED, "full0");
+        addVersion(dobj, "FULL", ControlGroup.MANAGED, "full1");
+        addVersion(dobj, "RAW", ControlGroup.MANAGED, "raw0");
+        addVersion(dobj, "TEXT_OCR", ControlGroup.MANAGED, "ocr0");
+        File source = temp.newFile("source.xml");
+        FoxmlUtils.marshal(new StreamResult(source), dobj, true);
+
+        FoxmlStreamFilter filter = new FoxmlStreamFilter(source);
+        assertEquals(new HashSet<String>(Arrays.asList("FULL", "RAW", "TEXT_OCR")), filter.getDatastreamIds());
+        File target = temp.newFile("target.xml");
+        filter.write(target, new FoxmlStreamFilter.DatastreamHandler() {
+
+            @Override
+            public boolean accept(String dsId) {
+                return !"RAW".equals(dsId);
+            }
+
+            @Override
+            public boolean isEditable(String dsId) {
+                return "TEXT_OCR".equals(dsId);
+            }
+
+            @Override
+            public DatastreamType edit(DatastreamType datastream) {
+                datastream.getDatastreamVersion().get(0).setBinaryContent("edited".getBytes());
+                return datastream;
+            }
+
+            @Override
+            public String rename(String dsId) {
+                return "FULL".equals(dsId) ? "IMG_FULL" : null;
+            }
+        });
+
+        DigitalObject result = FoxmlUtils.unmarshal(new StreamSource(target), DigitalObject.class);
+        assertEquals(pid, result.getPID());
+        assertEquals(2, result.getDatastream().size());
+        assertNull(FoxmlUtils.findDatastream(result, "RAW"));
+        assertNull(FoxmlUtils.findDatastream(result, "FULL"));
+
+        DatastreamType full = FoxmlUtils.findDatastream(result, "IMG_FULL");
+        assertNotNull(full);
+        assertFalse(full.isVERSIONABLE());
+        assertEquals(1, full.getDatastreamVersion().size());
+        DatastreamVersionType fullVersion = full.getDatastreamVersion().get(0);
+        assertEquals("IMG_FULL.1", fullVersion.getID());
+        assertArrayEquals("full1".getBytes(), fullVersion.getBinaryContent());
+
+        DatastreamType ocr = FoxmlUtils.findDatastream(result, "TEXT_OCR");
+        assertArrayEquals("edited".getBytes(), ocr.getDatastreamVersion().get(0).getBinaryContent());
+    }
+
+    /**
+     * The streaming export must produce the same FOXML as the export
+     * of unmarshalled objects.
+     */
+    @Test
+    public void testKramerius4ExportParity() throws Exception {
+        AppConfiguration config = AppConfigurationFactory.getInstance().create(new HashMap<String, String>() {{
+            put(AppConfiguration.PROPERTY_APP_HOME, temp.getRoot().getPath());
+        }});
+        Kramerius4Export export = new Kramerius4Export(
+                new RemoteStorage(EasyMock.createNiceMock(FedoraClient.class)), config.getKramerius4Export());
+        String pid = "uuid:f74f3cf3-f3be-4cac-95da-8e50331414a2";
+        File source = temp.newFile("source.xml");
+        FileUtils.copyURLToFile(Kramerius4ExportTest.class.getResource("Kramerius4ExportTestPage.xml"), source);
+
+        File jaxbFoxml = temp.newFile("jaxb.xml");
+        List<String> jaxbMembers = new ArrayList<String>();
+        export.exportObject(FoxmlUtils.unmarshal(new StreamSource(source), DigitalObject.class),
+                jaxbFoxml, true, jaxbMembers);
+        File streamFoxml = temp.newFile("stream.xml");
+        List<String> streamMembers = new ArrayList<String>();
+        export.exportStream(pid, source, streamFoxml, true, null, streamMembers);
+        assertEquals(jaxbMembers, streamMembers);
+        assertFoxmlEquals(jaxbFoxml, streamFoxml);
+
+        // parent objects
+        Set<String> includeChildPids = Collections.emptySet();
+        export.exportParentObject(FoxmlUtils.unmarshal(new StreamSource(source), DigitalObject.class),
+                jaxbFoxml, includeChildPids);
+        export.exportStream(pid, source, streamFoxml, false, includeChildPids, null);
+        assertFoxmlEquals(jaxbFoxml, streamFoxml);
+    }
+
+    /**
+     * Compares FOXML files. Times of datastream versions and object dates
+     * are ignored as edited datastreams are created at the time of the export
+     * and Fedora dates the objects at ingest.
+     */
+    static void assertFoxmlEquals(File expected, File actual) throws Exception {
+        XMLUnit.setIgnoreWhitespace(true);
+        try {
+            Diff diff = new Diff(new InputSource(expected.toURI().toASCIIString()),
+                    new InputSource(actual.toURI().toASCIIString()));
+            diff.overrideDifferenceListener(new DifferenceListener() {
+
+                @Override
+                public int differenceFound(Difference difference) {
+                    if (difference.getId() == DifferenceConstants.ATTR_VALUE_ID) {
+                        Attr attr = (Attr) difference.getControlNodeDetail().getNode();
+                        if ("CREATED".equals(attr.getName()) || "VALUE".equals(attr.getName())
+                                && attr.getOwnerElement().getAttribute("NAME").endsWith("Date")) {
+                            return RETURN_IGNORE_DIFFERENCE_NODES_IDENTICAL;
+                        }
+                    }
+                    return RETURN_ACCEPT_DIFFERENCE;
+                }
+
+                @Override
+                public void skippedComparison(Node control, Node test) {
+                }
+            });
+            XMLAssert.assertXMLEqual(diff.toString(), diff, true);
+        } finally {
+            XMLUnit.setIgnoreWhitespace(false);
+        }
+    }
+
+    private static void addVersion(DigitalObject dobj, String dsId, ControlGroup controlGroup, String content) {
+        DatastreamType datastream = FoxmlUtils.findDatastream(dobj, dsId);
+        if (datastream == null) {
+            datastream = new DatastreamType();
+            datastream.setID(dsId);
+            datastream.setCONTROLGROUP(controlGroup.toExternal());
+            datastream.setVERSIONABLE(true);
+            datastream.setSTATE(StateType.A);
+            dobj.getDatastream().add(datastream);
+        }
+        DatastreamVersionType version = new DatastreamVersionType();
+        version.setID(dsId + '.' + datastream.getDatastreamVersion().size());
+        version.setMIMETYPE("application/octet-stream");
+        version.setBinaryContent(content.getBytes());
+        datastream.getDatastreamVersion().add(version);
+    }
+}
@@ -44,12 +44,14 @@ public class Kramerius4ExportOptionsTest {
 
         String policy = "policy:public";
         config.addProperty(Kramerius4ExportOptions.PROP_POLICY, policy);
+        config.addProperty(Kramerius4ExportOptions.PROP_THREADS, 4);
 
         Kramerius4ExportOptions result = Kramerius4ExportOptions.from(config);
         assertEquals(new HashSet<String>(Arrays.asList(excludes)), result.getExcludeDatastreams());
         assertEquals("NEWID1", result.getDsIdMap().get("ID1"));
         assertEquals("NEWID2", result.getDsIdMap().get("ID2"));
         assertEquals(policy, result.getPolicy());
+        assertEquals(4, result.getThreadCount());
     }
 
     @Test
@@ -60,5 +62,6 @@ public class Kramerius4ExportOptionsTest {
         assertEquals(1, result.getDsIdMap().size());
         assertEquals("IMG_FULL", result.getDsIdMap().get(BinaryEditor.RAW_ID));
         assertNull(result.getPolicy());
+        assertEquals(1, result.getThreadCount());
     }
 }
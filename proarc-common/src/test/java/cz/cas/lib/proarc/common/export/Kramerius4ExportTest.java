@@ -22,6 +22,8 @@ import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
 import cz.cas.lib.proarc.common.dublincore.DcStreamEditor;
 import cz.cas.lib.proarc.common.fedora.BinaryEditor;
 import cz.cas.lib.proarc.common.fedora.FedoraTestSupport;
+import cz.cas.lib.proarc.common.fedora.LocalStorage;
+import cz.cas.lib.proarc.common.fedora.LocalStorage.LocalObject;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
 import cz.cas.lib.proarc.common.fedora.StringEditor;
 import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
@@ -30,6 +32,7 @@ import cz.cas.lib.proarc.common.imports.ImportBatchManager;
 import cz.cas.lib.proarc.common.mods.ModsStreamEditor;
 import cz.cas.lib.proarc.common.object.DigitalObjectManager;
 import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
+import cz.cas.lib.proarc.common.object.ndk.NdkPlugin;
 import cz.cas.lib.proarc.common.user.UserManager;
 import cz.cas.lib.proarc.oaidublincore.DcConstants;
 import org.custommonkey.xmlunit.SimpleNamespaceContext;
@@ -65,8 +68,12 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * 
@@ -219,6 +226,72 @@ public class Kramerius4ExportTest {
         fedora.ingest(foxml.toURI().toURL());
     }
 
+    /**
+     * The parallel export of a hierarchy must produce the same objects
+     * as the sequential export.
+     */
+    @Test
+    public void testExportParallel() throws Exception {
+        RemoteStorage storage = fedora.getRemoteStorage();
+        List<LocalObject> objects = new ArrayList<LocalObject>();
+        String[] models = {NdkPlugin.MODEL_PERIODICAL, NdkPlugin.MODEL_PERIODICALVOLUME,
+                NdkPlugin.MODEL_PERIODICALISSUE, NdkPlugin.MODEL_PAGE};
+        String rootPid = createTree(new LocalStorage(), models, 0, objects).getPid();
+
+        ingest(storage, objects);
+        Kramerius4ExportOptions options = config.getKramerius4Export();
+        options.setThreadCount(1);
+        File sequential = new Kramerius4Export(storage, options)
+                .export(temp.newFolder("sequential"), true, "sequential", rootPid);
+
+        // the same objects without results of the sequential export
+        fedora.cleanUp();
+        ingest(storage, objects);
+        options = config.getKramerius4Export();
+        options.setThreadCount(3);
+        File parallel = new Kramerius4Export(storage, options)
+                .export(temp.newFolder("parallel"), true, "parallel", rootPid);
+
+        for (LocalObject object : objects) {
+            File expected = ExportUtils.pidAsXmlFile(sequential, object.getPid());
+            File actual = ExportUtils.pidAsXmlFile(parallel, object.getPid());
+            assertTrue(expected.toString(), expected.exists());
+            assertTrue(actual.toString(), actual.exists());
+            FoxmlStreamFilterTest.assertFoxmlEquals(expected, actual);
+        }
+        assertEquals(sequential.list().length, parallel.list().length);
+    }
+
+    /**
+     * Creates objects of the models with two members each.
+     */
+    private LocalObject createTree(LocalStorage storage, String[] models, int level,
+            List<LocalObject> objects) throws Exception {
+
+        LocalObject lobj = storage.create();
+        lobj.setOwner(fedora.getTestUser());
+        lobj.setLabel(models[level] + ' ' + objects.size());
+        objects.add(lobj);
+        List<String> members = new ArrayList<String>();
+        if (level + 1 < models.length) {
+            for (int i = 0; i < 2; i++) {
+                members.add(createTree(storage, models, level + 1, objects).getPid());
+            }
+        }
+        RelationEditor relations = new RelationEditor(lobj);
+        relations.setModel(models[level]);
+        relations.setMembers(members);
+        relations.write(relations.getLastModified(), "junit");
+        lobj.flush();
+        return lobj;
+    }
+
+    private void ingest(RemoteStorage storage, List<LocalObject> objects) throws Exception {
+        for (LocalObject object : objects) {
+            storage.ingest(object, fedora.getTestUser(), "junit");
+        }
+    }
+
     private static String streamXPath(String dsId) {
         return "f:digitalObject/f:datastream[@ID='" + dsId + "']";
     }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.archive;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import java.io.File;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class ArchiveCheckpointTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    @Test
+    public void testCheckpoint() throws Exception {
+        File pkgFolder = temp.newFolder("pkg");
+        File metsFile = new File(pkgFolder, PackageBuilder.METS_FILENAME);
+        FileUtils.writeStringToFile(metsFile, "<mets/>", "UTF-8");
+        File dsFile = new File(pkgFolder, "DS/file.xml");
+        FileUtils.writeStringToFile(dsFile, "<ds/>", "UTF-8");
+
+        ArchiveCheckpoint checkpoint = new ArchiveCheckpoint(pkgFolder);
+        assertFalse(checkpoint.isComplete());
+        checkpoint.write();
+        assertTrue(new File(temp.getRoot(), "pkg" + ArchiveCheckpoint.FILE_SUFFIX).exists());
+        assertTrue(checkpoint.isComplete());
+
+        // changed file
+        FileUtils.writeStringToFile(dsFile, "<ds>x</ds>", "UTF-8");
+        assertFalse(checkpoint.isComplete());
+        FileUtils.writeStringToFile(dsFile, "<ds/>", "UTF-8");
+        assertTrue(checkpoint.isComplete());
+
+        // changed METS
+        FileUtils.writeStringToFile(metsFile, "<METS/>", "UTF-8");
+        assertFalse(checkpoint.isComplete());
+
+        checkpoint.reset();
+        assertFalse(pkgFolder.exists());
+        assertFalse(checkpoint.isComplete());
+    }
+
+}
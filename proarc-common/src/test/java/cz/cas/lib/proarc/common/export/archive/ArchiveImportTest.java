@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.archive;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.config.AppConfiguration;
+import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
+import cz.cas.lib.proarc.common.config.ConfigurationProfile;
+import cz.cas.lib.proarc.common.dao.Batch;
+import cz.cas.lib.proarc.common.dao.BatchItem.ObjectState;
+import cz.cas.lib.proarc.common.dao.empiredb.DbUnitSupport;
+import cz.cas.lib.proarc.common.dao.empiredb.EmpireBatchDaoTest;
+import cz.cas.lib.proarc.common.dao.empiredb.EmpireDaoFactory;
+import cz.cas.lib.proarc.common.dao.empiredb.SqlTransaction;
+import cz.cas.lib.proarc.common.fedora.FedoraTestSupport;
+import cz.cas.lib.proarc.common.fedora.LocalStorage;
+import cz.cas.lib.proarc.common.fedora.LocalStorage.LocalObject;
+import cz.cas.lib.proarc.common.fedora.RemoteStorage;
+import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
+import cz.cas.lib.proarc.common.imports.ImportBatchManager;
+import cz.cas.lib.proarc.common.imports.ImportBatchManager.BatchItemObject;
+import cz.cas.lib.proarc.common.imports.ImportProcess;
+import cz.cas.lib.proarc.common.imports.ImportProfile;
+import cz.cas.lib.proarc.common.object.DigitalObjectManager;
+import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
+import cz.cas.lib.proarc.common.object.ndk.NdkPlugin;
+import cz.cas.lib.proarc.common.user.UserManager;
+import cz.cas.lib.proarc.common.user.UserProfile;
+import cz.cas.lib.proarc.common.user.UserUtil;
+import java.io.File;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.dbunit.dataset.ReplacementDataSet;
+import org.easymock.EasyMock;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Imports archive packages to Fedora. It requires the database and Fedora.
+ *
+ * @author Jan Pokorsky
+ */
+public class ArchiveImportTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    private static FedoraTestSupport fedoraSupport;
+    private static DbUnitSupport dbsupport;
+    private static EmpireDaoFactory daos;
+    private AppConfiguration appConf;
+    private ImportBatchManager ibm;
+    private RemoteStorage remoteStorage;
+
+    @BeforeClass
+    public static void setUpClass() {
+        fedoraSupport = new FedoraTestSupport();
+        dbsupport = new DbUnitSupport();
+        daos = new EmpireDaoFactory(dbsupport.getEmireCfg());
+        daos.init();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        fedoraSupport.cleanUp();
+        MetaModelRepository.setInstance(new String[]{NdkPlugin.ID});
+        remoteStorage = fedoraSupport.getRemoteStorage();
+
+        File configHome = temp.newFolder(AppConfiguration.DEFAULT_APP_HOME_NAME);
+        Map<String, String> env = new HashMap<String, String>();
+        env.put(AppConfiguration.PROPERTY_APP_HOME, configHome.toString());
+        appConf = AppConfigurationFactory.getInstance().create(env);
+        AppConfigurationFactory.getInstance().setDefaultInstance(appConf);
+
+        ImportBatchManager.setInstance(appConf, daos);
+        ibm = ImportBatchManager.getInstance();
+        UserManager users = EasyMock.createNiceMock(UserManager.class);
+        EasyMock.replay(users);
+        UserUtil.setDefaultManger(users);
+        DigitalObjectManager.setDefault(new DigitalObjectManager(
+                appConf, ibm, remoteStorage, MetaModelRepository.getInstance(), users));
+
+        ReplacementDataSet db = new ReplacementDataSet(
+                dbsupport.loadFlatXmlDataStream(EmpireBatchDaoTest.class, "user.xml"));
+        db.addReplacementObject("{$user.home}", "relative/path/");
+        db.addReplacementObject("{$now}", new Timestamp(System.currentTimeMillis()));
+        SqlTransaction tx = daos.createTransaction();
+        dbsupport.cleanInsert(dbsupport.getConnection(tx), db);
+        tx.commit();
+    }
+
+    /**
+     * The archive with fewer items than the item writer stores at once must be
+     * ingested completely within the run that loads it.
+     */
+    @Test
+    public void testImportSmallArchive() throws Exception {
+        List<String> pids = createObjects(2);
+        File exportFolder = new File(appConf.getDefaultUsersHome(), "export");
+        assertTrue(exportFolder.mkdirs());
+        File archiveFolder = new ArchiveProducer().archive(pids.subList(0, 1), exportFolder);
+        fedoraSupport.cleanUp();
+
+        UserProfile user = new UserProfile();
+        user.setId(1);
+        user.setUserName(fedoraSupport.getTestUser());
+        ImportProfile profile = new ImportProfile(new BaseConfiguration(), ConfigurationProfile.DEFAULT_ARCHIVE_IMPORT);
+        ImportProcess process = ImportProcess.prepare(archiveFolder, "test", user, ibm, null, false, profile);
+        Batch batch = process.start();
+
+        assertEquals(batch.getLog(), Batch.State.INGESTED, batch.getState());
+        List<BatchItemObject> items = ibm.findBatchObjects(batch.getId(), null);
+        List<String> itemPids = new ArrayList<String>();
+        for (BatchItemObject item : items) {
+            assertEquals(item.getPid(), ObjectState.INGESTED, item.getState());
+            itemPids.add(item.getPid());
+        }
+        assertEquals(pids.size(), items.size());
+        assertTrue(itemPids.containsAll(pids));
+        List<Item> ingested = remoteStorage.getSearch().find(pids.toArray(new String[pids.size()]));
+        FedoraTestSupport.assertItem(ingested, pids);
+    }
+
+    /**
+     * Ingests the volume with pages.
+     * @return PIDs of the volume and its pages
+     */
+    private List<String> createObjects(int pageCount) throws Exception {
+        LocalStorage storage = new LocalStorage();
+        List<String> pids = new ArrayList<String>();
+        List<LocalObject> pages = new ArrayList<LocalObject>();
+        for (int i = 1; i <= pageCount; i++) {
+            pages.add(createObject(storage, NdkPlugin.MODEL_PAGE, "page" + i, null));
+        }
+        LocalObject volume = createObject(storage, NdkPlugin.MODEL_MONOGRAPHVOLUME, "volume", pages);
+        pids.add(volume.getPid());
+        remoteStorage.ingest(volume, fedoraSupport.getTestUser(), "junit");
+        for (LocalObject page : pages) {
+            pids.add(page.getPid());
+            remoteStorage.ingest(page, fedoraSupport.getTestUser(), "junit");
+        }
+        return pids;
+    }
+
+    private static LocalObject createObject(LocalStorage storage, String modelId, String label,
+            List<LocalObject> members) throws Exception {
+
+        LocalObject lobj = storage.create();
+        lobj.setOwner(fedoraSupport.getTestUser());
+        lobj.setLabel(label);
+        RelationEditor relations = new RelationEditor(lobj);
+        relations.setModel(modelId);
+        if (members != null) {
+            List<String> memberPids = new ArrayList<String>();
+            for (LocalObject member : members) {
+                memberPids.add(member.getPid());
+            }
+            relations.setMembers(memberPids);
+        }
+        relations.write(relations.getLastModified(), "junit");
+        lobj.flush();
+        return lobj;
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.archive;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
+import cz.cas.lib.proarc.common.fedora.FedoraObject;
+import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
+import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import cz.cas.lib.proarc.common.object.DigitalObjectElement;
+import cz.cas.lib.proarc.common.object.DigitalObjectHandler;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.easymock.EasyMock;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class ArchiveProducerTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    @Test
+    public void testFindLastFolder() throws Exception {
+        File parent = temp.getRoot();
+        assertNull(ArchiveProducer.findLastFolder(parent, "archive"));
+        assertTrue(new File(parent, "archive").mkdir());
+        assertEquals(new File(parent, "archive"), ArchiveProducer.findLastFolder(parent, "archive"));
+        assertTrue(new File(parent, "archive_1").mkdir());
+        assertTrue(new File(parent, "archive_2").mkdir());
+        assertEquals(new File(parent, "archive_2"), ArchiveProducer.findLastFolder(parent, "archive"));
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        List<String> pids = Arrays.asList("uuid:1", "uuid:2", "uuid:3");
+        File targetFolder = temp.getRoot();
+
+        // the second package fails
+        TestProducer producer = new TestProducer(pids, "uuid:2");
+        try {
+            producer.archive(pids, targetFolder, true);
+            fail();
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        assertEquals(pids, producer.built);
+        File archiveFolder = new File(targetFolder, "archive_1");
+        assertTrue(new File(archiveFolder, "1" + ArchiveCheckpoint.FILE_SUFFIX).exists());
+        assertFalse(new File(archiveFolder, "2" + ArchiveCheckpoint.FILE_SUFFIX).exists());
+
+        // resumes the last run
+        producer = new TestProducer(pids, null);
+        assertEquals(archiveFolder, producer.archive(pids, targetFolder, true));
+        assertEquals(Arrays.asList("uuid:2"), producer.built);
+        assertTrue(new File(archiveFolder, "2" + ArchiveCheckpoint.FILE_SUFFIX).exists());
+
+        // a new run
+        producer = new TestProducer(pids, null);
+        assertEquals(new File(targetFolder, "archive_1_1"), producer.archive(pids, targetFolder));
+        assertEquals(pids, producer.built);
+    }
+
+    @Test
+    public void testResumeOtherPids() throws Exception {
+        List<String> pids = Arrays.asList("uuid:1", "uuid:2", "uuid:3");
+        File targetFolder = temp.getRoot();
+
+        TestProducer producer = new TestProducer(pids, "uuid:2");
+        try {
+            producer.archive(pids, targetFolder, true);
+            fail();
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        File archiveFolder = new File(targetFolder, "archive_1");
+        assertTrue(ArchiveProducer.isArchiveOf(archiveFolder, pids));
+
+        // the same first PID does not resume other PIDs
+        List<String> otherPids = Arrays.asList("uuid:1", "uuid:3");
+        producer = new TestProducer(otherPids, null);
+        assertEquals(new File(targetFolder, "archive_1_1"), producer.archive(otherPids, targetFolder, true));
+        assertEquals(otherPids, producer.built);
+        assertFalse(ArchiveProducer.isArchiveOf(archiveFolder, otherPids));
+
+        try {
+            new TestProducer(otherPids, null).resume(otherPids, archiveFolder);
+            fail();
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    private static final class TestProducer extends ArchiveProducer {
+
+        private final List<String> pids;
+        private final String failingPid;
+        final List<String> built = Collections.synchronizedList(new ArrayList<String>());
+
+        TestProducer(List<String> pids, String failingPid) {
+            super(null, 1, 1);
+            this.pids = pids;
+            this.failingPid = failingPid;
+        }
+
+        @Override
+        List<List<DigitalObjectElement>> selectObjects(List<String> pids) {
+            DigitalObjectHandler handler = new DigitalObjectHandler(EasyMock.createMock(FedoraObject.class), null);
+            List<List<DigitalObjectElement>> paths = new ArrayList<List<DigitalObjectElement>>();
+            for (String pid : this.pids) {
+                Item item = new Item();
+                item.setPid(pid);
+                paths.add(Collections.singletonList(new DigitalObjectElement(item, handler)));
+            }
+            return paths;
+        }
+
+        @Override
+        void buildPackage(List<DigitalObjectElement> path, File archiveRootFolder) throws DigitalObjectException {
+            String pid = path.get(0).getPid();
+            built.add(pid);
+            if (pid.equals(failingPid)) {
+                throw new DigitalObjectException(pid, "interrupted");
+            }
+            File pkgFolder = new File(archiveRootFolder, FoxmlUtils.pidAsUuid(pid));
+            try {
+                FileUtils.writeStringToFile(new File(pkgFolder, PackageBuilder.METS_FILENAME), "<mets/>", "UTF-8");
+            } catch (Exception ex) {
+                throw new DigitalObjectException(pid, ex);
+            }
+        }
+    }
+
+}
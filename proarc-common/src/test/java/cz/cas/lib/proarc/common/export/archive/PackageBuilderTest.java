@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.archive;
+
+import com.yourmediashelf.fedora.generated.foxml.DatastreamType;
+import com.yourmediashelf.fedora.generated.foxml.DatastreamVersionType;
+import com.yourmediashelf.fedora.generated.foxml.XmlContentType;
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.fedora.FedoraObject;
+import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
+import cz.cas.lib.proarc.common.fedora.LocalStorage;
+import cz.cas.lib.proarc.common.fedora.LocalStorage.LocalObject;
+import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import cz.cas.lib.proarc.common.object.DigitalObjectElement;
+import cz.cas.lib.proarc.common.object.DigitalObjectHandler;
+import cz.cas.lib.proarc.common.object.DisseminationHandler;
+import cz.cas.lib.proarc.mets.FileType;
+import cz.cas.lib.proarc.mets.Mets;
+import cz.cas.lib.proarc.mets.MetsType.FileSec.FileGrp;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.ws.rs.core.Response;
+import javax.xml.bind.JAXB;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.easymock.EasyMock;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class PackageBuilderTest {
+
+    private static final int CHILD_COUNT = 10;
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    @Test
+    public void testBuild() throws Exception {
+        File pkgFolder = buildPackage(new PackageBuilder(temp.getRoot()));
+        assertFiles(pkgFolder);
+    }
+
+    @Test
+    public void testBuildParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // a single pending object makes flushObject wait for writes
+            File pkgFolder = buildPackage(new PackageBuilder(temp.getRoot(), executor, 1));
+            assertFiles(pkgFolder);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private File buildPackage(PackageBuilder builder) throws Exception {
+        Random random = new Random(1);
+        LocalObject root = createObject();
+        DigitalObjectElement rootElm = createElement(root, "model:root");
+        builder.prepare(Arrays.asList(rootElm), root);
+        addObject(builder, 1, rootElm, null, root, random);
+        for (int i = 1; i <= CHILD_COUNT; i++) {
+            LocalObject child = createObject();
+            DigitalObjectElement childElm = createElement(child, "model:child");
+            addObject(builder, i, childElm, rootElm, child, random);
+        }
+        builder.build();
+        return new File(temp.getRoot(), FoxmlUtils.pidAsUuid(root.getPid()));
+    }
+
+    private static void addObject(PackageBuilder builder, int index,
+            DigitalObjectElement elm, DigitalObjectElement parentElm, LocalObject obj, Random random
+    ) throws Exception {
+        builder.addObject(index, elm, parentElm);
+        builder.addFoxmlAsFile(index, elm, obj);
+        builder.addStreamAsFile(index, createInlineStream(obj.getPid()), obj.getPid(), elm.getModelId(), null);
+
+        // the content exceeds buffers of streams
+        byte[] content = new byte[100 * 1024 + random.nextInt(1000)];
+        random.nextBytes(content);
+        Response response = EasyMock.createMock(Response.class);
+        EasyMock.expect(response.getEntity()).andReturn(new ByteArrayInputStream(content));
+        DisseminationHandler dHandler = EasyMock.createMock(DisseminationHandler.class);
+        EasyMock.expect(dHandler.getDissemination(null)).andReturn(response);
+        EasyMock.replay(response, dHandler);
+        builder.addStreamAsFile(index, createManagedStream(), obj.getPid(), elm.getModelId(), dHandler);
+        builder.flushObject();
+    }
+
+    /**
+     * Checks that checksums and sizes of the METS describe written files.
+     */
+    private static void assertFiles(File pkgFolder) throws Exception {
+        Mets mets = JAXB.unmarshal(new File(pkgFolder, PackageBuilder.METS_FILENAME), Mets.class);
+        int fileCount = 0;
+        for (FileGrp fileGrp : mets.getFileSec().getFileGrp()) {
+            for (FileType fileType : fileGrp.getFile()) {
+                File file = new File(pkgFolder, fileType.getFLocat().get(0).getHref());
+                byte[] content = FileUtils.readFileToByteArray(file);
+                assertEquals(file.toString(), DigestUtils.md5Hex(content), fileType.getCHECKSUM());
+                assertEquals(file.toString(), Long.valueOf(content.length), fileType.getSIZE());
+                fileCount++;
+            }
+        }
+        assertEquals(3 * (1 + CHILD_COUNT), fileCount);
+    }
+
+    private static LocalObject createObject() {
+        LocalObject obj = new LocalStorage().create();
+        FoxmlUtils.setProperty(obj.getDigitalObject(), FoxmlUtils.PROPERTY_LASTMODIFIED, "2018-01-01T00:00:00.000Z");
+        return obj;
+    }
+
+    private static DigitalObjectElement createElement(LocalObject obj, String modelId) {
+        Item item = new Item(obj.getPid());
+        item.setModel(modelId);
+        item.setLabel(obj.getPid());
+        DigitalObjectHandler handler = new DigitalObjectHandler(EasyMock.createMock(FedoraObject.class), null);
+        return new DigitalObjectElement(item, handler);
+    }
+
+    private static DatastreamType createInlineStream(String pid) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element elm = doc.createElementNS("http://test", "test");
+        elm.setTextContent(pid);
+        doc.appendChild(elm);
+        XmlContentType xmlContent = new XmlContentType();
+        xmlContent.getAny().add(elm);
+        DatastreamVersionType version = new DatastreamVersionType();
+        version.setMIMETYPE("text/xml");
+        version.setXmlContent(xmlContent);
+        DatastreamType dt = new DatastreamType();
+        dt.setID("TEST");
+        dt.setCONTROLGROUP("X");
+        dt.getDatastreamVersion().add(version);
+        return dt;
+    }
+
+    private static DatastreamType createManagedStream() {
+        DatastreamVersionType version = new DatastreamVersionType();
+        version.setMIMETYPE("image/jpeg");
+        DatastreamType dt = new DatastreamType();
+        dt.setID("RAW");
+        dt.setCONTROLGROUP("M");
+        dt.getDatastreamVersion().add(version);
+        return dt;
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.mets;
+
+import cz.cas.lib.proarc.mets.Mets;
+import cz.cas.lib.proarc.mets.info.Info;
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.xml.bind.Marshaller;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.validation.Schema;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class JaxbRegistryTest {
+
+    @Test
+    public void testGetContext() throws Exception {
+        assertSame(JaxbRegistry.getContext(Mets.class), JaxbRegistry.getContext(Mets.class));
+        assertNotSame(JaxbRegistry.getContext(Mets.class), JaxbRegistry.getContext(Info.class));
+    }
+
+    @Test
+    public void testGetMarshaller() throws Exception {
+        final Marshaller m = JaxbRegistry.getMarshaller(Info.class);
+        m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+        Marshaller m2 = JaxbRegistry.getMarshaller(Info.class);
+        assertSame(m, m2);
+        assertEquals(Boolean.FALSE, m2.getProperty(Marshaller.JAXB_FORMATTED_OUTPUT));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Marshaller other = executor.submit(new Callable<Marshaller>() {
+
+                @Override
+                public Marshaller call() throws Exception {
+                    return JaxbRegistry.getMarshaller(Info.class);
+                }
+            }).get();
+            assertNotSame(m, other);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testGetSchema() throws Exception {
+        URL xsd = Mets.class.getResource("mets.xsd");
+        Schema schema = JaxbRegistry.getSchema(xsd);
+        assertNotNull(schema);
+        assertSame(schema, JaxbRegistry.getSchema(xsd));
+
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        Document invalid = dbf.newDocumentBuilder().parse(new ByteArrayInputStream(
+                "<mets:mets xmlns:mets='http://www.loc.gov/METS/'><mets:unknown/></mets:mets>".getBytes("UTF-8")));
+        List<String> errors = MetsUtils.validateAgainstXSD(invalid, xsd);
+        assertFalse(errors.isEmpty());
+        // the same result with the schema compiled for the call
+        assertEquals(errors, MetsUtils.validateAgainstXSD(invalid, xsd.openStream()));
+    }
+
+}
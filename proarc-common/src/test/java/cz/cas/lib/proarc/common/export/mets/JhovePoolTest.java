@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.mets;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.imports.TiffImporterTest;
+import cz.cas.lib.proarc.mix.Mix;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class JhovePoolTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+    private JhovePool pool;
+    private File configFolder;
+
+    @Before
+    public void setUp() throws Exception {
+        configFolder = temp.newFolder("jhove");
+        pool = new JhovePool(configFolder, 2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.destroy();
+    }
+
+    @Test
+    public void testBorrow() throws Exception {
+        JhoveContext ctx1 = pool.borrow();
+        assertTrue(new File(configFolder, JhoveUtility.JHOVE_CONFIG_NAME).exists());
+        pool.release(ctx1);
+        JhoveContext ctx2 = pool.borrow();
+        assertSame(ctx1, ctx2);
+        JhoveContext ctx3 = pool.borrow();
+        assertNotSame(ctx2, ctx3);
+        assertEquals(configFolder, ctx3.getConfigFolder());
+        pool.release(ctx2);
+        pool.release(ctx3);
+    }
+
+    @Test
+    public void testGetMixAsync() throws Exception {
+        File imageFile = new File(temp.getRoot(), "test.tif");
+        FileUtils.copyURLToFile(TiffImporterTest.class.getResource("testscan-lzw.tiff"), imageFile);
+        List<Future<JHoveOutput>> results = new ArrayList<Future<JHoveOutput>>();
+        for (int i = 0; i < 4; i++) {
+            results.add(pool.getMixAsync(imageFile));
+        }
+        for (Future<JHoveOutput> result : results) {
+            Mix mix = result.get().getMix();
+            assertNotNull(mix);
+            assertEquals("image/tiff", mix.getBasicDigitalObjectInformation()
+                    .getFormatDesignation().getFormatName().getValue());
+        }
+        pool.destroy();
+        assertFalse(configFolder.exists());
+    }
+}
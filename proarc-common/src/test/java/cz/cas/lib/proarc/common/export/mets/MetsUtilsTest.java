@@ -19,17 +19,24 @@ package cz.cas.lib.proarc.common.export.mets;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Unmarshaller;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.configuration.BaseConfiguration;
 import org.apache.commons.configuration.Configuration;
 import org.junit.Assert;
@@ -42,6 +49,7 @@ import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
 
 import cz.cas.lib.proarc.common.export.mets.structure.MetsElement;
 import cz.cas.lib.proarc.common.export.mets.structure.MetsElementVisitor;
+import cz.cas.lib.proarc.mets.FileType;
 import cz.cas.lib.proarc.mets.Mets;
 import cz.cas.lib.proarc.mets.MetsType.FileSec.FileGrp;
 import cz.cas.lib.proarc.mets.info.Info;
@@ -111,6 +119,22 @@ public class MetsUtilsTest {
         }
     }
 
+    /**
+     * Copies a stream longer than the buffer and checks its MD5 and size
+     *
+     * @throws Exception
+     */
+    @Test
+    public void getDigestAndCopyTest() throws Exception {
+        byte[] content = new byte[3 * MetsUtils.DIGEST_BUFFER_SIZE + 7];
+        new Random(1).nextBytes(content);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        FileMD5Info info = MetsUtils.getDigestAndCopy(new ByteArrayInputStream(content), os);
+        assertArrayEquals(content, os.toByteArray());
+        assertEquals(content.length, info.getSize());
+        assertEquals(DigestUtils.md5Hex(content), info.getMd5());
+    }
+
     /**
      * Tests if the exception is thrown for invalid mets
      *
@@ -155,6 +179,126 @@ public class MetsUtilsTest {
         metsElement.accept(visitor);
     }
 
+    /**
+     * Tests if pages processed at once produce the same packages
+     * as the sequential export
+     *
+     * @throws Exception
+     */
+    @Test
+    public void saveMetsParallelTest() throws Exception {
+        for (MetsExportTestElement testElement : testElements) {
+            File sequentialDir = saveMets(testElement, "sequential", 1);
+            File parallelDir = saveMets(testElement, "parallel", 4);
+            assertSameFiles(sequentialDir, parallelDir);
+        }
+    }
+
+    private File saveMets(MetsExportTestElement testElement, String name, int threadCount) throws Exception {
+        String sourceDirPath = getTargetPath() + File.separator +
+                testElement.getDirectory() + File.separator;
+        File resultDir = tmp.newFolder(name + testElement.getResultFolder());
+        DigitalObject dbObj = MetsUtils.readFoXML(sourceDirPath + testElement.getInitialDocument());
+        Configuration config = new BaseConfiguration();
+        config.addProperty(NdkExportOptions.PROP_NDK_AGENT_ARCHIVIST, "Archivist");
+        config.addProperty(NdkExportOptions.PROP_NDK_AGENT_CREATOR, "Creator");
+        config.addProperty(NdkExportOptions.PROP_NDK_THREADS, threadCount);
+        MetsContext context = new MetsContext();
+        context.setPath(sourceDirPath);
+        context.setFsParentMap(TestConst.parents);
+        context.setOutputPath(resultDir.getAbsolutePath());
+        context.setAllowNonCompleteStreams(true);
+        context.setAllowMissingURNNBN(true);
+        context.setConfig(NdkExportOptions.getOptions(config));
+        MetsElement metsElement = MetsElement.getElement(dbObj, null, context, true);
+        metsElement.accept(new MetsElementVisitor());
+        return resultDir;
+    }
+
+    /**
+     * Compares packages. Data files must be identical. XML files must be
+     * identical except for timestamps of the export. The checksum file must
+     * list the same files and its checksums must match its own package.
+     */
+    private static void assertSameFiles(File expected, File actual) throws Exception {
+        String[] expectedNames = expected.list();
+        String[] actualNames = actual.list();
+        Arrays.sort(expectedNames);
+        Arrays.sort(actualNames);
+        assertArrayEquals(actual.toString(), expectedNames, actualNames);
+        for (String name : expectedNames) {
+            File expectedFile = new File(expected, name);
+            File actualFile = new File(actual, name);
+            if (expectedFile.isDirectory()) {
+                assertSameFiles(expectedFile, actualFile);
+            } else if (name.startsWith("info_") && name.endsWith(".xml")) {
+                assertEquals(actualFile.toString(),
+                        readInfoWithoutChecksum(expectedFile), readInfoWithoutChecksum(actualFile));
+            } else if (name.startsWith("mets_") && name.endsWith(".xml")) {
+                assertEquals(actualFile.toString(),
+                        readMetsWithoutChecksums(expectedFile), readMetsWithoutChecksums(actualFile));
+            } else if (name.endsWith(".xml")) {
+                assertEquals(actualFile.toString(),
+                        readWithoutTimestamps(expectedFile), readWithoutTimestamps(actualFile));
+            } else if (name.startsWith("md5_") && name.endsWith(".md5")) {
+                assertEquals(actualFile.toString(),
+                        readChecksumFiles(expectedFile), readChecksumFiles(actualFile));
+            } else {
+                assertArrayEquals(actualFile.toString(),
+                        Files.readAllBytes(expectedFile.toPath()), Files.readAllBytes(actualFile.toPath()));
+            }
+        }
+    }
+
+    private static String readWithoutTimestamps(File file) throws Exception {
+        String content = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+        return content.replaceAll("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}(\\.\\d+)?(Z|[+-]\\d{2}:\\d{2})?", "TIMESTAMP");
+    }
+
+    /**
+     * Reads info.xml and checks the checksum of its checksum file
+     * that differs with timestamps of the package.
+     */
+    private static String readInfoWithoutChecksum(File infoFile) throws Exception {
+        Info info = (Info) JAXBContext.newInstance(Info.class).createUnmarshaller().unmarshal(infoFile);
+        File md5File = new File(infoFile.getParentFile(), info.getChecksum().getValue());
+        assertEquals(md5File.toString(),
+                DigestUtils.md5Hex(Files.readAllBytes(md5File.toPath())), info.getChecksum().getChecksum());
+        return readWithoutTimestamps(infoFile).replace(info.getChecksum().getChecksum(), "CHECKSUM");
+    }
+
+    /**
+     * Reads METS and checks checksums of its files that differ
+     * with timestamps of the package.
+     */
+    private static String readMetsWithoutChecksums(File metsFile) throws Exception {
+        Mets mets = (Mets) JAXBContext.newInstance(Mets.class).createUnmarshaller().unmarshal(metsFile);
+        String content = readWithoutTimestamps(metsFile);
+        for (FileGrp fileGrp : mets.getFileSec().getFileGrp()) {
+            for (FileType fileType : fileGrp.getFile()) {
+                File file = new File(metsFile.getParentFile(), fileType.getFLocat().get(0).getHref());
+                assertEquals(file.toString(),
+                        DigestUtils.md5Hex(Files.readAllBytes(file.toPath())), fileType.getCHECKSUM());
+                content = content.replace(fileType.getCHECKSUM(), "CHECKSUM");
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Reads file names listed in the checksum file and checks their checksums.
+     */
+    private static List<String> readChecksumFiles(File md5File) throws Exception {
+        List<String> fileNames = new ArrayList<String>();
+        for (String line : Files.readAllLines(md5File.toPath(), Charset.forName("UTF-8"))) {
+            String[] checksum = line.split(" ", 2);
+            File file = new File(md5File.getParentFile(), checksum[1]);
+            assertEquals(file.toString(), DigestUtils.md5Hex(Files.readAllBytes(file.toPath())), checksum[0]);
+            fileNames.add(checksum[1]);
+        }
+        return fileNames;
+    }
+
     /**
      * Tests if all filegoups are created
      *
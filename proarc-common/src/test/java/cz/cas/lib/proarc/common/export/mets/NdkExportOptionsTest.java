@@ -41,10 +41,15 @@ public class NdkExportOptionsTest {
         String archivist = "ProArc";
         config.addProperty(NdkExportOptions.PROP_NDK_AGENT_ARCHIVIST, archivist);
 
+        config.addProperty(NdkExportOptions.PROP_NDK_THREADS, 4);
+        config.addProperty(NdkExportOptions.PROP_NDK_LOAD_THREADS, 3);
+
         NdkExportOptions result = NdkExportOptions.getOptions(config);
 
         assertEquals("creator", creator, result.getCreator());
         assertEquals("archivist", archivist, result.getArchivist());
+        assertEquals("threads", 4, result.getThreadCount());
+        assertEquals("loadThreads", 3, result.getLoadThreadCount());
     }
 
     @Test
@@ -53,6 +58,8 @@ public class NdkExportOptionsTest {
         NdkExportOptions result = NdkExportOptions.getOptions(config);
         assertNull("The default creator must be empty", result.getCreator());
         assertNull("The default archivist must be empty", result.getArchivist());
+        assertEquals("The default is the sequential export", 1, result.getThreadCount());
+        assertEquals(1, result.getLoadThreadCount());
     }
 
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import org.apache.commons.io.IOUtils;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class DisseminationCacheTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    @Test
+    public void testPutGet() throws Exception {
+        DisseminationCache cache = new DisseminationCache(new File(temp.getRoot(), "cache"), 100);
+        assertNull(cache.get("uuid:1", BinaryEditor.THUMB_ID));
+        DisseminationCache.Entry entry = put(cache, "uuid:1", 10);
+        assertNotNull(entry);
+        assertSame(entry, cache.get("uuid:1", BinaryEditor.THUMB_ID));
+        assertEquals(10, entry.getSize());
+        assertEquals("image/jpeg", entry.getMime());
+        assertEquals(1234, entry.getLastModified());
+        InputStream is = cache.open(entry);
+        try {
+            assertEquals(10, IOUtils.toByteArray(is).length);
+        } finally {
+            is.close();
+        }
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        DisseminationCache cache = new DisseminationCache(new File(temp.getRoot(), "cache"), 100);
+        put(cache, "uuid:1", 40);
+        put(cache, "uuid:2", 40);
+        // touch the first
+        assertNotNull(cache.get("uuid:1", BinaryEditor.THUMB_ID));
+        put(cache, "uuid:3", 40);
+        assertNotNull(cache.get("uuid:1", BinaryEditor.THUMB_ID));
+        assertNull(cache.get("uuid:2", BinaryEditor.THUMB_ID));
+        assertNotNull(cache.get("uuid:3", BinaryEditor.THUMB_ID));
+        // too large
+        assertNull(put(cache, "uuid:4", 101));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        DisseminationCache cache = new DisseminationCache(new File(temp.getRoot(), "cache"), 100);
+        DisseminationCache.Entry entry = put(cache, "uuid:1", 10);
+        long modCount = cache.getModCount();
+        cache.invalidate("uuid:1", BinaryEditor.THUMB_ID);
+        assertNull(cache.get("uuid:1", BinaryEditor.THUMB_ID));
+        assertNull(cache.open(entry));
+        // content read before the invalidation
+        assertNull(cache.put("uuid:1", BinaryEditor.THUMB_ID, new ByteArrayInputStream(new byte[10]),
+                "image/jpeg", "inline", 1234, modCount));
+        assertNotNull(put(cache, "uuid:1", 10));
+    }
+
+    @Test
+    public void testInvalidateObject() throws Exception {
+        DisseminationCache cache = new DisseminationCache(new File(temp.getRoot(), "cache"), 100);
+        put(cache, "uuid:1", 10);
+        cache.put("uuid:1", BinaryEditor.PREVIEW_ID, new ByteArrayInputStream(new byte[10]),
+                "image/jpeg", "inline", 1234, cache.getModCount());
+        put(cache, "uuid:11", 10);
+        cache.invalidate("uuid:1");
+        assertNull(cache.get("uuid:1", BinaryEditor.THUMB_ID));
+        assertNull(cache.get("uuid:1", BinaryEditor.PREVIEW_ID));
+        assertNotNull(cache.get("uuid:11", BinaryEditor.THUMB_ID));
+    }
+
+    private static DisseminationCache.Entry put(DisseminationCache cache, String pid, int size) throws Exception {
+        return cache.put(pid, BinaryEditor.THUMB_ID, new ByteArrayInputStream(new byte[size]),
+                "image/jpeg", "inline", 1234, cache.getModCount());
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Locale;
+import org.apache.commons.io.FileUtils;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class PageViewIndexTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    @Test
+    public void testIndex() throws Exception {
+        File folder = temp.getRoot();
+        File foxml = new File(folder, "page1.foxml");
+        FileUtils.writeStringToFile(foxml, "<foxml/>", "UTF-8");
+        foxml.setLastModified(System.currentTimeMillis() - 10000);
+
+        PageViewIndex index = PageViewIndex.open(folder, Locale.ENGLISH);
+        assertNull(index.get("uuid:1", foxml));
+        PageViewIndex.Entry entry = new PageViewIndex.Entry();
+        entry.pid = "uuid:1";
+        entry.page = true;
+        entry.pageNumber = "[1]";
+        entry.pageTypeLabel = "Normal Page";
+        index.put(entry, foxml, System.currentTimeMillis());
+        assertSame(entry, index.get("uuid:1", foxml));
+        index.save();
+
+        // the stored index
+        index = PageViewIndex.open(folder, Locale.ENGLISH);
+        entry = index.get("uuid:1", foxml);
+        assertNotNull(entry);
+        assertTrue(entry.page);
+        assertEquals("[1]", entry.pageNumber);
+        assertEquals("Normal Page", entry.pageTypeLabel);
+        // other locale
+        assertNull(PageViewIndex.open(folder, new Locale("cs")).get("uuid:1", foxml));
+
+        // the FOXML was rewritten
+        FileUtils.writeStringToFile(foxml, "<foxml>modified</foxml>", "UTF-8");
+        assertNull(index.get("uuid:1", foxml));
+
+        // not trusted as modified at the time of indexing
+        index.put(entry, foxml, foxml.lastModified());
+        assertNull(index.get("uuid:1", foxml));
+    }
+
+    @Test
+    public void testRetain() throws Exception {
+        File folder = temp.getRoot();
+        File foxml1 = new File(folder, "page1.foxml");
+        File foxml2 = new File(folder, "page2.foxml");
+        FileUtils.writeStringToFile(foxml1, "<foxml/>", "UTF-8");
+        FileUtils.writeStringToFile(foxml2, "<foxml/>", "UTF-8");
+        foxml1.setLastModified(System.currentTimeMillis() - 10000);
+        foxml2.setLastModified(System.currentTimeMillis() - 10000);
+
+        PageViewIndex index = PageViewIndex.open(folder, Locale.ENGLISH);
+        PageViewIndex.Entry entry1 = new PageViewIndex.Entry();
+        entry1.pid = "uuid:1";
+        index.put(entry1, foxml1, System.currentTimeMillis());
+        PageViewIndex.Entry entry2 = new PageViewIndex.Entry();
+        entry2.pid = "uuid:2";
+        index.put(entry2, foxml2, System.currentTimeMillis());
+        index.save();
+
+        // the item uuid:2 was removed from the batch but its FOXML remains
+        index = PageViewIndex.open(folder, Locale.ENGLISH);
+        index.retain(Arrays.asList("uuid:1"));
+        index.save();
+
+        index = PageViewIndex.open(folder, Locale.ENGLISH);
+        assertNotNull(index.get("uuid:1", foxml1));
+        assertNull(index.get("uuid:2", foxml2));
+    }
+
+    @Test
+    public void testBrokenIndex() throws Exception {
+        File folder = temp.getRoot();
+        FileUtils.writeStringToFile(new File(folder, PageViewIndex.FILENAME_PREFIX + "en.xml"), "<broken", "UTF-8");
+        PageViewIndex index = PageViewIndex.open(folder, Locale.ENGLISH);
+        assertNull(index.get("uuid:1", new File(folder, "page1.foxml")));
+    }
+
+}
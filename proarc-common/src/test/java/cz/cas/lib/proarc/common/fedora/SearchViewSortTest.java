@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests sorting of search items that does not need Fedora.
+ *
+ * @author Jan Pokorsky
+ */
+public class SearchViewSortTest {
+
+    @Test
+    public void testSortItems() {
+        List<String> pids = Arrays.asList("uuid:3", "uuid:1", "uuid:missing", "uuid:2", "uuid:1");
+        List<Item> items = Arrays.asList(new Item("uuid:1"), new Item("uuid:2"), new Item("uuid:3"), new Item("uuid:4"));
+        List<Item> result = SearchView.sortItems(pids, items);
+        assertEquals(3, result.size());
+        assertEquals("uuid:3", result.get(0).getPid());
+        assertEquals("uuid:1", result.get(1).getPid());
+        assertEquals("uuid:2", result.get(2).getPid());
+    }
+
+    @Test
+    public void testSortShuffledItems() {
+        int count = 1000;
+        List<String> pids = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            pids.add("uuid:" + i);
+        }
+        List<Item> items = new ArrayList<Item>(count);
+        for (String pid : pids) {
+            items.add(new Item(pid));
+        }
+        Collections.shuffle(items, new Random(count));
+
+        List<Item> result = SearchView.sortItems(pids, items);
+        assertEquals(count, result.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(pids.get(i), result.get(i).getPid());
+        }
+    }
+
+}
@@ -276,6 +276,45 @@ public class SearchViewTest {
         assertItem(result, "uuid:tree1-child1-child1");
     }
 
+    @Test
+    public void testFindReferrersOfPids() throws Exception {
+        fedora.cleanUp();
+        fedora.ingest(
+                getClass().getResource("tree1-child1.xml"),
+                getClass().getResource("tree1-child1-child1.xml"),
+                getClass().getResource("tree1-child1-child1-child1.xml"),
+                getClass().getResource("tree1-child1-child1-child2.xml")
+                );
+        SearchView instance = new SearchView(storage);
+        List<String> pids = Arrays.asList("uuid:tree1-child1-child1",
+                "uuid:tree1-child1-child1-child1", "uuid:tree1-child1-child1-child2",
+                "uuid:tree1-child1");
+        List<Item> result = instance.findReferrers(pids);
+        assertEquals(3, result.size());
+        for (Item item : result) {
+            List<Item> parents = instance.findReferrers(item.getPid());
+            assertEquals(item.getPid(), 1, parents.size());
+            assertEquals(item.getPid(), parents.get(0).getPid(), item.getParentPid());
+        }
+    }
+
+    @Test
+    public void testSortItems() {
+        Item item1 = new Item("uuid:1");
+        Item item2 = new Item("uuid:2");
+        Item item2b = new Item("uuid:2");
+        Item item3 = new Item("uuid:3");
+        List<Item> result = SearchView.sortItems(
+                Arrays.asList("uuid:2", "uuid:missing", "uuid:1", "uuid:2", "uuid:2"),
+                Arrays.asList(item1, item2, item3, item2b));
+        assertEquals(Arrays.asList(item2, item1, item2b), result);
+
+        // a PID listed once takes one item
+        result = SearchView.sortItems(Arrays.asList("uuid:2", "uuid:1"),
+                Arrays.asList(item1, item2, item2b));
+        assertEquals(Arrays.asList(item2, item1), result);
+    }
+
     @Test
     public void testIsDeviceInUse() throws Exception {
         fedora.cleanUp();
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import javax.imageio.ImageIO;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class BandedJpegWriterTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    @Test
+    public void testWriteRgb() throws Exception {
+        assertBandedWrite(BufferedImage.TYPE_3BYTE_BGR);
+    }
+
+    @Test
+    public void testWriteGray() throws Exception {
+        assertBandedWrite(BufferedImage.TYPE_BYTE_GRAY);
+    }
+
+    @Test
+    public void testWriteBilevel() throws Exception {
+        assertBandedWrite(BufferedImage.TYPE_BYTE_BINARY);
+    }
+
+    private void assertBandedWrite(int imageType) throws Exception {
+        int width = 301;
+        int height = 203;
+        BufferedImage origin = new BufferedImage(width, height, imageType);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                origin.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8 | ((x + y) % 256));
+            }
+        }
+        File source = new File(temp.getRoot(), "image.png");
+        assertTrue(ImageIO.write(origin, "png", source));
+
+        // the whole image at once
+        File expected = new File(temp.getRoot(), "expected.jpg");
+        BandedJpegWriter.write(source, expected, Integer.MAX_VALUE);
+        // bands of 7 rows
+        File banded = new File(temp.getRoot(), "banded.jpg");
+        BandedJpegWriter.write(source, banded, 4 * width * 7);
+
+        assertTrue(InputUtils.isJpeg(banded));
+        assertTrue(FileUtils.contentEquals(expected, banded));
+        BufferedImage result = ImageIO.read(banded);
+        assertEquals(width, result.getWidth());
+        assertEquals(height, result.getHeight());
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import cz.cas.lib.proarc.common.dao.BatchItem;
+import cz.cas.lib.proarc.common.imports.ImportBatchManager.BatchItemObject;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class BatchItemIndexTest {
+
+    private static final URI ROOT = URI.create("file:/batches/");
+
+    @Test
+    public void testRemove() {
+        BatchItemObject item1 = createItem("uuid:1");
+        BatchItemObject item2 = createItem("uuid:2");
+        BatchItemObject item2b = createItem("uuid:2");
+        BatchItemIndex<BatchItemObject> index = new BatchItemIndex<BatchItemObject>(
+                Arrays.asList(item2, item1, item2b));
+        assertFalse(index.isEmpty());
+        assertNull(index.remove("uuid:missing"));
+        assertSame(item2, index.remove("uuid:2"));
+        assertSame(item1, index.remove("uuid:1"));
+        assertNull(index.remove("uuid:1"));
+        assertFalse(index.isEmpty());
+        assertSame(item2b, index.remove("uuid:2"));
+        assertTrue(index.isEmpty());
+        assertNull(index.remove("uuid:2"));
+    }
+
+    @Test
+    public void testOrderByMembers() {
+        int count = 1000;
+        List<String> members = new ArrayList<String>(count);
+        List<BatchItemObject> items = new ArrayList<BatchItemObject>(count);
+        for (int i = 0; i < count; i++) {
+            String pid = "uuid:" + i;
+            members.add(pid);
+            items.add(createItem(pid));
+        }
+        // an item that is not a member stays in the index
+        items.add(createItem("uuid:notMember"));
+        Collections.shuffle(items, new Random(count));
+        // a member without item is skipped
+        members.add(count / 2, "uuid:missing");
+
+        BatchItemIndex<BatchItemObject> index = new BatchItemIndex<BatchItemObject>(items);
+        List<BatchItemObject> result = new ArrayList<BatchItemObject>(count);
+        for (String member : members) {
+            BatchItemObject item = index.remove(member);
+            if (item != null) {
+                result.add(item);
+            }
+        }
+        assertEquals(count, result.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("uuid:" + i, result.get(i).getPid());
+        }
+        assertFalse(index.isEmpty());
+        assertNotNull(index.remove("uuid:notMember"));
+        assertTrue(index.isEmpty());
+    }
+
+    /**
+     * Orders 5k and 20k items like the former linear search of each member
+     * and checks the work grows linearly. Each item PID is read once while
+     * the linear search reads about n^2/4 PIDs.
+     */
+    @Test
+    public void testOrderScaling() {
+        for (int count : new int[] {5000, 20000}) {
+            List<String> members = new ArrayList<String>(count);
+            List<CountingItem> items = new ArrayList<CountingItem>(count);
+            for (int i = 0; i < count; i++) {
+                String pid = "uuid:" + i;
+                members.add(pid);
+                items.add(new CountingItem(pid));
+            }
+            Collections.shuffle(items, new Random(count));
+
+            List<CountingItem> expected = orderLinear(members, new ArrayList<CountingItem>(items));
+            long linearReads = CountingItem.reads;
+            CountingItem.reads = 0;
+
+            BatchItemIndex<CountingItem> index = new BatchItemIndex<CountingItem>(items);
+            List<CountingItem> result = new ArrayList<CountingItem>(count);
+            for (String member : members) {
+                result.add(index.remove(member));
+            }
+            long indexedReads = CountingItem.reads;
+            CountingItem.reads = 0;
+
+            assertEquals(expected, result);
+            assertTrue(index.isEmpty());
+            assertEquals(count, indexedReads);
+            assertTrue(String.valueOf(linearReads), linearReads > (long) count * count / 8);
+        }
+    }
+
+    private static List<CountingItem> orderLinear(List<String> members, List<CountingItem> items) {
+        List<CountingItem> result = new ArrayList<CountingItem>(items.size());
+        for (String member : members) {
+            for (int i = 0; i < items.size(); i++) {
+                CountingItem item = items.get(i);
+                if (member.equals(item.getPid())) {
+                    result.add(item);
+                    items.remove(i);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts reads of item PIDs.
+     */
+    private static final class CountingItem extends BatchItemObject {
+
+        static long reads;
+
+        CountingItem(String pid) {
+            super(createBatchItem(pid), ROOT);
+        }
+
+        @Override
+        public String getPid() {
+            reads++;
+            return super.getPid();
+        }
+    }
+
+    private static BatchItem createBatchItem(String pid) {
+        BatchItem item = new BatchItem();
+        item.setPid(pid);
+        return item;
+    }
+
+    private static BatchItemObject createItem(String pid) {
+        return new BatchItemObject(createBatchItem(pid), ROOT);
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import cz.cas.lib.proarc.common.dao.BatchItem;
+import cz.cas.lib.proarc.common.dao.BatchItemDao;
+import cz.cas.lib.proarc.common.dao.DaoFactory;
+import cz.cas.lib.proarc.common.dao.Transaction;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class BatchItemWriterTest {
+
+    private final List<BatchItem> stored = Collections.synchronizedList(new ArrayList<BatchItem>());
+    private final AtomicInteger commits = new AtomicInteger();
+    private final AtomicInteger ids = new AtomicInteger();
+
+    @Test
+    public void testWrite() throws Exception {
+        BatchItemWriter writer = new BatchItemWriter(createMockDaoFactory(), 3, Long.MAX_VALUE);
+        BatchItem item1 = createItem("uuid:1");
+        BatchItem item2 = createItem("uuid:2");
+        BatchItem item3 = createItem("uuid:3");
+        BatchItem item4 = createItem("uuid:4");
+
+        writer.write(Collections.singletonList(item1));
+        writer.write(Collections.singletonList(item2));
+        item1.setState("LOADED");
+        writer.write(Collections.singletonList(item1));
+        assertEquals(0, commits.get());
+
+        // flushed behind
+        writer.write(Arrays.asList(item3, item4));
+        awaitCommits(1);
+        assertEquals(Arrays.asList("uuid:1", "uuid:2", "uuid:3", "uuid:4"), getPids(stored));
+        assertEquals("LOADED", stored.get(0).getState());
+        assertNotSame(item1, stored.get(0));
+        // generated ID passed back
+        assertEquals(stored.get(1).getId(), item2.getId());
+        assertNotNull(item2.getTimestamp());
+
+        stored.clear();
+        item2.setState("LOADED");
+        writer.write(Collections.singletonList(item2));
+        assertEquals(1, commits.get());
+        writer.close();
+        assertEquals(2, commits.get());
+        assertEquals(Arrays.asList("uuid:2"), getPids(stored));
+        assertEquals(item2.getId(), stored.get(0).getId());
+        assertEquals("LOADED", stored.get(0).getState());
+
+        writer.flush();
+        assertEquals(2, commits.get());
+    }
+
+    @Test
+    public void testWriteDelay() throws Exception {
+        BatchItemWriter writer = new BatchItemWriter(createMockDaoFactory(), 100, 1);
+        try {
+            BatchItem item1 = createItem("uuid:1");
+            writer.write(Collections.singletonList(item1));
+            awaitCommits(1);
+            assertEquals(Arrays.asList("uuid:1"), getPids(stored));
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testItemModifiedAfterWrite() throws Exception {
+        BatchItemWriter writer = new BatchItemWriter(createMockDaoFactory(), 100, Long.MAX_VALUE);
+        BatchItem item1 = createItem("uuid:1");
+        writer.write(Collections.singletonList(item1));
+        // not written yet
+        item1.setState("LOADING_FAILED");
+        item1.setLog("failure");
+        writer.close();
+        assertEquals(1, commits.get());
+        assertEquals("LOADING", stored.get(0).getState());
+        assertNull(stored.get(0).getLog());
+        // the DAO read back values are not passed to the item
+        assertEquals("LOADING_FAILED", item1.getState());
+        assertEquals("failure", item1.getLog());
+        assertEquals(stored.get(0).getId(), item1.getId());
+    }
+
+    private void awaitCommits(int count) throws InterruptedException {
+        for (int i = 0; i < 1000 && commits.get() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, commits.get());
+    }
+
+    private static List<String> getPids(List<BatchItem> items) {
+        List<String> pids = new ArrayList<String>();
+        synchronized (items) {
+            for (BatchItem item : items) {
+                pids.add(item.getPid());
+            }
+        }
+        return pids;
+    }
+
+    private static BatchItem createItem(String pid) {
+        BatchItem item = new BatchItem();
+        item.setBatchId(1);
+        item.setPid(pid);
+        item.setState("LOADING");
+        item.setType(BatchItem.Type.OBJECT);
+        return item;
+    }
+
+    private DaoFactory createMockDaoFactory() {
+        DaoFactory daos = EasyMock.createMock(DaoFactory.class);
+        EasyMock.expect(daos.createTransaction()).andAnswer(new IAnswer<Transaction>() {
+
+            @Override
+            public Transaction answer() throws Throwable {
+                return createMockTransaction();
+            }
+        }).anyTimes();
+        EasyMock.expect(daos.createBatchItem()).andAnswer(new IAnswer<BatchItemDao>() {
+
+            @Override
+            public BatchItemDao answer() throws Throwable {
+                return createMockBatchItemDao();
+            }
+        }).anyTimes();
+        EasyMock.replay(daos);
+        return daos;
+    }
+
+    private Transaction createMockTransaction() {
+        Transaction tx = EasyMock.createMock(Transaction.class);
+        tx.commit();
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+
+            @Override
+            public Object answer() throws Throwable {
+                commits.incrementAndGet();
+                return null;
+            }
+        });
+        tx.close();
+        EasyMock.replay(tx);
+        return tx;
+    }
+
+    private BatchItemDao createMockBatchItemDao() {
+        BatchItemDao dao = EasyMock.createMock(BatchItemDao.class);
+        dao.update(EasyMock.<BatchItem>anyObject());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+
+            @Override
+            public Object answer() throws Throwable {
+                BatchItem item = (BatchItem) EasyMock.getCurrentArguments()[0];
+                if (item.getId() == null) {
+                    item.setId(ids.incrementAndGet());
+                    item.setTimestamp(new Timestamp(System.currentTimeMillis()));
+                }
+                stored.add(item);
+                return null;
+            }
+        }).anyTimes();
+        dao.setTransaction(EasyMock.<Transaction>anyObject());
+        EasyMock.replay(dao);
+        return dao;
+    }
+
+}
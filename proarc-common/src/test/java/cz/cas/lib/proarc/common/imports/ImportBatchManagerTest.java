@@ -21,10 +21,21 @@ import cz.cas.lib.proarc.common.config.AppConfiguration;
 import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
 import cz.cas.lib.proarc.common.dao.Batch;
 import cz.cas.lib.proarc.common.dao.Batch.State;
+import cz.cas.lib.proarc.common.dao.BatchItem;
+import cz.cas.lib.proarc.common.dao.BatchItem.ObjectState;
+import cz.cas.lib.proarc.common.dao.BatchItemDao;
 import cz.cas.lib.proarc.common.dao.DaoFactory;
+import cz.cas.lib.proarc.common.dao.Transaction;
+import cz.cas.lib.proarc.common.fedora.LocalStorage;
+import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
+import cz.cas.lib.proarc.common.imports.ImportBatchManager.BatchItemObject;
 import java.io.File;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.easymock.EasyMock;
 import org.junit.After;
@@ -117,6 +128,169 @@ public class ImportBatchManagerTest {
         assertNull(result);
     }
 
+    @Test
+    public void testCommitChildRelations() throws Exception {
+        DaoFactory df = EasyMock.createMock(DaoFactory.class);
+        ImportBatchManager ibm = new ImportBatchManager(appConf, df);
+        File batchRoot = new File(ibm.getBatchRoot());
+        File batchFolder = new File(batchRoot, "importFolder");
+        batchFolder.mkdir();
+        File targetFolder = ImportProcess.createTargetFolder(batchFolder);
+        Batch b = new Batch();
+        b.setId(1);
+        b.setFolder(ibm.relativizeBatchFile(batchFolder));
+        b.setState(State.LOADING);
+
+        assertTrue(ibm.addChildRelation(b, null, "uuid:1"));
+        assertTrue(ibm.addChildRelation(b, null, "uuid:3"));
+        assertFalse(ibm.addChildRelation(b, null, "uuid:1"));
+        assertTrue(ibm.addChildRelation(b, null, "uuid:2"));
+        File journal = new File(targetFolder, ImportBatchManager.ROOT_MEMBERS_FILENAME);
+        assertTrue(journal.exists());
+        assertFalse(new File(targetFolder, ImportBatchManager.ROOT_ITEM_FILENAME).exists());
+
+        ibm.commitChildRelations(b);
+        assertFalse(journal.exists());
+        RelationEditor relations = new RelationEditor(ibm.getRootObject(b));
+        assertEquals(Arrays.asList("uuid:1", "uuid:3", "uuid:2"), relations.getMembers());
+
+        // the loaded batch updates the root at once
+        b.setState(State.LOADED);
+        assertTrue(ibm.addChildRelation(b, null, "uuid:4"));
+        assertFalse(journal.exists());
+        relations = new RelationEditor(ibm.getRootObject(b));
+        assertEquals(Arrays.asList("uuid:1", "uuid:3", "uuid:2", "uuid:4"), relations.getMembers());
+    }
+
+    @Test
+    public void testCommitChildRelationsOfInterruptedSession() throws Exception {
+        DaoFactory df = EasyMock.createMock(DaoFactory.class);
+        ImportBatchManager ibm = new ImportBatchManager(appConf, df);
+        File batchRoot = new File(ibm.getBatchRoot());
+        File batchFolder = new File(batchRoot, "importFolder");
+        batchFolder.mkdir();
+        File targetFolder = ImportProcess.createTargetFolder(batchFolder);
+        Batch b = new Batch();
+        b.setId(1);
+        b.setFolder(ibm.relativizeBatchFile(batchFolder));
+        b.setState(State.LOADING);
+        ibm.addChildRelation(b, null, "uuid:1");
+        ibm.addChildRelation(b, null, "uuid:2");
+
+        ImportBatchManager ibm2 = new ImportBatchManager(appConf, df);
+        assertFalse(ibm2.addChildRelation(b, null, "uuid:2"));
+        ibm2.commitChildRelations(b);
+        assertFalse(new File(targetFolder, ImportBatchManager.ROOT_MEMBERS_FILENAME).exists());
+        RelationEditor relations = new RelationEditor(ibm2.getRootObject(b));
+        assertEquals(Arrays.asList("uuid:1", "uuid:2"), relations.getMembers());
+    }
+
+    @Test
+    public void testFindItemsWrittenBehind() throws Exception {
+        MemoryBatchItemDao itemDao = new MemoryBatchItemDao();
+        Transaction tx = EasyMock.createNiceMock(Transaction.class);
+        DaoFactory df = EasyMock.createMock(DaoFactory.class);
+        EasyMock.expect(df.createBatchItem()).andReturn(itemDao).anyTimes();
+        EasyMock.expect(df.createTransaction()).andReturn(tx).anyTimes();
+        EasyMock.replay(df, tx);
+        ImportBatchManager ibm = new ImportBatchManager(appConf, df);
+        Batch b = new Batch();
+        b.setId(1);
+        b.setState(State.LOADING);
+        LocalStorage storage = new LocalStorage();
+
+        ibm.openItemWriter(b);
+        try {
+            // fewer items than the writer stores at once
+            List<BatchItemObject> added = new ArrayList<BatchItemObject>();
+            for (int i = 1; i <= 3; i++) {
+                File foxml = new File(temp.getRoot(), i + ".foxml");
+                added.add(ibm.addLocalObject(b, storage.create("uuid:" + i, foxml)));
+            }
+            assertTrue(itemDao.items.isEmpty());
+
+            // the archive import looks for objects shared by packages
+            BatchItemObject found = ibm.findBatchObject(b.getId(), "uuid:2");
+            assertNotNull(found);
+            assertEquals(3, itemDao.items.size());
+            assertEquals(added.get(1).getId(), found.getId());
+            assertNotNull(added.get(0).getId());
+
+            // the ingest of the same run reads loaded objects
+            added.get(2).setState(ObjectState.LOADED);
+            ibm.update(added.get(2));
+            List<BatchItemObject> loaded = ibm.findBatchObjects(b.getId(), null, ObjectState.LOADED);
+            assertEquals(1, loaded.size());
+            assertEquals("uuid:3", loaded.get(0).getPid());
+        } finally {
+            ibm.closeItemWriter(b);
+        }
+        assertEquals(3, itemDao.items.size());
+    }
+
+    /**
+     * Stores items in memory instead of the database.
+     */
+    private static final class MemoryBatchItemDao implements BatchItemDao {
+
+        final List<BatchItem> items = Collections.synchronizedList(new ArrayList<BatchItem>());
+
+        @Override
+        public BatchItem create() {
+            return new BatchItem();
+        }
+
+        @Override
+        public BatchItem find(int id) {
+            synchronized (items) {
+                for (BatchItem item : items) {
+                    if (item.getId() == id) {
+                        return item;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public List<BatchItem> find(int batchId, String pid, String dsId, String state, String type) {
+            List<BatchItem> result = new ArrayList<BatchItem>();
+            synchronized (items) {
+                for (BatchItem item : items) {
+                    if (item.getBatchId() == batchId
+                            && (pid == null || pid.equals(item.getPid()))
+                            && (state == null || state.equals(item.getState()))
+                            && (type == null || type.equals(item.getTypeAsString()))) {
+                        result.add(item);
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void removeItems(int batchId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void update(BatchItem item) {
+            synchronized (items) {
+                if (item.getId() == null) {
+                    item.setId(items.size() + 1);
+                    item.setTimestamp(new Timestamp(System.currentTimeMillis()));
+                    items.add(item);
+                } else {
+                    items.set(item.getId() - 1, item);
+                }
+            }
+        }
+
+        @Override
+        public void setTransaction(Transaction tx) {
+        }
+    }
+
 //    @Test
 //    public void testGetInstance() {
 //        System.out.println("getInstance");
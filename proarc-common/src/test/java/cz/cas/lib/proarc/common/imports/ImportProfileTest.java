@@ -89,6 +89,22 @@ public class ImportProfileTest {
         }
     }
 
+    @Test
+    public void testGetThreadCount() {
+        ImportProfile instance = new ImportProfile(conf);
+        assertEquals(1, instance.getThreadCount());
+
+        conf.setProperty(ImportProfile.THREADS, "4");
+        assertEquals(4, instance.getThreadCount());
+
+        try {
+            conf.setProperty(ImportProfile.THREADS, 0);
+            instance.getThreadCount();
+            fail();
+        } catch (Exception e) {
+        }
+    }
+
     @Test
     public void testGetThumbnailScaling() {
         ImportProfile instance = new ImportProfile(conf);
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class ImportSequencerTest {
+
+    @Test
+    public void testOrder() throws Exception {
+        final ImportSequencer sequencer = new ImportSequencer();
+        final List<Integer> registered = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> counters = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> committed = Collections.synchronizedList(new ArrayList<Integer>());
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<Future<?>>();
+            for (int i = 0; i < 20; i++) {
+                final int index = i;
+                results.add(pool.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        try {
+                            // skipped file set
+                            if (index == 5) {
+                                return null;
+                            }
+                            Thread.sleep((20 - index) % 7);
+                            counters.add(sequencer.awaitRegistration(index));
+                            registered.add(index);
+                            sequencer.registered(index);
+                            Thread.sleep(index % 3);
+                            sequencer.awaitCommit(index);
+                            committed.add(index);
+                            sequencer.committed(index);
+                            return null;
+                        } finally {
+                            sequencer.finish(index);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        List<Integer> expected = new ArrayList<Integer>();
+        List<Integer> expectedCounters = new ArrayList<Integer>();
+        for (int i = 0; i < 20; i++) {
+            if (i != 5) {
+                expectedCounters.add(expected.size());
+                expected.add(i);
+            }
+        }
+        assertEquals(expected, registered);
+        assertEquals(expectedCounters, counters);
+        assertEquals(expected, committed);
+        assertEquals(19, sequencer.getConsumedFileCounter());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        ImportSequencer sequencer = new ImportSequencer();
+        assertEquals(0, sequencer.awaitRegistration(0));
+        sequencer.registered(0);
+        sequencer.cancel();
+        sequencer.finish(0);
+        try {
+            sequencer.awaitCommit(1);
+            fail();
+        } catch (CancellationException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCancelFollowing() throws Exception {
+        final ImportSequencer sequencer = new ImportSequencer();
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(0, sequencer.awaitRegistration(0));
+            sequencer.registered(0);
+            assertEquals(1, sequencer.awaitRegistration(1));
+            sequencer.registered(1);
+            // the last file set waits for its turn
+            Future<Void> last = pool.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    sequencer.awaitCommit(2);
+                    return null;
+                }
+            });
+            // the middle file set fails
+            sequencer.cancel(1);
+            sequencer.finish(1);
+            try {
+                last.get(10, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException ex) {
+                assertTrue(String.valueOf(ex.getCause()), ex.getCause() instanceof CancellationException);
+            }
+            // the preceding file set still passes
+            sequencer.awaitCommit(0);
+            sequencer.committed(0);
+            try {
+                sequencer.awaitRegistration(2);
+                fail();
+            } catch (CancellationException ex) {
+                // expected
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import javax.imageio.ImageIO;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class SubsampledImageReaderTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    @Test
+    public void testGetSubsampling() {
+        assertEquals(1, SubsampledImageReader.getSubsampling(1000, 800, null, null));
+        assertEquals(1, SubsampledImageReader.getSubsampling(1000, 800, 1000, 800));
+        assertEquals(5, SubsampledImageReader.getSubsampling(10000, 8000, null, 800));
+        assertEquals(5, SubsampledImageReader.getSubsampling(10000, 8000, 1200, 800));
+        assertEquals(8, SubsampledImageReader.getSubsampling(10000, 8000, 600, 800));
+        assertEquals(1, SubsampledImageReader.getSubsampling(100, 80, 120, 128));
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        File file = new File(temp.getRoot(), "image.png");
+        BufferedImage origin = new BufferedImage(1000, 600, BufferedImage.TYPE_INT_RGB);
+        assertTrue(ImageIO.write(origin, "png", file));
+
+        BufferedImage result = SubsampledImageReader.read(file, 120, 128);
+        assertEquals(250, result.getWidth());
+        assertEquals(150, result.getHeight());
+    }
+
+}
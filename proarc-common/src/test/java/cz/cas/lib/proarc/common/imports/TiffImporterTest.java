@@ -27,8 +27,7 @@ import cz.cas.lib.proarc.common.dao.BatchItemDao;
 import cz.cas.lib.proarc.common.dao.DaoFactory;
 import cz.cas.lib.proarc.common.dao.Transaction;
 import cz.cas.lib.proarc.common.dublincore.DcStreamEditor;
-import cz.cas.lib.proarc.common.export.mets.JhoveContext;
-import cz.cas.lib.proarc.common.export.mets.JhoveUtility;
+import cz.cas.lib.proarc.common.export.mets.JhovePool;
 import cz.cas.lib.proarc.common.fedora.BinaryEditor;
 import cz.cas.lib.proarc.common.fedora.MixEditor;
 import cz.cas.lib.proarc.common.fedora.StringEditor;
@@ -48,6 +47,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.CancellationException;
 import javax.xml.XMLConstants;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
@@ -83,7 +83,7 @@ public class TiffImporterTest {
     private File uc1;
     private AppConfiguration config;
     private ArrayList<Object> toVerify = new ArrayList<Object>();;
-    private JhoveContext jhoveContext;
+    private JhovePool jhovePool;
     private UserProfile junit;
     private ImportBatchManager ibm;
 
@@ -132,7 +132,7 @@ public class TiffImporterTest {
             put(AppConfiguration.PROPERTY_APP_HOME, temp.getRoot().getPath());
         }});
 
-        jhoveContext = JhoveUtility.createContext(temp.newFolder("jhove"));
+        jhovePool = new JhovePool(temp.newFolder("jhove"), 2);
 
         DaoFactory daos = createMockDaoFactory();
         ibm = new ImportBatchManager(config, daos);
@@ -149,8 +149,8 @@ public class TiffImporterTest {
 
     @After
     public void tearDown() {
-        if (jhoveContext != null) {
-            jhoveContext.destroy();
+        if (jhovePool != null) {
+            jhovePool.destroy();
         }
     }
 
@@ -171,7 +171,7 @@ public class TiffImporterTest {
         batch.setFolder(ibm.relativizeBatchFile(tiff1.getParentFile()));
         ctx.setBatch(batch);
         FileSet fileSet = ImportFileScanner.getFileSets(Arrays.asList(tiff1, ocr1, alto1, ac1, uc1)).get(0);
-        ctx.setJhoveContext(jhoveContext);
+        ctx.setJhovePool(jhovePool);
 
         TiffImporter instance = new TiffImporter(ibm);
         BatchItemObject result = instance.consume(fileSet, ctx);
@@ -245,7 +245,7 @@ public class TiffImporterTest {
         batch.setFolder(ibm.relativizeBatchFile(tiff1.getParentFile()));
         ctx.setBatch(batch);
         FileSet fileSet = ImportFileScanner.getFileSets(Arrays.asList(tiff1, ocr1, ac1, uc1)).get(0);
-        ctx.setJhoveContext(jhoveContext);
+        ctx.setJhovePool(jhovePool);
 
         TiffImporter instance = new TiffImporter(ibm);
         BatchItemObject result = instance.consume(fileSet, ctx);
@@ -256,6 +256,29 @@ public class TiffImporterTest {
         assertTrue(log, log.contains("Missing ALTO"));
     }
 
+    @Test
+    public void testConsumeInterrupted() throws Exception {
+        File targetFolder = ImportProcess.createTargetFolder(temp.getRoot());
+        ImportOptions ctx = new ImportOptions(tiff1.getParentFile(),
+                "scanner:scanner1", true, junit, config.getImportConfiguration());
+        ctx.setTargetFolder(targetFolder);
+        Batch batch = new Batch();
+        batch.setId(1);
+        batch.setFolder(ibm.relativizeBatchFile(tiff1.getParentFile()));
+        ctx.setBatch(batch);
+        FileSet fileSet = ImportFileScanner.getFileSets(Arrays.asList(tiff1, ocr1, alto1, ac1, uc1)).get(0);
+        ctx.setJhovePool(jhovePool);
+
+        TiffImporter instance = new TiffImporter(ibm);
+        Thread.currentThread().interrupt();
+        try {
+            instance.consume(fileSet, ctx.fork(new ImportSequencer(), 1));
+            fail();
+        } catch (CancellationException ex) {
+            assertTrue(Thread.interrupted());
+        }
+    }
+
     private static String streamXPath(String dsId) {
         return "f:digitalObject/f:datastream[@ID='" + dsId + "']";
     }
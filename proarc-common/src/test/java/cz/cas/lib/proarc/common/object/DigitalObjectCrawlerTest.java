@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
+import cz.cas.lib.proarc.common.fedora.DigitalObjectNotFoundException;
+import cz.cas.lib.proarc.common.fedora.FedoraObject;
+import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.easymock.EasyMock;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares the bulk methods of the crawler with the crawl of single objects.
+ *
+ * @author Jan Pokorsky
+ */
+public class DigitalObjectCrawlerTest {
+
+    /** Maps PIDs to their parent PIDs. */
+    private Map<String, String> tree;
+    private DigitalObjectManager dom;
+
+    @Before
+    public void setUp() {
+        tree = new LinkedHashMap<String, String>();
+        tree.put("uuid:root1", null);
+        tree.put("uuid:root1-c1", "uuid:root1");
+        tree.put("uuid:root1-c1-c1", "uuid:root1-c1");
+        tree.put("uuid:root1-c1-c2", "uuid:root1-c1");
+        tree.put("uuid:root1-c2", "uuid:root1");
+        tree.put("uuid:root1-c2-c1", "uuid:root1-c2");
+        tree.put("uuid:root2", null);
+        tree.put("uuid:root2-c1", "uuid:root2");
+        dom = EasyMock.createNiceMock(DigitalObjectManager.class);
+        EasyMock.expect(dom.createHandler(EasyMock.<FedoraObject>anyObject()))
+                .andStubReturn(new DigitalObjectHandler(EasyMock.createNiceMock(FedoraObject.class), null));
+        EasyMock.replay(dom);
+    }
+
+    @Test
+    public void testGetEntries() throws Exception {
+        TreeCrawler single = new TreeCrawler();
+        TreeCrawler bulk = new TreeCrawler();
+        List<String> pids = Arrays.asList("uuid:root1-c2-c1", "uuid:root1", "uuid:root2-c1", "uuid:root1");
+        Map<String, DigitalObjectElement> entries = bulk.getEntries(pids);
+        assertEquals(Arrays.asList("uuid:root1-c2-c1", "uuid:root1", "uuid:root2-c1"),
+                new ArrayList<String>(entries.keySet()));
+        for (String pid : pids) {
+            assertEquals(single.getEntry(pid).getPid(), entries.get(pid).getPid());
+        }
+        assertEquals(1, bulk.itemQueries);
+
+        // cached entries are not searched again
+        assertSame(entries.get("uuid:root1"), bulk.getEntries(Arrays.asList("uuid:root1")).get("uuid:root1"));
+        assertEquals(1, bulk.itemQueries);
+    }
+
+    @Test(expected = DigitalObjectNotFoundException.class)
+    public void testGetEntriesNotFound() throws Exception {
+        new TreeCrawler().getEntries(Arrays.asList("uuid:root1", "uuid:missing"));
+    }
+
+    @Test
+    public void testGetParents() throws Exception {
+        TreeCrawler single = new TreeCrawler();
+        TreeCrawler bulk = new TreeCrawler();
+        List<String> pids = new ArrayList<String>(tree.keySet());
+        Map<String, DigitalObjectElement> parents = bulk.getParents(pids);
+        assertEquals(pids, new ArrayList<String>(parents.keySet()));
+        for (String pid : pids) {
+            assertElement(single.getParent(pid), parents.get(pid));
+        }
+        assertEquals(1, bulk.referrerQueries);
+        assertEquals(0, bulk.parentQueries);
+    }
+
+    @Test
+    public void testGetReversePaths() throws Exception {
+        TreeCrawler single = new TreeCrawler();
+        TreeCrawler bulk = new TreeCrawler();
+        List<String> pids = Arrays.asList("uuid:root1-c1-c2", "uuid:root1-c2-c1", "uuid:root2-c1", "uuid:root1-c1-c1");
+        Map<String, List<DigitalObjectElement>> paths = bulk.getReversePaths(pids);
+        assertEquals(pids, new ArrayList<String>(paths.keySet()));
+        for (String pid : pids) {
+            List<DigitalObjectElement> expected = single.getReversePath(pid);
+            List<DigitalObjectElement> path = paths.get(pid);
+            assertEquals(pid, expected.size(), path.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertElement(expected.get(i), path.get(i));
+            }
+        }
+        // one query per level of the hierarchies
+        assertEquals(3, bulk.referrerQueries);
+        assertEquals(0, bulk.parentQueries);
+    }
+
+    private static void assertElement(DigitalObjectElement expected, DigitalObjectElement actual) {
+        if (expected == DigitalObjectElement.NULL) {
+            assertSame(DigitalObjectElement.NULL, actual);
+        } else {
+            assertEquals(expected.getPid(), actual.getPid());
+        }
+    }
+
+    /**
+     * Searches the in-memory tree instead of the index.
+     */
+    private class TreeCrawler extends DigitalObjectCrawler {
+
+        int itemQueries;
+        int referrerQueries;
+        int parentQueries;
+
+        TreeCrawler() {
+            super(dom, null);
+        }
+
+        @Override
+        Item searchParentItem(String pid) {
+            ++parentQueries;
+            String parentPid = tree.get(pid);
+            return parentPid == null ? null : new Item(parentPid);
+        }
+
+        @Override
+        Item searchItem(String pid) throws DigitalObjectException {
+            return tree.containsKey(pid) ? new Item(pid) : null;
+        }
+
+        @Override
+        List<Item> searchItems(List<String> pids) throws DigitalObjectException {
+            if (!pids.isEmpty()) {
+                ++itemQueries;
+            }
+            List<Item> items = new ArrayList<Item>();
+            for (String pid : pids) {
+                if (tree.containsKey(pid)) {
+                    items.add(new Item(pid));
+                }
+            }
+            return items;
+        }
+
+        @Override
+        List<Item> searchReferrers(List<String> pids) throws DigitalObjectException {
+            ++referrerQueries;
+            List<Item> items = new ArrayList<Item>();
+            for (String pid : pids) {
+                String parentPid = tree.get(pid);
+                if (parentPid != null) {
+                    Item item = new Item(pid);
+                    item.setParentPid(parentPid);
+                    items.add(item);
+                }
+            }
+            return items;
+        }
+
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import com.yourmediashelf.fedora.client.FedoraClient;
+import com.yourmediashelf.fedora.generated.management.DatastreamProfile;
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.config.AppConfiguration;
+import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
+import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
+import cz.cas.lib.proarc.common.fedora.FedoraObject;
+import cz.cas.lib.proarc.common.fedora.LocalStorage;
+import cz.cas.lib.proarc.common.fedora.LocalStorage.LocalObject;
+import cz.cas.lib.proarc.common.fedora.RemoteStorage;
+import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import cz.cas.lib.proarc.common.fedora.XmlStreamEditor;
+import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
+import cz.cas.lib.proarc.common.object.DigitalObjectManager.CreateHandler;
+import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
+import cz.cas.lib.proarc.common.object.ndk.NdkPlugin;
+import cz.cas.lib.proarc.common.user.UserManager;
+import cz.cas.lib.proarc.common.user.UserProfile;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.easymock.EasyMock;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests the creation of issue series without Fedora.
+ *
+ * @author Jan Pokorsky
+ */
+public class DigitalObjectManagerTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    private DigitalObjectManager manager;
+    private UserProfile user;
+    private final List<String> ingested = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> purged = Collections.synchronizedList(new ArrayList<String>());
+    private RemoteStorage remoteStorage;
+
+    @Before
+    public void setUp() throws Exception {
+        try {
+            remoteStorage = RemoteStorage.getInstance();
+        } catch (IllegalStateException ex) {
+            remoteStorage = null;
+        }
+        // MODS validation asks Fedora just for DOI duplicates
+        RemoteStorage.setInstance(new RemoteStorage(EasyMock.createNiceMock(FedoraClient.class)));
+        AppConfiguration config = AppConfigurationFactory.getInstance().create(new HashMap<String, String>() {{
+            put(AppConfiguration.PROPERTY_APP_HOME, temp.getRoot().getPath());
+        }});
+        MetaModelRepository.setInstance(new String[]{NdkPlugin.ID});
+        manager = new DigitalObjectManager(config, null, null,
+                MetaModelRepository.getInstance(), EasyMock.createNiceMock(UserManager.class));
+        DigitalObjectManager.setDefault(manager);
+        user = new UserProfile();
+        user.setUserName("test");
+    }
+
+    @After
+    public void tearDown() {
+        RemoteStorage.setInstance(remoteStorage);
+    }
+
+    @Test
+    public void testCreateBatch() throws Exception {
+        LocalObject parent = createParent();
+        TestCreateHandler handler = new TestCreateHandler(manager.createHandler(parent), null);
+        handler.issueSeries(LocalDate.of(2018, 1, 1), LocalDate.of(2018, 1, 7), null, 1);
+
+        List<Item> items = handler.create();
+        assertEquals(7, items.size());
+        List<String> pids = getPids(items);
+        assertEquals(pids, new RelationEditor(parent).getMembers());
+        assertEquals(new HashSet<String>(pids), new HashSet<String>(ingested));
+        assertEquals(Collections.emptyList(), purged);
+    }
+
+    @Test
+    public void testCreateBatchIngestFailure() throws Exception {
+        LocalObject parent = createParent();
+        TestCreateHandler handler = new TestCreateHandler(manager.createHandler(parent), "03.01.2018");
+        handler.issueSeries(LocalDate.of(2018, 1, 1), LocalDate.of(2018, 1, 7), null, 1);
+
+        try {
+            handler.create();
+            fail();
+        } catch (DigitalObjectException ex) {
+            assertEquals(handler.failedPid, ex.getPid());
+        }
+        // ingested issues are connected to the parent in the series order
+        List<String> members = new RelationEditor(parent).getMembers();
+        assertEquals(6, members.size());
+        assertFalse(members.contains(handler.failedPid));
+        assertEquals(new HashSet<String>(members), new HashSet<String>(ingested));
+        List<String> memberLabels = new ArrayList<String>();
+        for (String member : members) {
+            memberLabels.add(handler.labels.get(member));
+        }
+        assertEquals(Arrays.asList("1, 01.01.2018", "2, 02.01.2018", "4, 04.01.2018",
+                "5, 05.01.2018", "6, 06.01.2018", "7, 07.01.2018"), memberLabels);
+        assertEquals(Collections.emptyList(), purged);
+    }
+
+    @Test
+    public void testCreateBatchParentFailure() throws Exception {
+        FailingParent parent = new FailingParent(createParent());
+        TestCreateHandler handler = new TestCreateHandler(manager.createHandler(parent), "03.01.2018");
+        handler.issueSeries(LocalDate.of(2018, 1, 1), LocalDate.of(2018, 1, 7), null, 1);
+
+        try {
+            handler.create();
+            fail();
+        } catch (DigitalObjectException ex) {
+            // the parent failure is reported with the ingest failure
+            assertEquals(parent.getPid(), ex.getPid());
+            assertEquals(1, ex.getSuppressed().length);
+            assertEquals(handler.failedPid, ((DigitalObjectException) ex.getSuppressed()[0]).getPid());
+        }
+        // ingested issues are purged not to leave orphans
+        assertEquals(6, ingested.size());
+        assertEquals(new HashSet<String>(ingested), new HashSet<String>(purged));
+    }
+
+    /**
+     * Creates the periodical so that issues do not search Fedora for it.
+     */
+    private LocalObject createParent() throws DigitalObjectException {
+        LocalObject parent = new LocalStorage().create();
+        DigitalObjectHandler handler = manager.createHandler(parent);
+        RelationEditor relations = handler.relations();
+        relations.setModel(NdkPlugin.MODEL_PERIODICAL);
+        relations.write(0, null);
+        DescriptionMetadata<String> metadata = new DescriptionMetadata<String>();
+        handler.<String>metadata().setMetadataAsXml(metadata, null);
+        handler.commit();
+        return parent;
+    }
+
+    private static List<String> getPids(List<Item> items) {
+        ArrayList<String> pids = new ArrayList<String>(items.size());
+        for (Item item : items) {
+            pids.add(item.getPid());
+        }
+        return pids;
+    }
+
+    /**
+     * Records ingests and purges instead of calling Fedora.
+     */
+    private final class TestCreateHandler extends CreateHandler {
+
+        private final DigitalObjectHandler parentHandler;
+        private final String failedDate;
+        /** Labels of ingested issues. */
+        final Map<String, String> labels = new ConcurrentHashMap<String, String>();
+        volatile String failedPid;
+
+        TestCreateHandler(DigitalObjectHandler parentHandler, String failedDate) {
+            manager.super(NdkPlugin.MODEL_PERIODICALISSUE, null,
+                    parentHandler.getFedoraObject().getPid(), user, null, "test");
+            this.parentHandler = parentHandler;
+            this.failedDate = failedDate;
+        }
+
+        @Override
+        public DigitalObjectHandler getParentHandler() {
+            return parentHandler;
+        }
+
+        @Override
+        void ingest(LocalObject localObject) throws DigitalObjectException {
+            String pid = localObject.getPid();
+            String label = localObject.getLabel();
+            if (failedDate != null && label.endsWith(failedDate)) {
+                failedPid = pid;
+                throw new DigitalObjectException(pid, "ingest failure");
+            }
+            labels.put(pid, label);
+            ingested.add(pid);
+        }
+
+        @Override
+        void purge(LocalObject localObject) throws DigitalObjectException {
+            purged.add(localObject.getPid());
+        }
+    }
+
+    /**
+     * The parent that cannot be stored.
+     */
+    private static final class FailingParent implements FedoraObject {
+
+        private final LocalObject delegate;
+
+        FailingParent(LocalObject delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getPid() {
+            return delegate.getPid();
+        }
+
+        @Override
+        public List<DatastreamProfile> getStreamProfile(String dsId) throws DigitalObjectException {
+            return delegate.getStreamProfile(dsId);
+        }
+
+        @Override
+        public XmlStreamEditor getEditor(DatastreamProfile datastream) {
+            return delegate.getEditor(datastream);
+        }
+
+        @Override
+        public void register(XmlStreamEditor editor) {
+            delegate.register(editor);
+        }
+
+        @Override
+        public void setLabel(String label) {
+            delegate.setLabel(label);
+        }
+
+        @Override
+        public void flush() throws DigitalObjectException {
+            throw new DigitalObjectException(getPid(), "parent failure");
+        }
+
+        @Override
+        public String asText() throws DigitalObjectException {
+            return delegate.asText();
+        }
+
+        @Override
+        public void purgeDatastream(String datastream, String logMessage) throws DigitalObjectException {
+            delegate.purgeDatastream(datastream, logMessage);
+        }
+    }
+
+}
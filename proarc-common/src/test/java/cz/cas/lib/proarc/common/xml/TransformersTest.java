@@ -29,6 +29,7 @@ import java.net.ProxySelector;
 import java.net.SocketAddress;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -38,6 +39,7 @@ import java.util.logging.Logger;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Validator;
+import org.apache.commons.io.IOUtils;
 import org.custommonkey.xmlunit.SimpleNamespaceContext;
 import org.custommonkey.xmlunit.XMLAssert;
 import org.custommonkey.xmlunit.XMLUnit;
@@ -552,6 +554,33 @@ public class TransformersTest {
         assertEquals("?", label);
     }
 
+    /**
+     * The single pass pipeline must produce the same results as the chain of transformations.
+     */
+    @Test
+    public void testPipe() throws Exception {
+        byte[] oaiMarc = IOUtils.toByteArray(TransformersTest.class.getResourceAsStream("alephXServerDetailResponseAsOaiMarc.xml"));
+        Transformers mt = new Transformers();
+        byte[] marcXml = mt.transformAsBytes(new StreamSource(new ByteArrayInputStream(oaiMarc)),
+                Transformers.Format.OaimarcAsMarc21slim);
+        byte[] mods = mt.transformAsBytes(new StreamSource(new ByteArrayInputStream(marcXml)),
+                Transformers.Format.MarcxmlAsMods3);
+        byte[] title = mt.transformAsBytes(new StreamSource(new ByteArrayInputStream(mods)),
+                Transformers.Format.ModsAsTitle);
+
+        List<byte[]> result = mt.pipe(new StreamSource(new ByteArrayInputStream(oaiMarc)),
+                Arrays.asList(Transformers.Format.OaimarcAsMarc21slim, Transformers.Format.MarcxmlAsMods3),
+                Transformers.Format.ModsAsTitle);
+        assertEquals(2, result.size());
+        assertEquals(new String(mods, "UTF-8"), new String(result.get(0), "UTF-8"));
+        assertEquals(new String(title, "UTF-8"), new String(result.get(1), "UTF-8"));
+
+        result = mt.pipe(new StreamSource(new ByteArrayInputStream(oaiMarc)),
+                Arrays.asList(Transformers.Format.OaimarcAsMarc21slim, Transformers.Format.MarcxmlAsMods3));
+        assertEquals(1, result.size());
+        assertEquals(new String(mods, "UTF-8"), new String(result.get(0), "UTF-8"));
+    }
+
     private String modsAsFedoraLabel(InputStream xmlIS, String model) throws Exception {
         assertNotNull(xmlIS);
         StreamSource streamSource = new StreamSource(xmlIS);
@@ -56,7 +56,10 @@ public final class ImportBatchItemDataSource extends ProarcDataSource {
     public static final String FIELD_USER = ImportResourceApi.BATCHITEM_USER;
     /** synthetic field holding batchid and pid URL parameters */
     public static final String FIELD_PREVIEW = "preview";
-    /** synthetic field holding batchid and pid URL parameters */
+    /**
+     * synthetic field holding the thumbnail URL; editors fetching thumbnails
+     * with {@link ThumbnailDataSource} replace it with the {@code data:} URI
+     */
     public static final String FIELD_THUMBNAIL = "thumbnail";
 
     public ImportBatchItemDataSource() {
@@ -86,7 +89,6 @@ public final class ImportBatchItemDataSource extends ProarcDataSource {
         preview.setImageURLPrefix(RestConfig.URL_DIGOBJECT_PREVIEW + "?");
 
         DataSourceImageField thumbnail = new DataSourceImageField(FIELD_THUMBNAIL);
-        thumbnail.setImageURLPrefix(RestConfig.URL_DIGOBJECT_THUMBNAIL + "?");
 
         DataSourceField pageType = new DataSourceField(FIELD_PAGE_TYPE, FieldType.TEXT);
         DataSourceField pageTypeLabel = new DataSourceField(FIELD_PAGE_TYPE_LABEL, FieldType.TEXT);
@@ -113,7 +115,7 @@ public final class ImportBatchItemDataSource extends ProarcDataSource {
                 String imgParams = ClientUtils.format("%s=%s&%s=%s",
                         FIELD_PID, pid, FIELD_BATCHID, batchId);
                 record.setAttribute(FIELD_PREVIEW, imgParams);
-                record.setAttribute(FIELD_THUMBNAIL, imgParams);
+                record.setAttribute(FIELD_THUMBNAIL, getThumbnailUrl(pid, batchId));
             }
         } else {
             // In case of any error DataSource invokes further fetches in never ending loop
@@ -123,6 +125,14 @@ public final class ImportBatchItemDataSource extends ProarcDataSource {
         }
     }
 
+    /**
+     * Gets the URL of a single thumbnail.
+     */
+    public static String getThumbnailUrl(String pid, String batchId) {
+        return ClientUtils.format("%s?%s=%s&%s=%s",
+                RestConfig.URL_DIGOBJECT_THUMBNAIL, FIELD_PID, pid, FIELD_BATCHID, batchId);
+    }
+
     /**
      * Removes list of digital objects from the given batch import.
      * @param callback callback to get the result
@@ -78,12 +78,15 @@ public final class RestConfig {
     public static final String URL_DIGOBJECT_SEARCH =  path(URL_DIGOBJECT, DigitalObjectResourceApi.SEARCH_PATH);
     public static final String URL_DIGOBJECT_STREAMPROFILE = path(URL_DIGOBJECT, DigitalObjectResourceApi.STREAMPROFILE_PATH);
     public static final String URL_DIGOBJECT_THUMBNAIL = path(URL_DIGOBJECT, DigitalObjectResourceApi.THUMB_PATH);
+    public static final String URL_DIGOBJECT_THUMBNAILS = path(URL_DIGOBJECT, DigitalObjectResourceApi.THUMBS_PATH);
     public static final String URL_DIGOBJECT_URNNBN =  path(
             URL_DIGOBJECT, DigitalObjectResourceApi.URNNBN_PATH);
     public static final String URL_LOCALIZATION =  path(URL_ROOT, LocalizationResourceApi.PATH);
     public static final String URL_BIBLIOCATALOG =  path(URL_ROOT, BibliographicCatalogResourceApi.PATH);
     public static final String URL_BIBLIOCATALOG_QUERY =  path(
             URL_BIBLIOCATALOG, BibliographicCatalogResourceApi.FIND_PATH);
+    public static final String URL_BIBLIOCATALOG_PREVIEW =  path(
+            URL_BIBLIOCATALOG, BibliographicCatalogResourceApi.PREVIEW_PATH);
     public static final String URL_USER =  path(URL_ROOT, UserResourceApi.PATH);
     public static final String URL_USER_PERMISSIONS =  URL_USER + "/permissions";
     public static final String URL_EXPORT = path(URL_ROOT, ExportResourceApi.PATH);
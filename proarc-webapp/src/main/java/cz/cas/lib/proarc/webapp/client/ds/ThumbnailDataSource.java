@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.webapp.client.ds;
+
+import com.google.gwt.core.client.Callback;
+import com.smartgwt.client.data.Criteria;
+import com.smartgwt.client.data.DSCallback;
+import com.smartgwt.client.data.DSRequest;
+import com.smartgwt.client.data.DSResponse;
+import com.smartgwt.client.data.DataSource;
+import com.smartgwt.client.data.DataSourceField;
+import com.smartgwt.client.data.Record;
+import com.smartgwt.client.data.fields.DataSourceTextField;
+import com.smartgwt.client.types.FieldType;
+import cz.cas.lib.proarc.webapp.shared.rest.DigitalObjectResourceApi;
+
+/**
+ * Fetches thumbnails of many digital objects at once as {@code data:} URIs.
+ * Tile widgets use it instead of one thumbnail request per tile.
+ *
+ * @author Jan Pokorsky
+ */
+public final class ThumbnailDataSource extends ProarcDataSource {
+
+    public static final String ID = "ThumbnailDataSource";
+
+    public static final String FIELD_PID = DigitalObjectResourceApi.THUMBS_ITEM_PID;
+    public static final String FIELD_DATA = DigitalObjectResourceApi.THUMBS_ITEM_DATA;
+    public static final String FIELD_BATCHID = DigitalObjectResourceApi.BATCHID_PARAM;
+
+    public ThumbnailDataSource() {
+        setID(ID);
+
+        setDataURL(RestConfig.URL_DIGOBJECT_THUMBNAILS);
+
+        DataSourceField pid = new DataSourceField(FIELD_PID, FieldType.TEXT);
+        pid.setPrimaryKey(true);
+
+        DataSourceTextField data = new DataSourceTextField(FIELD_DATA);
+
+        setFields(pid, data);
+
+        setRequestProperties(RestConfig.createRestRequest(getDataFormat()));
+    }
+
+    public static ThumbnailDataSource getInstance() {
+        ThumbnailDataSource ds = (ThumbnailDataSource) DataSource.get(ID);
+        ds = ds != null ? ds : new ThumbnailDataSource();
+        return ds;
+    }
+
+    /**
+     * Fetches thumbnails in chunks one after another.
+     * @param batchId import batch ID or {@code null}
+     * @param pids digital object IDs
+     * @param callback notified with records of each chunk; the data is {@code null}
+     *      for an object without a thumbnail
+     * @return the task to cancel fetching of remaining chunks
+     */
+    public FetchTask fetchThumbnails(String batchId, String[] pids, Callback<Record[], String> callback) {
+        FetchTask task = new FetchTask(this, batchId, pids, callback);
+        task.fetchChunk();
+        return task;
+    }
+
+    /**
+     * Splits PIDs to chunks not to exceed URL length limit (8k).
+     */
+    public static final class FetchTask {
+
+        private static final int CHUNK_LIMIT = DigitalObjectResourceApi.THUMBS_MAX_COUNT;
+        private int itemIndex = 0;
+        private boolean canceled;
+        private boolean done;
+        private final DataSource ds;
+        private final String batchId;
+        private final String[] pids;
+        private final Callback<Record[], String> callback;
+
+        FetchTask(DataSource ds, String batchId, String[] pids, Callback<Record[], String> callback) {
+            this.ds = ds;
+            this.batchId = batchId;
+            this.pids = pids;
+            this.callback = callback;
+        }
+
+        public void cancel() {
+            canceled = true;
+        }
+
+        /**
+         * Gets whether all chunks were fetched or the task was stopped.
+         */
+        public boolean isDone() {
+            return done || canceled;
+        }
+
+        private void fetchChunk() {
+            String[] chunk = nextChunk();
+            if (chunk == null || canceled) {
+                done = true;
+                return ;
+            }
+            Criteria criteria = new Criteria();
+            if (batchId != null) {
+                criteria.addCriteria(FIELD_BATCHID, batchId);
+            }
+            criteria.addCriteria(FIELD_PID, chunk);
+            ds.fetchData(criteria, new DSCallback() {
+
+                @Override
+                public void execute(DSResponse response, Object rawData, DSRequest request) {
+                    if (canceled) {
+                        return ;
+                    }
+                    if (RestConfig.isStatusOk(response)) {
+                        callback.onSuccess(response.getData());
+                        fetchChunk();
+                    } else {
+                        canceled = true;
+                        callback.onFailure(null);
+                    }
+                }
+            });
+        }
+
+        private String[] nextChunk() {
+            int length = Math.min(CHUNK_LIMIT, pids.length - itemIndex);
+            if (length <= 0) {
+                return null;
+            }
+            String[] chunk = new String[length];
+            System.arraycopy(pids, itemIndex, chunk, 0, length);
+            itemIndex += length;
+            return chunk;
+        }
+    }
+
+}
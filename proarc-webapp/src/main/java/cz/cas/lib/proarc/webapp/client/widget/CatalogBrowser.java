@@ -18,12 +18,16 @@ package cz.cas.lib.proarc.webapp.client.widget;
 
 import com.smartgwt.client.data.Criteria;
 import com.smartgwt.client.data.Record;
-import com.smartgwt.client.types.ExpansionMode;
+import com.smartgwt.client.rpc.RPCCallback;
+import com.smartgwt.client.rpc.RPCManager;
+import com.smartgwt.client.rpc.RPCRequest;
+import com.smartgwt.client.rpc.RPCResponse;
 import com.smartgwt.client.types.Overflow;
 import com.smartgwt.client.types.SelectionStyle;
 import com.smartgwt.client.types.TitleOrientation;
 import com.smartgwt.client.types.VerticalAlignment;
 import com.smartgwt.client.widgets.Canvas;
+import com.smartgwt.client.widgets.HTMLFlow;
 import com.smartgwt.client.widgets.Window;
 import com.smartgwt.client.widgets.form.DynamicForm;
 import com.smartgwt.client.widgets.form.events.SubmitValuesEvent;
@@ -43,6 +47,7 @@ import cz.cas.lib.proarc.webapp.client.ClientMessages;
 import cz.cas.lib.proarc.webapp.client.ds.BibliographyDataSource;
 import cz.cas.lib.proarc.webapp.client.ds.BibliographyQueryDataSource;
 import cz.cas.lib.proarc.webapp.client.ds.DigitalObjectDataSource.DigitalObject;
+import cz.cas.lib.proarc.webapp.client.ds.RestConfig;
 import cz.cas.lib.proarc.webapp.shared.rest.BibliographicCatalogResourceApi;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -160,21 +165,25 @@ public class CatalogBrowser implements DatastreamEditor {
     private Canvas createAdvancedOptions() {
         formCatalog = createCatalogForm();
 
-        lgResult = new ListGrid();
+        lgResult = new ListGrid() {
+
+            @Override
+            protected Canvas getExpansionComponent(ListGridRecord record) {
+                return createPreview(record);
+            }
+        };
         lgResult.setDataSource(BibliographyQueryDataSource.getInstance());
 //        lgResult.setUseAllDataSourceFields(true);
         ListGridField preview = new ListGridField(BibliographyQueryDataSource.FIELD_PREVIEW,
                 i18n.CatalogBrowser_HeaderPreview_Title());
         ListGridField title = new ListGridField(BibliographyQueryDataSource.FIELD_TITLE,
                 i18n.CatalogBrowser_HeaderTitle_Title());
-        lgResult.setDetailField(BibliographyQueryDataSource.FIELD_PREVIEW);
         lgResult.setFields(title, preview);
 //        lgResult.setAutoFetchData(true);
         lgResult.setHeight100();
         lgResult.setWidth100();
         lgResult.setCanExpandRecords(true);
         lgResult.setCanExpandMultipleRecords(false);
-        lgResult.setExpansionMode(ExpansionMode.DETAIL_FIELD);
         lgResult.setSelectionType(SelectionStyle.SINGLE);
 //        lgResult.setSelectionAppearance(SelectionAppearance.CHECKBOX);
         lgResult.setAlternateRecordStyles(true);
@@ -197,9 +206,46 @@ public class CatalogBrowser implements DatastreamEditor {
         return layout;
     }
 
+    /**
+     * Shows the preview of the found record. The preview is fetched
+     * when the record is expanded for the first time.
+     */
+    private Canvas createPreview(final ListGridRecord record) {
+        final HTMLFlow preview = new HTMLFlow();
+        preview.setWidth100();
+        String html = record.getAttribute(BibliographyQueryDataSource.FIELD_PREVIEW);
+        if (html != null) {
+            preview.setContents(html);
+            return preview;
+        }
+        preview.setContents(Canvas.imgHTML("[SKIN]/loadingSmall.gif", 16, 16));
+        RPCRequest request = new RPCRequest();
+        request.setActionURL(RestConfig.URL_BIBLIOCATALOG_PREVIEW);
+        request.setHttpMethod("POST");
+        request.setUseSimpleHttp(true);
+        request.setShowPrompt(false);
+        HashMap<String, String> params = new HashMap<String, String>();
+        params.put(BibliographicCatalogResourceApi.PREVIEW_MODS_PARAM,
+                record.getAttribute(BibliographyQueryDataSource.FIELD_MODS));
+        request.setParams(params);
+        RPCManager.sendRequest(request, new RPCCallback() {
+
+            @Override
+            public void execute(RPCResponse response, Object rawData, RPCRequest request) {
+                String html = response.getHttpResponseCode() == 200 && rawData != null
+                        ? String.valueOf(rawData) : "";
+                record.setAttribute(BibliographyQueryDataSource.FIELD_PREVIEW, html);
+                preview.setContents(html);
+            }
+        });
+        return preview;
+    }
+
     private void queryCatalog() {
         if (formCatalog.validate()) {
             Criteria plain = formCatalog.getValuesAsCriteria();
+            // previews are fetched on demand
+            plain.addCriteria(BibliographicCatalogResourceApi.FIND_PREVIEW_PARAM, false);
             lgResult.invalidateCache();
             lgResult.fetchData(plain);
         }
@@ -87,13 +87,22 @@ import cz.cas.lib.proarc.webapp.client.ds.RelationDataSource;
 import cz.cas.lib.proarc.webapp.client.ds.RelationDataSource.RelationChangeEvent;
 import cz.cas.lib.proarc.webapp.client.ds.RelationDataSource.RelationChangeHandler;
 import cz.cas.lib.proarc.webapp.client.ds.RestConfig;
+import cz.cas.lib.proarc.webapp.client.ds.ThumbnailDataSource;
 import cz.cas.lib.proarc.webapp.client.event.EditorLoadEvent;
 import cz.cas.lib.proarc.webapp.client.event.EditorLoadHandler;
 import cz.cas.lib.proarc.webapp.client.presenter.DigitalObjectEditing.DigitalObjectEditorPlace;
 import cz.cas.lib.proarc.webapp.client.presenter.DigitalObjectEditor;
 import cz.cas.lib.proarc.webapp.client.widget.DigitalObjectChildrenEditor.ChildActivities;
 import cz.cas.lib.proarc.webapp.client.widget.DigitalObjectChildrenEditor.ChildEditorDisplay;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
@@ -128,6 +137,13 @@ public final class ImportBatchItemEditor extends HLayout implements Selectable<R
     private final ReorderTask reorderTask = new ReorderTask();
     private Action resumeAction;
     private Handler handler;
+    /** Fetches tile thumbnails in chunks instead of one request per tile. */
+    private boolean batchThumbnails = true;
+    /** Thumbnails of the batch as {@code data:} URIs by PID. */
+    private final Map<String, String> thumbnails = new HashMap<String, String>();
+    /** PIDs of thumbnails being fetched. */
+    private final Set<String> pendingThumbnails = new HashSet<String>();
+    private final List<ThumbnailDataSource.FetchTask> thumbnailTasks = new ArrayList<ThumbnailDataSource.FetchTask>();
 
     public ImportBatchItemEditor(ClientMessages i18n) {
         this.i18n = i18n;
@@ -191,6 +207,14 @@ public final class ImportBatchItemEditor extends HLayout implements Selectable<R
         this.handler = handler;
     }
 
+    /**
+     * Switches tiles between thumbnails fetched in chunks and thumbnails
+     * requested per tile.
+     */
+    public void setBatchThumbnails(boolean batchThumbnails) {
+        this.batchThumbnails = batchThumbnails;
+    }
+
     public void onShow(BatchRecord batch) {
         this.batchRecord = batch;
         refresh();
@@ -198,6 +222,7 @@ public final class ImportBatchItemEditor extends HLayout implements Selectable<R
 
     public void onHide(BooleanCallback callback) {
         DigitalObjectCopyMetadataAction.resetSelection();
+        resetThumbnails();
         callback.execute(true);
     }
 
@@ -411,6 +436,7 @@ public final class ImportBatchItemEditor extends HLayout implements Selectable<R
         Criteria criteria = new Criteria(ImportBatchItemDataSource.FIELD_BATCHID, batchRecord.getId());
         batchItemGrid.invalidateCache();
         thumbViewer.setData(new Record[0]);
+        resetThumbnails();
         previewItem(null);
 
         batchItemGrid.fetchData(criteria, new DSCallback() {
@@ -420,7 +446,7 @@ public final class ImportBatchItemEditor extends HLayout implements Selectable<R
                 if (RestConfig.isStatusOk(response)) {
                     Record[] data = response.getData();
                     Record[] copyRecords = batchItemGrid.getDataSource().copyRecords(data);
-                    thumbViewer.setData(copyRecords);
+                    setThumbData(copyRecords);
 
                     batchItemGrid.selectSingleRecord(0);
                     batchItemGrid.focus();
@@ -482,7 +508,15 @@ public final class ImportBatchItemEditor extends HLayout implements Selectable<R
                         Record record = response.getData()[0];
                         Record copyRecord = ds.copyRecord(record);
                         int thumbIndex = getThumbIndex(copyRecord);
+                        if (batchThumbnails) {
+                            // the media might be replaced
+                            thumbnails.remove(copyRecord.getAttribute(ImportBatchItemDataSource.FIELD_PID));
+                            copyRecord.setAttribute(ImportBatchItemDataSource.FIELD_THUMBNAIL, (String) null);
+                        }
                         thumbViewer.getRecordList().set(thumbIndex, copyRecord);
+                        if (batchThumbnails) {
+                            fetchThumbnails(new Record[] {copyRecord});
+                        }
 
                         selectNextChildAndFocus(record);
                     } else {
@@ -490,7 +524,7 @@ public final class ImportBatchItemEditor extends HLayout implements Selectable<R
                         ds.updateCaches(response, request);
                         
                         Record[] copyRecords = ds.copyRecords(response.getData());
-                        thumbViewer.setData(copyRecords);
+                        setThumbData(copyRecords);
                     }
                     ValidatableList.clearRowErrors(batchItemGrid);
                     // refresh the copy selection as updated records are missing the copy attribute
@@ -552,7 +586,6 @@ public final class ImportBatchItemEditor extends HLayout implements Selectable<R
             }
         });
         final DetailViewerField dvfThumbnail = new DetailViewerField(ImportBatchItemDataSource.FIELD_THUMBNAIL);
-        dvfThumbnail.setImageURLPrefix(RestConfig.URL_DIGOBJECT_THUMBNAIL + "?");
         dvfThumbnail.setType("image");
         thumbGrid.setFields(dvfThumbnail, dvfPageIndex);
         // TileLayoutPolicy.FLOW does not work as expected
@@ -623,6 +656,101 @@ public final class ImportBatchItemEditor extends HLayout implements Selectable<R
         return thumbGrid;
     }
 
+    /**
+     * Sets tiles. Thumbnails not fetched yet are shown as soon as their chunk arrives.
+     */
+    private void setThumbData(Record[] records) {
+        if (!batchThumbnails) {
+            thumbViewer.setData(records);
+            return ;
+        }
+        List<Record> missing = new ArrayList<Record>();
+        for (Record record : records) {
+            String data = thumbnails.get(record.getAttribute(ImportBatchItemDataSource.FIELD_PID));
+            if (data == null) {
+                missing.add(record);
+            }
+            record.setAttribute(ImportBatchItemDataSource.FIELD_THUMBNAIL, data);
+        }
+        thumbViewer.setData(records);
+        if (!missing.isEmpty()) {
+            fetchThumbnails(missing.toArray(new Record[missing.size()]));
+        }
+    }
+
+    private void fetchThumbnails(Record[] records) {
+        // keeps the tile order
+        final Map<String, String> urls = new LinkedHashMap<String, String>();
+        for (Record record : records) {
+            String pid = record.getAttribute(ImportBatchItemDataSource.FIELD_PID);
+            if (pendingThumbnails.add(pid)) {
+                urls.put(pid, ImportBatchItemDataSource.getThumbnailUrl(
+                        pid, record.getAttribute(ImportBatchItemDataSource.FIELD_BATCHID)));
+            }
+        }
+        if (urls.isEmpty()) {
+            return ;
+        }
+        String[] pids = urls.keySet().toArray(new String[urls.size()]);
+        pruneThumbnailTasks();
+        thumbnailTasks.add(ThumbnailDataSource.getInstance().fetchThumbnails(
+                batchRecord.getId(), pids, new Callback<Record[], String>() {
+
+            @Override
+            public void onSuccess(Record[] result) {
+                for (Record thumb : result) {
+                    String pid = thumb.getAttribute(ThumbnailDataSource.FIELD_PID);
+                    String data = thumb.getAttribute(ThumbnailDataSource.FIELD_DATA);
+                    if (data != null) {
+                        thumbnails.put(pid, data);
+                    }
+                    // the unreadable thumbnail falls back to the URL
+                    setThumbnail(pid, data != null ? data : urls.get(pid));
+                    urls.remove(pid);
+                    pendingThumbnails.remove(pid);
+                }
+            }
+
+            @Override
+            public void onFailure(String reason) {
+                for (Map.Entry<String, String> url : urls.entrySet()) {
+                    setThumbnail(url.getKey(), url.getValue());
+                    pendingThumbnails.remove(url.getKey());
+                }
+            }
+        }));
+    }
+
+    private void setThumbnail(String pid, String thumbnail) {
+        RecordList tiles = thumbViewer.getRecordList();
+        int index = tiles.findIndex(ImportBatchItemDataSource.FIELD_PID, pid);
+        if (index >= 0) {
+            Record tile = tiles.get(index);
+            tile.setAttribute(ImportBatchItemDataSource.FIELD_THUMBNAIL, thumbnail);
+            tiles.set(index, tile);
+        }
+    }
+
+    /**
+     * Forgets tasks that fetched all their thumbnails.
+     */
+    private void pruneThumbnailTasks() {
+        for (Iterator<ThumbnailDataSource.FetchTask> it = thumbnailTasks.iterator(); it.hasNext();) {
+            if (it.next().isDone()) {
+                it.remove();
+            }
+        }
+    }
+
+    private void resetThumbnails() {
+        for (ThumbnailDataSource.FetchTask task : thumbnailTasks) {
+            task.cancel();
+        }
+        thumbnailTasks.clear();
+        pendingThumbnails.clear();
+        thumbnails.clear();
+    }
+
     private int getThumbIndex(Record r) {
         int index = thumbViewer.getRecordList().findIndex(ImportBatchItemDataSource.FIELD_PID,
                 r.getAttribute(ImportBatchItemDataSource.FIELD_PID));
@@ -878,7 +1006,7 @@ public final class ImportBatchItemEditor extends HLayout implements Selectable<R
                 DataSource ds = batchItemGrid.getDataSource();
                 Record[] records = batchItemGrid.getOriginalResultSet().toArray();
                 Record[] copyRecords = ds.copyRecords(records);
-                thumbViewer.setData(copyRecords);
+                setThumbData(copyRecords);
                 loadItemInChildEditor(getSelection());
                 actionSource.fireEvent();
             } else if (src == thumbViewer) {
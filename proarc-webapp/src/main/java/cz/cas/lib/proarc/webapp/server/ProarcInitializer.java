@@ -23,6 +23,7 @@ import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
 import cz.cas.lib.proarc.common.dao.DaoFactory;
 import cz.cas.lib.proarc.common.dao.empiredb.EmpireConfiguration;
 import cz.cas.lib.proarc.common.dao.empiredb.EmpireDaoFactory;
+import cz.cas.lib.proarc.common.fedora.DisseminationCache;
 import cz.cas.lib.proarc.common.fedora.FedoraStorageInitializer;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
 import cz.cas.lib.proarc.common.imports.ImportBatchManager;
@@ -31,6 +32,7 @@ import cz.cas.lib.proarc.common.imports.ImportProcess;
 import cz.cas.lib.proarc.common.jobs.JobHandler;
 import cz.cas.lib.proarc.common.object.DigitalObjectManager;
 import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
+import cz.cas.lib.proarc.common.process.ExternalProcess;
 import cz.cas.lib.proarc.common.sql.DbUtils;
 import cz.cas.lib.proarc.common.user.UserManager;
 import cz.cas.lib.proarc.common.user.UserUtil;
@@ -95,6 +97,7 @@ public final class ProarcInitializer {
         DigitalObjectManager.setDefault(new DigitalObjectManager(
                 config, ImportBatchManager.getInstance(), null,
                 MetaModelRepository.getInstance(), UserUtil.getDefaultManger()));
+        initDisseminationCache(config);
         Authenticators.setInstance(new Authenticators(config.getAuthenticators()));
         initWorkflow(config, daoFactory, UserUtil.getDefaultManger());
         initSchedulers(config);
@@ -176,6 +179,7 @@ public final class ProarcInitializer {
     }
 
     private void initImport(AppConfiguration config, DaoFactory daoFactory) {
+        ExternalProcess.setMaxProcessCount(config.getProcessMaxCount());
         ImportBatchManager.setInstance(config, daoFactory);
         ImportBatchManager ibm = ImportBatchManager.getInstance();
         ImportDispatcher importDispatcher = new ImportDispatcher();
@@ -184,6 +188,19 @@ public final class ProarcInitializer {
         ImportProcess.resumeAll(ibm, importDispatcher, config);
     }
 
+    private void initDisseminationCache(AppConfiguration config) {
+        int size = config.getDisseminationCacheSize();
+        if (size > 0) {
+            File folder = new File(config.getConfigHome(), "disseminationCache");
+            try {
+                DisseminationCache.setDefault(new DisseminationCache(folder, size * 1024L * 1024L));
+            } catch (IOException ex) {
+                // the cache is optional
+                LOG.log(Level.WARNING, "The dissemination cache is disabled: " + folder, ex);
+            }
+        }
+    }
+
     private void initWorkflow(AppConfiguration config, DaoFactory daoFactory, UserManager users) {
         try {
             File workflowFile = config.getWorkflowConfiguration();
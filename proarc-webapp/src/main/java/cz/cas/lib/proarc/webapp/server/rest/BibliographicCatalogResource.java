@@ -33,7 +33,10 @@ import java.util.List;
 import java.util.Locale;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
@@ -93,6 +96,7 @@ public class BibliographicCatalogResource {
      * @param catalog catalog descriptor
      * @param fieldName issn|isbn|ccnb
      * @param value value to query
+     * @param preview whether to render HTML previews of records
      * @return list of metadata records
      */
     @Path(BibliographicCatalogResourceApi.FIND_PATH)
@@ -101,10 +105,11 @@ public class BibliographicCatalogResource {
     public MetadataList find(
             @QueryParam(BibliographicCatalogResourceApi.FIND_CATALOG_PARAM) String catalog,
             @QueryParam(BibliographicCatalogResourceApi.FIND_FIELDNAME_PARAM) String fieldName,
-            @QueryParam(BibliographicCatalogResourceApi.FIND_VALUE_PARAM) String value) throws TransformerException, IOException {
+            @QueryParam(BibliographicCatalogResourceApi.FIND_VALUE_PARAM) String value,
+            @QueryParam(BibliographicCatalogResourceApi.FIND_PREVIEW_PARAM) @DefaultValue("true") boolean preview
+            ) throws TransformerException, IOException {
 
-        List<Locale> acceptableLanguages = httpHeaders.getAcceptableLanguages();
-        Locale locale = acceptableLanguages.isEmpty() ? null : acceptableLanguages.get(0);
+        Locale locale = getLocale();
         List<MetadataItem> result;
         BibliographicCatalog bCatalog = appConfig.getCatalogs().findCatalog(catalog);
         if (bCatalog != null) {
@@ -117,9 +122,46 @@ public class BibliographicCatalogResource {
         } else {
             throw RestException.plainNotFound(BibliographicCatalogResourceApi.FIND_CATALOG_PARAM, catalog);
         }
+        if (preview) {
+            MetadataItem.renderPreviews(result);
+        } else {
+            for (MetadataItem item : result) {
+                item.clearPreview();
+            }
+        }
         return new MetadataList(result);
     }
 
+    /**
+     * Renders the HTML preview of a record found with {@code preview=false}.
+     * The MODS must not declare DOCTYPE.
+     *
+     * @param mods MODS of the record
+     * @return HTML
+     */
+    @Path(BibliographicCatalogResourceApi.PREVIEW_PATH)
+    @POST
+    @Produces(MediaType.TEXT_HTML)
+    public String preview(
+            @FormParam(BibliographicCatalogResourceApi.PREVIEW_MODS_PARAM) String mods
+            ) {
+
+        if (mods == null || mods.isEmpty()) {
+            throw RestException.plainText(Status.BAD_REQUEST, "Missing " + BibliographicCatalogResourceApi.PREVIEW_MODS_PARAM);
+        }
+        try {
+            return MetadataItem.renderPreview(mods, getLocale());
+        } catch (TransformerException ex) {
+            LOG.log(Level.FINE, null, ex);
+            throw RestException.plainText(Status.BAD_REQUEST, "Invalid " + BibliographicCatalogResourceApi.PREVIEW_MODS_PARAM);
+        }
+    }
+
+    private Locale getLocale() {
+        List<Locale> acceptableLanguages = httpHeaders.getAcceptableLanguages();
+        return acceptableLanguages.isEmpty() ? null : acceptableLanguages.get(0);
+    }
+
     @XmlAccessorType(XmlAccessType.FIELD)
     public static class CatalogDescriptor {
 
@@ -35,6 +35,7 @@ import cz.cas.lib.proarc.common.fedora.FedoraObject;
 import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
 import cz.cas.lib.proarc.common.fedora.LocalStorage;
 import cz.cas.lib.proarc.common.fedora.LocalStorage.LocalObject;
+import cz.cas.lib.proarc.common.fedora.PageView;
 import cz.cas.lib.proarc.common.fedora.PurgeFedoraObject;
 import cz.cas.lib.proarc.common.fedora.PurgeFedoraObject.PurgeException;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
@@ -82,6 +83,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -94,6 +96,14 @@ import java.util.Map.Entry;
 import java.util.MissingResourceException;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -121,6 +131,7 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.glassfish.jersey.media.multipart.FormDataBodyPart;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
@@ -134,6 +145,7 @@ import org.glassfish.jersey.media.multipart.FormDataParam;
  *      /object/{pid}/scan
  *      /object/{pid}/preview
  *      /object/{pid}/thumb
+ *      /object/thumbs?pid=..&pid=.. GET - lists thumbnails as data URIs
  *      /object/{pid}/ocr
  *      /object/{pid}/metadata
  *      /object/{pid}/relations
@@ -145,6 +157,8 @@ import org.glassfish.jersey.media.multipart.FormDataParam;
 public class DigitalObjectResource {
 
     private static final Logger LOG = Logger.getLogger(DigitalObjectResource.class.getName());
+    /** Reads thumbnails of all requests; see {@link #getThumbnailExecutor}. */
+    private static ExecutorService thumbnailExecutor;
 
     private final AppConfiguration appConfig;
     private final MetaModelRepository metamodels = MetaModelRepository.getInstance();
@@ -542,16 +556,16 @@ public class DigitalObjectResource {
         }
         HashMap<String, Item> memberSearchMap = new HashMap<String, Item>();
         List<BatchItemObject> batchObjects = importManager.findLoadedObjects(batch);
-        for (BatchItemObject batchObject : batchObjects) {
-            DigitalObjectHandler doh = findHandler(batchObject.getPid(), batch);
-            LocalObject lfo = (LocalObject) doh.getFedoraObject();
-            Item item = new Item(batchObject.getPid());
+        // served from the page view index of the batch
+        List<PageView.Item> pageViewItems = new PageView().listObjects(
+                batch.getId(), batchObjects, session.getLocale(httpHeaders));
+        for (PageView.Item pageViewItem : pageViewItems) {
+            Item item = new Item(pageViewItem.getPid());
             item.setBatchId(batch.getId());
-            item.setLabel(lfo.getLabel());
-            item.setOwner(lfo.getOwner());
-            RelationEditor relationEditor = doh.relations();
-            item.setModel(relationEditor.getModel());
-            memberSearchMap.put(batchObject.getPid(), item);
+            item.setLabel(pageViewItem.getLabel());
+            item.setOwner(pageViewItem.getUser());
+            item.setModel(pageViewItem.getModel());
+            memberSearchMap.put(pageViewItem.getPid(), item);
         }
         return memberSearchMap;
     }
@@ -1209,6 +1223,157 @@ public class DigitalObjectResource {
         return getDissemination(pid, batchId, BinaryEditor.THUMB_ID);
     }
 
+    /**
+     * Gets thumbnails of many digital objects in a single response. It serves
+     * editors showing tiles of children or batch items that would otherwise
+     * request {@link #getThumbnail} per tile. Contents are read concurrently
+     * from the local or remote storage by the pool shared with other requests.
+     *
+     * @param pids PIDs of digital objects (required, at most
+     *      {@link DigitalObjectResourceApi#THUMBS_MAX_COUNT})
+     * @param batchId import batch ID (optional)
+     * @return thumbnails in the order of requested PIDs; the data is {@code null}
+     *      for an object without a readable thumbnail
+     */
+    @GET
+    @Path(DigitalObjectResourceApi.THUMBS_PATH)
+    @Produces(MediaType.APPLICATION_JSON)
+    public SmartGwtResponse<ThumbnailResult> getThumbnails(
+            @QueryParam(DigitalObjectResourceApi.THUMBS_ITEM_PID) List<String> pids,
+            @QueryParam(DigitalObjectResourceApi.BATCHID_PARAM) Integer batchId
+            ) throws DigitalObjectException {
+
+        if (pids == null || pids.isEmpty()) {
+            throw RestException.plainBadRequest(DigitalObjectResourceApi.THUMBS_ITEM_PID, String.valueOf(pids));
+        }
+        if (pids.size() > DigitalObjectResourceApi.THUMBS_MAX_COUNT) {
+            throw RestException.plainBadRequest(DigitalObjectResourceApi.THUMBS_ITEM_PID,
+                    "Too many PIDs: " + pids.size() + " > " + DigitalObjectResourceApi.THUMBS_MAX_COUNT);
+        }
+        Batch batch = null;
+        if (batchId != null) {
+            batch = importManager.get(batchId);
+            if (batch == null) {
+                throw RestException.plainNotFound(DigitalObjectResourceApi.BATCHID_PARAM, String.valueOf(batchId));
+            }
+        }
+        // objects are resolved here; the pool just reads contents
+        List<DisseminationHandler> handlers = new ArrayList<DisseminationHandler>(pids.size());
+        for (String pid : pids) {
+            DisseminationHandler handler = null;
+            try {
+                handler = findHandler(pid, batch).dissemination(BinaryEditor.THUMB_ID);
+            } catch (DigitalObjectNotFoundException ex) {
+                LOG.log(Level.FINE, pid, ex);
+            }
+            handlers.add(handler);
+        }
+        ExecutorService pool = getThumbnailExecutor(appConfig);
+        List<Future<String>> futures = new ArrayList<Future<String>>(handlers.size());
+        try {
+            for (DisseminationHandler handler : handlers) {
+                futures.add(handler == null ? null : pool.submit(() -> readThumbnail(handler)));
+            }
+            List<ThumbnailResult> result = new ArrayList<ThumbnailResult>(pids.size());
+            for (int i = 0; i < pids.size(); i++) {
+                String pid = pids.get(i);
+                Future<String> future = futures.get(i);
+                String data = null;
+                if (future != null) {
+                    try {
+                        data = future.get();
+                    } catch (ExecutionException ex) {
+                        LOG.log(Level.WARNING, pid, ex.getCause());
+                    }
+                }
+                result.add(new ThumbnailResult(pid, data));
+            }
+            return new SmartGwtResponse<ThumbnailResult>(result);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new WebApplicationException(ex);
+        } finally {
+            // stop reads of the failed request
+            for (Future<String> future : futures) {
+                if (future != null) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the pool reading thumbnails of all requests so that concurrent
+     * requests cannot exceed the configured number of connections. Idle
+     * threads expire and the daemon threads do not hold the application
+     * on shutdown.
+     */
+    private static synchronized ExecutorService getThumbnailExecutor(AppConfiguration config) {
+        if (thumbnailExecutor == null) {
+            int threadCount = config.getThumbnailThreadCount();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = factory.newThread(r);
+                    thread.setName(DigitalObjectResource.class.getSimpleName() + '-' + thread.getName());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            thumbnailExecutor = executor;
+        }
+        return thumbnailExecutor;
+    }
+
+    /**
+     * Reads the dissemination as the {@code data:} URI.
+     */
+    private static String readThumbnail(DisseminationHandler handler) throws DigitalObjectException, IOException {
+        Response response = handler.getDissemination(null);
+        Object entity = response.getEntity();
+        byte[] content;
+        if (entity instanceof File) {
+            content = FileUtils.readFileToByteArray((File) entity);
+        } else if (entity instanceof InputStream) {
+            InputStream is = (InputStream) entity;
+            try {
+                content = IOUtils.toByteArray(is);
+            } finally {
+                is.close();
+            }
+        } else if (entity instanceof byte[]) {
+            content = (byte[]) entity;
+        } else {
+            throw new IllegalStateException("Unsupported content: " + entity);
+        }
+        Object mime = response.getMetadata().getFirst(HttpHeaders.CONTENT_TYPE);
+        String mimeType = mime == null ? "image/jpeg" : mime.toString();
+        return "data:" + mimeType + ";base64," + Base64.getEncoder().encodeToString(content);
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class ThumbnailResult {
+
+        @XmlElement(name = DigitalObjectResourceApi.THUMBS_ITEM_PID)
+        private String pid;
+
+        @XmlElement(name = DigitalObjectResourceApi.THUMBS_ITEM_DATA)
+        private String data;
+
+        public ThumbnailResult(String pid, String data) {
+            this.pid = pid;
+            this.data = data;
+        }
+
+        public ThumbnailResult() {
+        }
+    }
+
     @GET
     @Path(DigitalObjectResourceApi.MODS_PATH + '/' + DigitalObjectResourceApi.MODS_PLAIN_PATH)
     @Produces(MediaType.APPLICATION_JSON)
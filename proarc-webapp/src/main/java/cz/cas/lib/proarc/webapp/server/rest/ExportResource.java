@@ -333,13 +333,16 @@ public class ExportResource {
     /**
      * Starts new archiving.
      * @param pids PIDs to export
+     * @param resume whether to resume the last archiving of the PIDs
+     *      and skip its complete packages
      * @return the export result
      */
     @POST
     @Path(ExportResourceApi.ARCHIVE_PATH)
     @Produces({MediaType.APPLICATION_JSON})
     public SmartGwtResponse<ExportResult> newArchive(
-            @FormParam(ExportResourceApi.ARCHIVE_PID_PARAM) List<String> pids
+            @FormParam(ExportResourceApi.ARCHIVE_PID_PARAM) List<String> pids,
+            @FormParam(ExportResourceApi.ARCHIVE_RESUME_PARAM) @DefaultValue("false") boolean resume
             ) {
 
         if (pids.isEmpty()) {
@@ -348,9 +351,10 @@ public class ExportResource {
         URI exportUri = user.getExportFolder();
         File exportFolder = new File(exportUri);
         ExportResult result = new ExportResult();
-        ArchiveProducer export = new ArchiveProducer();
+        ArchiveProducer export = new ArchiveProducer(
+                appConfig.getArchiveExportThreadCount(), appConfig.getArchiveExportPackageThreadCount());
         try {
-            File targetFolder = export.archive(pids, exportFolder);
+            File targetFolder = export.archive(pids, exportFolder, resume);
             if (targetFolder != null) {
                 result.setTarget(user.getUserHomeUri().relativize(targetFolder.toURI()).toASCIIString());
             }
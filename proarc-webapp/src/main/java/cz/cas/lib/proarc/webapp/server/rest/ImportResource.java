@@ -272,7 +272,8 @@ public class ImportResource {
                 }
             }
 
-            batch = new FedoraImport(RemoteStorage.getInstance(appConfig), importManager)
+            batch = new FedoraImport(RemoteStorage.getInstance(appConfig), importManager,
+                    appConfig.getFedoraIngestThreadCount(), appConfig.getFedoraIngestLoadThreadCount())
                     .importBatch(batch, user.getUserName(), session.asFedoraLog());
         } else if (state == Batch.State.LOADING_FAILED) {
             Batch.State realState = batch.getState();
@@ -340,10 +341,12 @@ public class ImportResource {
 
         int endRow = totalImports;
 
+        // the first page of all loaded items drops index entries of removed items
+        boolean allItems = listLoadedItems && startRow == 0;
         if (startRow > 0) {
             imports = imports.subList(startRow, totalImports);
         }
-        List<Item> records = new PageView().list(batchId, imports, session.getLocale(httpHeaders));
+        List<Item> records = new PageView().list(batchId, imports, session.getLocale(httpHeaders), allItems);
         return new SmartGwtResponse<Item>(SmartGwtResponse.STATUS_SUCCESS, startRow, endRow, totalRows, records);
     }
 
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.webapp.server.rest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.Provider;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Serves a single byte range of file and stream contents of known length
+ * like disseminations of large RAW and FULL images.
+ * Other responses pass untouched.
+ *
+ * @author Jan Pokorsky
+ */
+@Provider
+public class RangeResponseFilter implements ContainerResponseFilter {
+
+    private static final int STATUS_PARTIAL_CONTENT = 206;
+    private static final int STATUS_RANGE_NOT_SATISFIABLE = 416;
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+        if (!HttpMethod.GET.equals(request.getMethod()) || response.getStatus() != 200) {
+            return ;
+        }
+        Object entity = response.getEntity();
+        long length;
+        if (entity instanceof File) {
+            length = ((File) entity).length();
+        } else if (entity instanceof InputStream) {
+            String contentLength = response.getHeaderString(HttpHeaders.CONTENT_LENGTH);
+            if (contentLength == null) {
+                return ;
+            }
+            length = Long.parseLong(contentLength);
+        } else {
+            return ;
+        }
+        response.getHeaders().putSingle("Accept-Ranges", "bytes");
+
+        String range = request.getHeaderString("Range");
+        if (range == null || !isIfRangeMatched(request.getHeaderString("If-Range"), response)) {
+            return ;
+        }
+        long[] bounds = parseRange(range, length);
+        if (bounds == null) {
+            // unsupported range; send the whole content
+            return ;
+        }
+        if (bounds.length == 0) {
+            if (entity instanceof InputStream) {
+                ((InputStream) entity).close();
+            }
+            response.setStatus(STATUS_RANGE_NOT_SATISFIABLE);
+            response.getHeaders().putSingle("Content-Range", "bytes */" + length);
+            response.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+            response.setEntity(null);
+            return ;
+        }
+        long start = bounds[0];
+        long end = bounds[1];
+        response.setStatus(STATUS_PARTIAL_CONTENT);
+        response.getHeaders().putSingle("Content-Range", "bytes " + start + '-' + end + '/' + length);
+        response.getHeaders().putSingle(HttpHeaders.CONTENT_LENGTH, String.valueOf(end - start + 1));
+        response.setEntity(new RangeOutput(entity, start, end - start + 1),
+                response.getEntityAnnotations(), response.getMediaType());
+    }
+
+    /**
+     * Checks the If-Range validator against the ETag or Last-Modified of the response.
+     */
+    static boolean isIfRangeMatched(String ifRange, ContainerResponseContext response) {
+        if (ifRange == null) {
+            return true;
+        }
+        return ifRange.equals(response.getHeaderString(HttpHeaders.ETAG))
+                || ifRange.equals(response.getHeaderString(HttpHeaders.LAST_MODIFIED));
+    }
+
+    /**
+     * Parses a single byte range.
+     * @param range the Range header value
+     * @param length the content length
+     * @return {@code [first, last]} byte positions, the empty array
+     *      for unsatisfiable range or {@code null} for unsupported range
+     */
+    static long[] parseRange(String range, long length) {
+        range = range.trim();
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (end < start) {
+                    // invalid syntax
+                    return null;
+                }
+                end = Math.min(end, length - 1);
+            }
+            if (start >= length || end < start) {
+                return new long[0];
+            }
+            return new long[] {start, end};
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static final class RangeOutput implements StreamingOutput {
+
+        private final Object entity;
+        private final long offset;
+        private final long length;
+
+        RangeOutput(Object entity, long offset, long length) {
+            this.entity = entity;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public void write(OutputStream output) throws IOException {
+            InputStream input = entity instanceof File
+                    ? new FileInputStream((File) entity)
+                    : (InputStream) entity;
+            try {
+                IOUtils.copyLarge(input, output, offset, length);
+            } finally {
+                input.close();
+            }
+        }
+    }
+
+}
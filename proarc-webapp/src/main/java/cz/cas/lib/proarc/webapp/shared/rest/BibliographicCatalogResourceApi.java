@@ -28,6 +28,12 @@ public final class BibliographicCatalogResourceApi {
     public static final String FIND_CATALOG_PARAM = "catalog";
     public static final String FIND_FIELDNAME_PARAM = "fieldName";
     public static final String FIND_VALUE_PARAM = "value";
+    /** Whether to include HTML previews of found records; the default is {@code true}. */
+    public static final String FIND_PREVIEW_PARAM = "preview";
+
+    /** Renders the HTML preview of a found record. */
+    public static final String PREVIEW_PATH = "preview";
+    public static final String PREVIEW_MODS_PARAM = "mods";
 
     public static final String CATALOG_ID = "id";
     public static final String CATALOG_NAME = "name";
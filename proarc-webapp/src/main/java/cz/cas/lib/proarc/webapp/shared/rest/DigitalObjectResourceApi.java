@@ -153,6 +153,14 @@ public final class DigitalObjectResourceApi {
     /** Resource /object/thumb */
     public static final String THUMB_PATH = "thumb";
 
+    /** Resource /object/thumbs */
+    public static final String THUMBS_PATH = "thumbs";
+    public static final String THUMBS_ITEM_PID = DIGITALOBJECT_PID;
+    /** The thumbnail as the {@code data:} URI or {@code null} if unavailable. */
+    public static final String THUMBS_ITEM_DATA = "data";
+    /** The maximum number of thumbnails of a single request. */
+    public static final int THUMBS_MAX_COUNT = 50;
+
     /** Resource /object/atm */
     public static final String ATM_PATH = "atm";
     public static final String ATM_ITEM_BATCHID = ImportResourceApi.BATCHITEM_BATCHID;
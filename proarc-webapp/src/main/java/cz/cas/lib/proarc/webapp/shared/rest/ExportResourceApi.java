@@ -28,6 +28,8 @@ public final class ExportResourceApi {
 
     public static final String ARCHIVE_PATH = "archive";
     public static final String ARCHIVE_PID_PARAM = "pid";
+    /** Resumes the last archiving of the same PIDs. */
+    public static final String ARCHIVE_RESUME_PARAM = "resume";
 
     public static final String CEJSH_PATH = "cejsh";
     public static final String CEJSH_PID_PARAM = "pid";
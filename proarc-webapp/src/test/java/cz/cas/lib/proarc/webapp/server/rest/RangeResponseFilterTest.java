@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2018 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.webapp.server.rest;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class RangeResponseFilterTest {
+
+    @Test
+    public void testParseRange() {
+        assertArrayEquals(new long[] {0, 99}, RangeResponseFilter.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[] {500, 999}, RangeResponseFilter.parseRange("bytes=500-", 1000));
+        assertArrayEquals(new long[] {900, 999}, RangeResponseFilter.parseRange("bytes=-100", 1000));
+        assertArrayEquals(new long[] {0, 999}, RangeResponseFilter.parseRange("bytes=-2000", 1000));
+        assertArrayEquals(new long[] {990, 999}, RangeResponseFilter.parseRange("bytes=990-2000", 1000));
+    }
+
+    @Test
+    public void testParseUnsatisfiableRange() {
+        assertArrayEquals(new long[0], RangeResponseFilter.parseRange("bytes=1000-", 1000));
+        assertArrayEquals(new long[0], RangeResponseFilter.parseRange("bytes=-0", 1000));
+    }
+
+    @Test
+    public void testParseUnsupportedRange() {
+        assertNull(RangeResponseFilter.parseRange("bytes=0-1,5-9", 1000));
+        assertNull(RangeResponseFilter.parseRange("items=0-1", 1000));
+        assertNull(RangeResponseFilter.parseRange("bytes=9-5", 1000));
+        assertNull(RangeResponseFilter.parseRange("bytes=a-b", 1000));
+    }
+
+}